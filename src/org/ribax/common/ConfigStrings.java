@@ -44,4 +44,30 @@ public class ConfigStrings {
     public final static String BASE_PARAMS = "Base_Params";
     public final static String PROPERTIES = "Properties";
     public final static String LOOKANDFEEL_CLASSNAME = "LookAndFeelClassName";
+    public final static String DATAMODEL_THREADS = "DataModelThreads";
+    public final static String HTTP_MAX_CONNECTIONS_PER_ROUTE = "HttpMaxConnectionsPerRoute";
+    public final static String HTTP_LEASE_TIMEOUT = "HttpLeaseTimeout";
+    public final static String TABLE_REPAINT_INTERVAL = "TableRepaintInterval";
+    public final static String IMAGE_CACHE_SIZE = "ImageCacheSize";
+    public final static String HTTP_CACHE_DIR = "HttpCacheDir";
+    public final static String HTTP_CACHE_MEMORY_SIZE = "HttpCacheMemorySize";
+    public final static String HTTP_COMPRESS_REQUEST_SIZE = "HttpCompressRequestSize";
+    public final static String LOG_CAPTURE_SIZE = "LogCaptureSize";
+    public final static String HTTP_CONNECT_TIMEOUT = "HttpConnectTimeout";
+    public final static String HTTP_READ_TIMEOUT = "HttpReadTimeout";
+    public final static String REQUEST_TIMEOUT = "RequestTimeout";
+    public final static String STREAM_RETRY_DELAY = "StreamRetryDelay";
+    public final static String STREAM_RETRY_MAX_DELAY = "StreamRetryMaxDelay";
+    public final static String STREAM_RETRY_ATTEMPTS = "StreamRetryAttempts";
+    public final static String TABLE_ROW_FRAMES = "TableRowFrames";
+    public final static String HTTP_RETRY_ATTEMPTS = "HttpRetryAttempts";
+    public final static String HTTP_RETRY_DELAY = "HttpRetryDelay";
+    public final static String HTTP_RETRY_MAX_DELAY = "HttpRetryMaxDelay";
+    public final static String HTTP_CIRCUIT_FAILURES = "HttpCircuitFailures";
+    public final static String HTTP_CIRCUIT_OPEN_TIME = "HttpCircuitOpenTime";
+    public final static String REQUEST_THREADS = "RequestThreads";
+    public final static String VISIBLE_REQUEST_THREADS = "VisibleRequestThreads";
+    public final static String SUBMIT_REQUEST_THREADS = "SubmitRequestThreads";
+    public final static String PREFETCH_REQUEST_THREADS = "PrefetchRequestThreads";
+    public final static String POLL_REQUEST_THREADS = "PollRequestThreads";
 }
@@ -92,6 +92,29 @@ public class RIBAXConfig implements Serializable {
         return o;
     }
 
+    /**
+     * Get an integer value for a given key.  Values read from the configuration
+     * properties are Strings so they are converted to an int.
+     *
+     * @param name the key that identifies the value.
+     * @param defaultValue a value to return if the key does not exist or is not a number.
+     * @return the int value for the given key or the default value.
+     */
+    public int getIntValue(String name, int defaultValue) {
+        Object o = settings.get(name);
+
+        if (o instanceof Number) {
+            return ((Number) o).intValue();
+        }
+        if (o != null) {
+            try {
+                return Integer.parseInt(o.toString().trim());
+            } catch (NumberFormatException ex) {
+            }
+        }
+        return defaultValue;
+    }
+
     /**
      * Store a value for a given key.
      * 
@@ -0,0 +1,157 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.data;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+import org.ribax.common.ConfigStrings;
+import org.ribax.common.RIBAXConfig;
+
+/**
+ * A singleton class that runs the background work of data models off the Swing
+ * event dispatch thread.  Short tasks (the timers that queue polls on the
+ * RequestScheduler, image loads and response logging) run on a bounded pool of worker
+ * threads.  A stream never ends so each stream has a thread of its own and the
+ * streams cannot starve the short tasks.  Only the resulting data changed
+ * notifications are posted back to the event dispatch thread.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+public class DataModelScheduler {
+
+    /** The default number of worker threads if none is configured */
+    public static final int DEFAULT_THREADS = 4;
+    /* The singleton instance of the scheduler */
+    private static DataModelScheduler instance = null;
+    /* The pool of worker threads */
+    private ScheduledThreadPoolExecutor executor;
+    /* The threads of the streams, one for each stream */
+    private ExecutorService streams;
+
+    /**
+     * Create a scheduler with the given number of worker threads.
+     *
+     * @param threads the maximum number of concurrent data model fetches.
+     */
+    DataModelScheduler(int threads) {
+        executor = new ScheduledThreadPoolExecutor(Math.max(1, threads), new ThreadFactory() {
+
+            private AtomicInteger count = new AtomicInteger(0);
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "DataModelScheduler-" + count.incrementAndGet()); //$NON-NLS-1$
+                // don't keep the application alive because a model is polling
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        streams = Executors.newCachedThreadPool(new ThreadFactory() {
+
+            private AtomicInteger count = new AtomicInteger(0);
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "DataModelScheduler-stream-" + count.incrementAndGet()); //$NON-NLS-1$
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Get the single instance of the scheduler.  The size of the worker pool is
+     * taken from the DataModelThreads configuration property.
+     *
+     * @return the scheduler instance.
+     */
+    public synchronized static DataModelScheduler getInstance() {
+        if (instance == null) {
+            instance = new DataModelScheduler(RIBAXConfig.getInstance().getIntValue(
+                    ConfigStrings.DATAMODEL_THREADS, DEFAULT_THREADS));
+        }
+        return instance;
+    }
+
+    /**
+     * Run a task once on a worker thread.
+     *
+     * @param task the task to run.
+     * @return a Future that can be used to cancel the task.
+     */
+    public Future<?> submit(Runnable task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * Run a task that reads a stream on a thread of its own.  The thread ends when
+     * the task returns.
+     *
+     * @param task the task to run.
+     * @return a Future that can be used to cancel the task.
+     */
+    public Future<?> submitStream(Runnable task) {
+        return streams.submit(task);
+    }
+
+    /**
+     * Run a task repeatedly on a worker thread with a fixed delay between the end
+     * of one run and the start of the next.  The first run starts immediately.
+     *
+     * @param task the task to run.
+     * @param delay the delay in seconds between runs.
+     * @return a ScheduledFuture that can be used to cancel the polling.
+     */
+    public ScheduledFuture<?> schedulePoll(Runnable task, long delay) {
+        return executor.scheduleWithFixedDelay(task, 0, delay, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Run a task on the Swing event dispatch thread.  If the caller is already on
+     * the event dispatch thread the task is run immediately.
+     *
+     * @param task the task to run.
+     */
+    public static void invokeOnEDT(Runnable task) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            task.run();
+        } else {
+            SwingUtilities.invokeLater(task);
+        }
+    }
+
+    /**
+     * Stop all the worker threads.  Running tasks are interrupted.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        streams.shutdownNow();
+    }
+}
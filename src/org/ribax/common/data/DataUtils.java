@@ -21,6 +21,7 @@
  */
 package org.ribax.common.data;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -40,7 +41,9 @@ import utils.log.BasicLogger;
 import utils.types.NameValuePair;
 
 import org.ribax.common.Messages;
+import org.ribax.common.net.DataRequest;
 import org.ribax.common.net.NetUtils;
+import org.ribax.common.net.PushDataSource;
 
 /**
  * Utility methods for working with XML documents and Element trees.
@@ -54,7 +57,10 @@ public class DataUtils {
     private static BasicLogger LOG = new BasicLogger(DataUtils.class.getName());
 
     /**
-     * Get an Element that is an XML document from a web service.
+     * Get an Element that is an XML document from a web service.  The request may
+     * change data on the server so it is sent on its own and never shared or retried,
+     * use loadDocumentRoot() to read a document.  Errors are logged and null is
+     * returned.
      * 
      * @param url the URL of the web service.
      * @param params a set of parameters to post to the web service.
@@ -65,16 +71,8 @@ public class DataUtils {
     public static Element getDocumentRoot(String url, ArrayList<NameValuePair> params, String name) throws IOException {
 
         try {
-            // get an input stream from the web service
-            InputStream in = NetUtils.getInputStream(url, params, name);
-
-            SAXBuilder builder = new SAXBuilder();
-
-            // build the Element tree from the XML input
-            Document doc = builder.build(in);
-
-            // return the root element
-            return doc.getRootElement();
+            // get the document
+            return getDocumentRoot(url, params, name, null);
 
         } catch (JDOMException ex) {
             // indicates a well-formedness error
@@ -85,6 +83,154 @@ public class DataUtils {
         return null;
     }
 
+    /**
+     * Get an Element that is an XML document from a web service in a request that only
+     * reads data, so the request may be retried if it fails and is shared with any
+     * identical request that is in progress.  Errors are logged and null is returned.
+     * 
+     * @param url the URL of the web service.
+     * @param params a set of parameters to post to the web service.
+     * @param name the name of the calling Object (for debugging).
+     * @return the XML document root Element or null if it cannot be read.
+     */
+    public static Element loadDocumentRoot(final String url, final ArrayList<NameValuePair> params,
+            final String name) {
+
+        DataRequest<Element> request = new DataRequest<Element>(0) {
+
+            protected Element call() throws Exception {
+                return getDocumentRoot(url, params, name, this);
+            }
+        };
+
+        request.setIdempotent(true);
+        request.run();
+
+        try {
+            return request.getResult();
+        } catch (IOException ex) {
+            if (ex.getCause() instanceof JDOMException) {
+                // indicates a well-formedness error
+                LOG.error(Messages.getString(BUNDLE_NAME, "DataUtils.1") + url, (JDOMException) ex.getCause()); //$NON-NLS-1$
+            } else {
+                LOG.error(Messages.getString(BUNDLE_NAME, "DataUtils.2") + url, ex); //$NON-NLS-1$
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Start getting an Element that is an XML document from a web service on a worker
+     * thread.  Several documents can be requested at the same time and the Elements
+     * collected from the returned requests when they are needed.  Cancelling a request
+     * aborts the connection and the parsing of the document.
+     * 
+     * @param url the URL of the web service.
+     * @param params a set of parameters to post to the web service.
+     * @param name the name of the calling Object (for debugging).
+     * @param timeout the time in milliseconds the request may take before it is
+     * cancelled, 0 for no deadline.
+     * @return the request that is getting the XML document root Element.
+     */
+    public static DataRequest<Element> getDocumentRootAsync(final String url,
+            final ArrayList<NameValuePair> params, final String name, long timeout) {
+
+        return new DataRequest<Element>(timeout) {
+
+            protected Element call() throws Exception {
+                return getDocumentRoot(url, params, name, this);
+            }
+        }.start();
+    }
+
+    /**
+     * Get an Element that is an XML document from a web service for a request that can
+     * be cancelled.  Unlike getDocumentRoot errors are thrown to the caller.  The fetch
+     * is shared with any identical request that is in progress.
+     * 
+     * @param url the URL of the web service.
+     * @param params a set of parameters to post to the web service.
+     * @param name the name of the calling Object (for debugging).
+     * @param request the request the document is read for, null if it cannot be cancelled.
+     * @return the XML document root Element.
+     * @throws IOException if an IO error occurs or the request is cancelled.
+     * @throws JDOMException if the document is not well formed.
+     */
+    public static Element getDocumentRoot(String url, ArrayList<NameValuePair> params,
+            String name, DataRequest<?> request) throws IOException, JDOMException {
+        return RequestCoalescer.getInstance().getDocumentRoot(url, params, name, request);
+    }
+
+    /**
+     * Build the Element tree of a document that a web service has sent as XML or as
+     * JSON.  XML is the default, the document is read as JSON if it starts with a
+     * JSON object or array.
+     * 
+     * @param in the stream of the document.
+     * @return the document root Element.
+     * @throws IOException if an IO error occurs or the JSON is not valid.
+     * @throws JDOMException if the XML is not well formed or a JSON name cannot be
+     * used as an Element name.
+     * @see org.ribax.common.data.JsonElementBuilder
+     */
+    public static Element buildDocument(InputStream in) throws IOException, JDOMException {
+        BufferedInputStream bin = new BufferedInputStream(in);
+
+        if (JsonReader.isJsonStream(bin)) {
+            return JsonElementBuilder.build(bin);
+        }
+        return new SAXBuilder().build(bin).getRootElement();
+    }
+
+    /**
+     * Open a stream of XML blocks from a web service.  A web service with an sse: or 
+     * push: URL pushes the blocks as server-sent events, any other web service streams
+     * the blocks in a never ending response.  The streams of web services are resumed
+     * on a new connection if the connection drops.  The blocks may be XML or JSON.
+     * 
+     * @param url the URL of the web service.
+     * @param params a set of parameters to post to the web service.
+     * @param name the name of the calling Object (for debugging).
+     * @param triggers the names of the top level elements to return, other blocks are
+     * skipped.  If null all blocks are returned.
+     * @param request the request the stream is read for, null if it cannot be cancelled.
+     * @return the source of the blocks.
+     * @throws IOException if the stream cannot be opened.
+     */
+    public static ElementBlockSource getBlockSource(String url, ArrayList<NameValuePair> params,
+            String name, String[] triggers, DataRequest<?> request) throws IOException {
+        if (PushDataSource.isPushURL(url)) {
+            return new EventBlockReader(url, params, name, triggers, request);
+        }
+        if (ResumableBlockSource.isResumableURL(url)) {
+            return new ResumableBlockSource(url, params, name, triggers, request);
+        }
+        InputStream in = NetUtils.getInputStream(url, params, name, request, JsonReader.getHeaders());
+
+        return getBlockReader(url, in, triggers);
+    }
+
+    /**
+     * Create a reader on a stream of blocks that is either XML or JSON, the format is
+     * recognised from the start of the stream.
+     * 
+     * @param url the URL of the web service (only used when logging errors).
+     * @param in an open input stream from the web service.
+     * @param triggers the names of the top level elements to return, other blocks are
+     * skipped.  If null all blocks are returned.
+     * @return an ElementBlockReader or a JsonBlockReader.
+     * @throws IOException if the stream cannot be read.
+     */
+    public static ElementBlockSource getBlockReader(String url, InputStream in,
+            String[] triggers) throws IOException {
+        BufferedInputStream bin = new BufferedInputStream(in);
+
+        if (JsonReader.isJsonStream(bin)) {
+            return new JsonBlockReader(url, bin, triggers);
+        }
+        return new ElementBlockReader(url, bin, triggers);
+    }
+
     /*
      * Check a block of text to see if one of a set of end tags occur in the text.  The 
      * array of end tag names are the simple names without the '</>' as in 'html' rather
@@ -113,6 +259,7 @@ public class DataUtils {
      * @param inStream an open input stream from the web service.
      * @param triggers an array of tag names
      * @return
+     * @see ElementBlockReader for reading a continuous stream of blocks with a single parser
      */
     public static Element readElementBlock(String url, BufferedReader bin,
             String[] triggers) {
@@ -0,0 +1,388 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.data;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.HashSet;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.jdom.Element;
+import org.jdom.Namespace;
+
+import org.ribax.common.Messages;
+
+import utils.log.BasicLogger;
+
+/**
+ * Reads a continuous stream of XML blocks, e.g. a sequence of &lt;tableData&gt; or
+ * &lt;modelData&gt; documents streamed by a web service, with a single long lived
+ * StAX pull parser.  Each completed top level block is built directly into a JDOM
+ * Element as the parser reaches its end tag, so the text is parsed only once and
+ * blocks may span lines or share a line with other blocks.
+ *
+ * <p>
+ * The stream is treated as the content of a synthetic root element and any XML
+ * declarations that preceed the individual blocks are dropped.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+public class ElementBlockReader implements ElementBlockSource {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.data.messages"; //$NON-NLS-1$
+    /* The synthetic root element that wraps the stream of blocks */
+    private static final String STREAM_ROOT = "<ribax-stream>"; //$NON-NLS-1$
+    private static final String STREAM_END = "</ribax-stream>"; //$NON-NLS-1$
+    private static XMLInputFactory factory = null;
+    /* The URL of the web service we are reading from (for logging) */
+    private String url;
+    /* The names of the top level elements that are returned, null for all */
+    private HashSet<String> triggers = null;
+    private Reader reader;
+    private XMLStreamReader parser;
+    /* The error that ended the stream, null if the stream has not failed */
+    private volatile XMLStreamException error = null;
+    private static BasicLogger LOG = new BasicLogger(ElementBlockReader.class.getName());
+
+    /**
+     * Create a reader on a stream of XML blocks.
+     *
+     * @param url the URL of the web service that we are reading from (only used when
+     * logging errors).
+     * @param in an open input stream from the web service.
+     * @param triggers the names of the top level elements to return, other top level
+     * elements are skipped.  If null all top level elements are returned.
+     * @throws IOException if the parser can not be created.
+     */
+    public ElementBlockReader(String url, InputStream in, String[] triggers) throws IOException {
+        this(url, new InputStreamReader(in, "UTF-8"), triggers); //$NON-NLS-1$
+    }
+
+    /**
+     * Create a reader on a stream of XML blocks.
+     *
+     * @param url the URL of the web service that we are reading from (only used when
+     * logging errors).
+     * @param in a reader on the stream.
+     * @param triggers the names of the top level elements to return, other top level
+     * elements are skipped.  If null all top level elements are returned.
+     * @throws IOException if the parser can not be created.
+     */
+    public ElementBlockReader(String url, Reader in, String[] triggers) throws IOException {
+        this.url = url;
+        this.reader = in;
+
+        if (triggers != null) {
+            this.triggers = new HashSet<String>();
+
+            for (String s : triggers) {
+                this.triggers.add(s);
+            }
+        }
+
+        try {
+            parser = getFactory().createXMLStreamReader(new BlockStreamReader(in));
+            // move to the synthetic root
+            parser.nextTag();
+        } catch (XMLStreamException ex) {
+            throw new IOException(Messages.getString(BUNDLE_NAME, "ElementBlockReader.0") + url + " " + ex.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /*
+     * Get the shared StAX input factory.
+     */
+    private synchronized static XMLInputFactory getFactory() {
+        if (factory == null) {
+            factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        }
+        return factory;
+    }
+
+    /**
+     * Read the next complete top level block from the stream.  This call blocks until
+     * the end tag of the block has been read.
+     *
+     * @return the block as an Element tree or null if the stream has ended or is
+     * not well formed.
+     */
+    public Element readBlock() {
+        try {
+            while (parser.hasNext()) {
+                int event = parser.next();
+
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = parser.getLocalName();
+
+                    if (triggers == null || triggers.contains(name)) {
+                        return readElement();
+                    }
+                    skipElement();
+                } else if (event == XMLStreamConstants.END_ELEMENT
+                        || event == XMLStreamConstants.END_DOCUMENT) {
+                    // the end of the synthetic root, the stream has ended
+                    return null;
+                }
+            }
+        } catch (XMLStreamException ex) {
+            // indicates a well-formedness error or the stream was closed
+            error = ex;
+            LOG.error(Messages.getString(BUNDLE_NAME, "DataUtils.9") + url, ex); //$NON-NLS-1$
+        }
+        return null;
+    }
+
+    /*
+     * Build the element at the current START_ELEMENT event and its content, the
+     * parser is left on the matching END_ELEMENT event.
+     */
+    private Element readElement() throws XMLStreamException {
+        Element element = createElement();
+
+        while (true) {
+            int event = parser.next();
+
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    element.addContent(readElement());
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    element.addContent(parser.getText());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    return element;
+                case XMLStreamConstants.END_DOCUMENT:
+                    throw new XMLStreamException(Messages.getString(BUNDLE_NAME, "ElementBlockReader.1") + element.getName()); //$NON-NLS-1$
+                default:
+                    // comments and processing instructions are ignored
+                    break;
+            }
+        }
+    }
+
+    /*
+     * Create an Element with the name, namespace and attributes of the current
+     * START_ELEMENT event.
+     */
+    private Element createElement() {
+        Element element;
+        String uri = parser.getNamespaceURI();
+
+        if (uri != null && uri.length() > 0) {
+            element = new Element(parser.getLocalName(), parser.getPrefix(), uri);
+        } else {
+            element = new Element(parser.getLocalName());
+        }
+
+        for (int i = 0; i < parser.getNamespaceCount(); i++) {
+            String prefix = parser.getNamespacePrefix(i);
+
+            if (prefix != null && prefix.length() > 0) {
+                element.addNamespaceDeclaration(Namespace.getNamespace(prefix, parser.getNamespaceURI(i)));
+            }
+        }
+
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            String auri = parser.getAttributeNamespace(i);
+
+            if (auri != null && auri.length() > 0) {
+                element.setAttribute(parser.getAttributeLocalName(i), parser.getAttributeValue(i),
+                        Namespace.getNamespace(parser.getAttributePrefix(i), auri));
+            } else {
+                element.setAttribute(parser.getAttributeLocalName(i), parser.getAttributeValue(i));
+            }
+        }
+        return element;
+    }
+
+    /*
+     * Skip the element at the current START_ELEMENT event.
+     */
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+
+        while (depth > 0) {
+            int event = parser.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.END_DOCUMENT) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the error that ended the stream.  A stream that has been cut off part way
+     * through a block ends with an error, a stream that has ended cleanly has no error.
+     *
+     * @return the error or null if readBlock() has not failed.
+     */
+    public XMLStreamException getError() {
+        return error;
+    }
+
+    /**
+     * Close the reader and the underlying stream.
+     */
+    public void close() {
+        try {
+            parser.close();
+        } catch (XMLStreamException ex) {
+        }
+        try {
+            reader.close();
+        } catch (IOException ex) {
+        }
+    }
+
+    /*
+     * A Reader that prefixes the stream with the synthetic root element and drops the
+     * XML declarations at the start of each block.
+     */
+    private static class BlockStreamReader extends FilterReader {
+
+        private static final String DECLARATION = "<?xml"; //$NON-NLS-1$
+        /* the synthetic root still to be returned */
+        private Reader prefix = new StringReader(STREAM_ROOT);
+        /* characters held back while they might be the start of a declaration */
+        private StringBuilder pending = new StringBuilder();
+        /* characters that turned out not to be a declaration, ready to be returned */
+        private StringBuilder ready = new StringBuilder();
+        private int readyPos = 0;
+        /* true while skipping the body of a declaration */
+        private boolean inDeclaration = false;
+        /* the previous character while skipping a declaration */
+        private int last = -1;
+        /* true once the end of the underlying stream has been reached */
+        private boolean ended = false;
+
+        BlockStreamReader(Reader in) {
+            super(in);
+        }
+
+        public int read() throws IOException {
+            char[] c = new char[1];
+
+            return read(c, 0, 1) < 0 ? -1 : c[0];
+        }
+
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (prefix != null) {
+                int n = prefix.read(cbuf, off, len);
+
+                if (n > 0) {
+                    return n;
+                }
+                prefix = null;
+            }
+
+            int count = 0;
+
+            while (count < len) {
+                // return any released characters first
+                if (readyPos < ready.length()) {
+                    cbuf[off + count++] = ready.charAt(readyPos++);
+                    continue;
+                }
+
+                // don't block for more input if we already have something to return
+                if (count > 0 && !in.ready()) {
+                    break;
+                }
+
+                int c = in.read();
+
+                if (c < 0) {
+                    if (!ended) {
+                        // close the synthetic root at the end of the stream
+                        pending.append(STREAM_END);
+                        ended = true;
+                    }
+                    if (pending.length() > 0) {
+                        release();
+                        continue;
+                    }
+                    break;
+                }
+
+                if (inDeclaration) {
+                    // skip to the end of the declaration
+                    if (last == '?' && c == '>') {
+                        inDeclaration = false;
+                    }
+                    last = c;
+                    continue;
+                }
+
+                if (pending.length() == 0 && c != '<') {
+                    cbuf[off + count++] = (char) c;
+                    continue;
+                }
+
+                // hold back what might be the start of a declaration
+                pending.append((char) c);
+
+                if (pending.length() <= DECLARATION.length()) {
+                    if (!DECLARATION.startsWith(pending.toString())) {
+                        release();
+                    }
+                } else if (Character.isWhitespace(c)) {
+                    // found a declaration, drop it
+                    pending.setLength(0);
+                    inDeclaration = true;
+                    last = -1;
+                } else {
+                    // a processing instruction whose target only starts with xml
+                    release();
+                }
+            }
+            return count == 0 ? -1 : count;
+        }
+
+        /*
+         * Release the held back characters to be returned by the reader.
+         */
+        private void release() {
+            ready.setLength(0);
+            ready.append(pending);
+            readyPos = 0;
+            pending.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.data;
+
+import org.jdom.Element;
+
+/**
+ * A source of the blocks of XML data that a web service streams to a data model or
+ * table, e.g. a sequence of &lt;tableData&gt; or &lt;modelData&gt; updates.  The
+ * first block usually holds the whole of the data and each later block holds the
+ * changes to merge into it.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.data.ElementBlockReader
+ * @see org.ribax.common.data.EventBlockReader
+ * @see org.ribax.common.data.DataUtils#getBlockSource(String, java.util.ArrayList, String, String[], org.ribax.common.net.DataRequest)
+ */
+public interface ElementBlockSource {
+
+    /**
+     * Read the next block.  This call blocks until the whole of the block has arrived.
+     *
+     * @return the block as an Element tree or null if the stream has ended.
+     */
+    public Element readBlock();
+
+    /**
+     * Close the source and the underlying stream.
+     */
+    public void close();
+}
@@ -0,0 +1,200 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Hashtable;
+
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jdom.input.SAXBuilder;
+
+import org.ribax.common.Messages;
+import org.ribax.common.net.Backoff;
+import org.ribax.common.net.DataRequest;
+import org.ribax.common.net.EventStreamReader;
+import org.ribax.common.net.NetUtils;
+import org.ribax.common.net.ResumableStream;
+import org.ribax.common.net.ServerEvent;
+
+import utils.log.BasicLogger;
+import utils.types.NameValuePair;
+
+/**
+ * Reads the blocks of XML data pushed by a web service as server-sent events.  The
+ * data of each event is an XML block, e.g. a &lt;tableData&gt; or &lt;modelData&gt;
+ * update, that is parsed into an Element tree.  If the connection drops the reader
+ * waits for the reconnection time sent by the stream and reconnects, sending the
+ * last event ID in a Last-Event-ID header so the web service can resume the stream
+ * after the last event that was read.  If the reconnection fails the further
+ * attempts are spaced by the configured Backoff.  A web service that cannot resume
+ * the stream should start the new stream with a block that contains a clearData element.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.net.PushDataSource
+ */
+public class EventBlockReader extends ResumableStream implements ElementBlockSource {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.data.messages"; //$NON-NLS-1$
+    /* The parameters to post to the web service */
+    private ArrayList<NameValuePair> params;
+    /* The names of the top level elements that are returned, null for all */
+    private HashSet<String> triggers = null;
+    /* The reader on the current connection */
+    private volatile EventStreamReader reader = null;
+    private static BasicLogger LOG = new BasicLogger(EventBlockReader.class.getName());
+
+    /**
+     * Connect to an event stream.
+     *
+     * @param url the sse: or push: URL of the stream.
+     * @param params the parameters to post to the web service, may be null.
+     * @param name the name of the Object reading the stream (for debugging).
+     * @param triggers the names of the top level elements to return, other blocks
+     * are skipped.  If null all blocks are returned.
+     * @param request the request the stream is read for, null if it cannot be cancelled.
+     * @throws IOException if the stream cannot be opened.
+     */
+    public EventBlockReader(String url, ArrayList<NameValuePair> params, String name,
+            String[] triggers, DataRequest<?> request) throws IOException {
+        super(url, name, request, new Backoff());
+        this.params = params;
+
+        if (triggers != null) {
+            this.triggers = new HashSet<String>();
+
+            for (String s : triggers) {
+                this.triggers.add(s);
+            }
+        }
+
+        open();
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.common.net.ResumableStream#open()
+     */
+    protected void open() throws IOException {
+        String lastEventId = reader == null ? null : reader.getLastEventId();
+        Hashtable<String, String> headers = new Hashtable<String, String>();
+
+        if (lastEventId != null && lastEventId.length() > 0) {
+            headers.put(EventStreamReader.LAST_EVENT_ID, lastEventId);
+        }
+
+        // the parameters are copied as the base parameters are added to them
+        ArrayList<NameValuePair> list = params == null ? null : new ArrayList<NameValuePair>(params);
+        InputStream in = NetUtils.getInputStream(url, list, name, request, headers);
+
+        reader = new EventStreamReader(in, lastEventId);
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.common.net.ResumableStream#closeConnection()
+     */
+    protected void closeConnection() {
+        reader.close();
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.common.data.ElementBlockSource#readBlock()
+     */
+    public Element readBlock() {
+        while (!isClosed()) {
+            EventStreamReader current = reader;
+            ServerEvent event = null;
+
+            try {
+                event = current.readEvent();
+            } catch (IOException ex) {
+                if (!isClosed()) {
+                    LOG.warning(name + Messages.getString(BUNDLE_NAME, "EventBlockReader.0") + url //$NON-NLS-1$
+                            + " " + ex.getMessage()); //$NON-NLS-1$
+                }
+            }
+
+            if (event == null) {
+                // the connection has ended, resume the stream on a new connection after
+                // the reconnection time sent by the stream
+                if (!reconnect(Math.max(1, current.getRetry()))) {
+                    return null;
+                }
+                continue;
+            }
+            backoff.reset();
+
+            Element block = parse(event);
+
+            if (block != null) {
+                return block;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Parse the data of an event into an Element tree.
+     *
+     * @return the Element tree or null if the data is not well formed or the block is
+     * not one of the triggers.
+     */
+    private Element parse(ServerEvent event) {
+        Element block;
+
+        try {
+            String data = event.getData().trim();
+
+            // an event may carry JSON rather than XML
+            if (data.startsWith("{") || data.startsWith("[")) { //$NON-NLS-1$ //$NON-NLS-2$
+                block = JsonElementBuilder.build(new JsonReader(new StringReader(data)));
+            } else {
+                block = new SAXBuilder().build(new StringReader(data)).detachRootElement();
+            }
+        } catch (JDOMException ex) {
+            LOG.error(name + Messages.getString(BUNDLE_NAME, "EventBlockReader.2") + url, ex); //$NON-NLS-1$
+            return null;
+        } catch (IOException ex) {
+            LOG.error(name + Messages.getString(BUNDLE_NAME, "EventBlockReader.2") + url, ex); //$NON-NLS-1$
+            return null;
+        }
+
+        if (triggers != null && !triggers.contains(block.getName())) {
+            return null;
+        }
+        return block;
+    }
+
+    /**
+     * Get the last event ID read from the stream.
+     *
+     * @return the last event ID, an empty String if the stream has not sent an ID.
+     */
+    public String getLastEventId() {
+        return reader.getLastEventId();
+    }
+}
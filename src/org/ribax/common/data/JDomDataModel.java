@@ -21,10 +21,8 @@
  */
 package org.ribax.common.data;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -32,6 +30,7 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.Future;
 
 import org.jdom.Document;
 import org.jdom.Element;
@@ -68,9 +67,14 @@ public class JDomDataModel extends DataModel {
     /* The URL of a web service that provides the streaming data (optional) */
     private String stream = null;
     /* A flag to tell this data model to stop streaming */
-    private boolean stopped = false;
+    private volatile boolean stopped = false;
+    /* Counts the queries so a stream knows when a later query has replaced it */
+    private volatile int generation = 0;
     
-    private InputStream inStream = null;
+    /* The source of the streamed blocks, closed to stop streaming */
+    private volatile ElementBlockSource blockSource = null;
+    /* The scheduled fetch, stream or poll task for this data model */
+    private volatile Future<?> task = null;
     /* A flag indicating whether we should submit local changes in the data back to 
      * the web service (optional) defaults to false - do not submit changes 
      * in the data to the web service */
@@ -87,61 +91,129 @@ public class JDomDataModel extends DataModel {
     }
 
     /**
-     * Invoke a new thread to download the data for the DataModel from a web service.
+     * Start a task to download the data for the DataModel from a web service.  A
+     * stream runs on the data model scheduler, a single download on the request
+     * scheduler and each poll is queued on the request scheduler in the poll class.
+     * The network work is done on a worker thread, only the data changed
+     * notifications are delivered on the event dispatch thread.
      */
     public synchronized void queryData() {
         // the data was not provided in the DataModel definition so start a process
         // to download or stream the data from a web service
-        javax.swing.SwingUtilities.invokeLater(new Runnable() {
+        DataModelScheduler scheduler = DataModelScheduler.getInstance();
+        final RequestScheduler requests = RequestScheduler.getInstance();
 
-            public void run() {
+        // a second query replaces the stream or poll of the first rather than leaking it
+        stopStreaming();
+        stopped = false;
+
+        final int current = ++generation;
 
-                // if the streaming URL is not null then we are streaming data from 
-                // a web service
-                if (stream != null) {
-                    streamData(stream);
-                } else if (serviceEndpoint != null && methodName != null) {
+        // if the streaming URL is not null then we are streaming data from
+        // a web service
+        if (stream != null) {
+            task = scheduler.submitStream(new Runnable() {
+
+                public void run() {
+                    streamData(stream, current);
+                }
+            });
+        } else if (serviceEndpoint != null && methodName != null) {
+            task = requests.submit(new Runnable() {
+
+                public void run() {
                     // get the data using a soap client
                     SoapClient sc = new SoapClient();
 
                     try {
-                        root = sc.getSoapResponse(serviceEndpoint, methodName, methodName, params);
+                        updateData(sc.getSoapResponse(serviceEndpoint, methodName, methodName, params), true,
+                                current);
                     } catch (IOException e) {
-                        // TODO Auto-generated catch block
-                        e.printStackTrace();
+                        LOG.warning(name + Messages.getString(BUNDLE_NAME, "JDomDataModel.8") + serviceEndpoint //$NON-NLS-1$
+                                + " " + e.getMessage()); //$NON-NLS-1$
+                    }
+                }
+            }, RequestScheduler.VISIBLE, this);
+        } else if (url != null) {
+            // otherwise we are just requesting the data from a web service
+            // at least once
+            if (pollDelay > 0) {
+                // poll the web service every pollDelay seconds for the data
+                final Runnable poll = new Runnable() {
+
+                    public void run() {
+                        if (stopped) {
+                            return;
+                        }
+                        try {
+                            // get the root document
+                            updateData(DataUtils.loadDocumentRoot(url, params, name), true, current);
+                        } catch (Exception ex) {
+                            LOG.warning(name + Messages.getString(BUNDLE_NAME, "JDomDataModel.6") + ex.getMessage()); //$NON-NLS-1$
+                        }
                     }
-                } else if (url != null) {
-                    // otherwise we are just requesting the data from a web service
-                    // at least once
+                };
 
-                    try {
-                        // if the poll delay > 0 then we need to poll the web service
-                        // every pollDelay seconds for the data
-                        if (pollDelay > 0) {
-                            while (true) {
-                                // get the root document
-                                root = DataUtils.getDocumentRoot(url, params, name);
-
-                                // tell all the handlers that the data has changed
-                                fireDataChanged(null);
-                                try {
-                                    Thread.sleep(pollDelay * 1000);
-                                } catch (InterruptedException ex) {
-                                }
-                            }
-                        } else {
-                            // get the data once and be done with it
-                            root = DataUtils.getDocumentRoot(url, null, name);
+                task = scheduler.schedulePoll(new Runnable() {
 
-                            // tell all the handlers that the data has changed
-                            fireDataChanged(null);
+                    private Future<?> pending = null;
+
+                    public void run() {
+                        // a poll still waiting behind more important requests is not
+                        // queued twice
+                        if (!stopped && (pending == null || pending.isDone())) {
+                            pending = requests.submit(poll, RequestScheduler.POLL, JDomDataModel.this);
                         }
-                    } catch (Exception ex) {
-                        LOG.warning(name + " Error polling data " + ex.getMessage());
                     }
+                }, pollDelay);
+            } else {
+                task = requests.submit(new Runnable() {
+
+                    public void run() {
+                        try {
+                            // get the data once and be done with it
+                            updateData(DataUtils.loadDocumentRoot(url, null, name), true, current);
+                        } catch (Exception ex) {
+                            LOG.warning(name + Messages.getString(BUNDLE_NAME, "JDomDataModel.9") + url //$NON-NLS-1$
+                                    + " " + ex.getMessage()); //$NON-NLS-1$
+                        }
+                    }
+                }, RequestScheduler.VISIBLE, this);
+            }
+        } else {
+            LOG.warning(name + Messages.getString(BUNDLE_NAME, "JDomDataModel.7")); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Apply a newly fetched Element tree to the model on the event dispatch thread and
+     * tell all the listeners that the data has changed.
+     *
+     * @param node the new Element tree.
+     * @param replace if true the node replaces the root of the model, otherwise it is
+     * merged into the existing data unless it contains a clearData element.
+     * @param current the generation of the query that fetched the node, the node is
+     * dropped if the query has been replaced.
+     */
+    private void updateData(final Element node, final boolean replace, final int current) {
+        if (node == null) {
+            return;
+        }
+        DataModelScheduler.invokeOnEDT(new Runnable() {
+
+            public void run() {
+                // the model was stopped or queried again while the data was in flight
+                if (stopped || current != generation) {
+                    return;
+                }
+                if (replace || root == null || node.getChild("clearData") != null) { //$NON-NLS-1$
+                    root = node;
                 } else {
-                    LOG.warning(name + " No modelData, stream or url defined");
+                    mergeData(root, node);
                 }
+
+                // tell all the handlers that the data has changed
+                fireDataChanged(null);
             }
         });
     }
@@ -280,6 +352,18 @@ public class JDomDataModel extends DataModel {
      */
     public void stopStreaming() {
         stopped = true;
+
+        // cancel the streaming or polling task
+        if (task != null) {
+            task.cancel(true);
+            task = null;
+        }
+
+        // close the stream to unblock a worker thread waiting for data
+        ElementBlockSource source = blockSource;
+        if (source != null) {
+            source.close();
+        }
     }
 
     /**
@@ -287,37 +371,48 @@ public class JDomDataModel extends DataModel {
      * the data model.
      * 
      * @param url the URL of the web service that will provide the data stream.
+     * @param current the query the stream belongs to.
      */
-    private void streamData(String url) {
+    private void streamData(String url, int current) {
         // the set of end tags we are looking for that deliniate a block of XML data
         String[] triggers = {
             "modelData", "error" //$NON-NLS-1$ //$NON-NLS-2$
         };
+        ElementBlockSource reader = null;
 
         try {
 
-            // get an input stream from the web service
-            if ((inStream = getInputStream(url, null)) == null) {
-                return;
+            // get a block reader on the stream from the web service, a push web
+            // service sends the blocks as server-sent events
+            reader = DataUtils.getBlockSource(url, null, name, triggers, null);
+
+            if (current == generation) {
+                blockSource = reader;
             }
 
-            // get a buffered reader on the stream
-            BufferedReader bin = new BufferedReader(new InputStreamReader(inStream));
+            // the model may have been stopped while the stream was opening
+            if (stopped || current != generation) {
+                return;
+            }
 
             // get the root Element from the stream
-            root = DataUtils.readElementBlock(url, bin, triggers);
+            Element first = reader.readBlock();
 
-            // tell all the listeners that the data has changed
-            fireDataChanged(null);
+            if (first == null) {
+                return;
+            }
+
+            // replace the data and tell all the listeners that the data has changed
+            updateData(first, true, current);
 
             // now read the continuous stream of data adding/replacing data
             if (LOG.isDebugEnabled()) {
                 LOG.debug(Messages.getString(BUNDLE_NAME, "JDomDataModel.10")); //$NON-NLS-1$
             }
-            while (stopped == false) {
+            while (stopped == false && current == generation) {
 
                 // get the new Element from the stream
-                Element newnode = DataUtils.readElementBlock(url, bin, triggers);
+                Element newnode = reader.readBlock();
 
                 // a null Element means there was no more data to read from the stream so 
                 // pack up and go home
@@ -325,26 +420,25 @@ public class JDomDataModel extends DataModel {
                     break;
                 }
 
-                // if we are given the clearData element then clear the data
-                // this has the effect of removing all data from the model
-                Element e = newnode.getChild("clearData"); //$NON-NLS-1$
-
-                if (e != null) {
-                    root = newnode;
-                } else // merge the new data
-                {
-                    mergeData(root, newnode);
-                }
-
-                // tell all the listeners that the data has changed
-                fireDataChanged(null);
-
+                // merge the new data, if we are given the clearData element then
+                // the new data replaces the existing data
+                updateData(newnode, false, current);
             }
 
         } catch (MalformedURLException ex) {
             LOG.error(Messages.getString(BUNDLE_NAME, "JDomDataModel.12") + url + " " + ex); //$NON-NLS-1$ //$NON-NLS-2$
         } catch (IOException e) {
-            LOG.warn(Messages.getString(BUNDLE_NAME, "JDomDataModel.14") + e); //$NON-NLS-1$
+            if (!stopped) {
+                LOG.warn(Messages.getString(BUNDLE_NAME, "JDomDataModel.14") + e); //$NON-NLS-1$
+            }
+        } finally {
+            // the stream of a later query may have replaced this one
+            if (blockSource == reader) {
+                blockSource = null;
+            }
+            if (reader != null) {
+                reader.close();
+            }
         }
     }
 
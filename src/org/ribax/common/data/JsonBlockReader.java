@@ -0,0 +1,124 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+
+import org.jdom.Element;
+import org.jdom.JDOMException;
+
+import org.ribax.common.Messages;
+
+import utils.log.BasicLogger;
+
+/**
+ * Reads a continuous stream of JSON blocks, e.g. a sequence of {"tableData": ...} or
+ * {"modelData": ...} updates streamed by a web service, with a single JsonReader.
+ * Each top level value of the stream is built into a JDOM Element as it is read, so
+ * a web service may stream JSON to any reader of XML blocks.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.data.JsonElementBuilder
+ */
+public class JsonBlockReader implements ElementBlockSource {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.data.messages"; //$NON-NLS-1$
+    /* The URL of the web service we are reading from (for logging) */
+    private String url;
+    /* The names of the top level elements that are returned, null for all */
+    private HashSet<String> triggers = null;
+    private JsonReader json;
+    /* The error that ended the stream, null if the stream has not failed */
+    private volatile Exception error = null;
+    private static BasicLogger LOG = new BasicLogger(JsonBlockReader.class.getName());
+
+    /**
+     * Create a reader on a stream of JSON blocks.
+     *
+     * @param url the URL of the web service that we are reading from (only used when
+     * logging errors).
+     * @param in an open input stream from the web service.
+     * @param triggers the names of the top level elements to return, other blocks
+     * are skipped.  If null all blocks are returned.
+     * @throws IOException if the stream cannot be read.
+     */
+    public JsonBlockReader(String url, InputStream in, String[] triggers) throws IOException {
+        this.url = url;
+        this.json = new JsonReader(in);
+
+        if (triggers != null) {
+            this.triggers = new HashSet<String>();
+
+            for (String s : triggers) {
+                this.triggers.add(s);
+            }
+        }
+    }
+
+    /**
+     * Read the next top level block from the stream.  This call blocks until the whole
+     * of the block has been read.
+     *
+     * @return the block as an Element tree or null if the stream has ended or is
+     * not valid JSON.
+     */
+    public Element readBlock() {
+        try {
+            Element block;
+
+            while ((block = JsonElementBuilder.build(json)) != null) {
+                if (triggers == null || triggers.contains(block.getName())) {
+                    return block;
+                }
+            }
+        } catch (IOException ex) {
+            // indicates a syntax error or the stream was closed
+            error = ex;
+            LOG.error(Messages.getString(BUNDLE_NAME, "JsonBlockReader.0") + url, ex); //$NON-NLS-1$
+        } catch (JDOMException ex) {
+            error = ex;
+            LOG.error(Messages.getString(BUNDLE_NAME, "JsonBlockReader.0") + url, ex); //$NON-NLS-1$
+        }
+        return null;
+    }
+
+    /**
+     * Get the error that ended the stream.  A stream that has been cut off part way
+     * through a block ends with an error, a stream that has ended cleanly has no error.
+     *
+     * @return the error or null if readBlock() has not failed.
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * Close the reader and the underlying stream.
+     */
+    public void close() {
+        json.close();
+    }
+}
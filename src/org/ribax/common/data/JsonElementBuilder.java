@@ -0,0 +1,197 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.jdom.Element;
+import org.jdom.IllegalAddException;
+import org.jdom.IllegalDataException;
+import org.jdom.IllegalNameException;
+import org.jdom.JDOMException;
+
+import org.ribax.common.Messages;
+
+/**
+ * Builds JDOM Element trees from JSON text so a web service can answer any request
+ * for an XML document with JSON.  The Elements are built from the events of a
+ * JsonReader as the text is read, the JSON is never held as a tree of its own.  The
+ * JSON is mapped to Elements as
+ * <pre>
+ *   {"name": "IBM"}                        &lt;name&gt;IBM&lt;/name&gt;
+ *   {"row": {"@key": "1", "#text": "x"}}   &lt;row key="1"&gt;x&lt;/row&gt;
+ *   {"col": ["a", "b"]}                    &lt;col&gt;a&lt;/col&gt;&lt;col&gt;b&lt;/col&gt;
+ *   ["a", "b"]                             &lt;data&gt;&lt;item&gt;a&lt;/item&gt;&lt;item&gt;b&lt;/item&gt;&lt;/data&gt;
+ * </pre>
+ * i.e. an object member is a child Element with the name of the member, except that
+ * a member whose name starts with '@' is an attribute and the #text member is the
+ * text of the Element, and each value of an array is a separate Element with the
+ * name of the array.  A document that is an object with a single member is the
+ * Element of that member, e.g. {"modelData": {...}} is a &lt;modelData&gt; document,
+ * any other document is a &lt;data&gt; Element.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.data.JsonReader
+ */
+public class JsonElementBuilder {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.data.messages"; //$NON-NLS-1$
+    /** The name of the root Element of a document that is not a single member object */
+    public static final String ROOT = "data"; //$NON-NLS-1$
+    /** The name of the Elements of the values of an array that is not a member */
+    public static final String ITEM = "item"; //$NON-NLS-1$
+    /** The prefix of the members that are attributes */
+    public static final String ATTRIBUTE_PREFIX = "@"; //$NON-NLS-1$
+    /** The name of the member that is the text of an Element */
+    public static final String TEXT = "#text"; //$NON-NLS-1$
+
+    /**
+     * Build an Element tree from a JSON document.
+     *
+     * @param in the stream of UTF-8 JSON text.
+     * @return the document root Element.
+     * @throws IOException if the stream cannot be read or is not valid JSON.
+     * @throws JDOMException if a name in the document cannot be used for an Element.
+     */
+    public static Element build(InputStream in) throws IOException, JDOMException {
+        Element root = build(new JsonReader(in));
+
+        if (root == null) {
+            throw new IOException(Messages.getString(BUNDLE_NAME, "JsonReader.1")); //$NON-NLS-1$
+        }
+        return root;
+    }
+
+    /**
+     * Build an Element tree from the next top level value of a JSON stream.
+     *
+     * @param json the parser on the stream, positioned between two top level values.
+     * @return the root Element of the value or null if the stream has ended.
+     * @throws IOException if the stream cannot be read or is not valid JSON.
+     * @throws JDOMException if a name in the document cannot be used for an Element.
+     */
+    public static Element build(JsonReader json) throws IOException, JDOMException {
+        if (json.next() == JsonReader.END_DOCUMENT) {
+            return null;
+        }
+
+        boolean object = json.getEvent() == JsonReader.START_OBJECT;
+        Element root = build(json, ROOT);
+
+        // a single member object is the Element of the member
+        if (object && root.getAttributes().isEmpty() && root.getContentSize() == 1
+                && root.getChildren().size() == 1) {
+            root = (Element) ((Element) root.getChildren().get(0)).detach();
+        }
+        return root;
+    }
+
+    /**
+     * Build an Element from a value.
+     *
+     * @param json the parser, the current event is the first event of the value.
+     * @param name the name of the Element.
+     * @return the Element, after the call the current event is the last event of
+     * the value.
+     * @throws IOException if the stream cannot be read or is not valid JSON.
+     * @throws JDOMException if a name in the value cannot be used for an Element.
+     */
+    public static Element build(JsonReader json, String name) throws IOException, JDOMException {
+        try {
+            Element e = new Element(name);
+
+            addValue(json, e);
+            return e;
+        } catch (IllegalNameException ex) {
+            throw new JDOMException(ex.getMessage(), ex);
+        } catch (IllegalDataException ex) {
+            throw new JDOMException(ex.getMessage(), ex);
+        } catch (IllegalAddException ex) {
+            throw new JDOMException(ex.getMessage(), ex);
+        }
+    }
+
+    /*
+     * Add the content of a value to an Element.
+     */
+    private static void addValue(JsonReader json, Element e) throws IOException {
+        switch (json.getEvent()) {
+            case JsonReader.START_OBJECT:
+                while (json.next() == JsonReader.NAME) {
+                    addMember(json, e, json.getText());
+                }
+                break;
+            case JsonReader.START_ARRAY:
+                addItems(json, e, ITEM);
+                break;
+            case JsonReader.NULL:
+                break;
+            default:
+                e.addContent(json.getText());
+        }
+    }
+
+    /*
+     * Add an object member to an Element, the current event is the NAME of the member.
+     */
+    private static void addMember(JsonReader json, Element e, String name) throws IOException {
+        int event = json.next();
+
+        if (name.startsWith(ATTRIBUTE_PREFIX)) {
+            if (event == JsonReader.START_OBJECT || event == JsonReader.START_ARRAY) {
+                // an attribute must have a simple value
+                json.skipValue();
+            } else if (event != JsonReader.NULL) {
+                e.setAttribute(name.substring(ATTRIBUTE_PREFIX.length()), json.getText());
+            }
+        } else if (name.equals(TEXT)) {
+            addValue(json, e);
+        } else if (event == JsonReader.START_ARRAY) {
+            addItems(json, e, name);
+        } else {
+            Element child = new Element(name);
+
+            addValue(json, child);
+            e.addContent(child);
+        }
+    }
+
+    /*
+     * Add the values of an array to an Element as a sequence of child Elements.
+     */
+    private static void addItems(JsonReader json, Element e, String name) throws IOException {
+        while (json.next() != JsonReader.END_ARRAY) {
+            Element child = new Element(name);
+
+            if (json.getEvent() == JsonReader.START_ARRAY) {
+                // a nested array is an Element holding the nested values
+                addItems(json, child, ITEM);
+            } else {
+                addValue(json, child);
+            }
+            e.addContent(child);
+        }
+    }
+}
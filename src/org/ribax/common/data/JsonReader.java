@@ -0,0 +1,520 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.data;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Hashtable;
+import java.util.regex.Pattern;
+
+import org.ribax.common.Messages;
+
+/**
+ * A pull parser for JSON text.  The caller asks for one event at a time so a
+ * document is read as it arrives and the values can be put straight into the
+ * structures that use them, no tree of the whole document is built.  A stream may
+ * hold several top level values one after the other, e.g. the updates streamed to
+ * a table, and END_DOCUMENT is returned when the stream ends between two values.
+ *
+ * <p>
+ * A typical loop is
+ * <pre>
+ *   JsonReader json = new JsonReader(in);
+ *
+ *   json.next();                  // START_OBJECT
+ *   while (json.next() == JsonReader.NAME) {
+ *       String name = json.getText();
+ *
+ *       json.next();              // the first event of the member value
+ *       ...
+ *   }                             // END_OBJECT
+ * </pre>
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.data.JsonElementBuilder
+ */
+public class JsonReader {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.data.messages"; //$NON-NLS-1$
+    /** The MIME type of JSON text */
+    public static final String MIME_TYPE = "application/json"; //$NON-NLS-1$
+    /** The Accept header of a request for a document, XML is preferred to JSON */
+    public static final String ACCEPT = "text/xml, " + MIME_TYPE + ";q=0.9, */*;q=0.1"; //$NON-NLS-1$ //$NON-NLS-2$
+    /* events */
+    public static final int START_OBJECT = 1;
+    public static final int END_OBJECT = 2;
+    public static final int START_ARRAY = 3;
+    public static final int END_ARRAY = 4;
+    public static final int NAME = 5;
+    public static final int STRING = 6;
+    public static final int NUMBER = 7;
+    public static final int BOOLEAN = 8;
+    public static final int NULL = 9;
+    public static final int END_DOCUMENT = 10;
+    /* The number of bytes examined to recognise a JSON stream */
+    private static final int SNIFF_LIMIT = 1024;
+    private static final Pattern NUMBER_PATTERN =
+            Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?"); //$NON-NLS-1$
+    /* the states of the enclosing objects and arrays */
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private Reader in;
+    private char[] buf = new char[8192];
+    private int pos = 0;
+    private int limit = 0;
+    /* The states of the enclosing objects and arrays, innermost last */
+    private int[] stack = new int[32];
+    private int depth = 0;
+    /* The current event, 0 before the first call to next() */
+    private int event = 0;
+    /* The text of the current name or value */
+    private String text = null;
+    private StringBuilder builder = new StringBuilder();
+    private int line = 1;
+
+    /**
+     * Create a parser on a stream of UTF-8 JSON text.
+     *
+     * @param in the stream.
+     * @throws IOException if the reader cannot be created.
+     */
+    public JsonReader(InputStream in) throws IOException {
+        this(new InputStreamReader(in, "UTF-8")); //$NON-NLS-1$
+    }
+
+    /**
+     * Create a parser on JSON text.
+     *
+     * @param in the reader on the text.
+     */
+    public JsonReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Test whether a stream holds JSON rather than XML without consuming any of it.
+     * A web service may answer a request in either format so the format is
+     * recognised from the first character of the response, which is '{' or '[' for
+     * JSON.
+     *
+     * @param in the stream, its position is not changed.
+     * @return true if the first character that is not white space starts a JSON
+     * object or array.
+     * @throws IOException if the stream cannot be read.
+     */
+    public static boolean isJsonStream(BufferedInputStream in) throws IOException {
+        in.mark(SNIFF_LIMIT);
+
+        try {
+            for (int i = 0; i < SNIFF_LIMIT; i++) {
+                int c = in.read();
+
+                switch (c) {
+                    case ' ':
+                    case '\t':
+                    case '\r':
+                    case '\n':
+                    // the bytes of a UTF-8 byte order mark
+                    case 0xEF:
+                    case 0xBB:
+                    case 0xBF:
+                        continue;
+                    case '{':
+                    case '[':
+                        return true;
+                    default:
+                        return false;
+                }
+            }
+            return false;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Get the headers of a request for a document that accepts JSON as well as XML.
+     *
+     * @return the request headers.
+     */
+    public static Hashtable<String, String> getHeaders() {
+        Hashtable<String, String> headers = new Hashtable<String, String>();
+
+        headers.put("Accept", ACCEPT); //$NON-NLS-1$
+        return headers;
+    }
+
+    /**
+     * Read the next event.
+     *
+     * @return the event, one of START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY,
+     * NAME, STRING, NUMBER, BOOLEAN, NULL or END_DOCUMENT.
+     * @throws IOException if the stream cannot be read or the text is not valid JSON.
+     */
+    public int next() throws IOException {
+        int c;
+
+        text = null;
+
+        if (depth == 0) {
+            if ((c = nextNonWhitespace()) < 0) {
+                return event = END_DOCUMENT;
+            }
+            return event = readValue(c);
+        }
+
+        switch (stack[depth - 1]) {
+            case EMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+
+                if ((c = nextNonWhitespace()) == ']') {
+                    depth--;
+                    return event = END_ARRAY;
+                }
+                return event = readValue(c);
+            case NONEMPTY_ARRAY:
+                if ((c = nextNonWhitespace()) == ']') {
+                    depth--;
+                    return event = END_ARRAY;
+                }
+                if (c != ',') {
+                    throw syntaxError(c);
+                }
+                return event = readValue(nextNonWhitespace());
+            case DANGLING_NAME:
+                if ((c = nextNonWhitespace()) != ':') {
+                    throw syntaxError(c);
+                }
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                return event = readValue(nextNonWhitespace());
+            default:
+                c = nextNonWhitespace();
+
+                if (c == '}') {
+                    depth--;
+                    return event = END_OBJECT;
+                }
+                if (stack[depth - 1] == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError(c);
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError(c);
+                }
+                text = readString();
+                stack[depth - 1] = DANGLING_NAME;
+                return event = NAME;
+        }
+    }
+
+    /**
+     * Get the current event.
+     *
+     * @return the event returned by the last call to next().
+     */
+    public int getEvent() {
+        return event;
+    }
+
+    /**
+     * Get the text of the current event.
+     *
+     * @return the member name for NAME, the value for STRING, the number as it was
+     * written for NUMBER, "true" or "false" for BOOLEAN and null for any other event.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Test whether the current NUMBER is a whole number, i.e. it was written without
+     * a fraction or an exponent.
+     *
+     * @return true if the current event is a whole NUMBER.
+     */
+    public boolean isWholeNumber() {
+        return event == NUMBER && text.indexOf('.') < 0 && text.indexOf('e') < 0
+                && text.indexOf('E') < 0;
+    }
+
+    /**
+     * Get the number of objects and arrays that enclose the current event.  The
+     * START_OBJECT and START_ARRAY events are inside the object or array they start.
+     *
+     * @return the depth of the current event.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Get the line of the text the parser has reached.
+     *
+     * @return the line number, starting from 1.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Skip a value.  If the current event is NAME the value of the member is skipped,
+     * if it is START_OBJECT or START_ARRAY the rest of the object or array is skipped.
+     * After the call the current event is the last event of the value.
+     *
+     * @throws IOException if the stream cannot be read or the text is not valid JSON.
+     */
+    public void skipValue() throws IOException {
+        if (event == NAME) {
+            next();
+        }
+        if (event == START_OBJECT || event == START_ARRAY) {
+            int d = depth;
+
+            while (depth >= d) {
+                if (next() == END_DOCUMENT) {
+                    throw syntaxError(-1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Close the parser and the underlying stream.
+     */
+    public void close() {
+        try {
+            in.close();
+        } catch (IOException ex) {
+        }
+    }
+
+    /*
+     * Read a value that starts with a character.
+     */
+    private int readValue(int c) throws IOException {
+        switch (c) {
+            case '{':
+                push(EMPTY_OBJECT);
+                return START_OBJECT;
+            case '[':
+                push(EMPTY_ARRAY);
+                return START_ARRAY;
+            case '"':
+                text = readString();
+                return STRING;
+            case 't':
+            case 'f':
+            case 'n':
+                String literal = readWord(c);
+
+                if (literal.equals("null")) { //$NON-NLS-1$
+                    return NULL;
+                }
+                if (literal.equals("true") || literal.equals("false")) { //$NON-NLS-1$ //$NON-NLS-2$
+                    text = literal;
+                    return BOOLEAN;
+                }
+                throw syntaxError(literal);
+            default:
+                if (c != '-' && (c < '0' || c > '9')) {
+                    throw syntaxError(c);
+                }
+                String number = readWord(c);
+
+                if (!NUMBER_PATTERN.matcher(number).matches()) {
+                    throw syntaxError(number);
+                }
+                text = number;
+                return NUMBER;
+        }
+    }
+
+    /*
+     * Enter an object or array.
+     */
+    private void push(int state) {
+        if (depth == stack.length) {
+            int[] grown = new int[depth * 2];
+
+            System.arraycopy(stack, 0, grown, 0, depth);
+            stack = grown;
+        }
+        stack[depth++] = state;
+    }
+
+    /*
+     * Read the rest of a string after the opening quote.
+     */
+    private String readString() throws IOException {
+        builder.setLength(0);
+
+        while (true) {
+            int c = read();
+
+            if (c == '"') {
+                return builder.toString();
+            }
+            if (c < 0) {
+                throw syntaxError(c);
+            }
+            if (c == '\\') {
+                c = read();
+
+                switch (c) {
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'u':
+                        c = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int d = Character.digit(read(), 16);
+
+                            if (d < 0) {
+                                throw syntaxError("\\u"); //$NON-NLS-1$
+                            }
+                            c = (c << 4) + d;
+                        }
+                        break;
+                    case '"':
+                    case '\\':
+                    case '/':
+                        break;
+                    default:
+                        throw syntaxError(c);
+                }
+            } else if (c == '\n') {
+                line++;
+            }
+            builder.append((char) c);
+        }
+    }
+
+    /*
+     * Read a number or a literal that starts with a character.
+     */
+    private String readWord(int c) throws IOException {
+        builder.setLength(0);
+        builder.append((char) c);
+
+        while ((c = peek()) >= 0 && (Character.isLetterOrDigit(c) || c == '.' || c == '+' || c == '-')) {
+            builder.append((char) c);
+            pos++;
+        }
+        return builder.toString();
+    }
+
+    /*
+     * Read the next character that is not white space.
+     *
+     * @return the character or -1 at the end of the stream.
+     */
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            int c = read();
+
+            if (c == '\n') {
+                line++;
+            }
+
+            switch (c) {
+                case '\n':
+                case ' ':
+                case '\t':
+                case '\r':
+                case '\uFEFF':
+                    continue;
+                default:
+                    return c;
+            }
+        }
+    }
+
+    /*
+     * Get the next character without consuming it.
+     *
+     * @return the character or -1 at the end of the stream.
+     */
+    private int peek() throws IOException {
+        if (pos == limit) {
+            limit = in.read(buf, 0, buf.length);
+            pos = 0;
+
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buf[pos];
+    }
+
+    /*
+     * Read the next character.
+     *
+     * @return the character or -1 at the end of the stream.
+     */
+    private int read() throws IOException {
+        int c = peek();
+
+        if (c >= 0) {
+            pos++;
+        }
+        return c;
+    }
+
+    /*
+     * Create the exception for an unexpected character.
+     */
+    private IOException syntaxError(int c) {
+        return syntaxError(c < 0 ? Messages.getString(BUNDLE_NAME, "JsonReader.1") //$NON-NLS-1$
+                : String.valueOf((char) c));
+    }
+
+    /*
+     * Create the exception for unexpected text.
+     */
+    private IOException syntaxError(String found) {
+        return new IOException(Messages.getString(BUNDLE_NAME, "JsonReader.0") + line //$NON-NLS-1$
+                + ": " + found); //$NON-NLS-1$
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.jdom.Element;
+import org.jdom.JDOMException;
+
+import utils.types.NameValuePair;
+
+import org.ribax.common.Messages;
+import org.ribax.common.net.DataRequest;
+import org.ribax.common.net.HttpResponseCache;
+import org.ribax.common.net.NetUtils;
+
+/**
+ * A singleton class that shares one fetch of a document between all the callers
+ * that request the same document at the same time.  When a Folder is opened several
+ * DataItems and data models often request the same URL with the same parameters, the
+ * first request fetches and parses the document and the requests that arrive while
+ * it is in progress wait for it and are given their own copy of the parsed document.
+ * Requests are the same if they have the same URL and the same parameters in any
+ * order.  Only requests marked idempotent are shared, a submission is always sent
+ * on its own, and requests that upload files are never shared.  Once a fetch has finished
+ * the next request for the document fetches it again, the documents are not cached.
+ * A web service may send the document as XML or as JSON, see DataUtils.buildDocument().
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+public class RequestCoalescer {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.data.messages"; //$NON-NLS-1$
+    /* The singleton instance of the coalescer */
+    private static RequestCoalescer instance = null;
+    /* The fetches in progress keyed by URL and parameters */
+    private HashMap<String, Flight> flights = new HashMap<String, Flight>();
+    /* The number of requests that have shared the fetch of another request */
+    private int sharedCount = 0;
+
+    /**
+     * Create a coalescer.
+     */
+    RequestCoalescer() {
+    }
+
+    /**
+     * Get the single instance of the coalescer.
+     *
+     * @return the coalescer instance.
+     */
+    public synchronized static RequestCoalescer getInstance() {
+        if (instance == null) {
+            instance = new RequestCoalescer();
+        }
+        return instance;
+    }
+
+    /**
+     * Get an Element that is an XML document from a web service, sharing the fetch of
+     * the document with any identical request that is in progress.
+     *
+     * @param url the URL of the web service.
+     * @param params a set of parameters to post to the web service.
+     * @param name the name of the calling Object (for debugging).
+     * @param request the request the document is read for, the document is only shared
+     *        with other requests if this request is marked idempotent.
+     * @return the XML document root Element, which belongs to the caller.
+     * @throws IOException if an IO error occurs or the request is cancelled.
+     * @throws JDOMException if the document is not well formed.
+     */
+    public Element getDocumentRoot(String url, ArrayList<NameValuePair> params,
+            String name, DataRequest<?> request) throws IOException, JDOMException {
+
+        // a request that may change data on the server is sent on its own
+        if (request == null || !request.isIdempotent()) {
+            return fetch(url, params, name, request);
+        }
+
+        String key = HttpResponseCache.getKey(url, params);
+
+        if (key == null) {
+            return fetch(url, params, name, request);
+        }
+
+        Flight flight;
+        boolean leader = false;
+
+        synchronized (this) {
+            flight = flights.get(key);
+
+            if (flight == null) {
+                flight = new Flight();
+                flights.put(key, flight);
+                leader = true;
+            } else {
+                flight.followers++;
+                sharedCount++;
+            }
+        }
+
+        if (leader) {
+            return lead(key, flight, url, params, name, request);
+        }
+        return follow(flight, url, params, name, request);
+    }
+
+    /**
+     * Get the number of requests that have shared the fetch of another request.
+     *
+     * @return the number of shared requests.
+     */
+    public synchronized int getSharedCount() {
+        return sharedCount;
+    }
+
+    /*
+     * Fetch the document for all the requests sharing the flight.
+     */
+    private Element lead(String key, Flight flight, String url, ArrayList<NameValuePair> params,
+            String name, DataRequest<?> request) throws IOException, JDOMException {
+        Element root = null;
+        Exception failure = null;
+
+        try {
+            root = fetch(url, params, name, request);
+        } catch (IOException ex) {
+            failure = ex;
+            throw ex;
+        } catch (JDOMException ex) {
+            failure = ex;
+            throw ex;
+        } catch (RuntimeException ex) {
+            failure = ex;
+            throw ex;
+        } finally {
+            boolean shared;
+
+            // no more requests can join the flight once it is removed
+            synchronized (this) {
+                flights.remove(key);
+                shared = flight.followers > 0;
+            }
+            flight.finish(root, failure, request != null && request.isCancelled());
+
+            // the followers copy the document so the caller needs its own copy
+            if (shared && root != null) {
+                root = (Element) root.clone();
+            }
+        }
+        return root;
+    }
+
+    /*
+     * Wait for the flight to finish and copy its document.  If the request that was
+     * fetching the document was cancelled the document is fetched again.
+     */
+    private Element follow(final Flight flight, String url, ArrayList<NameValuePair> params,
+            String name, DataRequest<?> request) throws IOException, JDOMException {
+
+        // cancelling the request wakes the request up
+        if (request != null) {
+            request.register(new Closeable() {
+
+                public void close() {
+                    synchronized (flight) {
+                        flight.notifyAll();
+                    }
+                }
+            });
+        }
+
+        synchronized (flight) {
+            while (!flight.finished) {
+                if (request != null && request.isCancelled()) {
+                    throw new InterruptedIOException(Messages.getString(BUNDLE_NAME, "RequestCoalescer.0") + url); //$NON-NLS-1$
+                }
+                try {
+                    flight.wait();
+                } catch (InterruptedException ex) {
+                    throw new InterruptedIOException(Messages.getString(BUNDLE_NAME, "RequestCoalescer.0") + url); //$NON-NLS-1$
+                }
+            }
+        }
+
+        if (flight.root != null) {
+            return (Element) flight.root.clone();
+        }
+        if (flight.cancelled) {
+            return fetch(url, params, name, request);
+        }
+        if (flight.failure instanceof IOException) {
+            throw (IOException) flight.failure;
+        }
+        if (flight.failure instanceof JDOMException) {
+            throw (JDOMException) flight.failure;
+        }
+        throw (RuntimeException) flight.failure;
+    }
+
+    /*
+     * Fetch and parse the document.
+     */
+    private Element fetch(String url, ArrayList<NameValuePair> params, String name,
+            DataRequest<?> request) throws IOException, JDOMException {
+
+        // get an input stream from the web service, which may answer with JSON
+        InputStream in = NetUtils.getInputStream(url, params, name, request, JsonReader.getHeaders());
+
+        try {
+            // build the Element tree from the XML or JSON input
+            return DataUtils.buildDocument(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /*
+     * A fetch of a document that is shared by the requests for it.
+     */
+    private static class Flight {
+
+        /* The number of requests waiting for the document */
+        int followers = 0;
+        /* true once the fetch has finished */
+        boolean finished = false;
+        /* The document, null if the fetch failed */
+        Element root = null;
+        /* The reason the fetch failed */
+        Exception failure = null;
+        /* true if the fetch failed because its request was cancelled */
+        boolean cancelled = false;
+
+        synchronized void finish(Element root, Exception failure, boolean cancelled) {
+            this.root = root;
+            this.failure = failure;
+            this.cancelled = cancelled;
+            this.finished = true;
+            notifyAll();
+        }
+    }
+}
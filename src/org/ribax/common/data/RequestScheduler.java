@@ -0,0 +1,327 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.data;
+
+import java.awt.Component;
+import java.util.Collection;
+import java.util.Vector;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+import org.ribax.common.ConfigStrings;
+import org.ribax.common.RIBAXConfig;
+
+/**
+ * A singleton class that runs the network requests of the user interface on a bounded
+ * pool of worker threads in order of priority.  Each request belongs to a priority
+ * class: loads for what the user is looking at, submissions, prefetches of hidden
+ * tabs and polls.  A queued request of a higher class always starts before one of a
+ * lower class and each class has a limit on the number of its requests that run at
+ * the same time, so background prefetching and polling can never take every worker
+ * from the tab the user has just selected.  When a tab becomes visible the queued
+ * requests of the DataItems on it are promoted to the visible class.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+public class RequestScheduler {
+
+    /* priority classes, highest first */
+    public static final int VISIBLE = 0;
+    public static final int SUBMIT = 1;
+    public static final int PREFETCH = 2;
+    public static final int POLL = 3;
+    /** The number of priority classes */
+    static final int CLASSES = 4;
+    /** The default number of worker threads if none is configured */
+    public static final int DEFAULT_THREADS = 6;
+    /** The default limits of the submit, prefetch and poll classes */
+    public static final int DEFAULT_SUBMIT_THREADS = 2;
+    public static final int DEFAULT_PREFETCH_THREADS = 2;
+    public static final int DEFAULT_POLL_THREADS = 1;
+    /* The singleton instance of the scheduler */
+    private static RequestScheduler instance = null;
+    /* The pool of worker threads */
+    private ThreadPoolExecutor executor;
+    /* The number of worker threads */
+    private int threads;
+    /* The number of requests of each class that may run at the same time */
+    private int[] limits = new int[CLASSES];
+    /* The number of requests of each class that are running */
+    private int[] running = new int[CLASSES];
+    /* The number of requests that are running */
+    private int active = 0;
+    /* The requests waiting for a worker in the order they were queued */
+    private Vector<Request> queue = new Vector<Request>();
+
+    /**
+     * Create a scheduler whose classes may each use every worker thread.
+     *
+     * @param threads the maximum number of concurrent requests.
+     */
+    public RequestScheduler(int threads) {
+        this(threads, threads, threads, threads, threads);
+    }
+
+    /**
+     * Create a scheduler.
+     *
+     * @param threads the maximum number of concurrent requests.
+     * @param visible the maximum number of concurrent visible loads.
+     * @param submit the maximum number of concurrent submissions.
+     * @param prefetch the maximum number of concurrent prefetches.
+     * @param poll the maximum number of concurrent polls.
+     */
+    RequestScheduler(int threads, int visible, int submit, int prefetch, int poll) {
+        this.threads = Math.max(1, threads);
+
+        limits[VISIBLE] = Math.max(1, visible);
+        limits[SUBMIT] = Math.max(1, submit);
+        limits[PREFETCH] = Math.max(1, prefetch);
+        limits[POLL] = Math.max(1, poll);
+
+        executor = new ThreadPoolExecutor(this.threads, this.threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            private AtomicInteger count = new AtomicInteger(0);
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "RequestScheduler-" + count.incrementAndGet()); //$NON-NLS-1$
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        // don't keep idle threads when the user interface is quiet
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get the single instance of the scheduler.  The number of worker threads is taken
+     * from the RequestThreads configuration property and the limits of the classes
+     * from the VisibleRequestThreads, SubmitRequestThreads, PrefetchRequestThreads and
+     * PollRequestThreads properties.
+     *
+     * @return the scheduler instance.
+     */
+    public synchronized static RequestScheduler getInstance() {
+        if (instance == null) {
+            RIBAXConfig config = RIBAXConfig.getInstance();
+            int threads = config.getIntValue(ConfigStrings.REQUEST_THREADS, DEFAULT_THREADS);
+
+            instance = new RequestScheduler(threads,
+                    config.getIntValue(ConfigStrings.VISIBLE_REQUEST_THREADS, threads),
+                    config.getIntValue(ConfigStrings.SUBMIT_REQUEST_THREADS, DEFAULT_SUBMIT_THREADS),
+                    config.getIntValue(ConfigStrings.PREFETCH_REQUEST_THREADS, DEFAULT_PREFETCH_THREADS),
+                    config.getIntValue(ConfigStrings.POLL_REQUEST_THREADS, DEFAULT_POLL_THREADS));
+        }
+        return instance;
+    }
+
+    /**
+     * Queue a task to run on a worker thread.  A FutureTask that is cancelled while it
+     * is queued does nothing when its turn comes.
+     *
+     * @param task the task to run.
+     * @param priority the class of the request, VISIBLE, SUBMIT, PREFETCH or POLL.
+     * @param owner the DataItem or other object the request loads data for, used to
+     * promote the request when its tab becomes visible, or null.
+     */
+    public void execute(Runnable task, int priority, Object owner) {
+        synchronized (this) {
+            queue.add(new Request(task, Math.max(VISIBLE, Math.min(POLL, priority)), owner));
+        }
+        dispatch();
+    }
+
+    /**
+     * Queue a task to run on a worker thread.
+     *
+     * @param task the task to run.
+     * @param priority the class of the request, VISIBLE, SUBMIT, PREFETCH or POLL.
+     * @param owner the object the request loads data for or null.
+     * @return a Future that can be used to cancel the task.
+     */
+    public Future<?> submit(Runnable task, int priority, Object owner) {
+        FutureTask<Object> future = new FutureTask<Object>(task, null);
+
+        execute(future, priority, owner);
+        return future;
+    }
+
+    /**
+     * Promote the queued prefetches and polls of an object that has become visible,
+     * and of the Components inside it, to the visible class.
+     *
+     * @param visible the tab, Folder or other object that has become visible.
+     */
+    public void promote(Object visible) {
+        if (visible == null) {
+            return;
+        }
+        synchronized (this) {
+            for (Request request : queue) {
+                if (request.priority >= PREFETCH && contains(visible, request.owner)) {
+                    request.priority = VISIBLE;
+                }
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Get the number of queued requests of a class.
+     *
+     * @param priority the class.
+     * @return the number of requests waiting for a worker.
+     */
+    public synchronized int getQueued(int priority) {
+        int count = 0;
+
+        for (Request request : queue) {
+            if (request.priority == priority) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of running requests of a class.
+     *
+     * @param priority the class.
+     * @return the number of requests on a worker.
+     */
+    public synchronized int getRunning(int priority) {
+        return running[priority];
+    }
+
+    /*
+     * Check whether the owner of a request is, or is inside, an object that has become
+     * visible.  An owner that is a Collection is inside if any of its elements are.
+     */
+    private static boolean contains(Object visible, Object owner) {
+        if (owner == null) {
+            return false;
+        }
+        if (owner == visible) {
+            return true;
+        }
+        if (owner instanceof Collection) {
+            for (Object o : (Collection<?>) owner) {
+                if (contains(visible, o)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return owner instanceof Component && visible instanceof Component
+                && SwingUtilities.isDescendingFrom((Component) owner, (Component) visible);
+    }
+
+    /*
+     * Start the highest priority queued requests whose class has room while there are
+     * free workers.  Requests of the same class start in the order they were queued.
+     */
+    private void dispatch() {
+        Vector<Request> ready = new Vector<Request>();
+
+        synchronized (this) {
+            while (active < threads) {
+                Request next = null;
+
+                for (Request request : queue) {
+                    if (running[request.priority] < limits[request.priority]
+                            && (next == null || request.priority < next.priority)) {
+                        next = request;
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+                queue.remove(next);
+                next.slot = next.priority;
+                running[next.slot]++;
+                active++;
+                ready.add(next);
+            }
+        }
+
+        for (Request request : ready) {
+            executor.execute(request);
+        }
+    }
+
+    /*
+     * A request has finished, its worker is given to the next request.
+     */
+    private void finished(Request request) {
+        synchronized (this) {
+            running[request.slot]--;
+            active--;
+        }
+        dispatch();
+    }
+
+    /**
+     * Stop all the worker threads.  Running tasks are interrupted and queued tasks
+     * are dropped.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            queue.clear();
+        }
+        executor.shutdownNow();
+    }
+
+    /*
+     * A queued or running request.
+     */
+    private class Request implements Runnable {
+
+        private Runnable task;
+        private int priority;
+        private Object owner;
+        /* The class whose limit the request counts against while it runs */
+        private int slot;
+
+        Request(Runnable task, int priority, Object owner) {
+            this.task = task;
+            this.priority = priority;
+            this.owner = owner;
+        }
+
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                finished(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import org.jdom.Element;
+
+import org.ribax.common.Messages;
+import org.ribax.common.net.Backoff;
+import org.ribax.common.net.DataRequest;
+import org.ribax.common.net.EndpointGroup;
+import org.ribax.common.net.NetUtils;
+import org.ribax.common.net.ResumableStream;
+
+import utils.log.BasicLogger;
+import utils.types.NameValuePair;
+
+/**
+ * Reads a never ending stream of XML blocks from a web service and resumes the
+ * stream on a new connection if the connection drops.  A web service that supports
+ * resumption numbers each block with a <i>seq</i> attribute and may give the version
+ * of the data in a <i>version</i> attribute, e.g.
+ * <pre>
+ *   &lt;tableData seq="42" version="7"&gt; ... &lt;/tableData&gt;
+ * </pre>
+ * When the stream is resumed the last sequence number and version that were read are
+ * posted to the web service in the <i>ResumeSequence</i> and <i>ResumeVersion</i>
+ * parameters so it can continue the stream with the next block.  A block with a
+ * sequence number that has already been read is skipped, so a web service may safely
+ * repeat the last block it sent.  A web service that cannot resume the stream should
+ * start the new stream with a block that contains a clearData element followed by a
+ * snapshot of the data.  If the first block on a new connection is a snapshot or has
+ * a lower sequence number than the last block read the web service has started the
+ * stream again, e.g. after it was restarted, and the sequence numbers start again.
+ *
+ * <p>
+ * The stream is resumed if it is cut off by an error, or if it ends cleanly after
+ * sending sequence numbers.  A stream without sequence numbers that ends cleanly has
+ * finished.  Only the streams of web services are resumed, see isResumableURL().
+ * A web service may stream JSON blocks instead, with the seq and version attributes
+ * given as @seq and @version members, see JsonElementBuilder.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.net.Backoff
+ */
+public class ResumableBlockSource extends ResumableStream implements ElementBlockSource {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.data.messages"; //$NON-NLS-1$
+    /** The name of the block attribute that holds the sequence number */
+    public static final String SEQUENCE = "seq"; //$NON-NLS-1$
+    /** The name of the block attribute that holds the data version */
+    public static final String VERSION = "version"; //$NON-NLS-1$
+    /** The name of the parameter that holds the last sequence number read */
+    public static final String RESUME_SEQUENCE = "ResumeSequence"; //$NON-NLS-1$
+    /** The name of the parameter that holds the last data version read */
+    public static final String RESUME_VERSION = "ResumeVersion"; //$NON-NLS-1$
+    /* The parameters to post to the web service */
+    private ArrayList<NameValuePair> params;
+    /* The names of the top level elements that are returned, null for all */
+    private String[] triggers;
+    /* The reader on the current connection */
+    private volatile ElementBlockSource reader = null;
+    /* The last sequence number read, -1 if the stream has not sent a sequence number */
+    private long lastSequence = -1;
+    /* The last data version read, null if the stream has not sent a version */
+    private String lastVersion = null;
+    /* Set when a new connection is opened until its first block is read */
+    private boolean reconnected = false;
+    private static BasicLogger LOG = new BasicLogger(ResumableBlockSource.class.getName());
+
+    /**
+     * Connect to a stream of XML blocks with the configured reconnection delays.
+     *
+     * @param url the URL of the web service.
+     * @param params the parameters to post to the web service, may be null.
+     * @param name the name of the Object reading the stream (for debugging).
+     * @param triggers the names of the top level elements to return, other blocks
+     * are skipped.  If null all blocks are returned.
+     * @param request the request the stream is read for, null if it cannot be cancelled.
+     * @throws IOException if the stream cannot be opened.
+     */
+    public ResumableBlockSource(String url, ArrayList<NameValuePair> params, String name,
+            String[] triggers, DataRequest<?> request) throws IOException {
+        this(url, params, name, triggers, request, new Backoff());
+    }
+
+    /**
+     * Connect to a stream of XML blocks.
+     *
+     * @param url the URL of the web service.
+     * @param params the parameters to post to the web service, may be null.
+     * @param name the name of the Object reading the stream (for debugging).
+     * @param triggers the names of the top level elements to return, other blocks
+     * are skipped.  If null all blocks are returned.
+     * @param request the request the stream is read for, null if it cannot be cancelled.
+     * @param backoff the delays between attempts to reconnect.
+     * @throws IOException if the stream cannot be opened.
+     */
+    public ResumableBlockSource(String url, ArrayList<NameValuePair> params, String name,
+            String[] triggers, DataRequest<?> request, Backoff backoff) throws IOException {
+        super(url, name, request, backoff);
+        this.params = params;
+        this.triggers = triggers;
+
+        open();
+    }
+
+    /**
+     * Read a stream of XML blocks on a connection that has already been opened, e.g.
+     * when the stream was requested in another format that the web service does not
+     * support.  The stream is resumed with the configured reconnection delays.
+     *
+     * @param url the URL of the web service.
+     * @param params the parameters to post to the web service, may be null.
+     * @param name the name of the Object reading the stream (for debugging).
+     * @param triggers the names of the top level elements to return, other blocks
+     * are skipped.  If null all blocks are returned.
+     * @param request the request the stream is read for, null if it cannot be cancelled.
+     * @param in the stream on the first connection.
+     * @throws IOException if the parser cannot be created.
+     */
+    public ResumableBlockSource(String url, ArrayList<NameValuePair> params, String name,
+            String[] triggers, DataRequest<?> request, InputStream in) throws IOException {
+        super(url, name, request, new Backoff());
+        this.params = params;
+        this.triggers = triggers;
+
+        reader = DataUtils.getBlockReader(url, in, triggers);
+    }
+
+    /**
+     * Test whether a stream can be resumed on a new connection.
+     *
+     * @param url the URL of the stream.
+     * @return true if the URL has the http:, https: or group: scheme.
+     */
+    public static boolean isResumableURL(String url) {
+        if (url == null) {
+            return false;
+        }
+        String burl = url.trim().toLowerCase();
+
+        return burl.startsWith("http:") || burl.startsWith("https:") //$NON-NLS-1$ //$NON-NLS-2$
+                || EndpointGroup.isGroupURL(burl);
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.common.net.ResumableStream#open()
+     */
+    protected void open() throws IOException {
+        // the parameters are copied as the base parameters are added to them
+        ArrayList<NameValuePair> list = new ArrayList<NameValuePair>();
+
+        if (params != null) {
+            list.addAll(params);
+        }
+        if (lastSequence >= 0) {
+            list.add(new NameValuePair(RESUME_SEQUENCE, Long.toString(lastSequence)));
+        }
+        if (lastVersion != null) {
+            list.add(new NameValuePair(RESUME_VERSION, lastVersion));
+        }
+
+        reader = DataUtils.getBlockReader(url, NetUtils.getInputStream(url, list, name, request,
+                JsonReader.getHeaders()), triggers);
+        reconnected = true;
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.common.net.ResumableStream#closeConnection()
+     */
+    protected void closeConnection() {
+        reader.close();
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.common.data.ElementBlockSource#readBlock()
+     */
+    public Element readBlock() {
+        while (!isClosed()) {
+            ElementBlockSource current = reader;
+            Element block = current.readBlock();
+
+            if (block == null) {
+                if (isClosed()) {
+                    break;
+                }
+                // a stream without sequence numbers that ends cleanly has finished
+                if (!failed(current) && lastSequence < 0) {
+                    break;
+                }
+
+                LOG.warning(name + Messages.getString(BUNDLE_NAME, "ResumableBlockSource.0") + url); //$NON-NLS-1$
+
+                if (!reconnect(-1)) {
+                    break;
+                }
+                continue;
+            }
+            backoff.reset();
+
+            boolean first = reconnected;
+            reconnected = false;
+
+            String seq = block.getAttributeValue(SEQUENCE);
+            Long n = null;
+
+            if (seq != null) {
+                try {
+                    n = Long.valueOf(seq.trim());
+                } catch (NumberFormatException ex) {
+                    LOG.warning(name + Messages.getString(BUNDLE_NAME, "ResumableBlockSource.1") + seq); //$NON-NLS-1$
+                }
+            }
+
+            if (first && lastSequence >= 0 && (block.getChild("clearData") != null //$NON-NLS-1$
+                    || (n != null && n.longValue() < lastSequence))) {
+                // the web service has started the stream again
+                LOG.info(name + Messages.getString(BUNDLE_NAME, "ResumableBlockSource.2") + url); //$NON-NLS-1$
+                lastSequence = -1;
+                lastVersion = null;
+            }
+
+            if (n != null) {
+                if (n.longValue() <= lastSequence) {
+                    // a block that has already been read
+                    continue;
+                }
+                lastSequence = n.longValue();
+            }
+
+            String version = block.getAttributeValue(VERSION);
+
+            if (version != null) {
+                lastVersion = version;
+            }
+            return block;
+        }
+        return null;
+    }
+
+    /*
+     * Test whether the reader on a connection stopped because of an error rather than
+     * at the clean end of the stream.
+     */
+    private static boolean failed(ElementBlockSource source) {
+        if (source instanceof JsonBlockReader) {
+            return ((JsonBlockReader) source).getError() != null;
+        }
+        return ((ElementBlockReader) source).getError() != null;
+    }
+
+    /**
+     * Get the sequence number of the last block that was read.
+     *
+     * @return the sequence number or -1 if the stream has not sent a sequence number.
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Get the data version of the last block that gave a version.
+     *
+     * @return the version or null if the stream has not sent a version.
+     */
+    public String getLastVersion() {
+        return lastVersion;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.data;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+
+/**
+ * The constants of the binary row frame format, a compact alternative to streaming
+ * &lt;tableData&gt; XML blocks to a table.  A client that can read the format sends
+ * it first in the Accept header of the request and a web service that supports it
+ * replies with a frame stream, otherwise the web service replies with XML or JSON.
+ *
+ * <p>
+ * A frame stream starts with the 4 byte MAGIC header and a version byte.  Each frame
+ * is a 4 byte big endian length followed by that many bytes of payload, the first
+ * byte of the payload is the opcode of the frame.  A reader skips frames with an
+ * opcode it does not know.  The frames are
+ * <pre>
+ *   COLUMNS  short count, then for each column: string name, int width
+ *   UPSERT   string key, short count, then for each cell: byte type, value
+ *   DELETE   string key
+ *   CLEAR    string clear type, ALL or ROWDATA
+ *   COMMIT   long sequence number, -1 if the stream is not numbered
+ *   DELTA    string key, short count, then for each cell: short column, byte type, value
+ * </pre>
+ * The frames between two COMMIT frames are applied to the table in one step.  An
+ * UPSERT replaces the row with the same key, or the same value in the first String
+ * column if the row has no key, or adds the row.  A DELTA sets the cells in the given
+ * columns of the existing row with the key and is ignored if there is no such row.
+ * A string is an int byte length followed by the UTF-8 bytes, a length of -1 is a
+ * null string.  The cell values are
+ * <pre>
+ *   NULL     no value
+ *   STRING   string
+ *   NUMBER   int
+ *   FLOAT    float
+ *   BOOLEAN  byte 0 or 1
+ *   MEMO     string
+ *   IMAGE    string URL of the image
+ * </pre>
+ * All numbers are big endian as written by a DataOutputStream.  A stream resumed
+ * after a dropped connection is requested with the last COMMIT sequence number in
+ * the ResumeSequence parameter, as for XML block streams.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.data.RowFrameWriter
+ * @see org.ribax.common.data.ResumableBlockSource
+ */
+public class RowFrame {
+
+    /** The MIME type of a frame stream */
+    public static final String MIME_TYPE = "application/x-ribax-rows"; //$NON-NLS-1$
+    /** The Accept header of a request for a table stream, frames are preferred to XML and JSON */
+    public static final String ACCEPT = MIME_TYPE + ", text/xml;q=0.9, application/json;q=0.8, */*;q=0.1"; //$NON-NLS-1$
+    /** The bytes at the start of a frame stream */
+    public static final byte[] MAGIC = {'R', 'B', 'X', 'F'};
+    /** The version of the format */
+    public static final int VERSION = 1;
+    /** The largest frame a reader accepts */
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    /* opcodes */
+    public static final int COLUMNS = 1;
+    public static final int UPSERT = 2;
+    public static final int DELETE = 3;
+    public static final int CLEAR = 4;
+    public static final int COMMIT = 5;
+    public static final int DELTA = 6;
+    /* cell value types */
+    public static final int NULL = 0;
+    public static final int STRING = 1;
+    public static final int NUMBER = 2;
+    public static final int FLOAT = 3;
+    public static final int BOOLEAN = 4;
+    public static final int MEMO = 5;
+    public static final int IMAGE = 6;
+
+    /**
+     * Test whether a stream is a frame stream without consuming any of it.
+     *
+     * @param in the stream, its position is not changed.
+     * @return true if the stream starts with the MAGIC header.
+     * @throws IOException if the stream cannot be read.
+     */
+    public static boolean isFrameStream(BufferedInputStream in) throws IOException {
+        in.mark(MAGIC.length);
+
+        try {
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (in.read() != MAGIC[i]) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            in.reset();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+
+import utils.types.Memo;
+
+/**
+ * Writes a binary row frame stream for a web service that streams table data.  The
+ * type of each cell is taken from the class of its value: a String, an Integer (or
+ * other whole number), a Float (or Double), a Boolean, a Memo or a URL of an image.
+ * The frames written since the last commit are applied by the client in one step.
+ * <pre>
+ *   RowFrameWriter out = new RowFrameWriter(response.getOutputStream());
+ *
+ *   out.writeColumns(new String[] {"Symbol", "Price"}, null);
+ *   out.writeUpsert("IBM", new Object[] {"IBM", new Float(97.2)});
+ *   out.commit(1);
+ * </pre>
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.data.RowFrame
+ */
+public class RowFrameWriter {
+
+    /* The stream the frames are written to */
+    private DataOutputStream out;
+    /* The payload of the frame being written, reused for every frame */
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+    private DataOutputStream payload = new DataOutputStream(buffer);
+
+    /**
+     * Create a writer and write the header of the frame stream.
+     *
+     * @param out the stream to write the frames to.
+     * @throws IOException if the header cannot be written.
+     */
+    public RowFrameWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(out);
+
+        this.out.write(RowFrame.MAGIC);
+        this.out.writeByte(RowFrame.VERSION);
+    }
+
+    /**
+     * Write the names and preferred widths of the table columns.
+     *
+     * @param names the column names.
+     * @param widths the preferred column widths, null if there are none.
+     * @throws IOException if the frame cannot be written.
+     */
+    public void writeColumns(String[] names, int[] widths) throws IOException {
+        payload.writeByte(RowFrame.COLUMNS);
+        payload.writeShort(names.length);
+
+        for (int i = 0; i < names.length; i++) {
+            writeString(names[i]);
+            payload.writeInt(widths == null ? 0 : widths[i]);
+        }
+        writeFrame();
+    }
+
+    /**
+     * Write a row that replaces the row with the same key or is added to the table.
+     *
+     * @param key the key of the row, null to match on the first String column.
+     * @param values the cell values of the row.
+     * @throws IOException if the frame cannot be written.
+     * @throws IllegalArgumentException if a value has a type that cannot be written.
+     */
+    public void writeUpsert(String key, Object[] values) throws IOException {
+        payload.writeByte(RowFrame.UPSERT);
+        writeString(key);
+        payload.writeShort(values.length);
+
+        for (Object value : values) {
+            writeValue(value);
+        }
+        writeFrame();
+    }
+
+    /**
+     * Write the changed cells of an existing row.
+     *
+     * @param key the key of the row to change.
+     * @param columns the indexes of the changed columns.
+     * @param values the new cell values in the order of the columns.
+     * @throws IOException if the frame cannot be written.
+     */
+    public void writeDelta(String key, int[] columns, Object[] values) throws IOException {
+        payload.writeByte(RowFrame.DELTA);
+        writeString(key);
+        payload.writeShort(columns.length);
+
+        for (int i = 0; i < columns.length; i++) {
+            payload.writeShort(columns[i]);
+            writeValue(values[i]);
+        }
+        writeFrame();
+    }
+
+    /**
+     * Write the deletion of a row.
+     *
+     * @param key the key of the row to delete.
+     * @throws IOException if the frame cannot be written.
+     */
+    public void writeDelete(String key) throws IOException {
+        payload.writeByte(RowFrame.DELETE);
+        writeString(key);
+        writeFrame();
+    }
+
+    /**
+     * Write an instruction to clear the table.
+     *
+     * @param clearType ALL to clear the rows and columns or ROWDATA to clear the rows.
+     * @throws IOException if the frame cannot be written.
+     */
+    public void writeClear(String clearType) throws IOException {
+        payload.writeByte(RowFrame.CLEAR);
+        writeString(clearType);
+        writeFrame();
+    }
+
+    /**
+     * End a set of frames that are applied together and flush the stream.
+     *
+     * @param sequence the sequence number of the set, -1 if the stream is not numbered.
+     * @throws IOException if the frame cannot be written.
+     */
+    public void commit(long sequence) throws IOException {
+        payload.writeByte(RowFrame.COMMIT);
+        payload.writeLong(sequence);
+        writeFrame();
+        out.flush();
+    }
+
+    /**
+     * Flush and close the stream.
+     *
+     * @throws IOException if the stream cannot be closed.
+     */
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /*
+     * Write a cell value with its type.
+     */
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            payload.writeByte(RowFrame.NULL);
+        } else if (value instanceof String) {
+            payload.writeByte(RowFrame.STRING);
+            writeString((String) value);
+        } else if (value instanceof Float || value instanceof Double) {
+            payload.writeByte(RowFrame.FLOAT);
+            payload.writeFloat(((Number) value).floatValue());
+        } else if (value instanceof Number) {
+            payload.writeByte(RowFrame.NUMBER);
+            payload.writeInt(((Number) value).intValue());
+        } else if (value instanceof Boolean) {
+            payload.writeByte(RowFrame.BOOLEAN);
+            payload.writeBoolean(((Boolean) value).booleanValue());
+        } else if (value instanceof Memo) {
+            payload.writeByte(RowFrame.MEMO);
+            writeString(value.toString());
+        } else if (value instanceof URL) {
+            payload.writeByte(RowFrame.IMAGE);
+            writeString(value.toString());
+        } else {
+            buffer.reset();
+            throw new IllegalArgumentException(value.getClass().getName());
+        }
+    }
+
+    /*
+     * Write a string as its UTF-8 length and bytes.
+     */
+    private void writeString(String s) throws IOException {
+        if (s == null) {
+            payload.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = s.getBytes("UTF-8"); //$NON-NLS-1$
+
+        payload.writeInt(bytes.length);
+        payload.write(bytes);
+    }
+
+    /*
+     * Write the length and payload of the current frame.
+     */
+    private void writeFrame() throws IOException {
+        out.writeInt(buffer.size());
+        buffer.writeTo(out);
+        buffer.reset();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.util.Random;
+
+import org.ribax.common.ConfigStrings;
+import org.ribax.common.RIBAXConfig;
+
+/**
+ * Computes the delays between attempts to reconnect to a stream.  The delay doubles
+ * after each failed attempt up to a maximum and a random delay between 0 and that
+ * value is used, so many clients that lose their connections at the same time do
+ * not all reconnect at the same moment.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+public class Backoff {
+
+    /** The default delay in milliseconds before the first attempt if none is configured */
+    public static final int DEFAULT_DELAY = 1000;
+    /** The default maximum delay in milliseconds if none is configured */
+    public static final int DEFAULT_MAX_DELAY = 60000;
+    /** The default number of attempts if none is configured, 0 to keep trying */
+    public static final int DEFAULT_ATTEMPTS = 0;
+    private static Random random = new Random();
+    /* The delay before the first attempt */
+    private long delay;
+    /* The largest delay */
+    private long maxDelay;
+    /* The number of attempts before giving up, 0 to keep trying */
+    private int maxAttempts;
+    /* The number of attempts since the last success */
+    private int attempts = 0;
+
+    /**
+     * Create a backoff with the StreamRetryDelay, StreamRetryMaxDelay and
+     * StreamRetryAttempts configuration properties.
+     */
+    public Backoff() {
+        this(RIBAXConfig.getInstance().getIntValue(ConfigStrings.STREAM_RETRY_DELAY, DEFAULT_DELAY),
+                RIBAXConfig.getInstance().getIntValue(ConfigStrings.STREAM_RETRY_MAX_DELAY,
+                DEFAULT_MAX_DELAY),
+                RIBAXConfig.getInstance().getIntValue(ConfigStrings.STREAM_RETRY_ATTEMPTS,
+                DEFAULT_ATTEMPTS));
+    }
+
+    /**
+     * Create a backoff.
+     *
+     * @param delay the delay in milliseconds before the first attempt.
+     * @param maxDelay the largest delay in milliseconds.
+     * @param maxAttempts the number of attempts before giving up, 0 to keep trying.
+     */
+    public Backoff(long delay, long maxDelay, int maxAttempts) {
+        this.delay = Math.max(1, delay);
+        this.maxDelay = Math.max(this.delay, maxDelay);
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Get the delay before the next attempt and count the attempt.
+     *
+     * @return the delay in milliseconds or -1 if there have been too many attempts.
+     */
+    public synchronized long nextDelay() {
+        if (maxAttempts > 0 && attempts >= maxAttempts) {
+            return -1;
+        }
+
+        // double the delay for each attempt, stopping before it overflows
+        long limit = delay << Math.min(attempts, 30);
+
+        attempts++;
+
+        limit = Math.min(limit, maxDelay);
+
+        return 1 + (long) (random.nextDouble() * limit);
+    }
+
+    /**
+     * Record a successful attempt, the next delay starts again from the first delay.
+     */
+    public synchronized void reset() {
+        attempts = 0;
+    }
+
+    /**
+     * Get the number of attempts since the last success.
+     *
+     * @return the number of attempts.
+     */
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import org.jdom.Element;
+
+/**
+ * Classes that implement this interface receive the responses to the requests in
+ * a BatchRequest as they arrive.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.net.BatchRequest
+ */
+public interface BatchListener {
+
+    /**
+     * Receive the response to a request in the batch.  The notification is sent from
+     * the thread that is reading the batch response.
+     *
+     * @param index the index of the request in the batch.
+     * @param root the root node of the response.
+     */
+    public void partReceived(int index, Element root);
+
+    /**
+     * Receive a notification that there is no usable response to a request in the
+     * batch, either because the batch web service reported an error for the request,
+     * the response was not well formed or the batch response ended without it.
+     *
+     * @param index the index of the request in the batch.
+     * @param ex the reason the request failed.
+     */
+    public void partFailed(int index, Exception ex);
+}
@@ -0,0 +1,251 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import org.jdom.Document;
+import org.jdom.JDOMException;
+import org.jdom.input.SAXBuilder;
+import org.ribax.common.Messages;
+
+import utils.log.BasicLogger;
+import utils.types.NameValuePair;
+
+/**
+ * A set of requests for XML documents that is sent to a batch web service in one
+ * round trip.  The responses are read from a multipart/mixed response and passed
+ * to a BatchListener one at a time as each part arrives.
+ * <p>
+ * The batch protocol:
+ * <ul>
+ * <li>The batch is posted to the batch URL like any other request.  The request
+ * with index <i>n</i> is sent as the parameter <tt>Request.<i>n</i></tt>, whose
+ * value is the URL of the request, and each of its parameters is sent as
+ * <tt>Request.<i>n</i>.<i>name</i></tt>.  The indexes start at 0.  The base
+ * parameters of the application are sent once for the whole batch and apply to
+ * every request.</li>
+ * <li>The response is a multipart/mixed body.  The body must start with the first
+ * delimiter line (<tt>--<i>boundary</i></tt>) as the client reads the boundary
+ * from that line, there must be no preamble.</li>
+ * <li>Each part has a <tt>Content-ID</tt> header with the index of the request it
+ * answers, the parts may be sent in any order.  A part with an
+ * <tt>X-Status</tt> header other than a 2xx status reports that the request failed,
+ * otherwise the body of the part is the XML document the URL of the request would
+ * have returned.</li>
+ * <li>The server should write each part as soon as its document is ready so the
+ * client can load it while the rest of the batch is being produced.</li>
+ * </ul>
+ * Requests that the batch response fails or leaves out are reported to the
+ * listener with partFailed so the caller can request them on their own.  Requests
+ * with file parameters cannot be batched.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.net.BatchListener
+ * @see org.ribax.common.net.MultipartReader
+ */
+public class BatchRequest {
+
+    /** The prefix of the parameters of the requests in the batch */
+    public static final String REQUEST = "Request"; //$NON-NLS-1$
+    /** The header of a part that holds the index of the request it answers */
+    public static final String CONTENT_ID = "Content-ID"; //$NON-NLS-1$
+    /** The header of a part that holds the status of the request it answers */
+    public static final String STATUS = "X-Status"; //$NON-NLS-1$
+    private static final String BUNDLE_NAME = "org.ribax.common.net.messages"; //$NON-NLS-1$
+    private static BasicLogger LOG = new BasicLogger(BatchRequest.class.getName());
+    /* The URL of the batch web service */
+    private String url;
+    /* The name of the Object sending the batch (for debugging) */
+    private String name;
+    /* The parameters that encode the requests in the batch */
+    private ArrayList<NameValuePair> params = new ArrayList<NameValuePair>();
+    /* The number of requests in the batch */
+    private int size = 0;
+
+    /**
+     * Create an empty batch.
+     *
+     * @param url the URL of the batch web service.
+     * @param name the name of the Object sending the batch (for debugging).
+     */
+    public BatchRequest(String url, String name) {
+        this.url = url;
+        this.name = name;
+    }
+
+    /**
+     * Add a request to the batch.
+     *
+     * @param requestURL the URL of the request.
+     * @param requestParams the parameters of the request, may be null.
+     * @return the index of the request in the batch or -1 if the request has file
+     * parameters and cannot be batched.
+     */
+    public int add(String requestURL, ArrayList<NameValuePair> requestParams) {
+        String prefix = REQUEST + '.' + size;
+        ArrayList<NameValuePair> list = new ArrayList<NameValuePair>();
+
+        list.add(new NameValuePair(prefix, requestURL));
+
+        if (requestParams != null) {
+            for (NameValuePair pair : requestParams) {
+                if (pair == null || pair.getName() == null || pair.getValue() == null) {
+                    continue;
+                }
+                if ("file".equals(pair.getMimeType())) { //$NON-NLS-1$
+                    return -1;
+                }
+                list.add(new NameValuePair(prefix + '.' + pair.getName(), pair.getValue(),
+                        pair.getMimeType()));
+            }
+        }
+        params.addAll(list);
+
+        return size++;
+    }
+
+    /**
+     * Get the number of requests in the batch.
+     *
+     * @return the number of requests.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the parameters that are posted to the batch web service.
+     *
+     * @return the parameters that encode the requests in the batch.
+     */
+    public ArrayList<NameValuePair> getParameters() {
+        return new ArrayList<NameValuePair>(params);
+    }
+
+    /**
+     * Send the batch and pass the response to each request to the listener as it
+     * arrives.  When this method returns every request in the batch has been passed
+     * to the listener exactly once, either with partReceived or partFailed.
+     *
+     * @param listener the listener that receives the responses.
+     * @param request the request the batch is sent for, null if it cannot be cancelled.
+     * @throws IOException if the batch cannot be sent or the response cannot be read,
+     * the requests without a response have been passed to partFailed.
+     */
+    public void send(BatchListener listener, DataRequest<?> request) throws IOException {
+        BitSet answered = new BitSet(size);
+        IOException failure = null;
+
+        try {
+            InputStream in = NetUtils.getInputStream(url, getParameters(), name, request);
+
+            try {
+                MultipartReader reader = new MultipartReader(in);
+
+                while (reader.next()) {
+                    int index = getIndex(reader.getHeader(CONTENT_ID));
+
+                    if (index < 0 || index >= size || answered.get(index)) {
+                        LOG.warning(name + Messages.getString(BUNDLE_NAME, "BatchRequest.0") //$NON-NLS-1$
+                                + reader.getHeader(CONTENT_ID));
+                        continue;
+                    }
+                    answered.set(index);
+
+                    readPart(listener, index, reader);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            failure = ex;
+            throw ex;
+        } finally {
+            // the requests without a response fail with the reason the batch ended
+            for (int i = answered.nextClearBit(0); i < size; i = answered.nextClearBit(i + 1)) {
+                IOException reason = new IOException(Messages.getString(BUNDLE_NAME,
+                        "BatchRequest.1") + i); //$NON-NLS-1$
+
+                if (failure != null) {
+                    reason.initCause(failure);
+                }
+                listener.partFailed(i, reason);
+            }
+        }
+    }
+
+    /*
+     * Pass the current part of a batch response to the listener.
+     */
+    private void readPart(BatchListener listener, int index, MultipartReader reader) {
+        String status = reader.getHeader(STATUS);
+
+        if (status != null && !status.trim().startsWith("2")) { //$NON-NLS-1$
+            listener.partFailed(index, new IOException(Messages.getString(BUNDLE_NAME,
+                    "BatchRequest.2") + status)); //$NON-NLS-1$
+            return;
+        }
+
+        Document doc;
+
+        try {
+            doc = new SAXBuilder().build(new ByteArrayInputStream(reader.getBody()));
+        } catch (JDOMException ex) {
+            listener.partFailed(index, ex);
+            return;
+        } catch (IOException ex) {
+            listener.partFailed(index, ex);
+            return;
+        }
+        listener.partReceived(index, doc.getRootElement());
+    }
+
+    /*
+     * Get the request index from a Content-ID header, which may be enclosed in angle
+     * brackets.
+     *
+     * @return the index or -1 if the header is missing or not a number.
+     */
+    private static int getIndex(String id) {
+        if (id == null) {
+            return -1;
+        }
+        id = id.trim();
+
+        if (id.startsWith("<") && id.endsWith(">")) { //$NON-NLS-1$ //$NON-NLS-2$
+            id = id.substring(1, id.length() - 1).trim();
+        }
+        try {
+            return Integer.parseInt(id);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
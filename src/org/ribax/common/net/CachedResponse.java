@@ -0,0 +1,185 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * A response held by the HttpResponseCache: the body of the response, the validators
+ * used to revalidate it with a conditional request and the time it expires.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+class CachedResponse {
+
+    /** The expiry time of a response that must not be stored */
+    static final long NO_STORE = -1;
+    /* the body of the response */
+    private byte[] body;
+    /* the ETag header of the response, null if none */
+    private String etag;
+    /* the Last-Modified header of the response, null if none */
+    private String lastModified;
+    /* the time in milliseconds the response expires, 0 if it must always be revalidated */
+    private volatile long expires;
+
+    /**
+     * Create a cached response.
+     *
+     * @param body the body of the response.
+     * @param etag the ETag header or null.
+     * @param lastModified the Last-Modified header or null.
+     * @param expires the time in milliseconds the response expires.
+     */
+    CachedResponse(byte[] body, String etag, String lastModified, long expires) {
+        this.body = body;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.expires = expires;
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    String getETag() {
+        return etag;
+    }
+
+    String getLastModified() {
+        return lastModified;
+    }
+
+    long getExpires() {
+        return expires;
+    }
+
+    void setExpires(long expires) {
+        this.expires = expires;
+    }
+
+    /**
+     * Check whether the response can be used without revalidating it.
+     *
+     * @param now the current time in milliseconds.
+     * @return true if the response has not expired.
+     */
+    boolean isFresh(long now) {
+        return expires > now;
+    }
+
+    /**
+     * Check whether the response can be revalidated with a conditional request.
+     *
+     * @return true if the response has an ETag or Last-Modified header.
+     */
+    boolean hasValidator() {
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * Get the time a response expires from its Cache-Control and Expires headers.
+     *
+     * @param hc the connection holding the response.
+     * @param ttl a time to live in seconds that overrides the headers, -1 if none.
+     * @param now the current time in milliseconds.
+     * @return the expiry time in milliseconds, 0 if the response must be revalidated
+     * every time it is used or NO_STORE if the response must not be stored.
+     */
+    static long getExpires(HttpURLConnection hc, int ttl, long now) {
+        if (ttl >= 0) {
+            return now + ttl * 1000L;
+        }
+
+        String cc = hc.getHeaderField("Cache-Control"); //$NON-NLS-1$
+
+        if (cc != null) {
+            long maxAge = -1;
+
+            for (String directive : cc.toLowerCase().split(",")) { //$NON-NLS-1$
+                directive = directive.trim();
+
+                if (directive.equals("no-store")) { //$NON-NLS-1$
+                    return NO_STORE;
+                } else if (directive.equals("no-cache") || directive.equals("must-revalidate")) { //$NON-NLS-1$ //$NON-NLS-2$
+                    return 0;
+                } else if (directive.startsWith("max-age=")) { //$NON-NLS-1$
+                    try {
+                        maxAge = Long.parseLong(directive.substring(8).trim());
+                    } catch (NumberFormatException ex) {
+                        return 0;
+                    }
+                }
+            }
+            if (maxAge >= 0) {
+                return now + maxAge * 1000L;
+            }
+        }
+
+        // getExpiration returns 0 if there is no Expires header
+        return Math.max(0, hc.getExpiration());
+    }
+
+    /**
+     * Write the response to a cache file.
+     *
+     * @param out the stream to write to.
+     * @param key the cache key of the response.
+     * @throws IOException if the response cannot be written.
+     */
+    void write(DataOutputStream out, String key) throws IOException {
+        out.writeUTF(key);
+        out.writeUTF(etag == null ? "" : etag); //$NON-NLS-1$
+        out.writeUTF(lastModified == null ? "" : lastModified); //$NON-NLS-1$
+        out.writeLong(expires);
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    /**
+     * Read a response from a cache file.
+     *
+     * @param in the stream to read from.
+     * @param key the cache key of the response.
+     * @return the response or null if the file holds a different key.
+     * @throws IOException if the response cannot be read.
+     */
+    static CachedResponse read(DataInputStream in, String key) throws IOException {
+        if (!key.equals(in.readUTF())) {
+            return null;
+        }
+
+        String etag = in.readUTF();
+        String lastModified = in.readUTF();
+        long expires = in.readLong();
+        byte[] body = new byte[in.readInt()];
+
+        in.readFully(body);
+
+        return new CachedResponse(body, etag.length() == 0 ? null : etag,
+                lastModified.length() == 0 ? null : lastModified, expires);
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.net.URL;
+import java.util.Hashtable;
+
+import org.ribax.common.ConfigStrings;
+import org.ribax.common.Messages;
+import org.ribax.common.RIBAXConfig;
+
+import utils.log.BasicLogger;
+
+/**
+ * A circuit breaker for the web services on one scheme/host/port.  While the circuit
+ * is CLOSED requests are sent and consecutive failures are counted.  When too many
+ * requests in a row have failed the circuit is OPEN and requests fail at once without
+ * being sent, so an overloaded web service is not sent more work and the client
+ * threads do not block on connections that will not be answered.  Once the open time
+ * has passed the circuit is HALF_OPEN and a single trial request is sent, the circuit
+ * closes if it succeeds and opens again if it fails.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.net.ResilientDataSource
+ */
+public class CircuitBreaker {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.net.messages"; //$NON-NLS-1$
+    /** The default number of consecutive failures that opens the circuit if none is configured */
+    public static final int DEFAULT_FAILURES = 5;
+    /** The default time in seconds the circuit stays open if none is configured */
+    public static final int DEFAULT_OPEN_TIME = 30;
+    /* states */
+    public static final int CLOSED = 0;
+    public static final int OPEN = 1;
+    public static final int HALF_OPEN = 2;
+    /* The breakers keyed by route */
+    private static Hashtable<String, CircuitBreaker> breakers = new Hashtable<String, CircuitBreaker>();
+    /* The route of the breaker */
+    private String route;
+    /* The number of consecutive failures that opens the circuit */
+    private int maxFailures;
+    /* The time in milliseconds the circuit stays open */
+    private long openTime;
+    private int state = CLOSED;
+    /* The number of consecutive failures */
+    private int failures = 0;
+    /* The time the circuit opened or the trial request was sent */
+    private long since = 0;
+    /* The number of requests that failed at once because the circuit was open */
+    private long rejected = 0;
+    /* The number of requests that have been retried */
+    private long retries = 0;
+    private static BasicLogger LOG = new BasicLogger(CircuitBreaker.class.getName());
+
+    /**
+     * Create a circuit breaker.
+     *
+     * @param route the route of the breaker.
+     * @param maxFailures the number of consecutive failures that opens the circuit.
+     * @param openTime the time in milliseconds the circuit stays open.
+     */
+    public CircuitBreaker(String route, int maxFailures, long openTime) {
+        this.route = route;
+        this.maxFailures = Math.max(1, maxFailures);
+        this.openTime = openTime;
+    }
+
+    /**
+     * Get the breaker for the route of a URL, creating it if there is none.  The
+     * breaker settings are taken from the HttpCircuitFailures and HttpCircuitOpenTime
+     * configuration properties.
+     *
+     * @param url the URL.
+     * @return the circuit breaker for the route.
+     */
+    public static CircuitBreaker getInstance(URL url) {
+        String key = HttpConnectionPool.getRouteKey(url);
+
+        synchronized (breakers) {
+            CircuitBreaker breaker = breakers.get(key);
+
+            if (breaker == null) {
+                RIBAXConfig config = RIBAXConfig.getInstance();
+
+                breaker = new CircuitBreaker(key,
+                        config.getIntValue(ConfigStrings.HTTP_CIRCUIT_FAILURES, DEFAULT_FAILURES),
+                        1000L * config.getIntValue(ConfigStrings.HTTP_CIRCUIT_OPEN_TIME, DEFAULT_OPEN_TIME));
+                breakers.put(key, breaker);
+            }
+            return breaker;
+        }
+    }
+
+    /**
+     * Get the breaker for a route if one has been created.
+     *
+     * @param route the route key in the form scheme://host:port.
+     * @return the circuit breaker or null if there is none.
+     */
+    static CircuitBreaker find(String route) {
+        return breakers.get(route);
+    }
+
+    /**
+     * Ask whether a request may be sent.  When the open time has passed the first
+     * caller is allowed to send a trial request, the other callers are refused until
+     * the trial has finished or a further open time has passed.
+     *
+     * @return true if the request may be sent, false if it should fail at once.
+     */
+    public synchronized boolean allowRequest() {
+        if (state == CLOSED) {
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+
+        if (now - since >= openTime) {
+            if (state == OPEN) {
+                LOG.info(route + Messages.getString(BUNDLE_NAME, "CircuitBreaker.0")); //$NON-NLS-1$
+            }
+            state = HALF_OPEN;
+            since = now;
+            return true;
+        }
+        rejected++;
+        return false;
+    }
+
+    /**
+     * Record a request that the web service answered.
+     */
+    public synchronized void success() {
+        if (state != CLOSED) {
+            LOG.info(route + Messages.getString(BUNDLE_NAME, "CircuitBreaker.1")); //$NON-NLS-1$
+        }
+        state = CLOSED;
+        failures = 0;
+    }
+
+    /**
+     * Record a request that failed.  The circuit opens if the trial request failed or
+     * there have been too many consecutive failures.
+     */
+    public synchronized void failure() {
+        failures++;
+
+        if (state == HALF_OPEN || (state == CLOSED && failures >= maxFailures)) {
+            if (state == CLOSED) {
+                LOG.warning(route + Messages.getString(BUNDLE_NAME, "CircuitBreaker.2") + failures); //$NON-NLS-1$
+            }
+            state = OPEN;
+            since = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Record that a failed request is being retried.
+     */
+    public synchronized void retried() {
+        retries++;
+    }
+
+    /**
+     * Get the route of the breaker.
+     *
+     * @return the route key in the form scheme://host:port.
+     */
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * Get the state of the circuit.
+     *
+     * @return CLOSED, OPEN or HALF_OPEN.
+     */
+    public synchronized int getState() {
+        return state;
+    }
+
+    /**
+     * Get the number of consecutive failures.
+     *
+     * @return the number of failures since the last success.
+     */
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Get the number of requests that failed at once because the circuit was open.
+     *
+     * @return the number of rejected requests.
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Get the number of requests that have been retried.
+     *
+     * @return the number of retries.
+     */
+    public synchronized long getRetries() {
+        return retries;
+    }
+
+    /**
+     * Get the name of a circuit state.
+     *
+     * @param state CLOSED, OPEN or HALF_OPEN.
+     * @return the name of the state.
+     */
+    public static String getStateName(int state) {
+        switch (state) {
+            case OPEN:
+                return "open"; //$NON-NLS-1$
+            case HALF_OPEN:
+                return "half-open"; //$NON-NLS-1$
+            default:
+                return "closed"; //$NON-NLS-1$
+        }
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.ribax.common.Messages;
+import org.ribax.common.data.RequestScheduler;
+
+/**
+ * A request for data from a DataSource that can be cancelled and that is cancelled
+ * automatically if it has not finished by its deadline.  The work of the request is
+ * done by the call method, which passes the request to
+ * DataSource.getInputStream(ArrayList, DataRequest) so the data source can register
+ * the connection it opens.  Cancelling the request closes the registered connections,
+ * which aborts any blocking connect or read, so a hung web service never pins the
+ * thread running the request.
+ * <p>
+ * A request can be started on a worker thread with start() and the result collected
+ * later with get(), so several requests can be made at the same time, or it can be
+ * run on the calling thread with run().  Once the request has finished the caller
+ * owns the result and cancelling the request no longer closes the connections.
+ * <p>
+ * A request is assumed to change data on the server unless it is marked idempotent,
+ * only an idempotent request is retried, sent to another endpoint or shared with an
+ * identical request.  Only a request that is marked cacheable, such as the request
+ * for a description or a list of options, is stored in and answered from the
+ * response cache.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.net.DataSource#getInputStream(java.util.ArrayList, DataRequest)
+ */
+public abstract class DataRequest<T> implements Future<T>, Runnable {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.net.messages"; //$NON-NLS-1$
+    /* The thread that cancels requests when their deadline passes, separate from the
+     * worker threads so a deadline is enforced even if every worker is blocked */
+    private static ScheduledThreadPoolExecutor timer = null;
+    /* The task that runs the call method */
+    private FutureTask<T> task;
+    /* The time in milliseconds the request may take, 0 for no deadline */
+    private long timeout;
+    /* The task that cancels the request at the deadline */
+    private ScheduledFuture<?> deadline = null;
+    /* true if the request was cancelled because the deadline passed */
+    private volatile boolean timedOut = false;
+    /* The connections to close if the request is cancelled, null once it has finished */
+    private Vector<Closeable> connections = new Vector<Closeable>();
+    /* The priority class the request is started in */
+    private int priority = RequestScheduler.VISIBLE;
+    /* The object the request loads data for */
+    private Object owner = null;
+    /* true if the request only reads data so it can safely be sent more than once */
+    private boolean idempotent = false;
+    /* true if the response may be stored in and answered from the response cache */
+    private boolean cacheable = false;
+
+    /**
+     * Create a request.
+     *
+     * @param timeout the time in milliseconds the request may take before it is
+     * cancelled, 0 for no deadline.
+     */
+    public DataRequest(long timeout) {
+        this.timeout = timeout;
+        this.task = new FutureTask<T>(new Callable<T>() {
+
+            public T call() throws Exception {
+                return DataRequest.this.call();
+            }
+        }) {
+
+            @Override
+            protected void done() {
+                finished();
+            }
+        };
+    }
+
+    /**
+     * Do the work of the request.  Implementations should pass the request to the
+     * DataSource methods they call and check isCancelled() between long steps.
+     *
+     * @return the result of the request.
+     * @throws Exception if the request fails.
+     */
+    protected abstract T call() throws Exception;
+
+    /**
+     * Set the priority class the request is started in, VISIBLE by default.
+     *
+     * @param priority one of the RequestScheduler priority classes.
+     * @param owner the object the request loads data for, or null.
+     * @return this request.
+     */
+    public DataRequest<T> setPriority(int priority, Object owner) {
+        this.priority = priority;
+        this.owner = owner;
+        return this;
+    }
+
+    /**
+     * Mark the request as one that only reads data, so it can be retried or sent
+     * again to another endpoint if it fails.
+     *
+     * @param idempotent true if the request only reads data.
+     * @return this request.
+     */
+    public DataRequest<T> setIdempotent(boolean idempotent) {
+        this.idempotent = idempotent;
+        return this;
+    }
+
+    /**
+     * Test whether the request only reads data.
+     *
+     * @return true if the request can safely be sent more than once.
+     */
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+
+    /**
+     * Mark the request as one whose response may be cached, a cacheable request
+     * is also idempotent.
+     *
+     * @param cacheable true if the response may be cached.
+     * @return this request.
+     */
+    public DataRequest<T> setCacheable(boolean cacheable) {
+        this.cacheable = cacheable;
+        if (cacheable) {
+            idempotent = true;
+        }
+        return this;
+    }
+
+    /**
+     * Test whether the response of the request may be cached.
+     *
+     * @return true if the response may be stored in and answered from the cache.
+     */
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    /**
+     * Run the request on a worker thread of the RequestScheduler.  The deadline
+     * includes the time the request waits for a worker.
+     *
+     * @return this request.
+     */
+    public DataRequest<T> start() {
+        startDeadline();
+        RequestScheduler.getInstance().execute(task, priority, owner);
+        return this;
+    }
+
+    /**
+     * Run the request on the calling thread.  The deadline applies as it does to a
+     * request run on a worker thread.
+     */
+    public void run() {
+        startDeadline();
+        task.run();
+    }
+
+    /**
+     * Register a connection that is closed if the request is cancelled.  If the request
+     * has already been cancelled the connection is closed immediately.
+     *
+     * @param connection the connection.
+     * @throws InterruptedIOException if the request has been cancelled.
+     */
+    public void register(Closeable connection) throws InterruptedIOException {
+        synchronized (this) {
+            if (connections != null && !task.isCancelled()) {
+                connections.add(connection);
+                return;
+            }
+        }
+
+        if (task.isCancelled()) {
+            close(connection);
+            throw new InterruptedIOException(getCancelMessage());
+        }
+    }
+
+    /**
+     * Cancel the request and close any connections it has open.
+     *
+     * @param mayInterruptIfRunning true if the thread running the request should be
+     * interrupted.
+     * @return false if the request had already finished.
+     */
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        Vector<Closeable> open;
+
+        synchronized (this) {
+            if (!task.cancel(mayInterruptIfRunning)) {
+                return false;
+            }
+            open = connections;
+            connections = null;
+        }
+
+        if (open != null) {
+            for (Closeable c : open) {
+                close(c);
+            }
+        }
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return task.isCancelled();
+    }
+
+    public boolean isDone() {
+        return task.isDone();
+    }
+
+    /**
+     * Check whether the request was cancelled because its deadline passed.
+     *
+     * @return true if the request timed out.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public T get() throws InterruptedException, ExecutionException {
+        return task.get();
+    }
+
+    public T get(long time, TimeUnit unit) throws InterruptedException,
+            ExecutionException, TimeoutException {
+        return task.get(time, unit);
+    }
+
+    /**
+     * Wait for the result of the request and report a failure as an IOException.
+     *
+     * @return the result of the request.
+     * @throws IOException if the request failed, was cancelled or timed out.
+     */
+    public T getResult() throws IOException {
+        try {
+            return task.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            IOException ioe = new IOException(cause.getMessage());
+            ioe.initCause(cause);
+            throw ioe;
+        } catch (CancellationException ex) {
+            throw new InterruptedIOException(getCancelMessage());
+        } catch (InterruptedException ex) {
+            cancel(true);
+            throw new InterruptedIOException(getCancelMessage());
+        }
+    }
+
+    /*
+     * Start the task that cancels the request at its deadline.
+     */
+    private synchronized void startDeadline() {
+        if (timeout > 0 && deadline == null && !task.isDone()) {
+            deadline = getTimer().schedule(new Runnable() {
+
+                public void run() {
+                    // closing the connections unblocks the request, the thread is not
+                    // interrupted as it may be the thread of the caller
+                    timedOut = true;
+                    if (!cancel(false)) {
+                        timedOut = false;
+                    }
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /*
+     * The request has finished, the connections now belong to the caller.
+     */
+    private void finished() {
+        synchronized (this) {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+            if (!task.isCancelled()) {
+                connections = null;
+            }
+        }
+    }
+
+    String getCancelMessage() {
+        return Messages.getString(BUNDLE_NAME, timedOut ? "DataRequest.1" : "DataRequest.0"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private static void close(Closeable c) {
+        try {
+            c.close();
+        } catch (IOException ex) {
+        }
+    }
+
+    /*
+     * Get the thread that enforces deadlines.
+     */
+    private synchronized static ScheduledThreadPoolExecutor getTimer() {
+        if (timer == null) {
+            timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "DataRequest-deadline"); //$NON-NLS-1$
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            // don't keep cancelled deadlines of requests that finished in time
+            timer.setRemoveOnCancelPolicy(true);
+        }
+        return timer;
+    }
+}
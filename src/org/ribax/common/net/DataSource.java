@@ -38,4 +38,17 @@ public interface DataSource {
     public void setHeader(String name, String value);
 
     public InputStream getInputStream(ArrayList<NameValuePair> params) throws IOException;
+
+    /**
+     * Open a stream on the data source for a request that can be cancelled.  Any
+     * connection the data source opens is registered with the request so cancelling
+     * the request aborts a blocking connect or read.
+     *
+     * @param params the parameters to send to the data source.
+     * @param request the request the stream is opened for, null if it cannot be cancelled.
+     * @return the stream ready for reading.
+     * @throws IOException if the stream cannot be opened or the request was cancelled.
+     */
+    public InputStream getInputStream(ArrayList<NameValuePair> params, DataRequest<?> request)
+            throws IOException;
 }
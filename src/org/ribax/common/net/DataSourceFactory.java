@@ -49,13 +49,22 @@ public class DataSourceFactory {
          * the Sun version has problems if the content-length header is not given
          */
         if (burl.startsWith("http:") || burl.startsWith("https:")) {
-            return new WebDataSource(url, name);
+            // web data sources share a pool of keep-alive connections
+            return new WebDataSource(url, name, HttpConnectionPool.getInstance());
         } else if (burl.startsWith("telnet:")) {
             return new SocketDataSource(url, name);
         } else if (burl.startsWith("file:")) {
             return new FileDataSource(url, name);
         } else if (burl.startsWith("test:")) {
             return new TestDataSource(name);
+        } else if (PushDataSource.isPushURL(burl)) {
+            // a web service that pushes updates as server-sent events
+            return new PushDataSource(url, name);
+        } else if (EndpointGroup.isGroupURL(burl)) {
+            // replicated web services, each request is sent to one of the group
+            EndpointGroup group = EndpointGroup.forURL(url);
+
+            return group == null ? null : new GroupDataSource(group, url, name);
         }
 
         return null;
@@ -0,0 +1,523 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.ribax.common.Messages;
+
+import utils.log.BasicLogger;
+
+/**
+ * A named group of replicated web service endpoints.  The groups are declared in the
+ * configuration and data items and models refer to a group with a URL of the form
+ * group://name/path, the path is appended to the URL of the endpoint that is chosen
+ * for each request.  An endpoint is chosen from the healthy endpoints either by the
+ * least number of outstanding requests or, with the POWER_OF_TWO policy, by the fewer
+ * outstanding requests of two endpoints chosen at random.  An endpoint that fails is
+ * marked unhealthy and is probed in the background until it answers again.  A stream
+ * that is resumed after a dropped connection goes back to the endpoint that served it
+ * while that endpoint is healthy.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.net.GroupDataSource
+ */
+public class EndpointGroup {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.net.messages"; //$NON-NLS-1$
+    /** The scheme of the URLs that refer to a group */
+    public static final String SCHEME = "group:"; //$NON-NLS-1$
+    /* policies */
+    public static final int LEAST_OUTSTANDING = 0;
+    public static final int POWER_OF_TWO = 1;
+    /** The default time in seconds between probes of an unhealthy endpoint */
+    public static final int DEFAULT_PROBE_INTERVAL = 10;
+    /** The number of streams whose endpoint is remembered for each group */
+    static final int MAX_AFFINITY = 256;
+    /* The groups keyed by name */
+    private static Hashtable<String, EndpointGroup> groups = new Hashtable<String, EndpointGroup>();
+    /* The thread that probes unhealthy endpoints */
+    private static ScheduledThreadPoolExecutor prober = null;
+    private static Random random = new Random();
+    private String name;
+    private int policy;
+    private Vector<Endpoint> endpoints = new Vector<Endpoint>();
+    /* The path appended to the URL of an endpoint to probe its health, null to probe the URL */
+    private String healthPath = null;
+    /* The time in seconds between probes */
+    private int probeInterval = DEFAULT_PROBE_INTERVAL;
+    /* The policy for hedging slow requests, null if requests are not hedged */
+    private HedgePolicy hedgePolicy = null;
+    /* The endpoints that served the streams keyed by request */
+    private LinkedHashMap<String, Endpoint> affinity = new LinkedHashMap<String, Endpoint>(16, 0.75f, true) {
+
+        public static final long serialVersionUID = 1;
+
+        protected boolean removeEldestEntry(Map.Entry<String, Endpoint> eldest) {
+            return size() > MAX_AFFINITY;
+        }
+    };
+    private static BasicLogger LOG = new BasicLogger(EndpointGroup.class.getName());
+
+    /**
+     * Create an empty group.
+     *
+     * @param name the name of the group.
+     * @param policy LEAST_OUTSTANDING or POWER_OF_TWO.
+     */
+    public EndpointGroup(String name, int policy) {
+        this.name = name;
+        this.policy = policy;
+    }
+
+    /**
+     * Add an endpoint to the group.
+     *
+     * @param url the URL of the endpoint, the paths of the requests are appended to it.
+     */
+    public synchronized void addEndpoint(String url) {
+        url = url.trim();
+
+        while (url.endsWith("/")) { //$NON-NLS-1$
+            url = url.substring(0, url.length() - 1);
+        }
+        endpoints.add(new Endpoint(url));
+    }
+
+    /**
+     * Set the path appended to the URL of an endpoint to probe its health.
+     *
+     * @param healthPath the path or null to probe the URL of the endpoint.
+     */
+    public void setHealthPath(String healthPath) {
+        this.healthPath = healthPath;
+    }
+
+    /**
+     * Set the time between probes of an unhealthy endpoint.
+     *
+     * @param seconds the time in seconds.
+     */
+    public void setProbeInterval(int seconds) {
+        this.probeInterval = Math.max(1, seconds);
+    }
+
+    /**
+     * Set the policy for hedging slow requests.  Hedging suits groups that serve
+     * small idempotent loads whose latency matters, a hedged request is sent to two
+     * endpoints.
+     *
+     * @param hedgePolicy the policy or null to not hedge requests.
+     */
+    public void setHedgePolicy(HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+    }
+
+    /**
+     * Get the policy for hedging slow requests.
+     *
+     * @return the policy or null if requests are not hedged.
+     */
+    public HedgePolicy getHedgePolicy() {
+        return hedgePolicy;
+    }
+
+    /**
+     * Get the name of the group.
+     *
+     * @return the group name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the endpoints of the group.
+     *
+     * @return a copy of the list of endpoints.
+     */
+    public synchronized Vector<Endpoint> getEndpoints() {
+        return new Vector<Endpoint>(endpoints);
+    }
+
+    /**
+     * Add a group, replacing any group with the same name.
+     *
+     * @param group the group.
+     */
+    public static void addGroup(EndpointGroup group) {
+        groups.put(group.getName(), group);
+    }
+
+    /**
+     * Get a group by name.
+     *
+     * @param name the name of the group.
+     * @return the group or null if there is no group with the name.
+     */
+    public static EndpointGroup getGroup(String name) {
+        return groups.get(name);
+    }
+
+    /**
+     * Test whether a URL refers to a group.
+     *
+     * @param url the URL.
+     * @return true if the URL has the group: scheme.
+     */
+    public static boolean isGroupURL(String url) {
+        return url != null && url.trim().toLowerCase().startsWith(SCHEME);
+    }
+
+    /**
+     * Get the group a URL refers to.
+     *
+     * @param url a group: URL.
+     * @return the group or null if there is no such group.
+     */
+    public static EndpointGroup forURL(String url) {
+        String rest = stripScheme(url);
+        int end = endOfName(rest);
+        EndpointGroup group = groups.get(rest.substring(0, end));
+
+        if (group == null) {
+            LOG.error(Messages.getString(BUNDLE_NAME, "EndpointGroup.0") + url); //$NON-NLS-1$
+        }
+        return group;
+    }
+
+    /**
+     * Get the path of a group URL that is appended to the URL of an endpoint.
+     *
+     * @param url a group: URL.
+     * @return the path, including any query, or an empty String.
+     */
+    static String getPath(String url) {
+        String rest = stripScheme(url);
+
+        return rest.substring(endOfName(rest));
+    }
+
+    /**
+     * Choose an endpoint for a URL that is not read through a GroupDataSource.  The
+     * endpoint is chosen as for any other request but its outstanding requests are not
+     * counted.
+     *
+     * @param url the URL.
+     * @return the URL of the chosen endpoint with the path of the URL, or the URL if it
+     * does not refer to a group.
+     * @throws IOException if the group does not exist or has no endpoints.
+     */
+    public static String resolve(String url) throws IOException {
+        if (!isGroupURL(url)) {
+            return url;
+        }
+
+        EndpointGroup group = forURL(url);
+        Endpoint endpoint = group == null ? null : group.select(null, null);
+
+        if (endpoint == null) {
+            throw new IOException(Messages.getString(BUNDLE_NAME, "EndpointGroup.1") + url); //$NON-NLS-1$
+        }
+        return endpoint.getURL() + getPath(url);
+    }
+
+    private static String stripScheme(String url) {
+        String rest = url.trim().substring(SCHEME.length());
+
+        return rest.startsWith("//") ? rest.substring(2) : rest; //$NON-NLS-1$
+    }
+
+    private static int endOfName(String rest) {
+        int end = rest.length();
+
+        for (int i = 0; i < rest.length(); i++) {
+            char c = rest.charAt(i);
+
+            if (c == '/' || c == '?') {
+                end = i;
+                break;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Choose an endpoint for a request.
+     *
+     * @param tried the endpoints that have already failed the request, may be null.
+     * @param stickyKey the key of a stream that is being resumed or null.
+     * @return the endpoint or null if every endpoint has been tried.
+     */
+    synchronized Endpoint select(Vector<Endpoint> tried, String stickyKey) {
+        if (stickyKey != null) {
+            Endpoint endpoint = affinity.get(stickyKey);
+
+            if (endpoint != null && endpoint.healthy && (tried == null || !tried.contains(endpoint))) {
+                return endpoint;
+            }
+        }
+
+        Vector<Endpoint> candidates = new Vector<Endpoint>();
+
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.healthy && (tried == null || !tried.contains(endpoint))) {
+                candidates.add(endpoint);
+            }
+        }
+
+        // when every endpoint is unhealthy try them anyway rather than fail
+        if (candidates.isEmpty()) {
+            for (Endpoint endpoint : endpoints) {
+                if (tried == null || !tried.contains(endpoint)) {
+                    candidates.add(endpoint);
+                }
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        if (policy == POWER_OF_TWO && candidates.size() > 2) {
+            Endpoint a = candidates.remove(random.nextInt(candidates.size()));
+            Endpoint b = candidates.elementAt(random.nextInt(candidates.size()));
+
+            return b.outstanding < a.outstanding ? b : a;
+        }
+
+        // the least outstanding requests, ties are broken at random
+        Endpoint best = null;
+        int ties = 0;
+
+        for (Endpoint endpoint : candidates) {
+            if (best == null || endpoint.outstanding < best.outstanding) {
+                best = endpoint;
+                ties = 1;
+            } else if (endpoint.outstanding == best.outstanding && random.nextInt(++ties) == 0) {
+                best = endpoint;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Record that a request has been sent to an endpoint.
+     *
+     * @param endpoint the endpoint.
+     */
+    synchronized void started(Endpoint endpoint) {
+        endpoint.outstanding++;
+        endpoint.requests++;
+    }
+
+    /**
+     * Record that a request to an endpoint has finished.
+     *
+     * @param endpoint the endpoint.
+     */
+    synchronized void finished(Endpoint endpoint) {
+        endpoint.outstanding--;
+    }
+
+    /**
+     * Record the endpoint that served a request so a resumed stream goes back to it.
+     *
+     * @param key the key of the request.
+     * @param endpoint the endpoint.
+     */
+    synchronized void served(String key, Endpoint endpoint) {
+        if (key != null) {
+            affinity.put(key, endpoint);
+        }
+    }
+
+    /**
+     * Mark an endpoint unhealthy and start probing it.
+     *
+     * @param endpoint the endpoint that failed.
+     * @param ex the reason it failed.
+     */
+    void failed(final Endpoint endpoint, IOException ex) {
+        synchronized (this) {
+            endpoint.failures++;
+
+            if (!endpoint.healthy) {
+                return;
+            }
+            endpoint.healthy = false;
+        }
+        LOG.warning(name + Messages.getString(BUNDLE_NAME, "EndpointGroup.2") + endpoint.getURL() //$NON-NLS-1$
+                + " " + ex.getMessage()); //$NON-NLS-1$
+        scheduleProbe(endpoint);
+    }
+
+    /*
+     * Probe an unhealthy endpoint after the probe interval.
+     */
+    private void scheduleProbe(final Endpoint endpoint) {
+        getProber().schedule(new Runnable() {
+
+            public void run() {
+                if (probe(endpoint)) {
+                    synchronized (EndpointGroup.this) {
+                        endpoint.healthy = true;
+                    }
+                    LOG.info(name + Messages.getString(BUNDLE_NAME, "EndpointGroup.3") + endpoint.getURL()); //$NON-NLS-1$
+                } else {
+                    scheduleProbe(endpoint);
+                }
+            }
+        }, probeInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Check whether an endpoint answers.  The health URL of a web service must answer
+     * with a 2xx status, an endpoint that is not a web service is assumed to be healthy.
+     *
+     * @param endpoint the endpoint.
+     * @return true if the endpoint is healthy.
+     */
+    boolean probe(Endpoint endpoint) {
+        String url = endpoint.getURL() + (healthPath == null ? "" : healthPath); //$NON-NLS-1$
+        HttpURLConnection hc = null;
+
+        try {
+            URLConnection conn = new URL(url).openConnection();
+
+            if (!(conn instanceof HttpURLConnection)) {
+                return true;
+            }
+            hc = (HttpURLConnection) conn;
+            hc.setConnectTimeout(probeInterval * 1000);
+            hc.setReadTimeout(probeInterval * 1000);
+            hc.setUseCaches(false);
+
+            int status = hc.getResponseCode();
+
+            return status >= 200 && status < 300;
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            if (hc != null) {
+                hc.disconnect();
+            }
+        }
+    }
+
+    /*
+     * Get the thread that probes unhealthy endpoints.
+     */
+    private synchronized static ScheduledThreadPoolExecutor getProber() {
+        if (prober == null) {
+            prober = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "EndpointGroup-probe"); //$NON-NLS-1$
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return prober;
+    }
+
+    /**
+     * An endpoint of a group and its request counts.
+     */
+    public static class Endpoint {
+
+        private String url;
+        /* The number of requests in progress, a stream is in progress until it is closed */
+        private volatile int outstanding = 0;
+        /* false while the endpoint is being probed after a failure */
+        private volatile boolean healthy = true;
+        private long requests = 0;
+        private long failures = 0;
+
+        Endpoint(String url) {
+            this.url = url;
+        }
+
+        /**
+         * Get the URL of the endpoint.
+         *
+         * @return the URL.
+         */
+        public String getURL() {
+            return url;
+        }
+
+        /**
+         * Get the number of requests in progress.
+         *
+         * @return the number of outstanding requests.
+         */
+        public int getOutstanding() {
+            return outstanding;
+        }
+
+        /**
+         * Test whether the endpoint is healthy.
+         *
+         * @return false if the endpoint has failed and has not answered a probe since.
+         */
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        /**
+         * Get the number of requests sent to the endpoint.
+         *
+         * @return the number of requests.
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * Get the number of requests to the endpoint that failed.
+         *
+         * @return the number of failures.
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        public String toString() {
+            return url + " outstanding:" + outstanding + " healthy:" + healthy //$NON-NLS-1$ //$NON-NLS-2$
+                    + " requests:" + requests + " failures:" + failures; //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Reads the events of a text/event-stream (Server-Sent Events) as they arrive.  The
+ * reader follows the event stream framing: an event is a set of field lines ended
+ * by a blank line, the data lines of an event are joined with line feeds, lines
+ * starting with a colon are comments and an incomplete event at the end of the
+ * stream is dropped.  The last event ID and the reconnection time sent by the
+ * stream are kept so the stream can be resumed.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.net.ServerEvent
+ */
+public class EventStreamReader {
+
+    /** The MIME type of an event stream */
+    public static final String MIME_TYPE = "text/event-stream"; //$NON-NLS-1$
+    /** The header a client sends the last event ID in to resume a stream */
+    public static final String LAST_EVENT_ID = "Last-Event-ID"; //$NON-NLS-1$
+    /** The default time in milliseconds to wait before reconnecting */
+    public static final long DEFAULT_RETRY = 3000;
+    /* The lines of the stream */
+    private BufferedReader in;
+    /* The last event ID sent by the stream */
+    private String lastEventId;
+    /* The reconnection time sent by the stream */
+    private long retry = DEFAULT_RETRY;
+
+    /**
+     * Create a reader on an event stream.
+     *
+     * @param in the event stream, which is UTF-8 encoded.
+     * @param lastEventId the last event ID of a previous connection to the stream
+     * or null if this is a new stream.
+     * @throws IOException if the stream cannot be read.
+     */
+    public EventStreamReader(InputStream in, String lastEventId) throws IOException {
+        this.in = new BufferedReader(new InputStreamReader(in, "UTF-8")); //$NON-NLS-1$
+        this.lastEventId = lastEventId == null ? "" : lastEventId; //$NON-NLS-1$
+    }
+
+    /**
+     * Read the next event from the stream.  This call blocks until a complete event
+     * has arrived.  Events without data are not returned.
+     *
+     * @return the event or null if the stream has ended.
+     * @throws IOException if the stream cannot be read.
+     */
+    public ServerEvent readEvent() throws IOException {
+        StringBuffer data = null;
+        String type = null;
+        String line;
+
+        while ((line = in.readLine()) != null) {
+            if (line.length() == 0) {
+                // a blank line dispatches the event
+                if (data != null) {
+                    return new ServerEvent(lastEventId, type == null ? ServerEvent.MESSAGE : type,
+                            data.toString());
+                }
+                type = null;
+                continue;
+            }
+            if (line.charAt(0) == ':') {
+                // a comment, usually sent to keep the connection open
+                continue;
+            }
+
+            String field = line;
+            String value = ""; //$NON-NLS-1$
+            int colon = line.indexOf(':');
+
+            if (colon >= 0) {
+                field = line.substring(0, colon);
+                value = line.substring(colon + 1);
+
+                if (value.startsWith(" ")) { //$NON-NLS-1$
+                    value = value.substring(1);
+                }
+            }
+
+            if (field.equals("data")) { //$NON-NLS-1$
+                if (data == null) {
+                    data = new StringBuffer(value);
+                } else {
+                    data.append('\n').append(value);
+                }
+            } else if (field.equals("event")) { //$NON-NLS-1$
+                type = value;
+            } else if (field.equals("id")) { //$NON-NLS-1$
+                if (value.indexOf('\0') < 0) {
+                    lastEventId = value;
+                }
+            } else if (field.equals("retry")) { //$NON-NLS-1$
+                // a value that is not all digits is ignored
+                if (value.matches("\\d+")) { //$NON-NLS-1$
+                    retry = Long.parseLong(value);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the last event ID sent by the stream.
+     *
+     * @return the last event ID, an empty String if no ID has been sent.
+     */
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    /**
+     * Get the time to wait before reconnecting to the stream.
+     *
+     * @return the reconnection time in milliseconds.
+     */
+    public long getRetry() {
+        return retry;
+    }
+
+    /**
+     * Close the reader and the underlying stream.
+     */
+    public void close() {
+        try {
+            in.close();
+        } catch (IOException ex) {
+        }
+    }
+}
@@ -54,18 +54,28 @@ public class FileDataSource implements DataSource {
     }
 
     public InputStream getInputStream(ArrayList<NameValuePair> params) throws IOException {
+        return getInputStream(params, null);
+    }
+
+    public InputStream getInputStream(ArrayList<NameValuePair> params, DataRequest<?> request)
+            throws IOException {
+        FileInputStream in;
 
         try {
             URI uri = new URI(this.uri);
 
             File f = new File(uri);
 
-            FileInputStream in = new FileInputStream(f);
-            return (InputStream) in;
+            in = new FileInputStream(f);
         } catch (Exception e) {
             throw new IOException(e.getLocalizedMessage());
         }
 
+        // cancelling the request closes the file so a reader stops
+        if (request != null) {
+            request.register(in);
+        }
+        return (InputStream) in;
     }
 
     public void setHeader(String name, String value) {
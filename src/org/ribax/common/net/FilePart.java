@@ -7,15 +7,25 @@ package org.ribax.common.net;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.ribax.common.Messages;
 
 public class FilePart extends Part {
 
     /* Attachment's file name */
     protected static final String FILE_NAME = "; filename=";
+    /* The number of bytes transferred between progress notifications */
+    static final int TRANSFER_SIZE = 64 * 1024;
+    private static final String BUNDLE_NAME = "org.ribax.common.net.messages"; //$NON-NLS-1$
     private File file;
+    /* The listener notified of the upload progress, may be null */
+    private UploadProgressListener listener = null;
 
     public FilePart(String name, File f) {
         this.name = name;
@@ -32,8 +42,17 @@ public class FilePart extends Part {
     /* (non-Javadoc)
      * @see org.ribax.datasources.Part#getContentLength()
      */
-    protected int getContentLength() {
-        return getHeaderLength() + (int) file.length() + dispositionLength();
+    protected long getContentLength() {
+        return getHeaderLength() + file.length() + dispositionLength();
+    }
+
+    /**
+     * Set the listener that is notified as the data in the file is written.
+     *
+     * @param listener the listener, or <code>null</code> for no notifications.
+     */
+    public void setUploadProgressListener(UploadProgressListener listener) {
+        this.listener = listener;
     }
 
     /**
@@ -71,7 +90,10 @@ public class FilePart extends Part {
     }
 
     /**
-     * Write the data in the file to the specified stream.
+     * Write the data in the file to the specified stream.  The file is transferred
+     * from its channel directly to the channel of the output stream when it has one,
+     * otherwise it is streamed through a small transfer buffer so the file is never
+     * held in memory.
      *
      * @param out The output stream.
      * @throws IOException if an IO problem occurs.
@@ -85,12 +107,33 @@ public class FilePart extends Part {
             return;
         }
 
-        byte[] tmp = new byte[4096];
-        InputStream instream = new FileInputStream(file);
+        // the channel must not be closed as that would close the output stream
+        WritableByteChannel target;
+        if (out instanceof FileOutputStream) {
+            target = ((FileOutputStream) out).getChannel();
+        } else {
+            target = Channels.newChannel(out);
+        }
+
+        FileInputStream instream = new FileInputStream(file);
         try {
-            int len;
-            while ((len = instream.read(tmp)) >= 0) {
-                out.write(tmp, 0, len);
+            FileChannel source = instream.getChannel();
+            long total = source.size();
+            long position = 0;
+
+            while (position < total) {
+                long count = source.transferTo(position,
+                        Math.min(TRANSFER_SIZE, total - position), target);
+
+                if (count <= 0) {
+                    // the file was truncated while it was being sent
+                    throw new IOException(Messages.getString(BUNDLE_NAME, "FilePart.0") + file); //$NON-NLS-1$
+                }
+                position += count;
+
+                if (listener != null) {
+                    listener.uploadProgress(getName(), file, position, total);
+                }
             }
         } finally {
             // we're done with the stream, close it
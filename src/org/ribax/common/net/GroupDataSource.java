@@ -0,0 +1,474 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ribax.common.Messages;
+import org.ribax.common.data.ResumableBlockSource;
+
+import utils.log.BasicLogger;
+import utils.types.NameValuePair;
+
+/**
+ * A DataSource for a group: URL that sends each request to an endpoint of the
+ * EndpointGroup.  If the endpoint fails a request that is marked idempotent is
+ * sent to the next endpoint the group chooses until every endpoint has been tried,
+ * any other request is sent once.
+ * A request is outstanding on its endpoint until the stream of its response is
+ * closed, so long lived streams count against their endpoint.  A stream resumed with
+ * a ResumeSequence parameter or a Last-Event-ID header is sent to the endpoint that
+ * served it before.
+ * <p>
+ * If the group has a HedgePolicy an idempotent request that has not been answered
+ * when the recent latency percentile of its URL has passed is also sent to a second
+ * endpoint.  Both attempts run on worker threads of their own and the first response
+ * is used, the other request is cancelled.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.net.EndpointGroup
+ */
+public class GroupDataSource implements DataSource {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.net.messages"; //$NON-NLS-1$
+    private EndpointGroup group;
+    private String url;
+    private String name;
+    private Hashtable<String, String> headers = new Hashtable<String, String>();
+    /* The thread that starts the hedges of slow requests */
+    private static ScheduledThreadPoolExecutor timer = null;
+    /* The threads that send the attempts of hedged requests */
+    private static ExecutorService workers = null;
+    private static BasicLogger LOG = new BasicLogger(GroupDataSource.class.getName());
+
+    /**
+     * Create a data source for a group URL.
+     *
+     * @param group the group the URL refers to.
+     * @param url the group: URL.
+     * @param name the name of the Object opening the stream (for debugging).
+     */
+    public GroupDataSource(EndpointGroup group, String url, String name) {
+        this.group = group;
+        this.url = url;
+        this.name = name;
+    }
+
+    public void setHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    public InputStream getInputStream(ArrayList<NameValuePair> params) throws IOException {
+        return getInputStream(params, null);
+    }
+
+    public InputStream getInputStream(ArrayList<NameValuePair> params, DataRequest<?> request)
+            throws IOException {
+
+        String path = EndpointGroup.getPath(url);
+        // a submission or a request that uploads a file is only sent once
+        boolean idempotent = request != null && request.isIdempotent()
+                && HttpResponseCache.getKey(url, params) != null;
+        boolean resume = headers.containsKey(EventStreamReader.LAST_EVENT_ID);
+        ArrayList<NameValuePair> streamParams = new ArrayList<NameValuePair>();
+
+        // the key of a stream is the same for every connection to the stream
+        if (params != null) {
+            for (NameValuePair pair : params) {
+                if (pair != null && ResumableBlockSource.RESUME_SEQUENCE.equals(pair.getName())) {
+                    resume = true;
+                } else {
+                    streamParams.add(pair);
+                }
+            }
+        }
+
+        String key = HttpResponseCache.getKey(url, streamParams);
+        Vector<EndpointGroup.Endpoint> tried = new Vector<EndpointGroup.Endpoint>();
+        IOException error = null;
+        EndpointGroup.Endpoint endpoint;
+        HedgePolicy policy = group.getHedgePolicy();
+        // only the first attempt is hedged, a resumed stream must stay on its endpoint
+        long delay = policy != null && idempotent && !resume ? policy.getDelay(url) : -1;
+
+        while ((endpoint = group.select(tried, resume ? key : null)) != null) {
+            tried.add(endpoint);
+
+            try {
+                if (delay < 0) {
+                    return send(endpoint, path, params, request, key);
+                }
+
+                InputStream in = new Hedge(policy, endpoint, tried, path, params, key).send(request, delay);
+
+                // the response now belongs to the request
+                if (request != null) {
+                    request.register(in);
+                }
+                return in;
+            } catch (IOException ex) {
+                if (!isFailure(ex, request)) {
+                    throw ex;
+                }
+                delay = -1;
+                error = ex;
+
+                if (!idempotent) {
+                    break;
+                }
+            }
+        }
+
+        if (error == null) {
+            error = new IOException(Messages.getString(BUNDLE_NAME, "EndpointGroup.1") + url); //$NON-NLS-1$
+        } else if (tried.size() > 1) {
+            LOG.error(name + Messages.getString(BUNDLE_NAME, "GroupDataSource.0") + url); //$NON-NLS-1$
+        }
+        throw error;
+    }
+
+    /*
+     * Send a request to an endpoint.  The latency of the response is recorded and a
+     * failure is recorded against the endpoint.
+     */
+    private InputStream send(EndpointGroup.Endpoint endpoint, String path, ArrayList<NameValuePair> params,
+            DataRequest<?> request, String key) throws IOException {
+
+        DataSource source = getDataSource(endpoint.getURL() + path);
+        HedgePolicy policy = group.getHedgePolicy();
+        long start = System.currentTimeMillis();
+
+        group.started(endpoint);
+
+        try {
+            InputStream in = source.getInputStream(params, request);
+
+            if (policy != null) {
+                policy.getTracker().record(url, System.currentTimeMillis() - start);
+            }
+            group.served(key, endpoint);
+            return new EndpointInputStream(in, endpoint);
+        } catch (IOException ex) {
+            group.finished(endpoint);
+
+            if (isFailure(ex, request)) {
+                group.failed(endpoint, ex);
+            }
+            throw ex;
+        }
+    }
+
+    /*
+     * A cancelled or rejected request is not a failure of the endpoint.
+     */
+    private static boolean isFailure(IOException ex, DataRequest<?> request) {
+        return !(request != null && request.isCancelled())
+                && !(ex instanceof HttpStatusException && !((HttpStatusException) ex).isServerError());
+    }
+
+    /*
+     * Get the thread that starts the hedges.
+     */
+    private synchronized static ScheduledThreadPoolExecutor getTimer() {
+        if (timer == null) {
+            timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "GroupDataSource-hedge"); //$NON-NLS-1$
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            // don't keep the hedges of requests that were answered in time
+            timer.setRemoveOnCancelPolicy(true);
+        }
+        return timer;
+    }
+
+    /*
+     * Get the threads that send the attempts of hedged requests.  An attempt never
+     * waits for a thread so a hedged request cannot be held up by busy workers.
+     */
+    private synchronized static ExecutorService getWorkers() {
+        if (workers == null) {
+            workers = Executors.newCachedThreadPool(new ThreadFactory() {
+
+                private AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "GroupDataSource-attempt-" + count.incrementAndGet()); //$NON-NLS-1$
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return workers;
+    }
+
+    /*
+     * Get the data source of an endpoint with the headers of this data source.  The
+     * web services of an endpoint have a circuit breaker but are not retried or given
+     * cached responses, the request goes to the next endpoint instead.
+     */
+    private DataSource getDataSource(String target) throws IOException {
+        DataSource source = DataSourceFactory.getDataSource(target, name);
+
+        if (source == null) {
+            throw new IOException(Messages.getString(BUNDLE_NAME, "EndpointGroup.1") + target); //$NON-NLS-1$
+        }
+        if (source instanceof WebDataSource) {
+            source = new ResilientDataSource(source, target, name, CircuitBreaker.getInstance(new URL(target)),
+                    null, 0, 0, 0);
+        }
+        for (Enumeration<String> e = headers.keys(); e.hasMoreElements();) {
+            String header = e.nextElement();
+            source.setHeader(header, headers.get(header));
+        }
+        return source;
+    }
+
+    /*
+     * A request that is sent to a second endpoint if the first has not answered in
+     * time.  Both attempts run on worker threads and the caller waits until one of
+     * them answers or every attempt that was started has failed.  The attempt that
+     * answers first cancels the other.
+     */
+    private class Hedge implements Runnable, Closeable {
+
+        private HedgePolicy policy;
+        private EndpointGroup.Endpoint first;
+        private Vector<EndpointGroup.Endpoint> tried;
+        private String path;
+        private ArrayList<NameValuePair> params;
+        private String key;
+        private DataRequest<InputStream> primary = null;
+        private DataRequest<InputStream> secondary = null;
+        /* The attempt whose response is used, this hedge if there is no response */
+        private Object winner = null;
+        /* The number of attempts that have started and not yet finished */
+        private int running = 0;
+
+        Hedge(HedgePolicy policy, EndpointGroup.Endpoint first, Vector<EndpointGroup.Endpoint> tried,
+                String path, ArrayList<NameValuePair> params, String key) {
+            this.policy = policy;
+            this.first = first;
+            this.tried = new Vector<EndpointGroup.Endpoint>(tried);
+            this.path = path;
+            this.params = params;
+            this.key = key;
+        }
+
+        /*
+         * Send the request, the hedge is sent after the delay.
+         */
+        InputStream send(DataRequest<?> request, long delay) throws IOException {
+            primary = attempt(first);
+
+            if (request != null) {
+                request.register(this);
+            }
+
+            synchronized (this) {
+                running++;
+            }
+            getWorkers().execute(primary);
+
+            ScheduledFuture<?> hedge = getTimer().schedule(this, delay, TimeUnit.MILLISECONDS);
+            Object answer;
+
+            try {
+                synchronized (this) {
+                    // wait for the first response or for every attempt to fail
+                    while (winner == null && running > 0) {
+                        wait();
+                    }
+                    if (winner == null) {
+                        winner = this;
+                    }
+                    answer = winner;
+                }
+            } catch (InterruptedException ex) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(ex.getMessage());
+            } finally {
+                hedge.cancel(false);
+            }
+
+            if (answer == secondary) {
+                policy.hedgeWon();
+                return secondary.getResult();
+            }
+            if (answer == primary) {
+                return primary.getResult();
+            }
+            if (request != null && request.isCancelled()) {
+                throw new InterruptedIOException(request.getCancelMessage());
+            }
+
+            // every attempt failed, the failure of the hedge is reported if it was sent
+            return (secondary != null ? secondary : primary).getResult();
+        }
+
+        /*
+         * Start the hedge if the request has not been answered and the budget allows.
+         */
+        public void run() {
+            synchronized (this) {
+                if (winner != null) {
+                    return;
+                }
+            }
+
+            EndpointGroup.Endpoint endpoint = group.select(tried, null);
+
+            if (endpoint == null || !policy.allowHedge()) {
+                return;
+            }
+
+            DataRequest<InputStream> attempt = attempt(endpoint);
+
+            synchronized (this) {
+                if (winner != null) {
+                    return;
+                }
+                secondary = attempt;
+                running++;
+            }
+            getWorkers().execute(attempt);
+        }
+
+        /*
+         * Cancel the attempts when the request is cancelled.
+         */
+        public void close() {
+            DataRequest<InputStream> a, b;
+
+            synchronized (this) {
+                if (winner != null) {
+                    return;
+                }
+                winner = this;
+                a = primary;
+                b = secondary;
+                notifyAll();
+            }
+            if (a != null) {
+                a.cancel(false);
+            }
+            if (b != null) {
+                b.cancel(false);
+            }
+        }
+
+        /*
+         * Use the response of an attempt if it is the first, the other attempt is
+         * cancelled.
+         */
+        private boolean win(DataRequest<InputStream> attempt) {
+            DataRequest<InputStream> loser;
+
+            synchronized (this) {
+                if (winner != null) {
+                    return false;
+                }
+                winner = attempt;
+                loser = attempt == primary ? secondary : primary;
+                notifyAll();
+            }
+            if (loser != null) {
+                loser.cancel(false);
+            }
+            return true;
+        }
+
+        /*
+         * An attempt has finished, the caller is woken if it was the last.
+         */
+        private synchronized void finished() {
+            running--;
+            notifyAll();
+        }
+
+        private DataRequest<InputStream> attempt(final EndpointGroup.Endpoint endpoint) {
+            return new DataRequest<InputStream>(0) {
+
+                protected InputStream call() throws Exception {
+                    try {
+                        InputStream in = GroupDataSource.this.send(endpoint, path, params, this, key);
+
+                        if (!win(this)) {
+                            in.close();
+                            throw new InterruptedIOException(getCancelMessage());
+                        }
+                        return in;
+                    } finally {
+                        finished();
+                    }
+                }
+            };
+        }
+    }
+
+    /*
+     * A response stream that ends the request on its endpoint when it is closed.
+     */
+    private class EndpointInputStream extends FilterInputStream {
+
+        private EndpointGroup.Endpoint endpoint;
+        private boolean closed = false;
+
+        EndpointInputStream(InputStream in, EndpointGroup.Endpoint endpoint) {
+            super(in);
+            this.endpoint = endpoint;
+        }
+
+        public void close() throws IOException {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            group.finished(endpoint);
+            super.close();
+        }
+    }
+}
@@ -26,8 +26,8 @@ public class HTTPmultipart {
         return boundary;
     }
 
-    public int getContentLength(Part part) {
-        int len = PartUtils.EXTRA_BYTES.length + boundary.length
+    public long getContentLength(Part part) {
+        long len = PartUtils.EXTRA_BYTES.length + boundary.length
                 + PartUtils.CRLF_BYTES.length;
 
         len += part.getContentLength();
@@ -0,0 +1,145 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+/**
+ * The policy for hedging the requests to an EndpointGroup.  A request that has not
+ * been answered when its URL's recent latency percentile has passed is sent to a
+ * second endpoint as well, the first answer is used and the other request is
+ * cancelled.  The extra requests are limited to a budget: each request earns a
+ * fraction of a hedge and a hedge is only sent when a whole one has been earned,
+ * so hedges never add more than the budget percentage of load.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.net.GroupDataSource
+ */
+public class HedgePolicy {
+
+    /** The default latency percentile after which a request is hedged */
+    public static final double DEFAULT_PERCENTILE = 95;
+    /** The default percentage of extra requests the hedges may add */
+    public static final double DEFAULT_BUDGET = 10;
+    /** The shortest time in milliseconds before a request is hedged */
+    public static final long MIN_DELAY = 5;
+    /* The number of hedges that can be saved up for a burst of slow requests */
+    static final double MAX_TOKENS = 10;
+    private double percentile;
+    private double budget;
+    /* The latencies of the requests */
+    private LatencyTracker tracker;
+    /* The hedges that have been earned and not spent */
+    private double tokens = 0;
+    private long requests = 0;
+    private long hedges = 0;
+    private long wins = 0;
+
+    /**
+     * Create a policy.
+     *
+     * @param percentile the latency percentile after which a request is hedged.
+     * @param budget the percentage of extra requests the hedges may add.
+     * @param tracker the latencies of the requests.
+     */
+    public HedgePolicy(double percentile, double budget, LatencyTracker tracker) {
+        this.percentile = percentile;
+        this.budget = Math.max(0, budget);
+        this.tracker = tracker;
+    }
+
+    /**
+     * Get the tracker of the latencies of the requests.
+     *
+     * @return the latency tracker.
+     */
+    public LatencyTracker getTracker() {
+        return tracker;
+    }
+
+    /**
+     * Get the time to wait for the answer to a request before it is hedged, the
+     * request earns its share of the budget.
+     *
+     * @param url the URL of the request.
+     * @return the delay in milliseconds or -1 if the request should not be hedged
+     * because too little is known about the latency of the URL.
+     */
+    public long getDelay(String url) {
+        synchronized (this) {
+            requests++;
+            tokens = Math.min(MAX_TOKENS, tokens + budget / 100);
+        }
+
+        long delay = tracker.getPercentile(url, percentile);
+
+        return delay < 0 ? -1 : Math.max(MIN_DELAY, delay);
+    }
+
+    /**
+     * Spend a hedge from the budget.
+     *
+     * @return true if the hedge may be sent.
+     */
+    public synchronized boolean allowHedge() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        hedges++;
+        return true;
+    }
+
+    /**
+     * Record that a hedge was answered before the request it duplicated.
+     */
+    public synchronized void hedgeWon() {
+        wins++;
+    }
+
+    /**
+     * Get the number of requests made under the policy.
+     *
+     * @return the number of requests.
+     */
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Get the number of hedges that have been sent.
+     *
+     * @return the number of hedges.
+     */
+    public synchronized long getHedges() {
+        return hedges;
+    }
+
+    /**
+     * Get the number of hedges that were answered first.
+     *
+     * @return the number of winning hedges.
+     */
+    public synchronized long getWins() {
+        return wins;
+    }
+}
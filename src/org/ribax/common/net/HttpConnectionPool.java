@@ -0,0 +1,361 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Hashtable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.ribax.common.ConfigStrings;
+import org.ribax.common.Messages;
+import org.ribax.common.RIBAXConfig;
+
+import utils.log.BasicLogger;
+
+/**
+ * Limits the requests sent to each route (scheme, host and port) by the web data
+ * sources.  A request holds one of the permits of its route from the time it is sent
+ * until the response starts, so a route never has more than the maximum number of
+ * requests waiting on the web service.  The permit is returned as soon as the response
+ * stream is handed to the caller, a long lived stream does not hold up other requests
+ * to the same route.  The sockets themselves are kept alive and reused by the keep-alive
+ * cache of the URLConnection transport once a response stream has been read or closed.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+public class HttpConnectionPool {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.net.messages"; //$NON-NLS-1$
+    /** The default maximum number of requests waiting for a response per route */
+    public static final int DEFAULT_MAX_PER_ROUTE = 6;
+    /** The default time in seconds to wait for a permit on a busy route */
+    public static final int DEFAULT_LEASE_TIMEOUT = 5;
+    /* The singleton instance of the pool */
+    private static HttpConnectionPool instance = null;
+    /* The routes managed by this pool */
+    private Hashtable<String, Route> routes = new Hashtable<String, Route>();
+    private int maxPerRoute;
+    private long leaseTimeout;
+    private static BasicLogger LOG = new BasicLogger(HttpConnectionPool.class.getName());
+
+    /**
+     * Create a new connection pool.
+     *
+     * @param maxPerRoute the maximum number of requests waiting for a response on a
+     * route at once.
+     * @param leaseTimeout the time in seconds to wait for a permit before sending a
+     * request over the route limit.
+     */
+    public HttpConnectionPool(int maxPerRoute, int leaseTimeout) {
+        this.maxPerRoute = Math.max(1, maxPerRoute);
+        this.leaseTimeout = leaseTimeout * 1000L;
+    }
+
+    /**
+     * Get the single instance of the connection pool.  The pool settings are taken from
+     * the HttpMaxConnectionsPerRoute and HttpLeaseTimeout configuration properties.
+     *
+     * @return the connection pool instance.
+     */
+    public synchronized static HttpConnectionPool getInstance() {
+        if (instance == null) {
+            RIBAXConfig config = RIBAXConfig.getInstance();
+
+            instance = new HttpConnectionPool(
+                    config.getIntValue(ConfigStrings.HTTP_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_PER_ROUTE),
+                    config.getIntValue(ConfigStrings.HTTP_LEASE_TIMEOUT, DEFAULT_LEASE_TIMEOUT));
+
+            // let the URLConnection keep-alive cache hold as many idle sockets per
+            // route as there can be requests, this must be set before the first HTTP
+            // connection
+            if (System.getProperty("http.maxConnections") == null) { //$NON-NLS-1$
+                System.setProperty("http.maxConnections", String.valueOf(instance.maxPerRoute)); //$NON-NLS-1$
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Get the route key for a URL.
+     *
+     * @param url the URL.
+     * @return the route key in the form scheme://host:port.
+     */
+    public static String getRouteKey(URL url) {
+        int port = url.getPort();
+
+        if (port < 0) {
+            port = url.getDefaultPort();
+        }
+        return url.getProtocol().toLowerCase() + "://" + url.getHost().toLowerCase() + ":" + port; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /*
+     * Get or create the route for a route key.
+     */
+    private synchronized Route getRoute(String key) {
+        Route route = routes.get(key);
+
+        if (route == null) {
+            route = new Route(key);
+            routes.put(key, route);
+        }
+        return route;
+    }
+
+    /**
+     * Lease a connection for a URL.  If the maximum number of requests on the route
+     * are already waiting for a response the caller waits up to the lease timeout for
+     * one of them to be answered and then proceeds over the limit.
+     *
+     * @param url the URL to connect to.
+     * @return the lease which must be released when the response has been read.
+     * @throws IOException if the caller is interrupted while waiting.
+     */
+    public Lease lease(URL url) throws IOException {
+        Route route = getRoute(getRouteKey(url));
+        boolean permit;
+
+        try {
+            permit = route.permits.tryAcquire(leaseTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            throw new IOException(Messages.getString(BUNDLE_NAME, "HttpConnectionPool.0") + route.key); //$NON-NLS-1$
+        }
+
+        if (!permit) {
+            LOG.warn(Messages.getString(BUNDLE_NAME, "HttpConnectionPool.1") + route.key); //$NON-NLS-1$
+        }
+
+        synchronized (route) {
+            route.leased++;
+            route.waiting++;
+            route.requests++;
+            if (!permit) {
+                route.overLimit++;
+            }
+        }
+        return new Lease(route, permit);
+    }
+
+    /**
+     * Get the statistics for all routes.
+     *
+     * @return the pool statistics.
+     */
+    public PoolStats getStats() {
+        PoolStats stats = new PoolStats(null);
+        Route[] list;
+
+        synchronized (this) {
+            list = routes.values().toArray(new Route[0]);
+        }
+        for (Route route : list) {
+            stats.add(getStats(route));
+        }
+        return stats;
+    }
+
+    /**
+     * Get the statistics for the route of a URL.
+     *
+     * @param url the URL.
+     * @return the route statistics.
+     */
+    public PoolStats getStats(URL url) {
+        return getStats(getRoute(getRouteKey(url)));
+    }
+
+    /*
+     * Get a snapshot of the statistics for a route, including the circuit breaker
+     * of the route if it has one.
+     */
+    private PoolStats getStats(Route route) {
+        PoolStats stats = new PoolStats(route.key);
+
+        synchronized (route) {
+            stats.leased = route.leased;
+            stats.waiting = route.waiting;
+            stats.requests = route.requests;
+            stats.overLimit = route.overLimit;
+        }
+
+        CircuitBreaker breaker = CircuitBreaker.find(route.key);
+
+        if (breaker != null) {
+            stats.circuit = CircuitBreaker.getStateName(breaker.getState());
+            stats.rejected = breaker.getRejected();
+            stats.retries = breaker.getRetries();
+        }
+        return stats;
+    }
+
+    /**
+     * Get the maximum number of requests waiting for a response per route.
+     *
+     * @return the maximum number of requests per route.
+     */
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    /*
+     * The requests to a single scheme/host/port.
+     */
+    private class Route {
+
+        String key;
+        Semaphore permits;
+        /* the number of responses that are open */
+        int leased = 0;
+        /* the number of requests waiting for a response */
+        int waiting = 0;
+        long requests = 0;
+        long overLimit = 0;
+
+        Route(String key) {
+            this.key = key;
+            this.permits = new Semaphore(maxPerRoute, true);
+        }
+    }
+
+    /**
+     * A connection leased from the pool.  The permit of the route is returned when the
+     * response starts, the lease itself is released exactly once, either explicitly or
+     * by reading to the end of or closing the stream returned from wrap().
+     */
+    public class Lease {
+
+        private Route route;
+        private boolean permit;
+        private boolean waiting = true;
+        private boolean released = false;
+
+        private Lease(Route route, boolean permit) {
+            this.route = route;
+            this.permit = permit;
+        }
+
+        /*
+         * Return the permit of the route once the request is no longer waiting for
+         * a response.
+         */
+        private synchronized void responded() {
+            if (!waiting) {
+                return;
+            }
+            waiting = false;
+
+            synchronized (route) {
+                route.waiting--;
+            }
+            if (permit) {
+                route.permits.release();
+            }
+        }
+
+        /**
+         * Release the connection, if the response was read completely or the stream
+         * closed cleanly the URLConnection transport keeps the socket alive.
+         */
+        public synchronized void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            responded();
+
+            synchronized (route) {
+                route.leased--;
+            }
+        }
+
+        /**
+         * Wrap a response stream so the lease is released when the stream is closed.
+         * The response has started so the permit of the route is returned, a stream
+         * that is read for a long time does not hold it.
+         *
+         * @param in the response stream.
+         * @return the wrapped stream.
+         */
+        public InputStream wrap(InputStream in) {
+            responded();
+            return new PooledInputStream(in, this);
+        }
+    }
+
+    /*
+     * A response stream that releases its lease when it ends or is closed.
+     */
+    private static class PooledInputStream extends FilterInputStream {
+
+        private Lease lease;
+
+        PooledInputStream(InputStream in, Lease lease) {
+            super(in);
+            this.lease = lease;
+        }
+
+        public int read() throws IOException {
+            try {
+                return released(super.read());
+            } catch (IOException ex) {
+                lease.release();
+                throw ex;
+            }
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return released(super.read(b, off, len));
+            } catch (IOException ex) {
+                lease.release();
+                throw ex;
+            }
+        }
+
+        /*
+         * Release the lease at the end of the response, not every reader closes
+         * the stream once it has been parsed.
+         */
+        private int released(int result) {
+            if (result < 0) {
+                lease.release();
+            }
+            return result;
+        }
+
+        public void close() throws IOException {
+            // the URLConnection transport skips any unread part of the response and
+            // returns the socket to its keep-alive cache when the stream is closed
+            try {
+                in.close();
+            } finally {
+                lease.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,477 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Vector;
+
+import utils.log.BasicLogger;
+import utils.types.NameValuePair;
+
+import org.ribax.common.ConfigStrings;
+import org.ribax.common.Messages;
+import org.ribax.common.RIBAXConfig;
+
+/**
+ * A client side cache of web service responses such as Folder and Tab descriptions 
+ * and option lists.  Responses are held in memory and in a directory on disk so they
+ * survive a restart of the application, and are keyed by the URL and the parameters 
+ * of the request.  A response is only stored if the web service allows it, either 
+ * with Cache-Control/Expires headers or with an ETag or Last-Modified header that
+ * allows it to be revalidated with a conditional request.  A time to live can be set
+ * for a URL, or all the URLs that start with a prefix, which overrides the headers.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+public class HttpResponseCache {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.net.messages"; //$NON-NLS-1$
+    /** The default size in kilobytes of the in memory cache if none is configured */
+    public static final int DEFAULT_MEMORY_SIZE = 4096;
+    /** The largest response in bytes that is cached */
+    public static final int MAX_ENTRY_SIZE = 1024 * 1024;
+    /** The maximum number of responses held on disk */
+    static final int MAX_DISK_ENTRIES = 1000;
+    /* The singleton instance of the cache */
+    private static HttpResponseCache instance = null;
+    /* The responses held in memory in least recently used order */
+    private LinkedHashMap<String, CachedResponse> memory =
+            new LinkedHashMap<String, CachedResponse>(16, 0.75f, true);
+    /* The number of bytes held in memory */
+    private long memorySize = 0;
+    private long maxMemorySize;
+    /* The directory holding the cache files, null if responses are only held in memory */
+    private File dir;
+    /* The time to live overrides, URL prefix to seconds */
+    private Vector<NameValuePair> ttls = new Vector<NameValuePair>();
+    private static BasicLogger LOG = new BasicLogger(HttpResponseCache.class.getName());
+
+    /**
+     * Create a response cache.
+     *
+     * @param maxMemorySize the maximum number of bytes held in memory.
+     * @param dir the directory to hold the cache files or null to only hold responses
+     * in memory.
+     */
+    public HttpResponseCache(long maxMemorySize, File dir) {
+        this.maxMemorySize = maxMemorySize;
+        this.dir = dir;
+
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            LOG.error(Messages.getString(BUNDLE_NAME, "HttpResponseCache.0") + dir); //$NON-NLS-1$
+            this.dir = null;
+        }
+    }
+
+    /**
+     * Get the single instance of the cache.  The size of the in memory cache in
+     * kilobytes is taken from the HttpCacheMemorySize configuration property and the
+     * cache directory from the HttpCacheDir property, an empty HttpCacheDir only holds
+     * responses in memory.
+     *
+     * @return the cache instance.
+     */
+    public synchronized static HttpResponseCache getInstance() {
+        if (instance == null) {
+            RIBAXConfig config = RIBAXConfig.getInstance();
+            String path = (String) config.getValue(ConfigStrings.HTTP_CACHE_DIR,
+                    System.getProperty("user.home") + File.separator + ".ribax" //$NON-NLS-1$ //$NON-NLS-2$
+                    + File.separator + "cache"); //$NON-NLS-1$
+
+            instance = new HttpResponseCache(1024L * config.getIntValue(
+                    ConfigStrings.HTTP_CACHE_MEMORY_SIZE, DEFAULT_MEMORY_SIZE),
+                    path.length() == 0 ? null : new File(path));
+        }
+        return instance;
+    }
+
+    /**
+     * Get the cache key for a request.  The parameters are sorted so the same 
+     * parameters given in a different order have the same key.
+     *
+     * @param url the URL of the request.
+     * @param params the parameters of the request, may be null.
+     * @return the key or null if the request cannot be cached because it uploads a file.
+     */
+    public static String getKey(String url, ArrayList<NameValuePair> params) {
+        return getKey(url, params, null);
+    }
+
+    /**
+     * Get the cache key for a request with an Accept header.  A web service may send
+     * a different representation for each Accept header so the header is part of the key.
+     *
+     * @param url the URL of the request.
+     * @param params the parameters of the request, may be null.
+     * @param accept the Accept header of the request or null if it has none.
+     * @return the key or null if the request cannot be cached because it uploads a file.
+     */
+    public static String getKey(String url, ArrayList<NameValuePair> params, String accept) {
+        StringBuffer key = new StringBuffer(url);
+
+        if (accept != null) {
+            key.append("\nAccept: ").append(accept); //$NON-NLS-1$
+        }
+
+        if (params == null) {
+            return key.toString();
+        }
+
+        ArrayList<String> pairs = new ArrayList<String>();
+
+        for (NameValuePair pair : params) {
+            if (pair == null || pair.getName() == null || pair.getValue() == null) {
+                continue;
+            }
+            if ("file".equals(pair.getMimeType())) { //$NON-NLS-1$
+                return null;
+            }
+            pairs.add(pair.getName() + '=' + pair.getValue().toString());
+        }
+        Collections.sort(pairs);
+
+        for (String pair : pairs) {
+            key.append('\n').append(pair);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Set a time to live for the responses from a URL which overrides the Cache-Control
+     * and Expires headers of the responses.
+     *
+     * @param prefix the URL or the prefix of the URLs.
+     * @param seconds the time in seconds responses are used without revalidation, 0 to
+     * revalidate every time.
+     */
+    public synchronized void setTTL(String prefix, int seconds) {
+        for (Iterator<NameValuePair> it = ttls.iterator(); it.hasNext();) {
+            if (it.next().getName().equals(prefix)) {
+                it.remove();
+            }
+        }
+        ttls.add(new NameValuePair(prefix, new Integer(seconds)));
+    }
+
+    /**
+     * Get the time to live for the responses from a URL.  If more than one prefix
+     * matches the URL the longest prefix is used.
+     *
+     * @param url the URL.
+     * @return the time to live in seconds or -1 if none has been set.
+     */
+    public synchronized int getTTL(String url) {
+        int ttl = -1;
+        int length = -1;
+
+        for (NameValuePair pair : ttls) {
+            String prefix = pair.getName();
+
+            if (url.startsWith(prefix) && prefix.length() > length) {
+                length = prefix.length();
+                ttl = ((Integer) pair.getValue()).intValue();
+            }
+        }
+        return ttl;
+    }
+
+    /**
+     * Get a cached response.
+     *
+     * @param key the cache key of the request.
+     * @return the response or null if none is cached.
+     */
+    synchronized CachedResponse get(String key) {
+        CachedResponse response = memory.get(key);
+
+        if (response == null && dir != null) {
+            response = readFile(key);
+
+            if (response != null) {
+                putMemory(key, response);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Store a response.
+     *
+     * @param key the cache key of the request.
+     * @param response the response.
+     */
+    synchronized void put(String key, CachedResponse response) {
+        CachedResponse old = memory.remove(key);
+
+        if (old != null) {
+            memorySize -= old.getBody().length;
+        }
+        putMemory(key, response);
+
+        if (dir != null) {
+            writeFile(key, response);
+        }
+    }
+
+    /**
+     * Remove a response.
+     *
+     * @param key the cache key of the request.
+     */
+    synchronized void remove(String key) {
+        CachedResponse old = memory.remove(key);
+
+        if (old != null) {
+            memorySize -= old.getBody().length;
+        }
+        if (dir != null) {
+            getFile(key).delete();
+        }
+    }
+
+    /**
+     * Get the number of bytes held in memory.
+     *
+     * @return the size of the in memory cache in bytes.
+     */
+    public synchronized long getMemorySize() {
+        return memorySize;
+    }
+
+    /**
+     * Wrap a response stream so the response is stored when it has been read to the 
+     * end.  Responses larger than MAX_ENTRY_SIZE are not stored.
+     *
+     * @param in the response stream.
+     * @param key the cache key of the request.
+     * @param etag the ETag header of the response or null.
+     * @param lastModified the Last-Modified header of the response or null.
+     * @param expires the time the response expires.
+     * @return the wrapped stream.
+     */
+    InputStream record(InputStream in, String key, String etag, String lastModified, long expires) {
+        return new RecordingInputStream(in, key, etag, lastModified, expires);
+    }
+
+    /*
+     * Add a response to the in memory cache and evict the least recently used
+     * responses until the cache is within its size.
+     */
+    private void putMemory(String key, CachedResponse response) {
+        memory.put(key, response);
+        memorySize += response.getBody().length;
+
+        Iterator<CachedResponse> it = memory.values().iterator();
+
+        while (memorySize > maxMemorySize && it.hasNext()) {
+            memorySize -= it.next().getBody().length;
+            it.remove();
+        }
+    }
+
+    /*
+     * Get the cache file for a key.
+     */
+    private File getFile(String key) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+            StringBuffer name = new StringBuffer();
+
+            for (byte b : md.digest(key.getBytes("UTF-8"))) { //$NON-NLS-1$
+                name.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return new File(dir, name.toString());
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform supports SHA-1
+            throw new IllegalStateException(ex);
+        } catch (IOException ex) {
+            // every Java platform supports UTF-8
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /*
+     * Read a response from its cache file.
+     */
+    private CachedResponse readFile(String key) {
+        File file = getFile(key);
+
+        if (!file.exists()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            return CachedResponse.read(in, key);
+        } catch (IOException ex) {
+            LOG.error(Messages.getString(BUNDLE_NAME, "HttpResponseCache.1") + file, ex); //$NON-NLS-1$
+            file.delete();
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /*
+     * Write a response to its cache file and remove the oldest files if there
+     * are too many.
+     */
+    private void writeFile(String key, CachedResponse response) {
+        File file = getFile(key);
+        DataOutputStream out = null;
+
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            response.write(out, key);
+            out.close();
+            out = null;
+        } catch (IOException ex) {
+            LOG.error(Messages.getString(BUNDLE_NAME, "HttpResponseCache.2") + file, ex); //$NON-NLS-1$
+            close(out);
+            file.delete();
+            return;
+        }
+
+        File[] files = dir.listFiles();
+
+        if (files != null && files.length > MAX_DISK_ENTRIES) {
+            Arrays.sort(files, new Comparator<File>() {
+
+                public int compare(File f1, File f2) {
+                    long diff = f1.lastModified() - f2.lastModified();
+
+                    return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+                }
+            });
+            for (int i = 0; i < files.length - MAX_DISK_ENTRIES; i++) {
+                files[i].delete();
+            }
+        }
+    }
+
+    /*
+     * Close a stream ignoring any error.
+     */
+    private static void close(Closeable c) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException ex) {
+            }
+        }
+    }
+
+    /**
+     * A stream that copies the response as it is read and stores it in the cache 
+     * when the end of the response is reached.
+     */
+    private class RecordingInputStream extends FilterInputStream {
+
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private String key;
+        private String etag;
+        private String lastModified;
+        private long expires;
+
+        RecordingInputStream(InputStream in, String key, String etag, String lastModified, long expires) {
+            super(in);
+            this.key = key;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expires = expires;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+
+            if (c < 0) {
+                store();
+            } else if (copy != null) {
+                copy.write(c);
+                checkSize();
+            }
+            return c;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+
+            if (n < 0) {
+                store();
+            } else if (copy != null) {
+                copy.write(b, off, n);
+                checkSize();
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // the copy would have a gap so the response is not stored
+            copy = null;
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void checkSize() {
+            if (copy.size() > MAX_ENTRY_SIZE) {
+                copy = null;
+            }
+        }
+
+        private void store() {
+            if (copy != null) {
+                put(key, new CachedResponse(copy.toByteArray(), etag, lastModified, expires));
+                copy = null;
+            }
+        }
+    }
+}
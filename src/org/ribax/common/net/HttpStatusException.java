@@ -0,0 +1,69 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a web service replies with an HTTP status other than OK.  The status
+ * lets a caller tell a web service that is failing or overloaded, which is worth
+ * retrying later, from a request the web service has rejected.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+public class HttpStatusException extends IOException {
+
+    public static final long serialVersionUID = 1;
+    /* The HTTP status of the reply */
+    private int status;
+
+    /**
+     * Create an exception for a reply.
+     *
+     * @param status the HTTP status of the reply.
+     * @param message the message.
+     */
+    public HttpStatusException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * Get the HTTP status of the reply.
+     *
+     * @return the status code.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Test whether the status shows the web service is failing or overloaded rather
+     * than rejecting the request, i.e. a 5xx status or 429 Too Many Requests.
+     *
+     * @return true if the request may succeed later.
+     */
+    public boolean isServerError() {
+        return status >= 500 || status == 429;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tracks the recent latencies of the requests to each URL.  The last samples of each
+ * URL are kept in a ring so the percentiles follow changes in the speed of the web
+ * service, the URLs that have not been used recently are forgotten.  The query of a
+ * URL is not part of its key.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.net.HedgePolicy
+ */
+public class LatencyTracker {
+
+    /** The default number of samples kept for each URL */
+    public static final int DEFAULT_SAMPLES = 100;
+    /** The number of samples a URL needs before its percentiles are known */
+    public static final int MIN_SAMPLES = 10;
+    /** The number of URLs that are tracked */
+    static final int MAX_URLS = 256;
+    /* The number of samples kept for each URL */
+    private int size;
+    /* The samples keyed by URL in least recently used order */
+    private LinkedHashMap<String, Window> windows = new LinkedHashMap<String, Window>(16, 0.75f, true) {
+
+        public static final long serialVersionUID = 1;
+
+        protected boolean removeEldestEntry(Map.Entry<String, Window> eldest) {
+            return size() > MAX_URLS;
+        }
+    };
+
+    /**
+     * Create a tracker that keeps the default number of samples.
+     */
+    public LatencyTracker() {
+        this(DEFAULT_SAMPLES);
+    }
+
+    /**
+     * Create a tracker.
+     *
+     * @param size the number of samples kept for each URL.
+     */
+    public LatencyTracker(int size) {
+        this.size = Math.max(MIN_SAMPLES, size);
+    }
+
+    /**
+     * Record the latency of a request.
+     *
+     * @param url the URL of the request.
+     * @param millis the time in milliseconds the request took.
+     */
+    public synchronized void record(String url, long millis) {
+        String key = getKey(url);
+        Window window = windows.get(key);
+
+        if (window == null) {
+            window = new Window(size);
+            windows.put(key, window);
+        }
+        window.add(millis);
+    }
+
+    /**
+     * Get a percentile of the recent latencies of a URL.
+     *
+     * @param url the URL.
+     * @param percentile the percentile between 0 and 100, e.g. 95.
+     * @return the latency in milliseconds or -1 if there are too few samples.
+     */
+    public synchronized long getPercentile(String url, double percentile) {
+        Window window = windows.get(getKey(url));
+
+        if (window == null || window.count < MIN_SAMPLES) {
+            return -1;
+        }
+
+        long[] sorted = new long[window.count];
+
+        System.arraycopy(window.samples, 0, sorted, 0, window.count);
+        Arrays.sort(sorted);
+
+        int i = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+
+        return sorted[Math.max(0, Math.min(i, sorted.length - 1))];
+    }
+
+    /**
+     * Get the number of samples held for a URL.
+     *
+     * @param url the URL.
+     * @return the number of samples.
+     */
+    public synchronized int getCount(String url) {
+        Window window = windows.get(getKey(url));
+
+        return window == null ? 0 : window.count;
+    }
+
+    private static String getKey(String url) {
+        int query = url.indexOf('?');
+
+        return query < 0 ? url : url.substring(0, query);
+    }
+
+    /*
+     * The ring of samples of a URL.
+     */
+    private static class Window {
+
+        long[] samples;
+        int count = 0;
+        int next = 0;
+
+        Window(int size) {
+            samples = new long[size];
+        }
+
+        void add(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Hashtable;
+
+import org.ribax.common.Messages;
+
+/**
+ * Reads the parts of a multipart/mixed body one at a time as they arrive.  The
+ * body must start with the first delimiter line, the boundary is taken from that
+ * line so the reader does not need the Content-Type header of the response.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+public class MultipartReader {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.net.messages"; //$NON-NLS-1$
+    /* The stream the body is read from */
+    private InputStream in;
+    /* The delimiter line that separates the parts, without the line terminator */
+    private String delimiter;
+    /* The headers of the current part, keyed by the lower case header name */
+    private Hashtable<String, String> headers = new Hashtable<String, String>();
+    /* The body of the current part */
+    private byte[] body = null;
+    /* true once the close delimiter has been read */
+    private boolean finished = false;
+
+    /**
+     * Create a reader and read the first delimiter line from the stream.
+     *
+     * @param in the stream to read the multipart body from.
+     * @throws IOException if the stream does not start with a delimiter line.
+     */
+    public MultipartReader(InputStream in) throws IOException {
+        this.in = new BufferedInputStream(in);
+
+        String line;
+
+        // skip any blank lines before the first delimiter
+        do {
+            byte[] b = readLine();
+
+            if (b == null) {
+                throw new IOException(Messages.getString(BUNDLE_NAME, "MultipartReader.0")); //$NON-NLS-1$
+            }
+            line = trim(b);
+        } while (line.length() == 0);
+
+        if (!line.startsWith("--") || line.length() == 2) { //$NON-NLS-1$
+            throw new IOException(Messages.getString(BUNDLE_NAME, "MultipartReader.0")); //$NON-NLS-1$
+        }
+        delimiter = line;
+    }
+
+    /**
+     * Read the next part.  The method blocks until the whole of the part has arrived.
+     *
+     * @return true if a part was read, false if there are no more parts.
+     * @throws IOException if the stream ends before the close delimiter.
+     */
+    public boolean next() throws IOException {
+        headers.clear();
+        body = null;
+
+        if (finished) {
+            return false;
+        }
+
+        // read the part headers up to the blank line
+        byte[] b;
+        String line;
+
+        while ((b = readLine()) != null && (line = trim(b)).length() > 0) {
+            int colon = line.indexOf(':');
+
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(),
+                        line.substring(colon + 1).trim());
+            }
+        }
+        if (b == null) {
+            throw new IOException(Messages.getString(BUNDLE_NAME, "MultipartReader.1")); //$NON-NLS-1$
+        }
+
+        // read the body up to the next delimiter, the line break before the
+        // delimiter belongs to the delimiter
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int pending = 0;
+
+        while ((b = readLine()) != null) {
+            line = trim(b);
+
+            if (line.startsWith(delimiter)) {
+                String rest = line.substring(delimiter.length());
+
+                if (rest.length() == 0 || rest.equals("--")) { //$NON-NLS-1$
+                    finished = rest.length() > 0;
+
+                    byte[] data = out.toByteArray();
+                    body = new byte[data.length - pending];
+                    System.arraycopy(data, 0, body, 0, body.length);
+                    return true;
+                }
+            }
+            out.write(b, 0, b.length);
+            pending = (b.length > 1 && b[b.length - 2] == '\r') ? 2 : 1;
+        }
+        throw new IOException(Messages.getString(BUNDLE_NAME, "MultipartReader.1")); //$NON-NLS-1$
+    }
+
+    /**
+     * Get a header of the current part.
+     *
+     * @param name the name of the header, which is not case sensitive.
+     * @return the value of the header or null if the part does not have the header.
+     */
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    /**
+     * Get the body of the current part.
+     *
+     * @return the body or null if there is no current part.
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /*
+     * Read a line including its line terminator.  The last line of the stream may
+     * not have a terminator.
+     *
+     * @return the line or null at the end of the stream.
+     */
+    private byte[] readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int c;
+
+        while ((c = in.read()) != -1) {
+            line.write(c);
+
+            if (c == '\n') {
+                break;
+            }
+        }
+        if (c == -1 && line.size() == 0) {
+            return null;
+        }
+        return line.toByteArray();
+    }
+
+    /*
+     * Convert a line to a String without its line terminator and trailing white space.
+     */
+    private static String trim(byte[] line) {
+        int len = line.length;
+
+        while (len > 0 && (line[len - 1] == '\n' || line[len - 1] == '\r'
+                || line[len - 1] == ' ' || line[len - 1] == '\t')) {
+            len--;
+        }
+        try {
+            return new String(line, 0, len, "ISO-8859-1"); //$NON-NLS-1$
+        } catch (UnsupportedEncodingException ex) {
+            return new String(line, 0, len);
+        }
+    }
+}
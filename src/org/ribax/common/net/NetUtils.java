@@ -7,6 +7,8 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Hashtable;
 
 import org.ribax.common.ConfigStrings;
 import org.ribax.common.Messages;
@@ -39,6 +41,65 @@ public class NetUtils {
      * @throws IOException if an IO error occurs
      */
     public static InputStream getInputStream(String url, ArrayList<NameValuePair> params, String name) throws IOException {
+        return getInputStream(url, params, name, null);
+    }
+
+    /**
+     * Get an input stream to read from a web service in a request that only reads data,
+     * so the request may be retried if it fails.  Use getInputStream() for a request
+     * that may change data on the server.
+     * 
+     * @param url the URL of the web service.
+     * @param params a set of parameters to post to the web service.
+     * @param name the name of the Object opening the stream (for debugging).
+     * @return the input stream ready for reading 
+     * @throws IOException if an IO error occurs
+     */
+    public static InputStream loadInputStream(final String url, final ArrayList<NameValuePair> params,
+            final String name) throws IOException {
+
+        DataRequest<InputStream> request = new DataRequest<InputStream>(0) {
+
+            protected InputStream call() throws Exception {
+                return getInputStream(url, params, name, this);
+            }
+        };
+
+        request.setIdempotent(true);
+        request.run();
+
+        return request.getResult();
+    }
+
+    /**
+     * Get an input stream to read from a web service for a request that can be cancelled.
+     * 
+     * @param url the URL of the web service.
+     * @param params a set of parameters to post to the web service.
+     * @param name the name of the Object opening the stream (for debugging).
+     * @param request the request the stream is opened for, null if it cannot be cancelled.
+     * @return the input stream ready for reading 
+     * @throws IOException if an IO error occurs or the request is cancelled
+     */
+    public static InputStream getInputStream(String url, ArrayList<NameValuePair> params,
+            String name, DataRequest<?> request) throws IOException {
+        return getInputStream(url, params, name, request, null);
+    }
+
+    /**
+     * Get an input stream to read from a web service with extra request headers.
+     * 
+     * @param url the URL of the web service.
+     * @param params a set of parameters to post to the web service.
+     * @param name the name of the Object opening the stream (for debugging).
+     * @param request the request the stream is opened for, null if it cannot be cancelled.
+     * @param headers the headers to add to the request or null.
+     * @return the input stream ready for reading 
+     * @throws IOException if an IO error occurs or the request is cancelled
+     */
+    public static InputStream getInputStream(String url, ArrayList<NameValuePair> params,
+            String name, DataRequest<?> request, Hashtable<String, String> headers)
+            throws IOException {
         ArrayList<NameValuePair> tlist;
 
         if (params == null) {
@@ -57,16 +118,54 @@ public class NetUtils {
         // get a data source for the given URL
         DataSource dataSource = DataSourceFactory.getDataSource(url, name);
 
+        // retry web service requests that fail and stop sending requests to a
+        // host that keeps failing
+        if (dataSource instanceof WebDataSource) {
+            dataSource = new ResilientDataSource(dataSource, url, name);
+        }
+
+        if (headers != null) {
+            for (Enumeration<String> e = headers.keys(); e.hasMoreElements();) {
+                String header = e.nextElement();
+                dataSource.setHeader(header, headers.get(header));
+            }
+        }
+
         try {
             // get the input stream and return it
-            return dataSource.getInputStream(params);
+            return dataSource.getInputStream(params, request);
 
         } catch (IOException ex) {
-            LOG.error(Messages.getString(BUNDLE_NAME, "NetUtils.0") + url, ex); //$NON-NLS-1$
+            // a cancelled request is not an error
+            if (request == null || !request.isCancelled()) {
+                LOG.error(Messages.getString(BUNDLE_NAME, "NetUtils.0") + url, ex); //$NON-NLS-1$
+            }
             throw (ex);
         }
     }
 
+    /**
+     * Start opening an input stream to read from a web service on a worker thread.
+     * The stream is collected from the returned request once it is open.
+     * 
+     * @param url the URL of the web service.
+     * @param params a set of parameters to post to the web service.
+     * @param name the name of the Object opening the stream (for debugging).
+     * @param timeout the time in milliseconds to wait for the stream to open before
+     * the request is cancelled, 0 to wait forever.
+     * @return the request that is opening the stream.
+     */
+    public static DataRequest<InputStream> getInputStreamAsync(final String url,
+            final ArrayList<NameValuePair> params, final String name, long timeout) {
+
+        return new DataRequest<InputStream>(timeout) {
+
+            protected InputStream call() throws Exception {
+                return getInputStream(url, params, name, this);
+            }
+        }.start();
+    }
+
      private static void nullParameterWarning(NameValuePair pair) {
         if (pair == null) {
             LOG.warning("parameter NameValuePair is null");
@@ -94,7 +193,7 @@ public class NetUtils {
         HTTPmultipart mp = null;
         ArrayList<Part> content = new ArrayList<Part>();
 
-        int length = 0;
+        long length = 0;
 
         if (params != null && params.size() > 0) {
             mp = new HTTPmultipart();
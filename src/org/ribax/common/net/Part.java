@@ -39,7 +39,7 @@ public abstract class Part {
      * Returns the length of this part including the headers
      * @return the length of this part including the headers
      */
-    protected abstract int getContentLength();
+    protected abstract long getContentLength();
 
     /**
      * Returns the length of the headers
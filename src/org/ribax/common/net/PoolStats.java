@@ -0,0 +1,78 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+/**
+ * A snapshot of the statistics for a route or all routes of an HttpConnectionPool.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+public class PoolStats {
+
+    /** The route these statistics are for or null for all routes */
+    public String route;
+    /** The number of responses currently open */
+    public int leased = 0;
+    /** The number of requests currently waiting for a response */
+    public int waiting = 0;
+    /** The number of requests that have been sent */
+    public long requests = 0;
+    /** The number of requests sent over the route limit after waiting for a permit */
+    public long overLimit = 0;
+    /** The state of the circuit breaker of the route, null if it has none or for all routes */
+    public String circuit = null;
+    /** The number of requests that failed at once because the circuit was open */
+    public long rejected = 0;
+    /** The number of requests that have been retried */
+    public long retries = 0;
+
+    /**
+     * Create an empty set of statistics.
+     *
+     * @param route the route these statistics are for or null for all routes.
+     */
+    public PoolStats(String route) {
+        this.route = route;
+    }
+
+    /**
+     * Add the statistics of another route to these statistics.
+     *
+     * @param other the statistics to add.
+     */
+    public void add(PoolStats other) {
+        leased += other.leased;
+        waiting += other.waiting;
+        requests += other.requests;
+        overLimit += other.overLimit;
+        rejected += other.rejected;
+        retries += other.retries;
+    }
+
+    public String toString() {
+        return (route == null ? "all routes" : route) + " leased:" + leased + " waiting:" + waiting //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                + " requests:" + requests + " overLimit:" + overLimit //$NON-NLS-1$ //$NON-NLS-2$
+                + (circuit == null ? "" : " circuit:" + circuit) //$NON-NLS-1$ //$NON-NLS-2$
+                + " rejected:" + rejected + " retries:" + retries; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import utils.types.NameValuePair;
+
+/**
+ * A data source for a web service that pushes updates as a text/event-stream
+ * (Server-Sent Events).  The URL has the scheme sse: or push: followed by the http
+ * or https URL of the stream, e.g. <tt>sse:https://host/prices</tt>, or the host
+ * and path, e.g. <tt>sse://host/prices</tt>, for an http stream.  The stream is
+ * requested with an Accept header of text/event-stream, it is never cached or
+ * compressed so each event is read as soon as it arrives.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.net.EventStreamReader
+ * @see org.ribax.common.data.EventBlockReader
+ */
+public class PushDataSource implements DataSource {
+
+    /* The web data source that opens the stream */
+    private WebDataSource source;
+
+    /**
+     * Create a data source for an event stream.
+     *
+     * @param url the sse: or push: URL of the stream.
+     * @param name the name of the Object opening the stream (for debugging).
+     */
+    public PushDataSource(String url, String name) {
+        source = new WebDataSource(getHttpURL(url), name, HttpConnectionPool.getInstance(), null);
+
+        source.setHeader("Accept", EventStreamReader.MIME_TYPE); //$NON-NLS-1$
+        source.setHeader("Cache-Control", "no-cache"); //$NON-NLS-1$ //$NON-NLS-2$
+        source.setHeader("Accept-Encoding", "identity"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Test whether a URL is the URL of an event stream.
+     *
+     * @param url the URL.
+     * @return true if the URL has the sse: or push: scheme.
+     */
+    public static boolean isPushURL(String url) {
+        if (url == null) {
+            return false;
+        }
+        String burl = url.trim().toLowerCase();
+
+        return burl.startsWith("sse:") || burl.startsWith("push:"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Get the http or https URL of an event stream.
+     *
+     * @param url the sse: or push: URL of the stream.
+     * @return the URL the stream is requested from.
+     */
+    public static String getHttpURL(String url) {
+        url = url.trim();
+
+        String rest = url.substring(url.indexOf(':') + 1);
+
+        if (rest.startsWith("//")) { //$NON-NLS-1$
+            return "http:" + rest; //$NON-NLS-1$
+        }
+        return rest;
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.common.net.DataSource#setHeader(java.lang.String, java.lang.String)
+     */
+    public void setHeader(String name, String value) {
+        source.setHeader(name, value);
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.common.net.DataSource#getInputStream(java.util.ArrayList)
+     */
+    public InputStream getInputStream(ArrayList<NameValuePair> params) throws IOException {
+        return source.getInputStream(params);
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.common.net.DataSource#getInputStream(java.util.ArrayList, org.ribax.common.net.DataRequest)
+     */
+    public InputStream getInputStream(ArrayList<NameValuePair> params, DataRequest<?> request)
+            throws IOException {
+        return source.getInputStream(params, request);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+
+import org.ribax.common.ConfigStrings;
+import org.ribax.common.Messages;
+import org.ribax.common.RIBAXConfig;
+
+import utils.log.BasicLogger;
+import utils.types.NameValuePair;
+
+/**
+ * A DataSource that wraps the DataSource of a web service with bounded retries and a
+ * circuit breaker shared by all the requests to the same host.  A request that fails
+ * because the web service could not be reached, or replied that it is failing or
+ * overloaded, is retried after a random delay that doubles after each attempt.  Only
+ * requests marked idempotent are retried, a submission or a request that uploads
+ * files is sent once.  While the circuit of the host is open requests fail at once and
+ * a cacheable request that cannot be answered is given the cached response of the
+ * same request if there is one, even if it has expired.  A submission is never given
+ * a cached response.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.net.CircuitBreaker
+ */
+public class ResilientDataSource implements DataSource {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.net.messages"; //$NON-NLS-1$
+    /** The default number of times a request is retried if none is configured */
+    public static final int DEFAULT_RETRY_ATTEMPTS = 2;
+    /** The default delay in milliseconds before the first retry if none is configured */
+    public static final int DEFAULT_RETRY_DELAY = 250;
+    /** The default maximum delay in milliseconds between retries if none is configured */
+    public static final int DEFAULT_RETRY_MAX_DELAY = 2000;
+    /* The data source the requests are sent to */
+    private DataSource source;
+    private String url;
+    private String name;
+    /* The circuit breaker of the host */
+    private CircuitBreaker breaker;
+    /* The cache of responses used when the web service cannot answer, may be null */
+    private HttpResponseCache cache;
+    /* The Accept header sent to the web service, part of the cache key */
+    private String accept = null;
+    /* The number of times a request is retried */
+    private int attempts;
+    /* The delay before the first retry and the largest delay */
+    private long delay;
+    private long maxDelay;
+    private static BasicLogger LOG = new BasicLogger(ResilientDataSource.class.getName());
+
+    /**
+     * Wrap a data source with the breaker for the host of the URL, the shared response
+     * cache and the HttpRetryAttempts, HttpRetryDelay and HttpRetryMaxDelay configuration
+     * properties.
+     *
+     * @param source the data source of the web service.
+     * @param url the URL of the web service.
+     * @param name the name of the Object opening the stream (for debugging).
+     * @throws IOException if the URL is not valid.
+     */
+    public ResilientDataSource(DataSource source, String url, String name) throws IOException {
+        this(source, url, name, CircuitBreaker.getInstance(new URL(url)), HttpResponseCache.getInstance(),
+                RIBAXConfig.getInstance().getIntValue(ConfigStrings.HTTP_RETRY_ATTEMPTS,
+                DEFAULT_RETRY_ATTEMPTS),
+                RIBAXConfig.getInstance().getIntValue(ConfigStrings.HTTP_RETRY_DELAY, DEFAULT_RETRY_DELAY),
+                RIBAXConfig.getInstance().getIntValue(ConfigStrings.HTTP_RETRY_MAX_DELAY,
+                DEFAULT_RETRY_MAX_DELAY));
+    }
+
+    /**
+     * Wrap a data source.
+     *
+     * @param source the data source of the web service.
+     * @param url the URL of the web service.
+     * @param name the name of the Object opening the stream (for debugging).
+     * @param breaker the circuit breaker of the host.
+     * @param cache the cache of responses to use when the web service cannot answer,
+     * null to never use cached responses.
+     * @param attempts the number of times a request is retried, 0 to never retry.
+     * @param delay the delay in milliseconds before the first retry.
+     * @param maxDelay the largest delay in milliseconds between retries.
+     */
+    public ResilientDataSource(DataSource source, String url, String name, CircuitBreaker breaker,
+            HttpResponseCache cache, int attempts, long delay, long maxDelay) {
+        this.source = source;
+        this.url = url;
+        this.name = name;
+        this.breaker = breaker;
+        this.cache = cache;
+        this.attempts = attempts;
+        this.delay = delay;
+        this.maxDelay = maxDelay;
+    }
+
+    public void setHeader(String name, String value) {
+        source.setHeader(name, value);
+
+        // the cached responses are keyed by the Accept header
+        if ("Accept".equalsIgnoreCase(name)) { //$NON-NLS-1$
+            accept = value;
+        }
+    }
+
+    public InputStream getInputStream(ArrayList<NameValuePair> params) throws IOException {
+        return getInputStream(params, null);
+    }
+
+    public InputStream getInputStream(ArrayList<NameValuePair> params, DataRequest<?> request)
+            throws IOException {
+
+        // a request that uploads a file has no cache key and is never sent twice
+        String key = HttpResponseCache.getKey(url, params, accept);
+        int retries = key == null || request == null || !request.isIdempotent() ? 0 : attempts;
+
+        // only the response of a cacheable request may be replaced by a cached response
+        if (request == null || !request.isCacheable()) {
+            key = null;
+        }
+        Backoff backoff = new Backoff(delay, maxDelay, retries);
+
+        while (true) {
+            if (!breaker.allowRequest()) {
+                return getCached(key, new IOException(
+                        Messages.getString(BUNDLE_NAME, "ResilientDataSource.0") + url)); //$NON-NLS-1$
+            }
+
+            try {
+                InputStream in = source.getInputStream(params, request);
+
+                breaker.success();
+                return in;
+            } catch (IOException ex) {
+                // a cancelled request is not a failure of the web service
+                if (request != null && request.isCancelled()) {
+                    throw ex;
+                }
+                // the web service answered and rejected the request
+                if (ex instanceof HttpStatusException && !((HttpStatusException) ex).isServerError()) {
+                    breaker.success();
+                    throw ex;
+                }
+                breaker.failure();
+
+                long wait = retries > 0 ? backoff.nextDelay() : -1;
+
+                if (wait < 0) {
+                    return getCached(key, ex);
+                }
+                LOG.warning(name + Messages.getString(BUNDLE_NAME, "ResilientDataSource.1") + wait //$NON-NLS-1$
+                        + " " + url + " " + ex.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+                breaker.retried();
+                pause(wait, request);
+            }
+        }
+    }
+
+    /*
+     * Get the cached response of a request that cannot be answered.
+     *
+     * @throws IOException the reason the request cannot be answered if there is no
+     * cached response.
+     */
+    private InputStream getCached(String key, IOException ex) throws IOException {
+        CachedResponse cached = key == null || cache == null ? null : cache.get(key);
+
+        if (cached == null) {
+            throw ex;
+        }
+        LOG.warning(name + Messages.getString(BUNDLE_NAME, "ResilientDataSource.2") + url //$NON-NLS-1$
+                + " " + ex.getMessage()); //$NON-NLS-1$
+        return new ByteArrayInputStream(cached.getBody());
+    }
+
+    /*
+     * Wait before a retry, the wait ends early if the request is cancelled.
+     */
+    private void pause(long wait, DataRequest<?> request) throws IOException {
+        Pause pause = new Pause();
+
+        if (request != null) {
+            request.register(pause);
+        }
+        pause.sleep(wait);
+
+        if (request != null && request.isCancelled()) {
+            throw new InterruptedIOException(request.getCancelMessage());
+        }
+    }
+
+    /*
+     * A wait that is ended by closing it.
+     */
+    private static class Pause implements Closeable {
+
+        private boolean closed = false;
+
+        synchronized void sleep(long wait) throws InterruptedIOException {
+            long end = System.currentTimeMillis() + wait;
+
+            try {
+                while (!closed && wait > 0) {
+                    wait(wait);
+                    wait = end - System.currentTimeMillis();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(ex.getMessage());
+            }
+        }
+
+        public synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+    }
+}
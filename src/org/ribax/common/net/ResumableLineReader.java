@@ -0,0 +1,136 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+
+import org.ribax.common.Messages;
+
+import utils.log.BasicLogger;
+import utils.types.NameValuePair;
+
+/**
+ * Reads the lines of a never ending text stream from a web service, such as the
+ * streams of the text, info and editor DataItems, and reconnects if the connection
+ * drops.  A line stream has no sequence numbers so a reconnected stream starts
+ * again from the beginning, the web service should start each stream with a line
+ * that begins with the EOT character so the text is replaced rather than appended.
+ * A stream that ends without an error has finished and is not reconnected.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+public class ResumableLineReader extends ResumableStream {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.net.messages"; //$NON-NLS-1$
+    /* The parameters to post to the web service */
+    private ArrayList<NameValuePair> params;
+    /* The reader on the current connection */
+    private volatile BufferedReader reader = null;
+    private static BasicLogger LOG = new BasicLogger(ResumableLineReader.class.getName());
+
+    /**
+     * Connect to a line stream with the configured reconnection delays.
+     *
+     * @param url the URL of the web service.
+     * @param params the parameters to post to the web service, may be null.
+     * @param name the name of the Object reading the stream (for debugging).
+     * @throws IOException if the stream cannot be opened.
+     */
+    public ResumableLineReader(String url, ArrayList<NameValuePair> params, String name)
+            throws IOException {
+        this(url, params, name, null, new Backoff());
+    }
+
+    /**
+     * Connect to a line stream.
+     *
+     * @param url the URL of the web service.
+     * @param params the parameters to post to the web service, may be null.
+     * @param name the name of the Object reading the stream (for debugging).
+     * @param request the request the stream is read for, null if it cannot be cancelled.
+     * @param backoff the delays between attempts to reconnect.
+     * @throws IOException if the stream cannot be opened.
+     */
+    public ResumableLineReader(String url, ArrayList<NameValuePair> params, String name,
+            DataRequest<?> request, Backoff backoff) throws IOException {
+        super(url, name, request, backoff);
+        this.params = params;
+
+        open();
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.common.net.ResumableStream#open()
+     */
+    protected void open() throws IOException {
+        // the parameters are copied as the base parameters are added to them
+        ArrayList<NameValuePair> list = params == null ? null : new ArrayList<NameValuePair>(params);
+
+        reader = new BufferedReader(new InputStreamReader(
+                NetUtils.getInputStream(url, list, name, request)));
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.common.net.ResumableStream#closeConnection()
+     */
+    protected void closeConnection() {
+        try {
+            reader.close();
+        } catch (IOException ex) {
+        }
+    }
+
+    /**
+     * Read the next line, reconnecting if the connection drops.  This call blocks
+     * until a line has arrived.
+     *
+     * @return the line without its line terminator or null if the stream has finished,
+     * the reader has been closed or the stream could not be reconnected.
+     */
+    public String readLine() {
+        while (!isClosed()) {
+            try {
+                String line = reader.readLine();
+
+                if (line != null) {
+                    backoff.reset();
+                }
+                return line;
+            } catch (IOException ex) {
+                if (isClosed()) {
+                    break;
+                }
+                LOG.warning(name + Messages.getString(BUNDLE_NAME, "ResumableLineReader.0") + url //$NON-NLS-1$
+                        + " " + ex.getMessage()); //$NON-NLS-1$
+            }
+
+            if (!reconnect(-1)) {
+                break;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.io.IOException;
+
+import org.ribax.common.Messages;
+
+import utils.log.BasicLogger;
+
+/**
+ * A base class for readers of long lived streams that reconnect when the connection
+ * drops.  The attempts to reconnect are spaced by a Backoff and stop when the
+ * reader is closed, its request is cancelled or the Backoff gives up.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.net.Backoff
+ */
+public abstract class ResumableStream {
+
+    private static final String BUNDLE_NAME = "org.ribax.common.net.messages"; //$NON-NLS-1$
+    /** The URL of the stream */
+    protected String url;
+    /** The name of the Object reading the stream (for debugging) */
+    protected String name;
+    /** The request the stream is read for, null if it cannot be cancelled */
+    protected DataRequest<?> request;
+    /** The delays between attempts to reconnect */
+    protected Backoff backoff;
+    /* true once the reader has been closed */
+    private volatile boolean closed = false;
+    /* The number of times the stream has been reconnected */
+    private int reconnects = 0;
+    private static BasicLogger LOG = new BasicLogger(ResumableStream.class.getName());
+
+    /**
+     * Create a reader on a stream.  The sub class opens the first connection.
+     *
+     * @param url the URL of the stream.
+     * @param name the name of the Object reading the stream (for debugging).
+     * @param request the request the stream is read for, null if it cannot be cancelled.
+     * @param backoff the delays between attempts to reconnect.
+     */
+    protected ResumableStream(String url, String name, DataRequest<?> request, Backoff backoff) {
+        this.url = url;
+        this.name = name;
+        this.request = request;
+        this.backoff = backoff;
+    }
+
+    /**
+     * Open a connection to the stream, resuming from the last data that was read if
+     * this is not the first connection.
+     *
+     * @throws IOException if the connection cannot be opened.
+     */
+    protected abstract void open() throws IOException;
+
+    /**
+     * Close the current connection to the stream.
+     */
+    protected abstract void closeConnection();
+
+    /**
+     * Close the current connection and open a new one, waiting between the attempts.
+     *
+     * @param delay the time in milliseconds to wait before the first attempt, or -1 to
+     * take the first delay from the Backoff.
+     * @return true if the stream has been reconnected, false if the reader has been
+     * closed or the Backoff has given up.
+     */
+    protected boolean reconnect(long delay) {
+        closeConnection();
+
+        while (!isClosed()) {
+            if (delay < 0 && (delay = backoff.nextDelay()) < 0) {
+                LOG.warning(name + Messages.getString(BUNDLE_NAME, "ResumableStream.0") + url); //$NON-NLS-1$
+                return false;
+            }
+
+            synchronized (this) {
+                try {
+                    if (!isClosed()) {
+                        wait(delay);
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            if (isClosed()) {
+                return false;
+            }
+
+            try {
+                open();
+                reconnects++;
+                return true;
+            } catch (IOException ex) {
+                if (!isClosed()) {
+                    LOG.warning(name + Messages.getString(BUNDLE_NAME, "ResumableStream.1") + url //$NON-NLS-1$
+                            + " " + ex.getMessage()); //$NON-NLS-1$
+                }
+            }
+            delay = -1;
+        }
+        return false;
+    }
+
+    /**
+     * Test whether the reader has been closed or its request cancelled.
+     *
+     * @return true if the stream should no longer be read.
+     */
+    public boolean isClosed() {
+        return closed || (request != null && request.isCancelled());
+    }
+
+    /**
+     * Get the number of times the stream has been reconnected.
+     *
+     * @return the number of reconnections.
+     */
+    public int getReconnects() {
+        return reconnects;
+    }
+
+    /**
+     * Close the reader and the current connection.  A reader waiting to reconnect
+     * gives up.
+     */
+    public void close() {
+        closed = true;
+
+        // wake a reader waiting to reconnect
+        synchronized (this) {
+            notifyAll();
+        }
+        closeConnection();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+/**
+ * An event read from a text/event-stream by an EventStreamReader.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.net.EventStreamReader
+ */
+public class ServerEvent {
+
+    /** The type of an event that does not name its type */
+    public static final String MESSAGE = "message"; //$NON-NLS-1$
+    /* The last event ID when the event was dispatched, may be empty */
+    private String id;
+    /* The type of the event */
+    private String type;
+    /* The data of the event */
+    private String data;
+
+    /**
+     * Create an event.
+     *
+     * @param id the last event ID when the event was dispatched.
+     * @param type the type of the event.
+     * @param data the data of the event.
+     */
+    public ServerEvent(String id, String type, String data) {
+        this.id = id;
+        this.type = type;
+        this.data = data;
+    }
+
+    /**
+     * Get the last event ID when the event was dispatched.  This is the ID a client
+     * sends in the Last-Event-ID header to resume the stream after this event.
+     *
+     * @return the event ID, an empty String if the stream has not sent an ID.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get the type of the event.
+     *
+     * @return the type of the event, MESSAGE if the stream did not name a type.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Get the data of the event.  The data lines of the event are joined with line feeds.
+     *
+     * @return the data.
+     */
+    public String getData() {
+        return data;
+    }
+}
@@ -1,11 +1,8 @@
 package org.ribax.common.net;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.HttpURLConnection;
@@ -40,6 +37,8 @@ import org.jdom.JDOMException;
 import org.jdom.input.DOMBuilder;
 import org.jdom.input.SAXBuilder;
 import org.jdom.output.XMLOutputter;
+import org.ribax.common.log.RequestLog;
+import org.ribax.common.log.ResponseLog;
 
 
 import utils.types.NameValuePair;
@@ -47,8 +46,9 @@ import utils.types.NameValuePair;
 public class SoapClient {
 
     private static Logger LOG = Logger.getLogger(SoapClient.class.getName());
-    // TODO eliminate
-    private boolean debug = true;
+    private static final String NAME = "SoapClient"; //$NON-NLS-1$
+    private RequestLog requestLog = RequestLog.getInstance(SoapClient.class.getName());
+    private ResponseLog responseLog = ResponseLog.getInstance(SoapClient.class.getName());
 
     public SoapClient() {
         // We also have to set our logger to log finer-grained
@@ -79,15 +79,30 @@ public class SoapClient {
             ArrayList<NameValuePair> params)
             throws IOException {
 
-        InputStream stream = null;
-        URLConnection conn = null;
+        // an endpoint group is resolved to one of its endpoints
+        URL hp = new URL(EndpointGroup.resolve(serviceEndpoint));
 
-        URL hp = new URL(serviceEndpoint);
+        // lease a keep-alive connection from the pool, the lease is released when
+        // the response stream is closed
+        HttpConnectionPool.Lease lease = HttpConnectionPool.getInstance().lease(hp);
 
-        conn = hp.openConnection();
+        try {
+            return lease.wrap(getResponseStream(hp, methodName, soapAction, params));
+        } catch (IOException ex) {
+            lease.release();
+            throw ex;
+        } catch (RuntimeException ex) {
+            lease.release();
+            throw ex;
+        }
+    }
 
-        // we don't want the connection to stay alive
-        conn.setRequestProperty("Connection", "close");
+    private InputStream getResponseStream(URL hp, String methodName, String soapAction,
+            ArrayList<NameValuePair> params)
+            throws IOException {
+
+        InputStream stream = null;
+        URLConnection conn = hp.openConnection();
 
         conn.setDoOutput(true);
         conn.setDoInput(true);
@@ -154,34 +169,30 @@ public class SoapClient {
 
         byte[] pp = baos.toByteArray();
 
-        String pps = baos.toString();
-        System.out.println(pps);
+        if (requestLog.isDebugEnabled(NAME)) {
+            requestLog.debug(NAME, baos.toString());
+        }
 
         ostream.write(pp);
 
         ostream.close();
 
-        // if response logging is enabled then read the data into a
-        // string buffer and return a ByteArrayInputStream maximum size
-        // is 128KB
-        long outlength = 0;
 
         if (conn instanceof HttpURLConnection) {
             HttpURLConnection hc = (HttpURLConnection) conn;
 
             int status = hc.getResponseCode();
-            outlength = hc.getContentLength();
 
             if (status == HttpURLConnection.HTTP_OK) {
                 stream = conn.getInputStream();
             } else {
+                WebDataSource.discardErrorStream(hc);
                 throw new IOException("Post failed, response=" + hc.getResponseMessage());
             }
         } else if (conn instanceof HttpsURLConnection) {
             HttpsURLConnection hc = (HttpsURLConnection) conn;
 
             int status = hc.getResponseCode();
-            outlength = hc.getContentLength();
 
             if (status == HttpsURLConnection.HTTP_OK) {
                 stream = conn.getInputStream();
@@ -193,22 +204,10 @@ public class SoapClient {
             stream = conn.getInputStream();
         }
 
-        if (debug) {
-            if (outlength < 0) {
-                outlength = 8192;
-            }
-
-            StringBuffer sb = new StringBuffer((int) outlength);
-            String line;
-            BufferedReader bin = new BufferedReader(new InputStreamReader(stream));
-
-            while ((line = bin.readLine()) != null) {
-                sb.append(line);
-            }
-            String res = sb.toString();
-            LOG.fine(res);
-            stream = new ByteArrayInputStream(res.getBytes());
-
+        // if response logging is enabled then copy the start of the response
+        // to the log as the parser reads it
+        if (responseLog.isDebugEnabled(NAME)) {
+            stream = new TeeInputStream(stream, responseLog, NAME);
         }
         return stream;
     }
@@ -310,7 +309,7 @@ public class SoapClient {
             String methodName, String soapAction,
             ArrayList<NameValuePair> params) throws IOException {
 
-        Element env = getDocumentRoot(serviceEndpoint, methodName, soapAction, params);
+        Element env = getDocumentRoot(EndpointGroup.resolve(serviceEndpoint), methodName, soapAction, params);
 
         if (env == null) {
             return null;
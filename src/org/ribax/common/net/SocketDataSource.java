@@ -9,11 +9,15 @@ import java.util.Hashtable;
 import java.util.logging.Logger;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 
 
 import utils.types.NameValuePair;
 
+import org.ribax.common.ConfigStrings;
+import org.ribax.common.RIBAXConfig;
+
 /**
  * A class that implements a DataSource using TCP/IP sockets
  *
@@ -49,6 +53,11 @@ public class SocketDataSource implements DataSource {
 
     public InputStream getInputStream(ArrayList<NameValuePair> params)
             throws IOException {
+        return getInputStream(params, null);
+    }
+
+    public InputStream getInputStream(ArrayList<NameValuePair> params, DataRequest<?> request)
+            throws IOException {
         InputStream stream = null;
         OutputStream out;
 
@@ -66,7 +75,17 @@ public class SocketDataSource implements DataSource {
             return null;
         }
 
-        Socket sock = new Socket(host, port);
+        RIBAXConfig config = RIBAXConfig.getInstance();
+        Socket sock = new Socket();
+
+        // cancelling the request closes the socket which aborts a connect or read
+        if (request != null) {
+            request.register(sock);
+        }
+        sock.setSoTimeout(config.getIntValue(ConfigStrings.HTTP_READ_TIMEOUT,
+                WebDataSource.DEFAULT_READ_TIMEOUT) * 1000);
+        sock.connect(new InetSocketAddress(host, port), config.getIntValue(
+                ConfigStrings.HTTP_CONNECT_TIMEOUT, WebDataSource.DEFAULT_CONNECT_TIMEOUT) * 1000);
         stream = sock.getInputStream();
         out = sock.getOutputStream();
 
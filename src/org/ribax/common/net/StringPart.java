@@ -36,7 +36,7 @@ public class StringPart extends Part {
     /* (non-Javadoc)
      * @see org.ribax.datasources.Part#getContentLength()
      */
-    protected int getContentLength() {
+    protected long getContentLength() {
         return getHeaderLength() + content.length;
     }
 
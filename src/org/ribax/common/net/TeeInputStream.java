@@ -0,0 +1,158 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.ribax.common.ConfigStrings;
+import org.ribax.common.Messages;
+import org.ribax.common.RIBAXConfig;
+import org.ribax.common.data.DataModelScheduler;
+
+import utils.log.BasicLogger;
+
+/**
+ * A stream that passes the data it reads straight through to the reader while
+ * copying the first part of the data to a log.  The copy is written to the log on
+ * a worker thread once the prefix is full or the stream ends, so logging a response
+ * neither delays the parser nor holds the whole response in memory.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+public class TeeInputStream extends FilterInputStream {
+
+    /** The default size in KB of the data copied to the log if none is configured */
+    public static final int DEFAULT_CAPTURE_SIZE = 64;
+    private static final String BUNDLE_NAME = "org.ribax.common.net.messages"; //$NON-NLS-1$
+    /* The copy of the data, null once it has been written to the log */
+    private ByteArrayOutputStream copy;
+    /* The number of bytes to copy */
+    private int limit;
+    /* true if the data was longer than the copy */
+    private boolean truncated = false;
+    /* The log to write the copy to and the name the messages are logged under */
+    private BasicLogger log;
+    private String name;
+
+    /**
+     * Create a stream that copies the configured number of bytes to a log.
+     *
+     * @param in the stream to read.
+     * @param log the log to write the copy to.
+     * @param name the name the copy is logged under.
+     */
+    public TeeInputStream(InputStream in, BasicLogger log, String name) {
+        this(in, log, name, RIBAXConfig.getInstance().getIntValue(
+                ConfigStrings.LOG_CAPTURE_SIZE, DEFAULT_CAPTURE_SIZE) * 1024);
+    }
+
+    /**
+     * Create a stream that copies a number of bytes to a log.
+     *
+     * @param in the stream to read.
+     * @param log the log to write the copy to.
+     * @param name the name the copy is logged under.
+     * @param limit the number of bytes to copy.
+     */
+    public TeeInputStream(InputStream in, BasicLogger log, String name, int limit) {
+        super(in);
+        this.log = log;
+        this.name = name;
+        this.limit = Math.max(0, limit);
+        this.copy = new ByteArrayOutputStream(Math.min(this.limit, 8192));
+    }
+
+    @Override
+    public int read() throws IOException {
+        int c = super.read();
+
+        if (c < 0) {
+            publish();
+        } else if (copy != null) {
+            if (copy.size() < limit) {
+                copy.write(c);
+            } else {
+                truncated = true;
+                publish();
+            }
+        }
+        return c;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+
+        if (n < 0) {
+            publish();
+        } else if (copy != null) {
+            int count = Math.min(n, limit - copy.size());
+
+            copy.write(b, off, count);
+            if (count < n) {
+                truncated = true;
+                publish();
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        publish();
+        super.close();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Write the copy to the log on a worker thread.  The copy is only written once.
+     */
+    private void publish() {
+        if (copy == null) {
+            return;
+        }
+
+        final byte[] data = copy.toByteArray();
+        final boolean more = truncated;
+
+        copy = null;
+
+        DataModelScheduler.getInstance().submit(new Runnable() {
+
+            public void run() {
+                log.debug(name, new String(data));
+
+                if (more) {
+                    log.debug(name, Messages.getString(BUNDLE_NAME, "TeeInputStream.0") + data.length); //$NON-NLS-1$
+                }
+            }
+        });
+    }
+}
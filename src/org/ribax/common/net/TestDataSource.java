@@ -47,9 +47,18 @@ public class TestDataSource implements DataSource {
     }
 
     public InputStream getInputStream(ArrayList<NameValuePair> params) throws IOException {
+        return getInputStream(params, null);
+    }
+
+    public InputStream getInputStream(ArrayList<NameValuePair> params, DataRequest<?> request)
+            throws IOException {
         File f = new File("./resources/datamodelTest.xml");
+        FileInputStream in = new FileInputStream(f);
 
-        return new BufferedInputStream(new FileInputStream(f));
+        if (request != null) {
+            request.register(in);
+        }
+        return new BufferedInputStream(in);
     }
 
 }
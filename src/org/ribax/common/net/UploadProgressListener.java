@@ -0,0 +1,46 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.common.net;
+
+import java.io.File;
+
+/**
+ * Classes that implement this interface receive notifications of the progress
+ * of a file that is being uploaded to a data source.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+public interface UploadProgressListener {
+
+    /**
+     * Receive a notification that more of a file has been sent.  The notification is
+     * sent from the thread that is writing the request, which is usually not the
+     * event dispatch thread.
+     *
+     * @param name the name of the parameter the file is being sent as.
+     * @param file the file that is being sent.
+     * @param sent the number of bytes of the file that have been sent.
+     * @param total the length of the file in bytes.
+     */
+    public void uploadProgress(String name, File file, long sent, long total);
+}
@@ -21,13 +21,12 @@
  */
 package org.ribax.common.net;
 
-import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.OutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.HttpURLConnection;
@@ -36,6 +35,9 @@ import javax.net.ssl.HttpsURLConnection;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import utils.types.NameValuePair;
 
@@ -49,7 +51,14 @@ import org.ribax.common.net.Part;
 
 /**
  * A class that implements the DataSource interface using the standard
- * URLConnection class
+ * URLConnection class.  Connections are leased from an HttpConnectionPool
+ * and kept alive so subsequent requests to the same host reuse them.
+ * Responses to requests marked cacheable that the web service allows to be
+ * cached are held in an HttpResponseCache and revalidated with conditional
+ * requests.  Compressed responses are negotiated with Accept-Encoding and
+ * decompressed as they are read, and large request bodies can be sent gzip
+ * compressed.  Other request bodies are streamed with a fixed length so
+ * uploaded files are never held in memory.
  *
  *
  * @version <tt>$Revision: $</tt>
@@ -64,9 +73,34 @@ public class WebDataSource implements DataSource {
     RequestLog requestLog;
     ResponseLog responseLog;
     String name = "WebDataSource"; //$NON-NLS-1$
+    /** The pool of keep-alive connections */
+    private HttpConnectionPool pool;
+    /** The cache of responses, null if responses are not cached */
+    private HttpResponseCache cache;
+    /** The default request body size in bytes above which bodies are compressed, 0 to never compress */
+    public static final int DEFAULT_COMPRESS_REQUEST_SIZE = 0;
+    /** The chunk size used to stream a compressed request body */
+    static final int CHUNK_SIZE = 8192;
+    /** The default time in seconds to wait for a connection, 0 to wait forever */
+    public static final int DEFAULT_CONNECT_TIMEOUT = 30;
+    /** The default time in seconds to wait for data, 0 to wait forever as streaming
+     * web services may be idle for long periods */
+    public static final int DEFAULT_READ_TIMEOUT = 0;
+    /** The listener notified of the progress of uploaded files, may be null */
+    private UploadProgressListener uploadListener = null;
 
     public WebDataSource(String url, String name) {
+        this(url, name, HttpConnectionPool.getInstance());
+    }
+
+    public WebDataSource(String url, String name, HttpConnectionPool pool) {
+        this(url, name, pool, HttpResponseCache.getInstance());
+    }
+
+    public WebDataSource(String url, String name, HttpConnectionPool pool, HttpResponseCache cache) {
         this.url = url;
+        this.pool = pool;
+        this.cache = cache;
         if (name != null) {
             this.name = name;
         }
@@ -77,6 +111,7 @@ public class WebDataSource implements DataSource {
         } else {
             setHeader("User-Agent", "RIBAX framework see http://www.ribax.org"); //$NON-NLS-1$ //$NON-NLS-2$
         }
+        setHeader("Accept-Encoding", "gzip, deflate"); //$NON-NLS-1$ //$NON-NLS-2$
         requestLog = RequestLog.getInstance(WebDataSource.class.getName());
         responseLog = ResponseLog.getInstance(WebDataSource.class.getName());
     }
@@ -85,6 +120,15 @@ public class WebDataSource implements DataSource {
         headers.put(name, value);
     }
 
+    /**
+     * Set the listener that is notified of the progress of files sent as parameters.
+     *
+     * @param listener the listener, or <code>null</code> for no notifications.
+     */
+    public void setUploadProgressListener(UploadProgressListener listener) {
+        this.uploadListener = listener;
+    }
+
     private void nullParameterWarning(NameValuePair pair) {
         if (pair == null) {
             requestLog.warn(Messages.getString(BUNDLE_NAME, "WebDataSource.11")); //$NON-NLS-1$
@@ -95,9 +139,13 @@ public class WebDataSource implements DataSource {
 
     public InputStream getInputStream(ArrayList<NameValuePair> params)
             throws IOException {
+        return getInputStream(params, null);
+    }
+
+    public InputStream getInputStream(ArrayList<NameValuePair> params, DataRequest<?> request)
+            throws IOException {
 
         InputStream stream = null;
-        URLConnection conn = null;
 
         // send the form data
         if (requestLog.isDebugEnabled(name)) {
@@ -105,11 +153,62 @@ public class WebDataSource implements DataSource {
         }
         URL hp = new URL(url);
 
-        conn = hp.openConnection();
+        // use a cached response if it has not expired, only the responses of requests
+        // marked cacheable are cached so a submission is always sent
+        String key = (cache == null || request == null || !request.isCacheable()) ? null
+                : HttpResponseCache.getKey(url, params, headers.get("Accept")); //$NON-NLS-1$
+        CachedResponse cached = key == null ? null : cache.get(key);
 
-        // we don't want the connection to stay alive
-        conn.setRequestProperty("Connection", "close"); //$NON-NLS-1$	
+        if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+            if (requestLog.isDebugEnabled(name)) {
+                requestLog.debug(name, Messages.getString(BUNDLE_NAME, "WebDataSource.27") + url); //$NON-NLS-1$
+            }
+            return new ByteArrayInputStream(cached.getBody());
+        }
+
+        // lease a keep-alive connection from the pool, the lease is released when
+        // the response stream is closed
+        HttpConnectionPool.Lease lease = pool.lease(hp);
+
+        try {
+            stream = lease.wrap(getResponseStream(hp, params, key, cached, request));
+        } catch (IOException ex) {
+            lease.release();
+            throw ex;
+        } catch (RuntimeException ex) {
+            lease.release();
+            throw ex;
+        }
+
+        return stream;
+    }
+
+    /*
+     * Post the parameters to the URL and open the response stream.  If there is an
+     * expired cached response it is revalidated.  The connection is registered with 
+     * the request, if there is one, so cancelling the request disconnects it.
+     */
+    private InputStream getResponseStream(URL hp, ArrayList<NameValuePair> params,
+            String key, CachedResponse cached, DataRequest<?> request) throws IOException {
+
+        InputStream stream = null;
+        URLConnection conn = hp.openConnection();
 
+        if (request != null && conn instanceof HttpURLConnection) {
+            final HttpURLConnection hc = (HttpURLConnection) conn;
+
+            request.register(new Closeable() {
+
+                public void close() {
+                    hc.disconnect();
+                }
+            });
+        }
+
+        conn.setConnectTimeout(config.getIntValue(ConfigStrings.HTTP_CONNECT_TIMEOUT,
+                DEFAULT_CONNECT_TIMEOUT) * 1000);
+        conn.setReadTimeout(config.getIntValue(ConfigStrings.HTTP_READ_TIMEOUT,
+                DEFAULT_READ_TIMEOUT) * 1000);
         conn.setDoOutput(true);
         conn.setDoInput(true);
         conn.setUseCaches(false);
@@ -120,6 +219,16 @@ public class WebDataSource implements DataSource {
             conn.setRequestProperty(name, headers.get(name));
         }
 
+        // ask the web service to only send the response if it has changed
+        if (cached != null) {
+            if (cached.getETag() != null) {
+                conn.setRequestProperty("If-None-Match", cached.getETag()); //$NON-NLS-1$
+            }
+            if (cached.getLastModified() != null) {
+                conn.setRequestProperty("If-Modified-Since", cached.getLastModified()); //$NON-NLS-1$
+            }
+        }
+
         HTTPmultipart mp = null;
 
         if (params != null && params.size() > 0) {
@@ -131,7 +240,7 @@ public class WebDataSource implements DataSource {
 
         ArrayList<Part> content = new ArrayList<Part>();
 
-        int length = 0;
+        long length = 0;
 
         // determine the content length and save the parts to the content list
 
@@ -153,6 +262,7 @@ public class WebDataSource implements DataSource {
                             continue;
                         }
                         FilePart part = new FilePart(pair.getName(), f);
+                        part.setUploadProgressListener(uploadListener);
                         content.add(part);
                         length += mp.getContentLength(part);
                     } else {
@@ -171,12 +281,32 @@ public class WebDataSource implements DataSource {
                     + PartUtils.EXTRA_BYTES.length + PartUtils.CRLF_BYTES.length;
         }
 
-        // set the content length header
-        conn.setRequestProperty("Content-Length", "" + length);
+        // compress a large request body if the web service accepts compressed requests,
+        // the compressed length is not known so the body is sent in chunks
+        int compressSize = config.getIntValue(ConfigStrings.HTTP_COMPRESS_REQUEST_SIZE,
+                DEFAULT_COMPRESS_REQUEST_SIZE);
+        boolean compress = compressSize > 0 && length >= compressSize
+                && conn instanceof HttpURLConnection;
+
+        if (compress) {
+            conn.setRequestProperty("Content-Encoding", "gzip"); //$NON-NLS-1$ //$NON-NLS-2$
+            ((HttpURLConnection) conn).setChunkedStreamingMode(CHUNK_SIZE);
+        } else if (conn instanceof HttpURLConnection) {
+            // stream the body with the length we have computed rather than letting
+            // the connection buffer the whole body, which may include large files
+            ((HttpURLConnection) conn).setFixedLengthStreamingMode(length);
+        } else {
+            // set the content length header
+            conn.setRequestProperty("Content-Length", "" + length);
+        }
 
         // now we can open the output stream
         OutputStream ostream = conn.getOutputStream();
 
+        if (compress) {
+            ostream = new GZIPOutputStream(ostream, CHUNK_SIZE);
+        }
+
         if (params != null && params.size() > 0) {
 
             // write the parts to the output stream
@@ -193,32 +323,33 @@ public class WebDataSource implements DataSource {
 
         ostream.close();
 
-        // if response logging is enabled then read the data into a 
-        // string buffer and return a ByteArrayInputStream maximum size
-        // is 128KB
-        long outlength = 0;
-
         if (conn instanceof HttpURLConnection) {
             HttpURLConnection hc = (HttpURLConnection) conn;
 
             int status = hc.getResponseCode();
-            outlength = hc.getContentLength();
 
-            if (status == HttpURLConnection.HTTP_OK) {
-                stream = conn.getInputStream();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                return revalidated(hc, key, cached);
+            } else if (status == HttpURLConnection.HTTP_OK) {
+                stream = decode(hc, conn.getInputStream());
+
+                if (key != null) {
+                    stream = cacheResponse(hc, stream, key);
+                }
             } else {
-                throw new IOException(Messages.getString(BUNDLE_NAME, "WebDataSource.24") + hc.getResponseMessage()); //$NON-NLS-1$
+                discardErrorStream(hc);
+                throw new HttpStatusException(status, Messages.getString(BUNDLE_NAME, "WebDataSource.24") + hc.getResponseMessage()); //$NON-NLS-1$
             }
         } else if (conn instanceof HttpsURLConnection) {
             HttpsURLConnection hc = (HttpsURLConnection) conn;
 
             int status = hc.getResponseCode();
-            outlength = hc.getContentLength();
 
             if (status == HttpsURLConnection.HTTP_OK) {
                 stream = conn.getInputStream();
             } else {
-                throw new IOException(Messages.getString(BUNDLE_NAME, "WebDataSource.25") + hc.getResponseMessage()); //$NON-NLS-1$
+                discardErrorStream(hc);
+                throw new HttpStatusException(status, Messages.getString(BUNDLE_NAME, "WebDataSource.25") + hc.getResponseMessage()); //$NON-NLS-1$
             }
 
         } else {
@@ -226,27 +357,153 @@ public class WebDataSource implements DataSource {
         }
 
 
-        if (outlength < (128 * 1024)) {
-            if (outlength < 0) {
-                outlength = 8192;
-            }
+        // if response logging is enabled then copy the start of the response
+        // to the log as the parser reads it
+        if (responseLog.isDebugEnabled(name)) {
+            responseLog.debug(name, Messages.getString(BUNDLE_NAME, "WebDataSource.26") + url); //$NON-NLS-1$
+            stream = new TeeInputStream(stream, responseLog, name);
+        }
 
-            if (responseLog.isDebugEnabled(name)) {
-                StringBuffer sb = new StringBuffer((int) length);
-                String line;
-                BufferedReader bin = new BufferedReader(new InputStreamReader(stream));
+        return stream;
+    }
 
-                responseLog.debug(name, Messages.getString(BUNDLE_NAME, "WebDataSource.26") + url); //$NON-NLS-1$
+    /**
+     * Decompress a response stream according to its Content-Encoding.  The response
+     * is decompressed as it is read so the parser can start before it has all arrived.
+     *
+     * @param conn the connection holding the response.
+     * @param in the response stream.
+     * @return the decompressed stream.
+     * @throws IOException if the gzip header cannot be read.
+     */
+    static InputStream decode(URLConnection conn, InputStream in) throws IOException {
+        String encoding = conn.getContentEncoding();
+
+        if (encoding == null) {
+            return in;
+        }
 
-                while ((line = bin.readLine()) != null) {
-                    sb.append(line);
-                }
-                String res = sb.toString();
-                responseLog.debug(name, res);
-                stream = new ByteArrayInputStream(res.getBytes());
+        encoding = encoding.trim().toLowerCase();
+
+        if (encoding.equals("gzip") || encoding.equals("x-gzip")) { //$NON-NLS-1$ //$NON-NLS-2$
+            return new GZIPInputStream(in, CHUNK_SIZE);
+        } else if (encoding.equals("deflate")) { //$NON-NLS-1$
+            return new InflaterInputStream(in);
+        }
+        return in;
+    }
+
+    /**
+     * Store a response in the cache as it is read if the web service allows it.
+     *
+     * @param hc the connection holding the response.
+     * @param stream the response stream.
+     * @param key the cache key of the request.
+     * @return the response stream to read.
+     */
+    private InputStream cacheResponse(HttpURLConnection hc, InputStream stream, String key) {
+        long now = System.currentTimeMillis();
+        long expires = CachedResponse.getExpires(hc, cache.getTTL(url), now);
+        String etag = hc.getHeaderField("ETag"); //$NON-NLS-1$
+        String lastModified = hc.getHeaderField("Last-Modified"); //$NON-NLS-1$
+
+        if (expires == CachedResponse.NO_STORE) {
+            cache.remove(key);
+            return stream;
+        }
+
+        // the key holds the Accept header, a response that varies on any other
+        // request header cannot be told apart from other representations
+        if (!isVaryKeyed(hc.getHeaderField("Vary"))) { //$NON-NLS-1$
+            cache.remove(key);
+            return stream;
+        }
+
+        // a response that has expired and cannot be revalidated is no use
+        if (expires <= now && etag == null && lastModified == null) {
+            return stream;
+        }
+        if (hc.getContentLength() > HttpResponseCache.MAX_ENTRY_SIZE) {
+            return stream;
+        }
+        return cache.record(stream, key, etag, lastModified, expires);
+    }
+
+    /**
+     * Test whether the request headers a response varies on are all part of the
+     * cache key.  The Accept header is in the key and the response is cached after
+     * it has been decoded so the Accept-Encoding header does not matter.
+     *
+     * @param vary the Vary header of the response, may be null.
+     * @return true if the response can be cached under the key of the request.
+     */
+    static boolean isVaryKeyed(String vary) {
+        if (vary == null) {
+            return true;
+        }
+
+        for (String header : vary.split(",")) { //$NON-NLS-1$
+            header = header.trim();
+
+            if (header.length() > 0 && !header.equalsIgnoreCase("Accept") //$NON-NLS-1$
+                    && !header.equalsIgnoreCase("Accept-Encoding")) { //$NON-NLS-1$
+                return false;
             }
         }
+        return true;
+    }
 
-        return stream;
+    /**
+     * Use a cached response that the web service says has not been modified and
+     * update its expiry time from the headers of the revalidation.
+     *
+     * @param hc the connection holding the not modified response.
+     * @param key the cache key of the request.
+     * @param cached the cached response.
+     * @return a stream to read the cached response.
+     */
+    private InputStream revalidated(HttpURLConnection hc, String key, CachedResponse cached) {
+        if (requestLog.isDebugEnabled(name)) {
+            requestLog.debug(name, Messages.getString(BUNDLE_NAME, "WebDataSource.28") + url); //$NON-NLS-1$
+        }
+
+        // a not modified response has no body but the stream must be closed so the
+        // connection can be kept alive
+        try {
+            hc.getInputStream().close();
+        } catch (IOException ex) {
+        }
+
+        long expires = CachedResponse.getExpires(hc, cache.getTTL(url), System.currentTimeMillis());
+
+        if (expires == CachedResponse.NO_STORE) {
+            cache.remove(key);
+        } else {
+            cached.setExpires(expires);
+            cache.put(key, cached);
+        }
+        return new ByteArrayInputStream(cached.getBody());
+    }
+
+    /**
+     * Read and close the error stream of a failed request so the connection
+     * can be kept alive.
+     *
+     * @param hc the failed connection.
+     */
+    static void discardErrorStream(HttpURLConnection hc) {
+        InputStream es = hc.getErrorStream();
+
+        if (es == null) {
+            return;
+        }
+        try {
+            byte[] buf = new byte[1024];
+
+            while (es.read(buf) >= 0) {
+            }
+            es.close();
+        } catch (IOException ex) {
+        }
     }
 }
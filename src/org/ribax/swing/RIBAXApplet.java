@@ -61,6 +61,10 @@ import org.ribax.common.log.RequestLog;
 import org.ribax.common.log.ResponseLog;
 import org.ribax.common.net.DataSource;
 import org.ribax.common.net.DataSourceFactory;
+import org.ribax.common.net.EndpointGroup;
+import org.ribax.common.net.HedgePolicy;
+import org.ribax.common.net.LatencyTracker;
+import org.ribax.common.net.HttpResponseCache;
 import org.ribax.swing.ui.*;
 
 import utils.ui.StatusReporter;
@@ -295,10 +299,9 @@ public class RIBAXApplet extends JApplet implements StatusReporter.Reporter, URL
          * iterate through the children of this node, all children are either configurator
          * elements or a lookandFeelClassName element
          */
-        List<Element> children = cfg.getChildren();
-        Iterator<Element> iterator = children.iterator();
+        Iterator<?> iterator = cfg.getChildren().iterator();
         while (iterator.hasNext()) {
-            Element el = iterator.next();
+            Element el = (Element) iterator.next();
 
             // if the element specifies a look and feel then set it up
             if ("lookandFeelClassName".equals(el.getName())) { //$NON-NLS-1$
@@ -314,8 +317,85 @@ public class RIBAXApplet extends JApplet implements StatusReporter.Reporter, URL
                 readConfigProperties(el);
             } else if ("logging".equals(el.getName())) { //$NON-NLS-1$
                 readLogging(el, el.getAttributeValue("type"));
+            } else if ("cacheTTL".equals(el.getName())) { //$NON-NLS-1$
+                readCacheTTL(el);
+            } else if ("endpointGroup".equals(el.getName())) { //$NON-NLS-1$
+                readEndpointGroup(el);
+            }
+        }
+    }
+
+    /**
+     * Read a time to live for cached responses from a URL or the URLs that start with
+     * a prefix, e.g. &lt;cacheTTL url="http://host/descriptions/"&gt;3600&lt;/cacheTTL&gt;
+     * 
+     * @param el the cacheTTL element with the URL attribute and the time to live in seconds.
+     */
+    private void readCacheTTL(Element el) {
+        String prefix = el.getAttributeValue("url"); //$NON-NLS-1$
+
+        try {
+            if (prefix != null) {
+                HttpResponseCache.getInstance().setTTL(prefix, Integer.parseInt(el.getTextTrim()));
+                return;
             }
+        } catch (NumberFormatException ex) {
+        }
+        LOG.error(Messages.getString(BUNDLE_NAME, "RIBAXApplet.59") + prefix); //$NON-NLS-1$
+    }
+
+    /**
+     * Read a group of replicated web service endpoints that data items and models refer
+     * to with group://name/path URLs, e.g.
+     * <pre>
+     * &lt;endpointGroup name="quotes" balance="powerOfTwo" healthPath="/health" probeInterval="10"&gt;
+     *   &lt;endpoint&gt;http://node1/quotes&lt;/endpoint&gt;
+     *   &lt;endpoint&gt;http://node2/quotes&lt;/endpoint&gt;
+     * &lt;/endpointGroup&gt;
+     * </pre>
+     * The balance is leastOutstanding, the default, or powerOfTwo.  A hedge attribute
+     * such as hedge="95" sends a request that has not been answered within the 95th
+     * percentile of its recent latencies to a second endpoint as well, hedgeBudget is
+     * the percentage of extra requests the hedges may add, 10 by default.
+     * 
+     * @param el the endpointGroup element.
+     */
+    private void readEndpointGroup(Element el) {
+        String groupName = el.getAttributeValue("name"); //$NON-NLS-1$
+        List<?> endpoints = el.getChildren("endpoint"); //$NON-NLS-1$
+
+        if (groupName == null || endpoints.isEmpty()) {
+            LOG.error(Messages.getString(BUNDLE_NAME, "RIBAXApplet.60") + groupName); //$NON-NLS-1$
+            return;
+        }
+
+        EndpointGroup group = new EndpointGroup(groupName,
+                "powerOfTwo".equals(el.getAttributeValue("balance")) //$NON-NLS-1$ //$NON-NLS-2$
+                ? EndpointGroup.POWER_OF_TWO : EndpointGroup.LEAST_OUTSTANDING);
+
+        group.setHealthPath(el.getAttributeValue("healthPath")); //$NON-NLS-1$
+
+        String interval = el.getAttributeValue("probeInterval"); //$NON-NLS-1$
+        String hedge = el.getAttributeValue("hedge"); //$NON-NLS-1$
+        String budget = el.getAttributeValue("hedgeBudget"); //$NON-NLS-1$
+
+        try {
+            if (interval != null) {
+                group.setProbeInterval(Integer.parseInt(interval.trim()));
+            }
+            if (hedge != null) {
+                group.setHedgePolicy(new HedgePolicy(Double.parseDouble(hedge.trim()),
+                        budget == null ? HedgePolicy.DEFAULT_BUDGET : Double.parseDouble(budget.trim()),
+                        new LatencyTracker()));
+            }
+        } catch (NumberFormatException ex) {
+            LOG.error(Messages.getString(BUNDLE_NAME, "RIBAXApplet.60") + groupName); //$NON-NLS-1$
+        }
+
+        for (Object endpoint : endpoints) {
+            group.addEndpoint(((Element) endpoint).getTextTrim());
         }
+        EndpointGroup.addGroup(group);
     }
 
     /**
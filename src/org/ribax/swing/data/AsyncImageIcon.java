@@ -0,0 +1,192 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.swing.data;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.MediaTracker;
+import java.awt.Toolkit;
+import java.net.URL;
+import java.util.Vector;
+
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * An ImageIcon whose image is loaded from a URL on a worker thread.  Until the image
+ * has loaded the icon paints nothing and reports the size of the image recorded
+ * by the ImageCache, if the image has been loaded before, so table rows can be laid 
+ * out before the image arrives.  Listeners are told on the event dispatch thread 
+ * when the image has loaded so the cells that show the icon can be repainted.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+public class AsyncImageIcon extends ImageIcon {
+
+    public static final long serialVersionUID = 1;
+    /* the URL of the image */
+    private String url;
+    /* the size of the image before it has loaded, -1 if not known */
+    private int width;
+    private int height;
+    /* true once the image has loaded */
+    private volatile boolean loaded = false;
+    /* the listeners to tell when the image has loaded */
+    private transient Vector<ChangeListener> listeners = new Vector<ChangeListener>();
+
+    /**
+     * Create an icon for an image that has not been loaded yet.
+     *
+     * @param url the URL of the image.
+     * @param width the width of the image if known or -1.
+     * @param height the height of the image if known or -1.
+     */
+    AsyncImageIcon(String url, int width, int height) {
+        this.url = url;
+        this.width = width;
+        this.height = height;
+
+        setDescription(url);
+    }
+
+    /**
+     * Get the URL of the image.
+     *
+     * @return the URL of the image.
+     */
+    public String getURL() {
+        return url;
+    }
+
+    /**
+     * Check whether the image has loaded.
+     *
+     * @return true if the image has loaded.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Add a listener to tell when the image has loaded.  The listener is removed
+     * once it has been told, if the image has already loaded it is not added.
+     *
+     * @param l the listener to add.
+     */
+    public synchronized void addChangeListener(ChangeListener l) {
+        if (!loaded && !listeners.contains(l)) {
+            listeners.add(l);
+        }
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param l the listener to remove.
+     */
+    public synchronized void removeChangeListener(ChangeListener l) {
+        listeners.remove(l);
+    }
+
+    /**
+     * Load the image and wait for it to finish loading.  Called on a worker thread.
+     *
+     * @return true if the image loaded, false if there was an error.
+     */
+    boolean load() {
+        try {
+            // createImage does not share images with the Toolkit image cache, the
+            // images are held in the ImageCache instead
+            setImage(Toolkit.getDefaultToolkit().createImage(new URL(url)));
+        } catch (Exception ex) {
+            return false;
+        }
+
+        if (getImageLoadStatus() != MediaTracker.COMPLETE) {
+            return false;
+        }
+
+        width = super.getIconWidth();
+        height = super.getIconHeight();
+        loaded = true;
+
+        return true;
+    }
+
+    /**
+     * Tell the listeners on the event dispatch thread that the image has loaded and 
+     * remove them.  If the image did not load the listeners are removed without being told.
+     */
+    void fireLoaded() {
+        final ChangeListener[] ls;
+
+        synchronized (this) {
+            ls = listeners.toArray(new ChangeListener[listeners.size()]);
+            listeners.clear();
+        }
+
+        if (!loaded || ls.length == 0) {
+            return;
+        }
+
+        SwingUtilities.invokeLater(new Runnable() {
+
+            public void run() {
+                ChangeEvent e = new ChangeEvent(AsyncImageIcon.this);
+
+                for (ChangeListener l : ls) {
+                    l.stateChanged(e);
+                }
+            }
+        });
+    }
+
+    /* (non-Javadoc)
+     * @see javax.swing.ImageIcon#getIconWidth()
+     */
+    @Override
+    public int getIconWidth() {
+        return width;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.swing.ImageIcon#getIconHeight()
+     */
+    @Override
+    public int getIconHeight() {
+        return height;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.swing.ImageIcon#paintIcon(java.awt.Component, java.awt.Graphics, int, int)
+     */
+    @Override
+    public synchronized void paintIcon(Component c, Graphics g, int x, int y) {
+        // paint nothing in the space for the image until it has loaded
+        if (loaded) {
+            super.paintIcon(c, g, x, y);
+        }
+    }
+}
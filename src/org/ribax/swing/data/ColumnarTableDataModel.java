@@ -0,0 +1,721 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.swing.data;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Vector;
+
+import javax.swing.DefaultCellEditor;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.table.AbstractTableModel;
+
+import org.jdom.Element;
+
+import utils.log.BasicLogger;
+import utils.table.TableLinkElement;
+import utils.table.XTableModel;
+import utils.types.Memo;
+import utils.types.NameValuePair;
+import utils.xml.XMLutils;
+
+import org.ribax.common.Messages;
+import org.ribax.swing.URLopener;
+
+/**
+ * A read only table model for large reports that stores the table data by column
+ * rather than by row.  Columns declared with a type of number, float or boolean in
+ * the column definitions are stored in primitive arrays, string columns are
+ * dictionary encoded so each distinct string is held once, and cell and row colours
+ * are held in sparse maps.  Columns with other types (memo, image, link) or with
+ * mixed values hold the cell objects.  Columns without a declared type take the type
+ * of their first value.
+ *
+ * <p>
+ * The model is selected with the storage="columnar" attribute of the tableData element.
+ * Streamed tables always use a TableDataModel since rows are replaced as they arrive.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+public class ColumnarTableDataModel extends AbstractTableModel implements XTableModel {
+
+    public static final long serialVersionUID = 1;
+    private static final String BUNDLE_NAME = "org.ribax.swing.data.messages"; //$NON-NLS-1$
+    /** the value of the tableData storage attribute that selects this model */
+    public static final String STORAGE = "columnar"; //$NON-NLS-1$
+    /* the initial number of rows allocated in each column */
+    private static final int INITIAL_CAPACITY = 16;
+    /** a collection of attributes for table columns */
+    private Vector<TableRowColumnAttributes> columnAttributes = new Vector<TableRowColumnAttributes>();
+    /** the declared type of each column, null if not declared */
+    private Vector<String> columnTypes = new Vector<String>();
+    /** the cell data, one entry per column, null until the column has a value */
+    private Column[] columns = new Column[0];
+    /** the number of rows in the model */
+    private int rowCount = 0;
+    /** the background colours of individual cells */
+    private Hashtable<Long, Color> cellColours = new Hashtable<Long, Color>();
+    /** the background colours of rows */
+    private Hashtable<Integer, Color> rowColours = new Hashtable<Integer, Color>();
+    /**
+     * The preferred height of table rows -1 == no preferred height
+     */
+    private int maxRowHeight = -1;
+    private static BasicLogger LOG = new BasicLogger(ColumnarTableDataModel.class.getName());
+
+    /**
+     * Constructor to create a new ColumnarTableDataModel that takes an Element tree and a
+     * url string as arguments.
+     *
+     * @param root the Element tree containing the table data.
+     * @param url the URL of a web service that has provided the table data.
+     */
+    public ColumnarTableDataModel(Element root, String url) {
+        readColumns(root);
+
+        TableRowBatch batch = new TableRowReader(url).readRows(root);
+
+        maxRowHeight = batch.getRowHeight();
+
+        for (TableRow row : batch.getRows()) {
+            addRow(row);
+        }
+
+        // repaint the table when an image has loaded, the model does not track 
+        // which rows show an image
+        for (AsyncImageIcon icon : batch.getPendingIcons()) {
+            icon.addChangeListener(new ChangeListener() {
+
+                public void stateChanged(ChangeEvent e) {
+                    AsyncImageIcon icon = (AsyncImageIcon) e.getSource();
+
+                    maxRowHeight = Math.max(maxRowHeight, icon.getIconHeight());
+                    if (rowCount > 0) {
+                        fireTableRowsUpdated(0, rowCount - 1);
+                    }
+                }
+            });
+        }
+
+        // release the space allocated for rows that were never added
+        for (Column column : columns) {
+            if (column != null) {
+                column.trim(rowCount);
+            }
+        }
+    }
+
+    /**
+     * Constructor to create a new ColumnarTableDataModel that takes an Element tree argument.
+     *
+     * @param root the Element tree containing the table data.
+     */
+    public ColumnarTableDataModel(Element root) {
+        this(root, null);
+    }
+
+    /**
+     * Check whether a tableData element selects the columnar storage model.
+     *
+     * @param root the tableData element.
+     * @return true if the element has the attribute storage="columnar".
+     */
+    public static boolean isColumnar(Element root) {
+        return root != null && STORAGE.equals(root.getAttributeValue("storage")); //$NON-NLS-1$
+    }
+
+    /**
+     * Read the column definitions from an Element tree.
+     *
+     * @param root the Element tree containing the table data.
+     */
+    private void readColumns(Element root) {
+        Element e;
+
+        if ((e = root.getChild("columnNames")) == null) { //$NON-NLS-1$
+            return;
+        }
+
+        // iterate through the list of column definitions
+        Iterator<?> iterator = e.getChildren().iterator();
+
+        while (iterator.hasNext()) {
+            Element col = (Element) iterator.next();
+            int width = 0;
+            Integer intval;
+            Boolean boolval;
+
+            // get the preferred column width
+            if ((intval = XMLutils.getElementInt("width", col)) != null) { //$NON-NLS-1$
+                width = intval.intValue();
+            }
+
+            // the model is read only so the column is never editable
+            TableRowColumnAttributes tca = new TableRowColumnAttributes(
+                    XMLutils.getElementString("name", col), width, //$NON-NLS-1$
+                    XMLutils.getColour(col), false,
+                    XMLutils.getElementString("tooltip", col), null); //$NON-NLS-1$
+
+            if ((boolval = XMLutils.getElementBoolean("visible", col)) != null) { //$NON-NLS-1$
+                tca.visible = boolval.booleanValue();
+            }
+
+            columnAttributes.add(tca);
+            columnTypes.add(XMLutils.getElementString("type", col)); //$NON-NLS-1$
+        }
+
+        columns = new Column[columnAttributes.size()];
+    }
+
+    /**
+     * Add a row to the column data.
+     *
+     * @param row the row to add.
+     */
+    private void addRow(TableRow row) {
+        int r = rowCount++;
+        TableRowColumnAttributes attr = row.getRowAttributes();
+
+        if (attr != null && attr.colour != null) {
+            rowColours.put(Integer.valueOf(r), attr.colour);
+        }
+
+        for (int c = 0; c < columns.length; c++) {
+            Object value = c < row.size() ? row.elementAt(c) : null;
+
+            // cell colours are held separately from the cell value
+            if (value instanceof TableRowColumnAttributes) {
+                TableRowColumnAttributes cell = (TableRowColumnAttributes) value;
+
+                if (cell.colour != null) {
+                    cellColours.put(Long.valueOf(cellKey(r, c)), cell.colour);
+                }
+                value = cell.data;
+            }
+
+            if (value == null) {
+                if (columns[c] != null) {
+                    columns[c].setNull(r);
+                }
+                continue;
+            }
+
+            // cells without a type take the declared type of the column
+            value = convert(columnTypes.elementAt(c), value);
+
+            if (columns[c] == null) {
+                // the first value in the column, all the previous rows are empty
+                columns[c] = createColumn(columnTypes.elementAt(c), value);
+                columns[c].setNull(0, r);
+            }
+            if (!columns[c].accepts(value)) {
+                // the value does not fit the column type so hold the cell objects
+                LOG.warn(Messages.getString(BUNDLE_NAME, "ColumnarTableDataModel.0") + getColumnName(c)); //$NON-NLS-1$
+                columns[c] = new ObjectColumn(columns[c], r);
+            }
+            columns[c].set(r, value);
+        }
+    }
+
+    /**
+     * Get the key of a cell in the cell colour map.
+     */
+    private static long cellKey(int row, int col) {
+        return ((long) row << 32) | col;
+    }
+
+    /**
+     * Convert a String value to the declared type of a column.
+     *
+     * @param type the declared type or null.
+     * @param value the cell value.
+     * @return the converted value or the original value if it is not a String or can
+     * not be converted.
+     */
+    private static Object convert(String type, Object value) {
+        if (type == null || !(value instanceof String)) {
+            return value;
+        }
+
+        String s = ((String) value).trim();
+
+        try {
+            if ("number".equals(type)) { //$NON-NLS-1$
+                return Integer.valueOf(s);
+            } else if ("float".equals(type)) { //$NON-NLS-1$
+                return Float.valueOf(s);
+            } else if ("boolean".equals(type)) { //$NON-NLS-1$
+                return Boolean.valueOf(s);
+            }
+        } catch (NumberFormatException ex) {
+            // keep the String, the column will hold the cell objects
+        }
+        return value;
+    }
+
+    /**
+     * Create a column for a declared column type, or if no type was declared for the
+     * type of the first value in the column.
+     *
+     * @param type the declared type or null.
+     * @param value the first value in the column.
+     * @return the new column.
+     */
+    private static Column createColumn(String type, Object value) {
+        if (type == null) {
+            if (value instanceof Integer) {
+                type = "number"; //$NON-NLS-1$
+            } else if (value instanceof Float) {
+                type = "float"; //$NON-NLS-1$
+            } else if (value instanceof Boolean) {
+                type = "boolean"; //$NON-NLS-1$
+            } else if (value instanceof String) {
+                type = "string"; //$NON-NLS-1$
+            }
+        }
+
+        if ("number".equals(type)) { //$NON-NLS-1$
+            return new IntColumn();
+        } else if ("float".equals(type)) { //$NON-NLS-1$
+            return new FloatColumn();
+        } else if ("boolean".equals(type)) { //$NON-NLS-1$
+            return new BooleanColumn();
+        } else if ("string".equals(type)) { //$NON-NLS-1$
+            return new StringColumn();
+        }
+        return new ObjectColumn();
+    }
+
+    /* (non-Javadoc)
+     * @see utils.table.XTableModel#getMetaText(int, int)
+     */
+    public String[] getMetaText(int row, int col) {
+        String[] tips = new String[2];
+        tips[0] = getColumnTooltip(col);
+
+        if (tips[0] == null) {
+            return null;
+        }
+
+        Object o = getValueAt(row, col);
+
+        tips[1] = o == null ? "" : o.toString(); //$NON-NLS-1$
+
+        return tips;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.swing.table.AbstractTableModel#getColumnName(int)
+     */
+    public String getColumnName(int col) {
+        if (col >= columnAttributes.size()) {
+            return null;
+        }
+        return columnAttributes.elementAt(col).name;
+    }
+
+    /* (non-Javadoc)
+     * @see utils.table.XTableModel#getPreferredColumnWidth(int)
+     */
+    public int getPreferredColumnWidth(int col) {
+        if (col >= columnAttributes.size()) {
+            LOG.error(Messages.getString(BUNDLE_NAME, "TableDataModel.44") + col); //$NON-NLS-1$
+            // return some default value
+            return 50;
+        }
+        return columnAttributes.elementAt(col).width;
+    }
+
+    /* (non-Javadoc)
+     * @see utils.table.XTableModel#getPreferredRowHeight()
+     */
+    public int getPreferredRowHeight() {
+        return maxRowHeight;
+    }
+
+    /* (non-Javadoc)
+     * @see utils.table.XTableModel#getColumnEditor(int)
+     */
+    public DefaultCellEditor getColumnEditor(int col) {
+        // the model is read only
+        return null;
+    }
+
+    /**
+     * Get a tooltip for the specified column.
+     * @param col the column index.
+     * @return the tooltip for the indicated column or null if no tooltip was specified in
+     * the column definition.
+     */
+    public String getColumnTooltip(int col) {
+        if (col >= columnAttributes.size()) {
+            return null;
+        }
+        return columnAttributes.elementAt(col).tooltip;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.swing.table.TableModel#getRowCount()
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.swing.table.TableModel#getColumnCount()
+     */
+    public int getColumnCount() {
+        return columnAttributes.size();
+    }
+
+    /* (non-Javadoc)
+     * @see javax.swing.table.TableModel#getValueAt(int, int)
+     */
+    public Object getValueAt(int row, int col) {
+        if (row >= rowCount) {
+            LOG.error(Messages.getString(BUNDLE_NAME, "TableDataModel.45") + row + " col:" + col); //$NON-NLS-1$ //$NON-NLS-2$
+            return null;
+        }
+        if (col >= columns.length || columns[col] == null) {
+            return null;
+        }
+        return columns[col].get(row);
+    }
+
+    /* (non-Javadoc)
+     * @see javax.swing.table.AbstractTableModel#getColumnClass(int)
+     */
+    public Class<?> getColumnClass(int c) {
+        if (c < columns.length && columns[c] != null) {
+            Class<?> type = columns[c].getType();
+
+            if (type != null) {
+                return type;
+            }
+        }
+
+        Object o = rowCount > 0 ? getValueAt(0, c) : null;
+
+        // dummy up a String object in the case where getValueAt returned null
+        return o == null ? String.class : o.getClass();
+    }
+
+    /* (non-Javadoc)
+     * @see utils.table.XTableModel#fireMouseClicked(int, int)
+     */
+    public void fireMouseClicked(int row, int col) {
+        Object o = getValueAt(row, col);
+
+        // if the cell data is a link then open the url
+        if (o instanceof TableLinkElement) {
+            TableLinkElement tle = (TableLinkElement) o;
+
+            URLopener.openURL(tle.url, tle.title);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see utils.table.XTableModel#getBackground(int, int)
+     */
+    public Color getBackground(int row, int col) {
+        Color colour;
+
+        // check for a cell specific colour, then the row colour
+        if ((colour = cellColours.get(Long.valueOf(cellKey(row, col)))) != null) {
+            return colour;
+        }
+        if ((colour = rowColours.get(Integer.valueOf(row))) != null) {
+            return colour;
+        }
+
+        // finally try a colour for the column
+        if (col < columnAttributes.size()) {
+            return columnAttributes.elementAt(col).colour;
+        }
+
+        // no background colour specified
+        return null;
+    }
+
+    /**
+     * Get a collection of NameValuePairs for a specific row.  Only columns with
+     * String, Boolean, Integer, Float or Memo values are included.
+     *
+     * @param rownum the row to collect as NameValuePairs.
+     * @param paramnum the index to add to the column name to create the parameter name.
+     * @return a collection of NameValuePairs for the specified row.
+     */
+    public ArrayList<NameValuePair> getSelectedRowElements(int rownum, int paramnum) {
+        ArrayList<NameValuePair> list = new ArrayList<NameValuePair>();
+
+        for (int c = 0; c < columnAttributes.size(); c++) {
+            Object o = getValueAt(rownum, c);
+
+            if (o instanceof String || o instanceof Boolean || o instanceof Integer
+                    || o instanceof Float || o instanceof Memo) {
+                list.add(new NameValuePair(getColumnName(c) + "_" + paramnum, o.toString())); //$NON-NLS-1$
+            }
+        }
+        return list;
+    }
+
+    /**
+     * The values of a single column.
+     */
+    private abstract static class Column {
+
+        /* the rows that have no value */
+        BitSet nulls = new BitSet();
+
+        /**
+         * Check whether a value can be stored in the column.
+         */
+        abstract boolean accepts(Object value);
+
+        /**
+         * Store a value accepted by the column.
+         */
+        abstract void set(int row, Object value);
+
+        /**
+         * Get the value of a row that is not null.
+         */
+        abstract Object getValue(int row);
+
+        /**
+         * Get the class of the values in the column or null if the values have mixed types.
+         */
+        abstract Class<?> getType();
+
+        /**
+         * Release any space allocated beyond the given number of rows.
+         */
+        abstract void trim(int rows);
+
+        Object get(int row) {
+            return nulls.get(row) ? null : getValue(row);
+        }
+
+        void setNull(int row) {
+            nulls.set(row);
+        }
+
+        void setNull(int from, int to) {
+            nulls.set(from, to);
+        }
+
+        /**
+         * Get the new size of an array that must hold the given row.
+         */
+        static int grow(int length, int row) {
+            return Math.max(INITIAL_CAPACITY, Math.max(length * 2, row + 1));
+        }
+    }
+
+    /**
+     * A column of int values.
+     */
+    private static class IntColumn extends Column {
+
+        int[] values = new int[0];
+
+        boolean accepts(Object value) {
+            return value instanceof Integer;
+        }
+
+        void set(int row, Object value) {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            values[row] = ((Integer) value).intValue();
+        }
+
+        Object getValue(int row) {
+            return Integer.valueOf(values[row]);
+        }
+
+        Class<?> getType() {
+            return Integer.class;
+        }
+
+        void trim(int rows) {
+            values = Arrays.copyOf(values, rows);
+        }
+    }
+
+    /**
+     * A column of float values.
+     */
+    private static class FloatColumn extends Column {
+
+        float[] values = new float[0];
+
+        boolean accepts(Object value) {
+            return value instanceof Float;
+        }
+
+        void set(int row, Object value) {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            values[row] = ((Float) value).floatValue();
+        }
+
+        Object getValue(int row) {
+            return Float.valueOf(values[row]);
+        }
+
+        Class<?> getType() {
+            return Float.class;
+        }
+
+        void trim(int rows) {
+            values = Arrays.copyOf(values, rows);
+        }
+    }
+
+    /**
+     * A column of boolean values held one bit per row.
+     */
+    private static class BooleanColumn extends Column {
+
+        BitSet values = new BitSet();
+
+        boolean accepts(Object value) {
+            return value instanceof Boolean;
+        }
+
+        void set(int row, Object value) {
+            values.set(row, ((Boolean) value).booleanValue());
+        }
+
+        Object getValue(int row) {
+            return Boolean.valueOf(values.get(row));
+        }
+
+        Class<?> getType() {
+            return Boolean.class;
+        }
+
+        void trim(int rows) {
+        }
+    }
+
+    /**
+     * A column of strings where each distinct string is held once in a dictionary
+     * and the rows hold the index of their string in the dictionary.
+     */
+    private static class StringColumn extends Column {
+
+        int[] codes = new int[0];
+        ArrayList<String> dictionary = new ArrayList<String>();
+        Hashtable<String, Integer> lookup = new Hashtable<String, Integer>();
+
+        boolean accepts(Object value) {
+            return value instanceof String;
+        }
+
+        void set(int row, Object value) {
+            Integer code = lookup.get(value);
+
+            if (code == null) {
+                code = Integer.valueOf(dictionary.size());
+                dictionary.add((String) value);
+                lookup.put((String) value, code);
+            }
+            if (row >= codes.length) {
+                codes = Arrays.copyOf(codes, grow(codes.length, row));
+            }
+            codes[row] = code.intValue();
+        }
+
+        Object getValue(int row) {
+            return dictionary.get(codes[row]);
+        }
+
+        Class<?> getType() {
+            return String.class;
+        }
+
+        void trim(int rows) {
+            codes = Arrays.copyOf(codes, rows);
+            dictionary.trimToSize();
+            // the lookup is only needed while rows are added
+            lookup = new Hashtable<String, Integer>();
+        }
+    }
+
+    /**
+     * A column of cell objects for types that can not be stored as primitives.
+     */
+    private static class ObjectColumn extends Column {
+
+        Object[] values = new Object[0];
+
+        ObjectColumn() {
+        }
+
+        /**
+         * Create an object column with the values of another column.
+         *
+         * @param column the column to copy.
+         * @param rows the number of rows to copy.
+         */
+        ObjectColumn(Column column, int rows) {
+            values = new Object[grow(rows, rows)];
+
+            for (int i = 0; i < rows; i++) {
+                values[i] = column.get(i);
+            }
+            nulls = column.nulls;
+        }
+
+        boolean accepts(Object value) {
+            return true;
+        }
+
+        void set(int row, Object value) {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            values[row] = value;
+        }
+
+        Object getValue(int row) {
+            return values[row];
+        }
+
+        Class<?> getType() {
+            return null;
+        }
+
+        void trim(int rows) {
+            values = Arrays.copyOf(values, rows);
+        }
+    }
+}
@@ -21,10 +21,8 @@
  */
 package org.ribax.swing.data;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -36,7 +34,9 @@ import utils.log.BasicLogger;
 import utils.types.NameValuePair;
 
 import org.ribax.common.Messages;
+import org.ribax.common.data.RequestScheduler;
 import org.ribax.common.net.NetUtils;
+import org.ribax.common.net.ResumableLineReader;
 import org.ribax.swing.parameters.ParameterSet;
 import org.ribax.swing.ui.DataItem;
 import org.ribax.swing.ui.EditorDataItem;
@@ -44,6 +44,7 @@ import org.ribax.swing.ui.EditorDataItem;
 /**
  * Loads the data for an editor pane from a web service in a background thread.  The data
  * can either be loaded once or can be streamed from the web service to the editor pane.
+ * A stream has a thread of its own and a single load is run on the RequestScheduler.
  *
  * @version <tt>$Revision: $</tt>
  * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
@@ -61,7 +62,9 @@ public class EditorDataLoader extends Thread {
     /** The DataItem that has created this data laoder */
     private DataItem parentDataItem;
     /** A flag to indicate the loader should stop streaming and terminate the thread */
-    private boolean stopped = false;
+    private volatile boolean stopped = false;
+    /** The reader on the streaming web service, null if the loader is not streaming */
+    private volatile ResumableLineReader lineReader = null;
     /** The name of the loader (for debugging) */
     private String name = null;
     private static final String BUNDLE_NAME = "org.ribax.swing.data.messages"; //$NON-NLS-1$
@@ -88,7 +91,11 @@ public class EditorDataLoader extends Thread {
         this.name = name;
 
         // start the ball rolling (this calls the run() method )
-        start();
+        if (stream) {
+            start();
+        } else {
+            RequestScheduler.getInstance().execute(this, parent.getRequestPriority(params), parent);
+        }
     }
 
     /* (non-Javadoc)
@@ -109,6 +116,12 @@ public class EditorDataLoader extends Thread {
      */
     public void stopStreaming() {
         stopped = true;
+
+        ResumableLineReader reader = lineReader;
+
+        if (reader != null) {
+            reader.close();
+        }
     }
 
     /**
@@ -142,8 +155,10 @@ public class EditorDataLoader extends Thread {
                 }
             }
 
-            // open an inpustream from the web service/page
-            InputStream in = NetUtils.getInputStream(url, params, name);
+            // open an inpustream from the web service/page, a page that is only read
+            // may be requested again if the request fails
+            InputStream in = DataItem.isSubmission(params) ? NetUtils.getInputStream(url, params, name)
+                    : NetUtils.loadInputStream(url, params, name);
             editor.setText(""); //$NON-NLS-1$
 
             // set the contents of the editorpane with the contents of the input stream 
@@ -186,12 +201,15 @@ public class EditorDataLoader extends Thread {
             if (LOG.isDebugEnabled()) {
                 LOG.debug(Messages.getString(BUNDLE_NAME, "EditorDataLoader.12")); //$NON-NLS-1$
             }
-            // open an inpustream from the web service/page
-            InputStream in = NetUtils.getInputStream(url, params, name);
-            BufferedReader bin = new BufferedReader(new InputStreamReader(in));
+            // open a reader on the web service/page that reconnects if the
+            // connection drops
+            ResumableLineReader bin = new ResumableLineReader(url, params, name);
+            lineReader = bin;
 
             // a string buffer for storing the input text
             StringBuffer buf = new StringBuffer();
+            // the number of times the stream had been reconnected at the last line
+            int reconnects = 0;
 
             try {
                 // while there are more lines available to read on the input stream
@@ -200,6 +218,17 @@ public class EditorDataLoader extends Thread {
                         break;
                     }
 
+                    // a reconnected stream starts again from the beginning so the text
+                    // read before the connection dropped is thrown away
+                    if (bin.getReconnects() != reconnects) {
+                        reconnects = bin.getReconnects();
+                        buf = new StringBuffer();
+
+                        if (parentDataItem instanceof EditorDataItem) {
+                            editor.setText(""); //$NON-NLS-1$
+                        }
+                    }
+
                     if (line.length() == 0) {
                         continue;
                     }
@@ -249,6 +278,9 @@ public class EditorDataLoader extends Thread {
             } catch (Exception e) {
                 LOG.info(Messages.getString(BUNDLE_NAME, "EditorDataLoader.16"), e); //$NON-NLS-1$
 
+            } finally {
+                lineReader = null;
+                bin.close();
             }
         } catch (MalformedURLException ex) {
             parentDataItem.errorMessage(Messages.getString(BUNDLE_NAME, "EditorDataLoader.17") + url); //$NON-NLS-1$
@@ -0,0 +1,226 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.swing.data;
+
+import java.awt.Dimension;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import utils.log.BasicLogger;
+
+import org.ribax.common.ConfigStrings;
+import org.ribax.common.Messages;
+import org.ribax.common.RIBAXConfig;
+import org.ribax.common.data.DataModelScheduler;
+
+/**
+ * A singleton cache of the images shown in table cells.  Images are loaded on the
+ * DataModelScheduler worker threads and every cell that shows the same URL shares
+ * one AsyncImageIcon.  The cache is bounded by the number of bytes held by the
+ * decoded images and the least recently used images are evicted first.  The size of
+ * every image that has loaded is remembered after the image is evicted so the row 
+ * height of a table can be set before the image is loaded again.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+public class ImageCache {
+
+    private static final String BUNDLE_NAME = "org.ribax.swing.data.messages"; //$NON-NLS-1$
+    /** The default size of the cache in kilobytes if none is configured */
+    public static final int DEFAULT_SIZE = 16384;
+    /** The maximum number of image sizes that are remembered */
+    static final int MAX_SIZES = 4096;
+    /* The singleton instance of the cache */
+    private static ImageCache instance = null;
+    /* The maximum number of bytes held by the cached images */
+    private long maxBytes;
+    /* The number of bytes held by the cached images */
+    private long size = 0;
+    /* The cached icons in least recently used order */
+    private LinkedHashMap<String, AsyncImageIcon> icons =
+            new LinkedHashMap<String, AsyncImageIcon>(16, 0.75f, true);
+    /* The sizes of the images that have loaded */
+    private LinkedHashMap<String, Dimension> sizes =
+            new LinkedHashMap<String, Dimension>(16, 0.75f, true) {
+
+                public static final long serialVersionUID = 1;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Dimension> eldest) {
+                    return size() > MAX_SIZES;
+                }
+            };
+    private static BasicLogger LOG = new BasicLogger(ImageCache.class.getName());
+
+    /**
+     * Create a cache that holds up to a number of bytes of images.
+     *
+     * @param maxBytes the maximum number of bytes held by the cached images.
+     */
+    ImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get the single instance of the cache.  The size of the cache in kilobytes is 
+     * taken from the ImageCacheSize configuration property.
+     *
+     * @return the cache instance.
+     */
+    public synchronized static ImageCache getInstance() {
+        if (instance == null) {
+            instance = new ImageCache(1024L * RIBAXConfig.getInstance().getIntValue(
+                    ConfigStrings.IMAGE_CACHE_SIZE, DEFAULT_SIZE));
+        }
+        return instance;
+    }
+
+    /**
+     * Get the icon for an image URL.  If the image is not in the cache a new icon is
+     * returned immediately and the image is loaded on a worker thread.
+     *
+     * @param url the URL of the image.
+     * @return the icon for the image.
+     * @throws MalformedURLException if the URL is not valid.
+     */
+    public synchronized AsyncImageIcon getIcon(String url) throws MalformedURLException {
+        AsyncImageIcon icon = icons.get(url);
+
+        if (icon != null) {
+            return icon;
+        }
+
+        // check the URL before the worker thread tries to load it
+        new URL(url);
+
+        Dimension d = sizes.get(url);
+
+        if (d == null) {
+            icon = new AsyncImageIcon(url, -1, -1);
+        } else {
+            icon = new AsyncImageIcon(url, d.width, d.height);
+        }
+        icons.put(url, icon);
+
+        final AsyncImageIcon pending = icon;
+
+        DataModelScheduler.getInstance().submit(new Runnable() {
+
+            public void run() {
+                load(pending);
+            }
+        });
+
+        return icon;
+    }
+
+    /**
+     * Get the height of an image from the remembered image sizes.
+     *
+     * @param url the URL of the image.
+     * @return the height of the image or -1 if the image has not been loaded.
+     */
+    public synchronized int getIconHeight(String url) {
+        Dimension d = sizes.get(url);
+
+        return d == null ? -1 : d.height;
+    }
+
+    /**
+     * Get the number of bytes held by the cached images.
+     *
+     * @return the size of the cache in bytes.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the number of icons in the cache including icons that are still loading.
+     *
+     * @return the number of icons.
+     */
+    public synchronized int getCount() {
+        return icons.size();
+    }
+
+    /**
+     * Load the image for an icon, account for its size and tell the listeners of 
+     * the icon that it has loaded.  Called on a worker thread.
+     *
+     * @param icon the icon to load.
+     */
+    void load(AsyncImageIcon icon) {
+        boolean ok = icon.load();
+
+        synchronized (this) {
+            if (!ok) {
+                LOG.error(Messages.getString(BUNDLE_NAME, "ImageCache.0") + icon.getURL()); //$NON-NLS-1$
+
+                // remove the icon so the image is loaded again the next time it is shown
+                if (icons.get(icon.getURL()) == icon) {
+                    icons.remove(icon.getURL());
+                }
+            } else {
+                sizes.put(icon.getURL(), new Dimension(icon.getIconWidth(), icon.getIconHeight()));
+
+                if (icons.get(icon.getURL()) == icon) {
+                    size += bytes(icon);
+                    evict();
+                }
+            }
+        }
+
+        icon.fireLoaded();
+    }
+
+    /**
+     * Remove the least recently used images until the size of the cache is within
+     * the limit.  Icons that are still loading are not removed.
+     */
+    private void evict() {
+        Iterator<AsyncImageIcon> it = icons.values().iterator();
+
+        while (size > maxBytes && it.hasNext()) {
+            AsyncImageIcon icon = it.next();
+
+            if (icon.isLoaded()) {
+                size -= bytes(icon);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Get the number of bytes held by the decoded image of an icon.
+     *
+     * @param icon the icon.
+     * @return the number of bytes assuming 4 bytes per pixel.
+     */
+    static long bytes(AsyncImageIcon icon) {
+        return 4L * Math.max(0, icon.getIconWidth()) * Math.max(0, icon.getIconHeight());
+    }
+}
@@ -0,0 +1,548 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.swing.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import org.jdom.Element;
+import org.jdom.JDOMException;
+
+import utils.log.BasicLogger;
+import utils.table.TableLinkElement;
+import utils.types.Memo;
+import utils.types.NameValuePair;
+
+import org.ribax.common.Messages;
+import org.ribax.common.data.JsonElementBuilder;
+import org.ribax.common.data.JsonReader;
+import org.ribax.common.data.ResumableBlockSource;
+import org.ribax.common.net.Backoff;
+import org.ribax.common.net.DataRequest;
+import org.ribax.common.net.NetUtils;
+import org.ribax.common.net.ResumableStream;
+
+/**
+ * Reads JSON table data from a web service into batches of table rows.  The values
+ * are put straight into TableRows as they are parsed, no Element tree is built for
+ * the rows.  Each top level object of the stream is one batch, e.g.
+ * <pre>
+ *   {"columns": [{"name": "Symbol", "width": 80}, "Price", "Volume"],
+ *    "clear": "ROWDATA",
+ *    "delete": ["MSFT"],
+ *    "rows": [{"key": "IBM", "cells": ["IBM", 97.5, 1200]},
+ *             ["SUNW", {"type": "float", "value": "4.25"}, null]],
+ *    "deltas": [{"key": "HPQ", "cells": {"1": 31.5, "2": 800}}],
+ *    "seq": 42}
+ * </pre>
+ * All the members are optional and the object may be wrapped in a tableData member.
+ * The changes in a batch are applied in the order clear, columns, delete, rows then
+ * deltas.  A delta sets the cells of the existing row with the key in place, the
+ * members of its cells object are the column indexes.
+ * A column is a name or an object with the name, width, editable, tooltip and
+ * visible members.  A row is an array of cells or an object with a key and the cells.
+ * A string cell is a String, a whole number an Integer, any other number a Float,
+ * true or false a Boolean and a null cell is not added, as a &lt;col&gt; without a
+ * value is not.  A cell object with a type and a value is converted as the col
+ * Elements of XML table data with that type are, a link cell has linkurl, title and
+ * iconurl members.  The printOptions and parameters members are built as Elements
+ * and kept in the batch.
+ *
+ * <p>
+ * A table stream is resumed after a dropped connection with the last seq number in
+ * the ResumeSequence parameter, as for XML block streams, and a batch with a seq
+ * number that has already been read is skipped.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.data.JsonReader
+ */
+class JsonTableReader extends ResumableStream implements TableBatchSource {
+
+    private static final String BUNDLE_NAME = "org.ribax.swing.data.messages"; //$NON-NLS-1$
+    /** the parameters to post to the web service */
+    private ArrayList<NameValuePair> params;
+    /** the parser on the current connection */
+    private volatile JsonReader json;
+    /** the sequence number of the last batch, -1 if the stream is not numbered */
+    private long lastSequence = -1;
+    /** the error that ended a table that is not resumed or could not be resumed, null if it has not failed */
+    private IOException error = null;
+    private static BasicLogger LOG = new BasicLogger(JsonTableReader.class.getName());
+
+    /**
+     * Read a JSON table stream on a connection that has already been opened.  The
+     * stream is resumed with the configured reconnection delays.
+     * 
+     * @param url the URL of the web service.
+     * @param params the parameters to post to the web service, may be null.
+     * @param name the name of the Object reading the stream (for debugging).
+     * @param request the request the stream is read for, null if it cannot be cancelled.
+     * @param in the stream on the first connection.
+     * @throws IOException if the stream cannot be read.
+     */
+    JsonTableReader(String url, ArrayList<NameValuePair> params, String name,
+            DataRequest<?> request, InputStream in) throws IOException {
+        this(url, params, name, request, in, new Backoff());
+    }
+
+    /**
+     * Read a JSON table stream on a connection that has already been opened.
+     * 
+     * @param url the URL of the web service.
+     * @param params the parameters to post to the web service, may be null.
+     * @param name the name of the Object reading the stream (for debugging).
+     * @param request the request the stream is read for, null if it cannot be cancelled.
+     * @param in the stream on the first connection.
+     * @param backoff the delays between attempts to reconnect, null if the stream is
+     * not resumed.
+     * @throws IOException if the stream cannot be read.
+     */
+    JsonTableReader(String url, ArrayList<NameValuePair> params, String name,
+            DataRequest<?> request, InputStream in, Backoff backoff) throws IOException {
+        super(url, name, request, backoff);
+        this.params = params;
+        this.json = new JsonReader(in);
+    }
+
+    /**
+     * Read a JSON table document that is loaded once and not resumed.
+     * 
+     * @param url the URL of the web service (only used when logging errors).
+     * @param name the name of the Object reading the document (for debugging).
+     * @param in the stream of the document.
+     * @throws IOException if the stream cannot be read.
+     */
+    JsonTableReader(String url, String name, InputStream in) throws IOException {
+        this(url, null, name, null, in, null);
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.common.net.ResumableStream#open()
+     */
+    protected void open() throws IOException {
+        // the parameters are copied as the base parameters are added to them
+        ArrayList<NameValuePair> list = new ArrayList<NameValuePair>();
+
+        if (params != null) {
+            list.addAll(params);
+        }
+        if (lastSequence >= 0) {
+            list.add(new NameValuePair(ResumableBlockSource.RESUME_SEQUENCE, Long.toString(lastSequence)));
+        }
+
+        json = new JsonReader(NetUtils.getInputStream(url, list, name, request, JsonReader.getHeaders()));
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.common.net.ResumableStream#closeConnection()
+     */
+    protected void closeConnection() {
+        json.close();
+    }
+
+    /**
+     * Read the next top level object.  This call blocks until the whole of the object
+     * has been read.
+     * 
+     * @return the batch of changes or null if the stream has finished, the reader has
+     * been closed, the stream could not be resumed or the table has failed.
+     */
+    public TableRowBatch readBatch() {
+        while (!isClosed()) {
+            try {
+                int event = json.next();
+
+                if (event == JsonReader.END_DOCUMENT) {
+                    // a stream without sequence numbers that ends cleanly has finished
+                    if (lastSequence < 0 || backoff == null) {
+                        return null;
+                    }
+                    throw new IOException(Messages.getString(BUNDLE_NAME, "JsonTableReader.0") + url); //$NON-NLS-1$
+                }
+                if (event != JsonReader.START_OBJECT) {
+                    // a value that is not a batch
+                    json.skipValue();
+                    continue;
+                }
+
+                TableRowBatch batch = new TableRowBatch();
+                long sequence = readBatch(batch);
+
+                if (backoff != null) {
+                    backoff.reset();
+                }
+                if (sequence >= 0 && sequence <= lastSequence) {
+                    // a batch that has already been read
+                    continue;
+                }
+                if (sequence >= 0) {
+                    lastSequence = sequence;
+                }
+                return batch;
+            } catch (IOException ex) {
+                if (!dropped(ex)) {
+                    break;
+                }
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Resume the stream after an error.
+     *
+     * @return true if the stream has been resumed.
+     */
+    private boolean dropped(IOException ex) {
+        if (isClosed()) {
+            return false;
+        }
+        if (backoff == null) {
+            error = ex;
+            LOG.error(name + Messages.getString(BUNDLE_NAME, "JsonTableReader.1") + url, ex); //$NON-NLS-1$
+            return false;
+        }
+        LOG.warning(name + Messages.getString(BUNDLE_NAME, "JsonTableReader.2") + url //$NON-NLS-1$
+                + " " + ex.getMessage()); //$NON-NLS-1$
+
+        if (reconnect(-1)) {
+            return true;
+        }
+        if (!isClosed()) {
+            error = ex;
+        }
+        return false;
+    }
+
+    /*
+     * Read the members of a batch object.
+     *
+     * @return the seq number of the batch or -1 if it has none.
+     */
+    private long readBatch(TableRowBatch batch) throws IOException {
+        long sequence = -1;
+
+        while (json.next() == JsonReader.NAME) {
+            String member = json.getText();
+            int event = json.next();
+
+            if (member.equals("tableData") && event == JsonReader.START_OBJECT) { //$NON-NLS-1$
+                sequence = Math.max(sequence, readBatch(batch));
+            } else if (member.equals("rows") && event == JsonReader.START_ARRAY) { //$NON-NLS-1$
+                while (json.next() != JsonReader.END_ARRAY) {
+                    batch.add(readRow(batch));
+                }
+            } else if (member.equals("deltas") && event == JsonReader.START_ARRAY) { //$NON-NLS-1$
+                while (json.next() != JsonReader.END_ARRAY) {
+                    readDelta(batch);
+                }
+            } else if (member.equals("delete") && event == JsonReader.START_ARRAY) { //$NON-NLS-1$
+                while (json.next() != JsonReader.END_ARRAY) {
+                    if (json.getEvent() == JsonReader.STRING || json.getEvent() == JsonReader.NUMBER) {
+                        batch.delete(json.getText());
+                    } else {
+                        json.skipValue();
+                    }
+                }
+            } else if (member.equals("clear") && event == JsonReader.STRING) { //$NON-NLS-1$
+                batch.setClearType(json.getText());
+            } else if (member.equals("columns") && event == JsonReader.START_ARRAY) { //$NON-NLS-1$
+                batch.setColumns(readColumns());
+            } else if (member.equals(ResumableBlockSource.SEQUENCE) && event == JsonReader.NUMBER) {
+                try {
+                    sequence = Long.parseLong(json.getText());
+                } catch (NumberFormatException ex) {
+                    LOG.warning(name + Messages.getString(BUNDLE_NAME, "JsonTableReader.3") + json.getText()); //$NON-NLS-1$
+                }
+            } else if (member.equals("printOptions") && event == JsonReader.START_OBJECT) { //$NON-NLS-1$
+                batch.setPrintOptions(buildElement(member));
+            } else if (member.equals("parameters") && event == JsonReader.START_OBJECT) { //$NON-NLS-1$
+                batch.setParameters(buildElement(member));
+            } else {
+                json.skipValue();
+            }
+        }
+        return sequence;
+    }
+
+    /*
+     * Build an Element from the current value.
+     */
+    private Element buildElement(String elementName) throws IOException {
+        try {
+            return JsonElementBuilder.build(json, elementName);
+        } catch (JDOMException ex) {
+            throw new IOException(ex.getMessage());
+        }
+    }
+
+    /*
+     * Read a row, the current event is the first event of the row.
+     */
+    private TableRow readRow(TableRowBatch batch) throws IOException {
+        TableRow row = new TableRow();
+
+        if (json.getEvent() == JsonReader.START_ARRAY) {
+            readCells(row, batch);
+        } else if (json.getEvent() == JsonReader.START_OBJECT) {
+            while (json.next() == JsonReader.NAME) {
+                String member = json.getText();
+                int event = json.next();
+
+                if (member.equals("key") && event != JsonReader.NULL //$NON-NLS-1$
+                        && event != JsonReader.START_OBJECT && event != JsonReader.START_ARRAY) {
+                    row.setKey(json.getText());
+                } else if (member.equals("cells") && event == JsonReader.START_ARRAY) { //$NON-NLS-1$
+                    readCells(row, batch);
+                } else {
+                    json.skipValue();
+                }
+            }
+        } else {
+            json.skipValue();
+        }
+        return row;
+    }
+
+    /*
+     * Read a delta into the batch, the current event is the first event of the delta.
+     */
+    private void readDelta(TableRowBatch batch) throws IOException {
+        if (json.getEvent() != JsonReader.START_OBJECT) {
+            json.skipValue();
+            return;
+        }
+
+        String key = null;
+        Vector<Integer> columns = new Vector<Integer>();
+        Vector<Object> values = new Vector<Object>();
+
+        while (json.next() == JsonReader.NAME) {
+            String member = json.getText();
+            int event = json.next();
+
+            if (member.equals("key") && event != JsonReader.NULL //$NON-NLS-1$
+                    && event != JsonReader.START_OBJECT && event != JsonReader.START_ARRAY) {
+                key = json.getText();
+            } else if (member.equals("cells") && event == JsonReader.START_OBJECT) { //$NON-NLS-1$
+                while (json.next() == JsonReader.NAME) {
+                    String column = json.getText();
+
+                    json.next();
+
+                    Object value = readCell(batch);
+
+                    try {
+                        columns.add(Integer.valueOf(column));
+                        values.add(value);
+                    } catch (NumberFormatException ex) {
+                        LOG.warning(name + Messages.getString(BUNDLE_NAME, "JsonTableReader.5") + column); //$NON-NLS-1$
+                    }
+                }
+            } else {
+                json.skipValue();
+            }
+        }
+
+        if (key == null) {
+            return;
+        }
+
+        int[] cols = new int[columns.size()];
+
+        for (int i = 0; i < cols.length; i++) {
+            cols[i] = columns.elementAt(i).intValue();
+        }
+        batch.addDelta(new TableRowDelta(key, cols, values.toArray()));
+    }
+
+    /*
+     * Read the cells of a row, the current event is the START_ARRAY of the cells.
+     */
+    private void readCells(TableRow row, TableRowBatch batch) throws IOException {
+        while (json.next() != JsonReader.END_ARRAY) {
+            Object value = readCell(batch);
+
+            // as for XML rows a cell without a value is not added
+            if (value != null) {
+                row.add(value);
+            }
+        }
+    }
+
+    /*
+     * Read a cell value, the current event is the first event of the cell.
+     */
+    private Object readCell(TableRowBatch batch) throws IOException {
+        switch (json.getEvent()) {
+            case JsonReader.STRING:
+                return json.getText();
+            case JsonReader.NUMBER:
+                if (json.isWholeNumber()) {
+                    try {
+                        return Integer.valueOf(json.getText());
+                    } catch (NumberFormatException ex) {
+                        // too large for an Integer
+                    }
+                }
+                return Float.valueOf(json.getText());
+            case JsonReader.BOOLEAN:
+                return Boolean.valueOf(json.getText());
+            case JsonReader.START_OBJECT:
+                Hashtable<String, String> members = new Hashtable<String, String>();
+
+                readMembers(members);
+                return convert(members, batch);
+            default:
+                json.skipValue();
+                return null;
+        }
+    }
+
+    /*
+     * Read the simple members of an object into a table, the members of an object
+     * member are read into the same table.
+     */
+    private void readMembers(Hashtable<String, String> members) throws IOException {
+        while (json.next() == JsonReader.NAME) {
+            String member = json.getText();
+            int event = json.next();
+
+            if (event == JsonReader.START_OBJECT) {
+                readMembers(members);
+            } else if (event == JsonReader.START_ARRAY) {
+                json.skipValue();
+            } else if (event != JsonReader.NULL) {
+                members.put(member, json.getText());
+            }
+        }
+    }
+
+    /*
+     * Convert a typed cell to the type given by its type member.
+     */
+    private Object convert(Hashtable<String, String> members, TableRowBatch batch) {
+        String type = members.get("type"); //$NON-NLS-1$
+        String value = members.get("value"); //$NON-NLS-1$
+
+        if (type == null || type.equals("string")) { //$NON-NLS-1$
+            return value;
+        }
+        if (type.equals("link")) { //$NON-NLS-1$
+            return new TableLinkElement(members.get("linkurl"), members.get("title"), //$NON-NLS-1$ //$NON-NLS-2$
+                    getIcon(members.get("iconurl"), batch)); //$NON-NLS-1$
+        }
+        if (value == null) {
+            return null;
+        }
+        try {
+            if (type.equals("number")) { //$NON-NLS-1$
+                return Integer.valueOf(value.trim());
+            }
+            if (type.equals("float")) { //$NON-NLS-1$
+                return Float.valueOf(value.trim());
+            }
+        } catch (NumberFormatException ex) {
+            LOG.warning(name + Messages.getString(BUNDLE_NAME, "JsonTableReader.4") + value); //$NON-NLS-1$
+            return type.equals("number") ? (Object) Integer.valueOf(0) : (Object) Float.valueOf(0); //$NON-NLS-1$
+        }
+        if (type.equals("boolean")) { //$NON-NLS-1$
+            return Boolean.valueOf(value.trim());
+        }
+        if (type.equals("memo")) { //$NON-NLS-1$
+            return new Memo(value);
+        }
+        if (type.equals("image")) { //$NON-NLS-1$
+            return getIcon(value, batch);
+        }
+        return value;
+    }
+
+    /*
+     * Get a shared icon for an image, the image is loaded in the background.
+     */
+    private AsyncImageIcon getIcon(String imageURL, TableRowBatch batch) {
+        if (imageURL == null) {
+            return null;
+        }
+        try {
+            AsyncImageIcon icon = ImageCache.getInstance().getIcon(imageURL);
+
+            batch.addIcon(icon);
+            return icon;
+        } catch (Exception ex) {
+            LOG.error(Messages.getString(BUNDLE_NAME, "TableDataModel.35"), ex); //$NON-NLS-1$
+            return null;
+        }
+    }
+
+    /*
+     * Read the column definitions, the current event is the START_ARRAY of the columns.
+     */
+    private Vector<TableRowColumnAttributes> readColumns() throws IOException {
+        Vector<TableRowColumnAttributes> columns = new Vector<TableRowColumnAttributes>();
+
+        while (json.next() != JsonReader.END_ARRAY) {
+            if (json.getEvent() == JsonReader.STRING) {
+                columns.add(new TableRowColumnAttributes(json.getText(), 0, null, false, null, null));
+            } else if (json.getEvent() == JsonReader.START_OBJECT) {
+                Hashtable<String, String> members = new Hashtable<String, String>();
+
+                readMembers(members);
+
+                int width = 0;
+
+                try {
+                    if (members.get("width") != null) { //$NON-NLS-1$
+                        width = Integer.parseInt(members.get("width")); //$NON-NLS-1$
+                    }
+                } catch (NumberFormatException ex) {
+                    LOG.warning(name + Messages.getString(BUNDLE_NAME, "JsonTableReader.4") + members.get("width")); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+
+                TableRowColumnAttributes tca = new TableRowColumnAttributes(members.get("name"), //$NON-NLS-1$
+                        width, null, "true".equals(members.get("editable")), //$NON-NLS-1$ //$NON-NLS-2$
+                        members.get("tooltip"), null); //$NON-NLS-1$
+
+                tca.visible = !"false".equals(members.get("visible")); //$NON-NLS-1$ //$NON-NLS-2$
+                columns.add(tca);
+            } else {
+                json.skipValue();
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Get the error that ended a table that is not resumed or could not be resumed.
+     * 
+     * @return the error or null if the table has not failed.
+     */
+    public IOException getError() {
+        return error;
+    }
+}
@@ -0,0 +1,453 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.swing.data;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import utils.log.BasicLogger;
+import utils.types.Memo;
+import utils.types.NameValuePair;
+
+import org.ribax.common.Messages;
+import org.ribax.common.data.ResumableBlockSource;
+import org.ribax.common.data.RowFrame;
+import org.ribax.common.net.Backoff;
+import org.ribax.common.net.DataRequest;
+import org.ribax.common.net.NetUtils;
+import org.ribax.common.net.ResumableStream;
+
+/**
+ * Reads a binary row frame stream from a web service into batches of table rows.  The
+ * cell values are decoded straight into TableRows without building an Element tree,
+ * and each frame is read into a buffer that is reused for the whole stream.  If the
+ * connection drops the stream is resumed after the last committed set of frames.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.common.data.RowFrame
+ */
+class RowFrameReader extends ResumableStream implements TableBatchSource {
+
+    private static final String BUNDLE_NAME = "org.ribax.swing.data.messages"; //$NON-NLS-1$
+    private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+    /** the parameters to post to the web service */
+    private ArrayList<NameValuePair> params;
+    /** the stream on the current connection */
+    private volatile DataInputStream in;
+    /** the payload of the current frame */
+    private ByteBuffer frame = ByteBuffer.allocate(1024);
+    /** the sequence number of the last commit, -1 if the stream is not numbered */
+    private long lastSequence = -1;
+    /** the error that ended the stream when it could not be resumed, null if it has not failed */
+    private IOException error = null;
+    private static BasicLogger LOG = new BasicLogger(RowFrameReader.class.getName());
+
+    /**
+     * Read a frame stream on a connection that has already been opened.  The stream
+     * is resumed with the configured reconnection delays.
+     * 
+     * @param url the URL of the web service.
+     * @param params the parameters to post to the web service, may be null.
+     * @param name the name of the Object reading the stream (for debugging).
+     * @param request the request the stream is read for, null if it cannot be cancelled.
+     * @param in the stream on the first connection, positioned at the frame stream header.
+     * @throws IOException if the stream is not a frame stream.
+     */
+    RowFrameReader(String url, ArrayList<NameValuePair> params, String name,
+            DataRequest<?> request, InputStream in) throws IOException {
+        this(url, params, name, request, in, new Backoff());
+    }
+
+    /**
+     * Read a frame stream on a connection that has already been opened.
+     * 
+     * @param url the URL of the web service.
+     * @param params the parameters to post to the web service, may be null.
+     * @param name the name of the Object reading the stream (for debugging).
+     * @param request the request the stream is read for, null if it cannot be cancelled.
+     * @param in the stream on the first connection, positioned at the frame stream header.
+     * @param backoff the delays between attempts to reconnect.
+     * @throws IOException if the stream is not a frame stream.
+     */
+    RowFrameReader(String url, ArrayList<NameValuePair> params, String name,
+            DataRequest<?> request, InputStream in, Backoff backoff) throws IOException {
+        super(url, name, request, backoff);
+        this.params = params;
+        this.in = readHeader(in);
+    }
+
+    /**
+     * Get the headers of a request for a table stream that prefers frames to XML.
+     * 
+     * @return the request headers.
+     */
+    static Hashtable<String, String> getHeaders() {
+        Hashtable<String, String> headers = new Hashtable<String, String>();
+
+        headers.put("Accept", RowFrame.ACCEPT); //$NON-NLS-1$
+        return headers;
+    }
+
+    /*
+     * Check the header of a frame stream.
+     */
+    private DataInputStream readHeader(InputStream stream) throws IOException {
+        DataInputStream din = new DataInputStream(stream instanceof BufferedInputStream
+                ? stream : new BufferedInputStream(stream));
+
+        for (int i = 0; i < RowFrame.MAGIC.length; i++) {
+            if (din.read() != RowFrame.MAGIC[i]) {
+                din.close();
+                throw new IOException(Messages.getString(BUNDLE_NAME, "RowFrameReader.0") + url); //$NON-NLS-1$
+            }
+        }
+
+        int version = din.readUnsignedByte();
+
+        if (version > RowFrame.VERSION) {
+            din.close();
+            throw new IOException(Messages.getString(BUNDLE_NAME, "RowFrameReader.1") + version); //$NON-NLS-1$
+        }
+        return din;
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.common.net.ResumableStream#open()
+     */
+    protected void open() throws IOException {
+        // the parameters are copied as the base parameters are added to them
+        ArrayList<NameValuePair> list = new ArrayList<NameValuePair>();
+
+        if (params != null) {
+            list.addAll(params);
+        }
+        if (lastSequence >= 0) {
+            list.add(new NameValuePair(ResumableBlockSource.RESUME_SEQUENCE, Long.toString(lastSequence)));
+        }
+
+        in = readHeader(NetUtils.getInputStream(url, list, name, request, getHeaders()));
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.common.net.ResumableStream#closeConnection()
+     */
+    protected void closeConnection() {
+        try {
+            in.close();
+        } catch (IOException ex) {
+        }
+    }
+
+    /**
+     * Read the frames up to the next commit.  This call blocks until the commit frame
+     * has been read.
+     * 
+     * @return the batch of changes or null if the stream has finished, the reader has
+     * been closed or the stream could not be resumed, see getError().
+     */
+    public TableRowBatch readBatch() {
+        TableRowBatch batch = new TableRowBatch();
+        boolean pending = false;
+
+        while (!isClosed()) {
+            try {
+                if (!readFrame(in)) {
+                    // a stream without sequence numbers that ends cleanly has finished
+                    return pending ? batch : null;
+                }
+
+                int op = frame.get();
+
+                switch (op) {
+                    case RowFrame.COMMIT:
+                        long sequence = frame.getLong();
+
+                        backoff.reset();
+
+                        if (sequence >= 0 && sequence <= lastSequence) {
+                            // a set of frames that has already been read
+                            batch = new TableRowBatch();
+                            pending = false;
+                            continue;
+                        }
+                        if (sequence >= 0) {
+                            lastSequence = sequence;
+                        }
+                        return batch;
+                    case RowFrame.UPSERT:
+                        batch.add(readRow(batch));
+                        break;
+                    case RowFrame.DELTA:
+                        TableRowDelta delta = readDelta(batch);
+
+                        if (delta.getKey() != null) {
+                            batch.addDelta(delta);
+                        }
+                        break;
+                    case RowFrame.DELETE:
+                        String key = readString();
+
+                        if (key != null) {
+                            batch.delete(key);
+                        }
+                        break;
+                    case RowFrame.CLEAR:
+                        batch = clear(batch, readString());
+                        break;
+                    case RowFrame.COLUMNS:
+                        batch.setColumns(readColumns());
+                        break;
+                    default:
+                        // a frame from a later version of the format
+                        continue;
+                }
+                pending = true;
+            } catch (BufferUnderflowException ex) {
+                if (!dropped(new IOException(Messages.getString(BUNDLE_NAME, "RowFrameReader.2") + url))) { //$NON-NLS-1$
+                    break;
+                }
+                batch = new TableRowBatch();
+                pending = false;
+            } catch (IOException ex) {
+                if (!dropped(ex)) {
+                    break;
+                }
+                // the frames since the last commit are sent again on the new connection
+                batch = new TableRowBatch();
+                pending = false;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Resume the stream after an error.
+     *
+     * @return true if the stream has been resumed.
+     */
+    private boolean dropped(IOException ex) {
+        if (isClosed()) {
+            return false;
+        }
+        LOG.warning(name + Messages.getString(BUNDLE_NAME, "RowFrameReader.3") + url //$NON-NLS-1$
+                + " " + ex.getMessage()); //$NON-NLS-1$
+
+        if (reconnect(-1)) {
+            return true;
+        }
+        if (!isClosed()) {
+            error = ex;
+        }
+        return false;
+    }
+
+    /**
+     * Get the error that ended a stream that could not be resumed.
+     * 
+     * @return the error or null if the stream has not failed.
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /*
+     * Read the next frame into the frame buffer.
+     *
+     * @return false if the stream has ended between frames and is not numbered.
+     * @throws IOException if the stream has been cut off and should be resumed.
+     */
+    private boolean readFrame(DataInputStream din) throws IOException {
+        int length;
+
+        try {
+            length = din.readInt();
+        } catch (EOFException ex) {
+            if (lastSequence < 0) {
+                return false;
+            }
+            throw ex;
+        }
+
+        if (length <= 0 || length > RowFrame.MAX_FRAME_SIZE) {
+            throw new IOException(Messages.getString(BUNDLE_NAME, "RowFrameReader.2") + url); //$NON-NLS-1$
+        }
+        if (length > frame.capacity()) {
+            frame = ByteBuffer.allocate(Math.max(length, frame.capacity() * 2));
+        }
+
+        frame.clear();
+        din.readFully(frame.array(), 0, length);
+        frame.limit(length);
+        return true;
+    }
+
+    /*
+     * Read the cells of a row from an UPSERT frame.
+     */
+    private TableRow readRow(TableRowBatch batch) throws IOException {
+        TableRow row = new TableRow();
+
+        row.setKey(readString());
+
+        int count = frame.getShort();
+
+        row.ensureCapacity(count);
+
+        for (int i = 0; i < count; i++) {
+            Object value = readValue(batch);
+
+            // as for XML rows a cell without a value is not added
+            if (value != null) {
+                row.add(value);
+            }
+        }
+        return row;
+    }
+
+    /*
+     * Read the changed cells of a row from a DELTA frame.
+     */
+    private TableRowDelta readDelta(TableRowBatch batch) throws IOException {
+        String key = readString();
+        int count = frame.getShort();
+        int[] columns = new int[count];
+        Object[] values = new Object[count];
+
+        for (int i = 0; i < count; i++) {
+            columns[i] = frame.getShort();
+            values[i] = readValue(batch);
+        }
+        return new TableRowDelta(key, columns, values);
+    }
+
+    /*
+     * Read a typed cell value.
+     */
+    private Object readValue(TableRowBatch batch) throws IOException {
+        int type = frame.get();
+
+        switch (type) {
+            case RowFrame.NULL:
+                return null;
+            case RowFrame.STRING:
+                return readString();
+            case RowFrame.NUMBER:
+                return Integer.valueOf(frame.getInt());
+            case RowFrame.FLOAT:
+                return Float.valueOf(frame.getFloat());
+            case RowFrame.BOOLEAN:
+                return Boolean.valueOf(frame.get() != 0);
+            case RowFrame.MEMO:
+                return new Memo(readString());
+            case RowFrame.IMAGE:
+                String imageURL = readString();
+
+                if (imageURL == null) {
+                    return null;
+                }
+                try {
+                    // get a shared icon, the image is loaded in the background
+                    AsyncImageIcon icon = ImageCache.getInstance().getIcon(imageURL);
+
+                    batch.addIcon(icon);
+                    return icon;
+                } catch (Exception ex) {
+                    LOG.error(Messages.getString(BUNDLE_NAME, "TableDataModel.35"), ex); //$NON-NLS-1$
+                    return null;
+                }
+            default:
+                throw new IOException(Messages.getString(BUNDLE_NAME, "RowFrameReader.4") + type); //$NON-NLS-1$
+        }
+    }
+
+    /*
+     * Read the column definitions from a COLUMNS frame.
+     */
+    private Vector<TableRowColumnAttributes> readColumns() {
+        int count = frame.getShort();
+        Vector<TableRowColumnAttributes> columns = new Vector<TableRowColumnAttributes>(count);
+
+        for (int i = 0; i < count; i++) {
+            String colName = readString();
+            int width = frame.getInt();
+
+            columns.add(new TableRowColumnAttributes(colName, width, null, false, null, null));
+        }
+        return columns;
+    }
+
+    /*
+     * Start a new batch that clears the table, the changes in the batch before the
+     * clear are dropped.
+     */
+    private TableRowBatch clear(TableRowBatch batch, String clearType) {
+        TableRowBatch cleared = new TableRowBatch();
+
+        if (!TableDataModel.ALL.equals(clearType)) {
+            // the column definitions are kept
+            cleared.setColumns(batch.getColumns());
+            clearType = TableDataModel.ALL.equals(batch.getClearType())
+                    ? TableDataModel.ALL : TableDataModel.ROWDATA;
+        }
+        cleared.setClearType(clearType);
+        return cleared;
+    }
+
+    /*
+     * Read a string from the frame buffer.
+     */
+    private String readString() {
+        int length = frame.getInt();
+
+        if (length < 0) {
+            return null;
+        }
+        if (length > frame.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        String s = new String(frame.array(), frame.position(), length, UTF8);
+
+        frame.position(frame.position() + length);
+        return s;
+    }
+
+    /**
+     * Get the sequence number of the last commit that was read.
+     * 
+     * @return the sequence number or -1 if the stream is not numbered.
+     */
+    long getLastSequence() {
+        return lastSequence;
+    }
+}
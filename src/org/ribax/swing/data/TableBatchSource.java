@@ -0,0 +1,59 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.swing.data;
+
+import java.io.IOException;
+
+/**
+ * A source of the batches of table rows that a web service streams to a table without
+ * sending them as XML blocks, e.g. a binary row frame stream or a JSON table stream.
+ * The first batch holds the column definitions and the initial rows and each later
+ * batch holds the changes to apply to the table in one step.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.swing.data.RowFrameReader
+ * @see org.ribax.swing.data.JsonTableReader
+ */
+interface TableBatchSource {
+
+    /**
+     * Read the next batch.  This call blocks until the whole of the batch has arrived.
+     *
+     * @return the batch or null if the stream has ended, the source has been closed or
+     * the stream has failed.
+     */
+    TableRowBatch readBatch();
+
+    /**
+     * Get the error that ended the stream when readBatch() returned null.
+     *
+     * @return the error or null if the stream ended cleanly or the source was closed.
+     */
+    IOException getError();
+
+    /**
+     * Close the source and the underlying stream.
+     */
+    void close();
+}
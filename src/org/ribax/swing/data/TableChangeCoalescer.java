@@ -0,0 +1,257 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.swing.data;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Collects the rows and cells of a table model that have been inserted or updated and
+ * fires the smallest set of table model events that describes the changes.  Changes
+ * that arrive within the repaint interval are merged and fired in a single dispatch
+ * on the event dispatch thread, so a table showing streamed data keeps its selection
+ * and scroll position and only repaints the rows that have changed.  Only updates and
+ * inserts are merged, a change to all the data or to the columns is fired at once as
+ * the rows recorded before it may no longer exist.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+class TableChangeCoalescer implements ActionListener {
+
+    /** The number of separate updated row ranges above which a single range is fired */
+    static final int MAX_RANGES = 32;
+    /** The number of separate updated cells above which their rows are updated instead */
+    static final int MAX_CELLS = 64;
+    /* The table model that fires the events */
+    private AbstractTableModel model;
+    /* The timer that fires the merged events, null if events are fired immediately */
+    private Timer timer = null;
+    /* The rows that have been updated */
+    private BitSet updated = new BitSet();
+    /* The columns of the cells that have been updated keyed by row */
+    private TreeMap<Integer, BitSet> cells = new TreeMap<Integer, BitSet>();
+    /* The number of cells that have been updated */
+    private int cellCount = 0;
+    /* The range of rows that have been inserted */
+    private int insertFirst = -1;
+    private int insertLast = -1;
+
+    /**
+     * Create a coalescer for a table model.
+     *
+     * @param model the table model that fires the events.
+     * @param interval the repaint interval in milliseconds.  If the interval is 0
+     * the events are fired by the thread that calls schedule().
+     */
+    TableChangeCoalescer(AbstractTableModel model, int interval) {
+        this.model = model;
+
+        if (interval > 0) {
+            timer = new Timer(interval, this);
+            timer.setRepeats(false);
+        }
+    }
+
+    /**
+     * Record that a range of rows has been inserted.
+     *
+     * @param first the index of the first inserted row.
+     * @param last the index of the last inserted row.
+     */
+    synchronized void rowsInserted(int first, int last) {
+        if (insertFirst < 0) {
+            insertFirst = first;
+            insertLast = last;
+        } else {
+            insertFirst = Math.min(insertFirst, first);
+            insertLast = Math.max(insertLast, last);
+        }
+    }
+
+    /**
+     * Record that a row has been updated.
+     *
+     * @param row the index of the updated row.
+     */
+    synchronized void rowUpdated(int row) {
+        updated.set(row);
+    }
+
+    /**
+     * Record that a cell has been updated.
+     *
+     * @param row the index of the row of the cell.
+     * @param col the index of the column of the cell.
+     */
+    synchronized void cellUpdated(int row, int col) {
+        BitSet cols = cells.get(row);
+
+        if (cols == null) {
+            cols = new BitSet();
+            cells.put(Integer.valueOf(row), cols);
+        }
+        if (!cols.get(col)) {
+            cols.set(col);
+            cellCount++;
+        }
+    }
+
+    /**
+     * Fire a change to all the table data now, must be called on the event dispatch
+     * thread.  Any recorded changes are dropped as the event repaints every row.
+     */
+    void dataChanged() {
+        reset();
+        model.fireTableDataChanged();
+    }
+
+    /**
+     * Fire a change to the table columns now, must be called on the event dispatch
+     * thread.  Any recorded changes are dropped as the event rebuilds the table.
+     */
+    void structureChanged() {
+        reset();
+        model.fireTableStructureChanged();
+    }
+
+    /*
+     * Forget the recorded changes.
+     */
+    private synchronized void reset() {
+        updated = new BitSet();
+        cells = new TreeMap<Integer, BitSet>();
+        cellCount = 0;
+        insertFirst = insertLast = -1;
+    }
+
+    /**
+     * Fire the recorded changes now or, if there is a repaint interval, when the
+     * interval has passed.
+     */
+    void schedule() {
+        if (timer == null) {
+            flush();
+        } else if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.awt.event.ActionListener#actionPerformed(java.awt.event.ActionEvent)
+     */
+    public void actionPerformed(ActionEvent e) {
+        flush();
+    }
+
+    /**
+     * Fire the recorded changes and reset the change record.
+     */
+    void flush() {
+        BitSet rows;
+        TreeMap<Integer, BitSet> cols;
+        int first, last, count;
+
+        synchronized (this) {
+            rows = updated;
+            cols = cells;
+            count = cellCount;
+            first = insertFirst;
+            last = insertLast;
+            reset();
+        }
+
+        // many changed cells are repainted as whole rows
+        if (count > MAX_CELLS) {
+            for (Integer row : cols.keySet()) {
+                rows.set(row.intValue());
+            }
+            cols.clear();
+        }
+
+        // inserted rows are repainted anyway
+        if (first >= 0 && first < rows.length()) {
+            rows.clear(first, rows.length());
+        }
+
+        fireRowsUpdated(rows);
+        fireCellsUpdated(cols, rows, first);
+
+        if (first >= 0) {
+            model.fireTableRowsInserted(first, last);
+        }
+    }
+
+    /*
+     * Fire an update event for each updated cell that is not in an updated or
+     * inserted row.
+     */
+    private void fireCellsUpdated(TreeMap<Integer, BitSet> cols, BitSet rows, int first) {
+        for (Map.Entry<Integer, BitSet> entry : cols.entrySet()) {
+            int row = entry.getKey().intValue();
+
+            if (rows.get(row) || (first >= 0 && row >= first)) {
+                continue;
+            }
+
+            BitSet bits = entry.getValue();
+
+            for (int col = bits.nextSetBit(0); col >= 0; col = bits.nextSetBit(col + 1)) {
+                model.fireTableCellUpdated(row, col);
+            }
+        }
+    }
+
+    /*
+     * Fire an update event for each range of updated rows or a single event for
+     * all the rows between the first and last updated rows if there are too many ranges.
+     */
+    private void fireRowsUpdated(BitSet rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        int ranges = 0;
+
+        for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(rows.nextClearBit(i))) {
+            ranges++;
+        }
+
+        if (ranges > MAX_RANGES) {
+            model.fireTableRowsUpdated(rows.nextSetBit(0), rows.length() - 1);
+            return;
+        }
+
+        for (int i = rows.nextSetBit(0); i >= 0; ) {
+            int end = rows.nextClearBit(i);
+
+            model.fireTableRowsUpdated(i, end - 1);
+            i = rows.nextSetBit(end);
+        }
+    }
+}
@@ -22,24 +22,39 @@
 package org.ribax.swing.data;
 
 import java.awt.Cursor;
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Hashtable;
 
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
 import org.jdom.Element;
 import org.jdom.JDOMException;
+import org.jdom.input.SAXBuilder;
 
 import utils.log.BasicLogger;
 import utils.types.NameValuePair;
 
+import org.ribax.common.ConfigStrings;
 import org.ribax.common.Messages;
+import org.ribax.common.RIBAXConfig;
 import org.ribax.common.data.DataUtils;
+import org.ribax.common.data.ElementBlockReader;
+import org.ribax.common.data.ElementBlockSource;
+import org.ribax.common.data.JsonReader;
+import org.ribax.common.data.RequestScheduler;
+import org.ribax.common.data.ResumableBlockSource;
+import org.ribax.common.data.RowFrame;
+import org.ribax.common.net.Backoff;
+import org.ribax.common.net.DataRequest;
 import org.ribax.common.net.NetUtils;
+import org.ribax.common.net.PushDataSource;
 import org.ribax.swing.parameters.ParameterSet;
+import org.ribax.swing.ui.DataItem;
 import org.ribax.swing.ui.TableDataItem;
 
 /**
@@ -61,11 +76,13 @@ public class TableDataLoader extends Thread {
     /** the TABLE DataItem that created this TableDataLoader */
     private TableDataItem parentDataItem;
     /** tells the TableDataLoader to stop streaming data from a web service */
-    private boolean stopped = false;
+    private volatile boolean stopped = false;
     /** a TableDataModel to store the table data */
     private TableDataModel data;
     /** the name of this object or the parent (for debugging) */
     private String name = null;
+    /** the request reading the table data, cancelled to stop the TableDataLoader */
+    private DataRequest<?> request = null;
     private static BasicLogger LOG = new BasicLogger(TableDataLoader.class.getName());
 
     /**
@@ -86,8 +103,13 @@ public class TableDataLoader extends Thread {
         this.stream = stream;
         this.name = name;
 
-        // get the ball rolling
-        start();
+        // get the ball rolling, a stream keeps a thread of its own and a single load
+        // waits its turn on the request scheduler
+        if (stream) {
+            start();
+        } else {
+            RequestScheduler.getInstance().execute(this, parent.getRequestPriority(params), parent);
+        }
     }
 
     /* (non-Javadoc)
@@ -129,19 +151,52 @@ public class TableDataLoader extends Thread {
     }
 
     /**
-     * Signal that we should stop streaming.
+     * Set the data model in the parent on the event dispatch thread.  Later changes
+     * to the model are also made on the event dispatch thread so they are applied
+     * after the model has been set.
+     * @param model the data model to set.
+     */
+    private void setModel(final AbstractTableModel model) {
+        SwingUtilities.invokeLater(new Runnable() {
+
+            public void run() {
+                parentDataItem.setModel(model);
+            }
+        });
+    }
+
+    /**
+     * Signal that we should stop streaming.  The request reading the table data is
+     * cancelled so a read that is waiting for data is aborted.
      */
     public void close() {
-        stopped = true;
+        DataRequest<?> r;
+
+        synchronized (this) {
+            stopped = true;
+            r = request;
+        }
+
+        if (r != null) {
+            r.cancel(false);
+        }
     }
 
     /**
-     * Open an input stream from a web service given in the URL property.
-     * @return an open InputStream or null if an error occured.
-     * @throws Exception in an error occurs.
+     * Set the request that is reading the table data.
+     * @param r the request.
+     * @return false if the TableDataLoader has been closed and the request should 
+     * not be run.
      */
-    private InputStream getInputStream() throws Exception {
-        // add any global parameters
+    private synchronized boolean setRequest(DataRequest<?> r) {
+        request = r;
+        return !stopped;
+    }
+
+    /**
+     * Add any global parameters to the parameters submitted to the web service.
+     */
+    private void addGlobalParameters() {
         if (ParameterSet.globalParameterSet != null) {
             ArrayList<NameValuePair> tlist = ParameterSet.globalParameterSet.getNameValuePairs();
             if (tlist != null) {
@@ -151,12 +206,36 @@ public class TableDataLoader extends Thread {
                 params.addAll(tlist);
             }
         }
+    }
+
+    /**
+     * Open a stream of XML blocks from a web service given in the URL property.
+     * @param request the request the stream is opened for.
+     * @param triggers the names of the blocks to read.
+     * @return the source of the blocks.
+     * @throws Exception in an error occurs.
+     */
+    private ElementBlockSource getBlockSource(DataRequest<?> request, String[] triggers)
+            throws Exception {
+        return DataUtils.getBlockSource(url, params, name, triggers, request);
+    }
 
-        return NetUtils.getInputStream(url, params, name);
+    /**
+     * Test whether to ask the web service for a binary row frame stream rather than
+     * XML.  Frames are requested from web services unless the TableRowFrames 
+     * configuration property is false.
+     * @return true to request a frame stream.
+     */
+    private boolean requestFrames() {
+        Object enabled = RIBAXConfig.getInstance().getValue(ConfigStrings.TABLE_ROW_FRAMES, Boolean.TRUE);
+
+        return ResumableBlockSource.isResumableURL(url)
+                && !"false".equalsIgnoreCase(enabled.toString().trim()); //$NON-NLS-1$
     }
 
     /**
-     * Get the table data once from a web service.
+     * Get the table data once from a web service.  A web service may send the table
+     * as JSON, which is read straight into the rows of the model.
      */
     private void loadTableData() {
 
@@ -164,28 +243,51 @@ public class TableDataLoader extends Thread {
         System.gc();
 
         // add any global parameters
-        if (ParameterSet.globalParameterSet != null) {
-            ArrayList<NameValuePair> tlist = ParameterSet.globalParameterSet.getNameValuePairs();
-            if (tlist != null) {
-                if (params == null) {
-                    params = new ArrayList<NameValuePair>();
-                }
-                params.addAll(tlist);
+        addGlobalParameters();
+
+        // read the document in a request that is cancelled if the loader is closed
+        long timeout = RIBAXConfig.getInstance().getIntValue(ConfigStrings.REQUEST_TIMEOUT,
+                DataItem.DEFAULT_REQUEST_TIMEOUT) * 1000L;
+        DataRequest<Object> loadRequest = new DataRequest<Object>(timeout) {
+
+            protected Object call() throws Exception {
+                return readDocument(this);
             }
+        };
+
+        // a load can be retried unless a button asked the web service to change data
+        loadRequest.setIdempotent(!DataItem.isSubmission(params));
+
+        if (!setRequest(loadRequest)) {
+            return;
         }
 
         try {
+            loadRequest.run();
+
+            Object result = loadRequest.getResult();
+
+            if (result instanceof TableRowBatch) {
+                loadJsonTable((TableRowBatch) result);
+                return;
+            }
+
             // get the root element
-            Element root = DataUtils.getDocumentRoot(url, params, name);
+            Element root = (Element) result;
 
             if (LOG.isDebugEnabled()) {
                 LOG.debug(Messages.getString(BUNDLE_NAME, "TableDataLoader.2")); //$NON-NLS-1$
             }
-            // create a new TableDataModel with the Element tree
-            data = new TableDataModel(root, url);
-
-            // set the data model in the parent
-            parentDataItem.setModel(data);
+            // create a new table model with the Element tree, large read only reports
+            // can use the columnar model
+            if (ColumnarTableDataModel.isColumnar(root)) {
+                setModel(new ColumnarTableDataModel(root, url));
+            } else {
+                data = new TableDataModel(root, url);
+
+                // set the data model in the parent
+                setModel(data);
+            }
 
             Element e;
 
@@ -204,6 +306,10 @@ public class TableDataLoader extends Thread {
             parentDataItem.errorMessage(Messages.getString(BUNDLE_NAME, "TableDataLoader.5") + url); //$NON-NLS-1$
             LOG.error(Messages.getString(BUNDLE_NAME, "TableDataLoader.6") + url, ex); //$NON-NLS-1$
         } catch (IOException ex) {
+            // the loader was closed
+            if (stopped) {
+                return;
+            }
             parentDataItem.errorMessage(Messages.getString(BUNDLE_NAME, "TableDataLoader.9") + url); //$NON-NLS-1$
             LOG.error(Messages.getString(BUNDLE_NAME, "TableDataLoader.10") + url, ex); //$NON-NLS-1$
         } catch (Exception ex) {
@@ -213,46 +319,148 @@ public class TableDataLoader extends Thread {
     }
 
     /**
-     * Stream the table data continously from a web service.  Read a continuous
-     * stream of data and replace or add rows in the data model.
+     * Read the table document from a web service.  A JSON table is read in full by
+     * the request so it is closed if the loader is closed.
+     * @param request the request reading the document.
+     * @return the batch of rows of a JSON table or the root Element of an XML table.
+     * @throws Exception if an error occurs.
+     */
+    private Object readDocument(DataRequest<?> request) throws Exception {
+        BufferedInputStream in = new BufferedInputStream(NetUtils.getInputStream(url, params,
+                name, request, JsonReader.getHeaders()));
+
+        try {
+            if (JsonReader.isJsonStream(in)) {
+                JsonTableReader json = new JsonTableReader(url, name, in);
+                TableRowBatch batch = json.readBatch();
+
+                if (batch == null) {
+                    throw json.getError() != null ? json.getError()
+                            : new IOException(Messages.getString(BUNDLE_NAME, "TableDataLoader.35") + url); //$NON-NLS-1$
+                }
+                return batch;
+            }
+
+            // build the Element tree from the XML input
+            return new SAXBuilder().build(in).getRootElement();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Create the data model of a JSON table.
+     * @param batch the rows of the table.
+     */
+    private void loadJsonTable(TableRowBatch batch) {
+        data = new TableDataModel(batch, url);
+
+        // set the data model in the parent
+        setModel(data);
+
+        // check for print options and parameters
+        if (batch.getPrintOptions() != null) {
+            parentDataItem.readPrintOptions(batch.getPrintOptions());
+        }
+        if (batch.getParameters() != null) {
+            parentDataItem.addParameters(ParameterSet.readParameters(batch.getParameters()));
+        }
+    }
+
+    /**
+     * Stream the table data continously from a web service.  The stream is read in a
+     * request that is cancelled when the TableDataLoader is closed.
      */
     private void streamTableData() {
+        DataRequest<Object> streamRequest = new DataRequest<Object>(0) {
+
+            protected Object call() throws Exception {
+                readStream(this);
+                return null;
+            }
+        };
+
+        streamRequest.setIdempotent(!DataItem.isSubmission(params));
+
+        if (setRequest(streamRequest)) {
+            streamRequest.run();
+        }
+    }
+
+    /**
+     * Read a continuous stream of data and replace or add rows in the data model.
+     * @param request the request reading the stream.
+     */
+    private void readStream(DataRequest<?> request) {
         // the set of end tags we are looking for that deliniate a block of XML data
         String[] triggers = {
             "tableData", "error" //$NON-NLS-1$ //$NON-NLS-2$
         };
 
+        ElementBlockSource reader = null;
+        TableBatchSource batches = null;
+
         try {
 
             if (LOG.isDebugEnabled()) {
                 LOG.debug(Messages.getString(BUNDLE_NAME, "TableDataLoader.13")); //$NON-NLS-1$
             }
-            // get an input stream from the web service
-            InputStream fin = getInputStream();
-
-            if (fin == null) {
-                return;
+            // add any global parameters
+            addGlobalParameters();
+
+            if (PushDataSource.isPushURL(url)) {
+                // get a block reader on the stream from the web service, a push web
+                // service sends the blocks as server-sent events
+                reader = getBlockSource(request, triggers);
+            } else {
+                // only the streams of web services are resumed
+                boolean resumable = ResumableBlockSource.isResumableURL(url);
+                // ask for a binary row frame stream unless frames are disabled, the web
+                // service replies with JSON or XML if it does not support frames. The
+                // parameters are copied as the base parameters are added to them
+                ArrayList<NameValuePair> list = params == null ? null : new ArrayList<NameValuePair>(params);
+                BufferedInputStream in = new BufferedInputStream(NetUtils.getInputStream(url, list,
+                        name, request, requestFrames() ? RowFrameReader.getHeaders() : JsonReader.getHeaders()));
+
+                if (resumable && RowFrame.isFrameStream(in)) {
+                    batches = new RowFrameReader(url, params, name, request, in);
+                    readBatches(batches);
+                    return;
+                }
+                if (JsonReader.isJsonStream(in)) {
+                    // the JSON rows are read straight into the model
+                    batches = new JsonTableReader(url, params, name, request, in,
+                            resumable ? new Backoff() : null);
+                    readBatches(batches);
+                    return;
+                }
+                if (resumable) {
+                    reader = new ResumableBlockSource(url, params, name, triggers, request, in);
+                } else {
+                    reader = new ElementBlockReader(url, in, triggers);
+                }
             }
 
-            // get a buffered reader on the stream
-            BufferedReader bin = new BufferedReader(new InputStreamReader(fin));
-
             // read the initial data
 
             // get the root Element from the stream
-            Element root = DataUtils.readElementBlock(url, bin, triggers);
+            Element root = reader.readBlock();
+
+            if (root == null) {
+                return;
+            }
 
             // create a new TableDataModel with the Element tree
             data = new TableDataModel(root, url);
 
             // set the data model in the parent
-            parentDataItem.setModel(data);
+            setModel(data);
 
             // read the stream of data adding/replacing rows
             while (stopped == false) {
 
                 // get the new Element from the stream
-                root = DataUtils.readElementBlock(url, bin, triggers);
+                root = reader.readBlock();
 
                 // a null Element means there was no more data to read from the stream so 
                 // pack up and go home
@@ -263,17 +471,21 @@ public class TableDataLoader extends Thread {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug(Messages.getString(BUNDLE_NAME, "TableDataLoader.24")); //$NON-NLS-1$
                 }
+                // build the new rows on this thread
+                TableRowBatch batch = data.readRowData(root);
+
                 // if we are given the clear element then clear the table data.
                 // Element text must be one of ALL,ROWDATA, defaults to ROWDATA
                 Element e = root.getChild("clearData"); //$NON-NLS-1$
 
                 if (e != null) // clear the indicated data
                 {
-                    data.clear(e.getText());
+                    batch.setClearType(e.getText());
                 }
 
-                // add the new data to the model
-                data.addRowData(root, true);
+                // clear the data and add the new rows to the model in one step, the
+                // next block is read while the rows are added
+                data.postRowData(batch, true);
             }
 
         } catch (MalformedURLException ex) {
@@ -284,11 +496,65 @@ public class TableDataLoader extends Thread {
             parentDataItem.errorMessage(Messages.getString(BUNDLE_NAME, "TableDataLoader.29") + url); //$NON-NLS-1$
             LOG.error(Messages.getString(BUNDLE_NAME, "TableDataLoader.30") + url, ex); //$NON-NLS-1$
         } catch (IOException ex) {
+            // the loader was closed
+            if (stopped) {
+                return;
+            }
             parentDataItem.errorMessage(Messages.getString(BUNDLE_NAME, "TableDataLoader.31") + url); //$NON-NLS-1$
             LOG.error(Messages.getString(BUNDLE_NAME, "TableDataLoader.32") + url, ex); //$NON-NLS-1$
         } catch (Exception ex) {
             parentDataItem.errorMessage(Messages.getString(BUNDLE_NAME, "TableDataLoader.33") + url); //$NON-NLS-1$
             LOG.error(Messages.getString(BUNDLE_NAME, "TableDataLoader.34") + url, ex); //$NON-NLS-1$
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+            if (batches != null) {
+                batches.close();
+            }
+        }
+    }
+
+    /**
+     * Read a binary row frame stream or a JSON table stream and replace, add or delete
+     * rows in the data model.  The rows are decoded without building an Element tree.
+     * @param batches the reader on the stream.
+     * @throws IOException if the stream failed and could not be resumed.
+     */
+    private void readBatches(TableBatchSource batches) throws IOException {
+        // the first batch holds the column definitions and the initial rows
+        TableRowBatch batch = batches.readBatch();
+
+        if (batch == null) {
+            failed(batches);
+            return;
+        }
+
+        data = new TableDataModel(batch, url);
+
+        // set the data model in the parent
+        setModel(data);
+
+        while (stopped == false) {
+            batch = batches.readBatch();
+
+            if (batch == null) {
+                failed(batches);
+                break;
+            }
+
+            // apply the changes to the model in one step without waiting for them
+            data.postRowData(batch, true);
+        }
+    }
+
+    /*
+     * Report the error that ended a stream of batches, a stream that ended cleanly or
+     * was closed is not an error.
+     */
+    private void failed(TableBatchSource batches) throws IOException {
+        if (batches.getError() != null) {
+            throw batches.getError();
         }
     }
 }
@@ -22,15 +22,21 @@
 package org.ribax.swing.data;
 
 import java.awt.Color;
-import java.net.URL;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Set;
 import java.util.Vector;
 
-import javax.swing.ImageIcon;
 import javax.swing.DefaultCellEditor;
 import javax.swing.JComboBox;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 import javax.swing.table.AbstractTableModel;
 
@@ -44,13 +50,19 @@ import utils.table.XTableModel;
 import utils.xml.XMLutils;
 import utils.types.Memo;
 
+import org.ribax.common.ConfigStrings;
 import org.ribax.common.Messages;
+import org.ribax.common.RIBAXConfig;
 import org.ribax.swing.*;
 
 /**
  * TableDataModel reads table data from an XML source (it has already
  * been parsed by the parser) and implements the AbstractTableModel
  * interface so the model can be used by a JTable.
+ * <p>
+ * The table data is only modified on the event dispatch thread.  Rows read by
+ * another thread are built on that thread and then added on the event dispatch
+ * thread in a single step.
  *
  * @version <tt>$Revision: $</tt>
  * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
@@ -61,18 +73,38 @@ public class TableDataModel extends AbstractTableModel implements XTableModel {
     private static final String BUNDLE_NAME = "org.ribax.swing.data.messages"; //$NON-NLS-1$
     /** a collection of TableRows that comprise the data in the model */
     private Vector<TableRow> data = new Vector<TableRow>();
+    /** a hash index on the row data for replacing rows by key */
+    private TableRowIndex index = new TableRowIndex(data);
+    /** the changes to the row data that have not been fired to listeners yet */
+    private TableChangeCoalescer changes = new TableChangeCoalescer(this,
+            RIBAXConfig.getInstance().getIntValue(ConfigStrings.TABLE_REPAINT_INTERVAL, DEFAULT_REPAINT_INTERVAL));
     /** a collection of rows that have been changed locally */
     private Vector<TableRow> changedRows = new Vector<TableRow>();
     /** a collection of attributes for table columns */
     private Vector<TableRowColumnAttributes> columnAttributes = new Vector<TableRowColumnAttributes>();
-    /** the URL of a web service that has provided the table data */
-    private String url = null;
+    /** reads the rows of table data from an Element tree */
+    private TableRowReader reader = new TableRowReader(null);
+    /** the batches posted by a loader that are waiting to be added on the event dispatch thread */
+    private Vector<Runnable> pending = new Vector<Runnable>();
+    /** repaints the rows that show an image when the image has loaded */
+    private ChangeListener imageListener = new ChangeListener() {
+
+        public void stateChanged(ChangeEvent e) {
+            imageLoaded((AsyncImageIcon) e.getSource());
+        }
+    };
+    /** the indexes of the rows that show each image that has not loaded yet */
+    private Hashtable<AsyncImageIcon, Set<Integer>> iconRows = new Hashtable<AsyncImageIcon, Set<Integer>>();
+    /** indicates the rows have moved since the icon row indexes were built */
+    private boolean iconRowsStale = false;
     /**
      * The preferred height of table rows -1 == no preferred height
      */
     private int maxRowHeight = -1;
     public static final String ALL = "ALL"; //$NON-NLS-1$
     public static final String ROWDATA = "ROWDATA"; //$NON-NLS-1$
+    /** the default time in milliseconds that row changes are merged before they are fired */
+    public static final int DEFAULT_REPAINT_INTERVAL = 30;
     private static BasicLogger LOG = new BasicLogger(TableDataModel.class.getName());
 
     /**
@@ -83,14 +115,26 @@ public class TableDataModel extends AbstractTableModel implements XTableModel {
      * @param url the URL of a web service that has provided the table data.
      */
     public TableDataModel(Element root, String url) {
-        if (url != null && url.length() > 0) {
-            this.url = url;
-        }
+        reader = new TableRowReader(url);
 
         // read the table data from the Element tree
         readData(root);
     }
 
+    /**
+     * Constructor to create a new TableDataModel from the first batch of rows read from
+     * a binary row frame stream.
+     * 
+     * @param batch the first batch of rows, including the column definitions.
+     * @param url the URL of a web service that has provided the table data.
+     */
+    TableDataModel(TableRowBatch batch, String url) {
+        reader = new TableRowReader(url);
+
+        // the model is not visible to any other thread yet so the rows are added directly
+        applyRowData(batch, true);
+    }
+
     /**
      * Constructor to create a new TableDataModel that takes an Element tree argument.
      * 
@@ -114,34 +158,158 @@ public class TableDataModel extends AbstractTableModel implements XTableModel {
      * ROWDATA clears row data and changed row data, ALL clears column name definitions as 
      * well.
      */
-    public void clear(String cleartype) {
+    public void clear(final String cleartype) {
+        invokeAndWait(new Runnable() {
+
+            public void run() {
+                clearData(cleartype);
+
+                // tell any listeners the table data has changed
+                changes.schedule();
+            }
+        });
+    }
+
+    /**
+     * Clear some or all of the table data, must be called on the event dispatch thread.
+     * 
+     * @param cleartype a string indicating the type of data to clear, one of (All,ROWDATA).
+     */
+    private void clearData(String cleartype) {
+        // fire the changes to the rows while their indexes are still valid, the
+        // clear is fired at once so no listener sees the old rows after they are gone
+        changes.flush();
+
         try {
             if (ALL.equals(cleartype)) {
                 // clear everything
                 data.clear();
+                index.clear();
+                iconRows.clear();
                 changedRows.clear();
                 columnAttributes.clear();
+                changes.structureChanged();
             } else {  // defaults to ROWDATA
                 // leave the column name definitions intact
                 data.clear();
+                index.clear();
+                iconRows.clear();
                 changedRows.clear();
+                changes.dataChanged();
             }
         } catch (Exception ex) {
         }
     }
 
     /**
-     * Log a warning message but log the url only once.
+     * Run a task that modifies the table data on the event dispatch thread and wait for
+     * it to finish.  If the caller is already on the event dispatch thread the task is run
+     * immediately.
+     * 
+     * @param task the task to run.
+     */
+    private static void invokeAndWait(Runnable task) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            task.run();
+            return;
+        }
+
+        try {
+            SwingUtilities.invokeAndWait(task);
+        } catch (InterruptedException ex) {
+            // preserve the interrupt for the caller
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException ex) {
+            LOG.error(Messages.getString(BUNDLE_NAME, "TableDataModel.50"), ex); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Repaint the rows that show an image that has loaded, called on the event 
+     * dispatch thread.
+     * 
+     * @param icon the icon whose image has loaded.
+     */
+    private void imageLoaded(AsyncImageIcon icon) {
+        maxRowHeight = Math.max(maxRowHeight, icon.getIconHeight());
+
+        if (iconRowsStale) {
+            // rows have been deleted, find the rows that show each image again
+            for (Set<Integer> rows : iconRows.values()) {
+                rows.clear();
+            }
+            for (int i = 0; i < data.size(); i++) {
+                iconCellsSet(i, data.get(i));
+            }
+            iconRowsStale = false;
+        }
+
+        Set<Integer> rows = iconRows.remove(icon);
+
+        if (rows == null) {
+            return;
+        }
+        for (Integer i : rows) {
+            if (i.intValue() < data.size()) {
+                changes.rowUpdated(i.intValue());
+            }
+        }
+
+        changes.schedule();
+    }
+
+    /**
+     * Record the index of a row that shows an image that has not loaded yet, must be
+     * called on the event dispatch thread whenever a cell is set.
+     * 
+     * @param row the index of the row.
+     * @param value the value of the cell.
+     */
+    private void iconCellSet(int row, Object value) {
+        if (iconRows.isEmpty()) {
+            return;
+        }
+        if (value instanceof TableRowColumnAttributes) {
+            value = ((TableRowColumnAttributes) value).data;
+        }
+        if (value instanceof TableLinkElement) {
+            value = ((TableLinkElement) value).icon;
+        }
+        if (value instanceof AsyncImageIcon) {
+            Set<Integer> rows = iconRows.get(value);
+
+            if (rows != null) {
+                rows.add(Integer.valueOf(row));
+            }
+        }
+    }
+
+    /**
+     * Record the index of a row for each of its cells that shows an image that has not
+     * loaded yet, must be called on the event dispatch thread.
      * 
-     * @param msg the warning message.
+     * @param row the index of the row.
+     * @param cells the cells of the row.
      */
-    private void warn(String msg) {
-        if (url != null) {
-            LOG.warn(Messages.getString(BUNDLE_NAME, "TableDataModel.2") + url); //$NON-NLS-1$
-            // set the url to null so it won't be logged again
-            url = null;
+    private void iconCellsSet(int row, TableRow cells) {
+        if (iconRows.isEmpty()) {
+            return;
         }
-        LOG.warn(msg);
+        for (Object value : cells) {
+            iconCellSet(row, value);
+        }
+    }
+
+    /**
+     * Set the time that changes to the row data are merged before they are fired to
+     * listeners.  Any changes that are waiting to be fired are fired first.
+     * 
+     * @param interval the repaint interval in milliseconds, 0 to fire the changes as soon 
+     * as they are made.
+     */
+    public void setRepaintInterval(int interval) {
+        changes.flush();
+        changes = new TableChangeCoalescer(this, interval);
     }
 
     /**
@@ -225,8 +393,9 @@ public class TableDataModel extends AbstractTableModel implements XTableModel {
             }
         }
 
-        // add the table row data
-        addRowData(root, false);
+        // add the table row data, the model is not visible to any other thread yet
+        // so the rows are added directly
+        applyRowData(readRowData(root), false);
     }
 
     /* (non-Javadoc)
@@ -249,199 +418,246 @@ public class TableDataModel extends AbstractTableModel implements XTableModel {
      * read rows of table data and add them to the data vector.  If replace is true
      * then replace rows which have a matching element in the first String column 
      * NB. the first column may be another type like a checkbox.
+     * The rows are built on the calling thread and then added to the model on the
+     * event dispatch thread.
      * 
      * @param root the Element tree containing the table row data
      * @param replace indicates whether to replace existing rows or not
      */
     public void addRowData(Element root, boolean replace) {
-        Element e;
+        addRowData(readRowData(root), replace);
+    }
 
-        /*  XML data format is
-         * <rowData>
-         *   <row>
-         *     <col>data</col><col>data</col>
-         *   </row>
-         * </rowData>
-         */
+    /**
+     * Add a batch of rows to the table data on the event dispatch thread.  The caller 
+     * waits until the rows have been added.
+     * 
+     * @param batch the batch of rows read by readRowData.
+     * @param replace indicates whether to replace existing rows or not
+     */
+    void addRowData(final TableRowBatch batch, final boolean replace) {
+        invokeAndWait(new Runnable() {
 
-        if ((e = root.getChild("rowData")) != null) { //$NON-NLS-1$
+            public void run() {
+                applyRowData(batch, replace);
+            }
+        });
+    }
 
-            // iterate through the rows
-            List<Element> children = e.getChildren();
-            Iterator<Element> iterator = children.iterator();
-            Color colour = null;
-            int line = 0;
+    /**
+     * Add a batch of rows to the table data on the event dispatch thread without waiting
+     * for the rows to be added, so the thread reading a stream never blocks on the event
+     * dispatch thread.  The batches are added in the order they were posted and the
+     * batches posted while the event dispatch thread is busy are added together.
+     * 
+     * @param batch the batch of rows read by readRowData.
+     * @param replace indicates whether to replace existing rows or not
+     */
+    void postRowData(final TableRowBatch batch, final boolean replace) {
+        Runnable task = new Runnable() {
 
-            while (iterator.hasNext()) {
-                Element row = iterator.next();
-                line++;
-                TableRow v = new TableRow();
-
-                // get the row background colour
-                if ((colour = XMLutils.getColour(row)) != null) {
-                    // add a colour as the first element for the row
-                    v.setRowAttributes(new TableRowColumnAttributes(null, 0, colour,
-                            false, null, null));
-                }
+            public void run() {
+                applyRowData(batch, replace);
+            }
+        };
 
-                // get a key which uniquely identifies the row
-                String key = XMLutils.getElementString("key", row); //$NON-NLS-1$
+        synchronized (pending) {
+            pending.add(task);
 
-                if (key != null) {
-                    v.setKey(key);
-                }
+            // the batches are already waiting to be added
+            if (pending.size() > 1) {
+                return;
+            }
+        }
 
-                // iterate through the columns in this row
-                List<Element> cols = row.getChildren();
-                Iterator<Element> colit = cols.iterator();
-                int colnum = 0;
+        SwingUtilities.invokeLater(new Runnable() {
 
-                while (colit.hasNext()) {
-                    Element col = colit.next();
-                    Object value = null;
-                    String colData = "", colType = null; //$NON-NLS-1$
+            public void run() {
+                applyPending();
+            }
+        });
+    }
 
-                    colour = null;
+    /**
+     * Add the batches of rows that have been posted, called on the event dispatch thread.
+     */
+    private void applyPending() {
+        Runnable[] tasks;
 
-                    // get the cell data type
-                    colType = XMLutils.getElementString("type", col); //$NON-NLS-1$
+        synchronized (pending) {
+            tasks = pending.toArray(new Runnable[pending.size()]);
+            pending.clear();
+        }
 
-                    // get the cell background colour
-                    colour = XMLutils.getColour(col);
+        for (Runnable task : tasks) {
+            task.run();
+        }
+    }
 
-                    // get the cell data value
-                    colData = XMLutils.getElementString("value", col); //$NON-NLS-1$
+    /**
+     * Add a batch of rows to the table data, must be called on the event dispatch thread
+     * once the model is visible to a table.  The changes in the batch are applied in the
+     * order clear, columns, deletes, rows and then the changed cells of existing rows.
+     * 
+     * @param batch the batch of rows read by readRowData.
+     * @param replace indicates whether to replace existing rows or not
+     */
+    private void applyRowData(TableRowBatch batch, boolean replace) {
+        if (batch.getClearType() != null) {
+            clearData(batch.getClearType());
+        }
 
-                    // if no 'value' attribute was given then use the text of the Element
-                    // as the cell data value
-                    if (colData == null) {
-                        colData = col.getText();
-                    }
+        if (batch.getColumns() != null) {
+            changes.flush();
+            columnAttributes.clear();
+            columnAttributes.addAll(batch.getColumns());
+            changes.structureChanged();
+        }
 
-                    // replace newlines in the cell data value
-                    colData = colData.replaceAll("<newline>", "\n"); //$NON-NLS-1$ //$NON-NLS-2$
-
-                    value = colData;
-
-                    // see if we need to convert the cell data value to another type
-                    if (colType != null) {
-                        if (colType.equals("boolean")) { //$NON-NLS-1$
-                            // convert it to a Boolean
-                            try {
-                                value = new Boolean(colData);
-                            } catch (Exception ex) {
-                                warn(Messages.getString(BUNDLE_NAME, "TableDataModel.18") + colData + Messages.getString(BUNDLE_NAME, "TableDataModel.19") + colnum + Messages.getString(BUNDLE_NAME, "TableDataModel.20") + line + ") "); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
-                                value = new Boolean(false);
-                            }
-                        } else if (colType.equals("float")) { //$NON-NLS-1$
-                            // convert it to a Float
-                            try {
-                                value = new Float(colData);
-                            } catch (Exception ex) {
-                                warn(Messages.getString(BUNDLE_NAME, "TableDataModel.23") + colData + Messages.getString(BUNDLE_NAME, "TableDataModel.24") + colnum + Messages.getString(BUNDLE_NAME, "TableDataModel.25") + line + ") "); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
-                                value = new Float(0.0);
-                            }
-                        } else if (colType.equals("number")) { //$NON-NLS-1$
-                            // convert it to a Number
-                            try {
-                                value = new Integer(colData);
-                            } catch (Exception ex) {
-                                warn(Messages.getString(BUNDLE_NAME, "TableDataModel.28") + colData + Messages.getString(BUNDLE_NAME, "TableDataModel.29") + colnum + Messages.getString(BUNDLE_NAME, "TableDataModel.30") + line + ") "); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
-                                value = new Integer(0);
-                            }
-                        } else if (colType.equals("string")) { //$NON-NLS-1$
-                            // no conversion needed
-                            value = colData;
-
-                        } else if (colType.equals("memo")) { //$NON-NLS-1$
-                            // create a new Memo object
-                            value = new Memo(colData);
-                        } else if (colType.equals("image")) { //$NON-NLS-1$
-
-                            // create a new ImageIcon using the cell data value as the
-                            // URL of the image
-                            ImageIcon icon = null;
-
-                            if (colData != null) {
-                                try {
-                                    URL u = new URL(colData);
-
-                                    icon = new ImageIcon(u);
-
-                                    // while we are here get the maximum row height from
-                                    // this image
-                                    maxRowHeight = Math.max(maxRowHeight, icon.getIconHeight());
-
-                                    value = icon;
-                                } catch (Exception ex) {
-                                    LOG.error(Messages.getString(BUNDLE_NAME, "TableDataModel.35"), ex); //$NON-NLS-1$
-                                }
-                            }
-                        } else if (colType.equals("link")) { //$NON-NLS-1$
-                            // the cell is a hyperlink so the column definition
-                            // contains embedded items that define the link url etc.
-                            ImageIcon icon = null;
-
-                            // get the Element containing the link definition
-                            if ((e = col.getChild("value")) != null) { //$NON-NLS-1$
-                                String linkurl = null, title = null, iconURL = null;
-
-                                // get the URL of the link
-                                linkurl = XMLutils.getElementString("linkurl", e); //$NON-NLS-1$
-
-                                // get an optional link title to display
-                                title = XMLutils.getElementString("title", e); //$NON-NLS-1$
-
-                                // get an optional icon to display
-                                iconURL = XMLutils.getElementString("iconurl", e); //$NON-NLS-1$
-
-                                if (iconURL != null) {
-                                    try {
-                                        URL u = new URL(iconURL);
-
-                                        icon = new ImageIcon(u);
-
-                                        // while we are here get the maximum row height from
-                                        // this image
-                                        maxRowHeight = Math.max(maxRowHeight, icon.getIconHeight());
-
-                                    } catch (Exception ex) {
-                                        LOG.error(Messages.getString(BUNDLE_NAME, "TableDataModel.41"), ex); //$NON-NLS-1$
-                                    }
-                                }
-                                // create a new TableLinkElement
-                                value = new TableLinkElement(linkurl, title, icon);
-                            } else {
-                                value = null;
-                            }
-                        }
-                    }
+        if (batch.getDeletes().size() > 0) {
+            deleteRows(batch.getDeletes());
+        }
 
-                    // if a background colour was specified then create a new TableRowColumnAttributes
-                    // which holds the real value along with the background colour
-                    if (colour != null) {
-                        value = new TableRowColumnAttributes(null, 0, colour,
-                                false, null, value);
-                    }
+        maxRowHeight = Math.max(maxRowHeight, batch.getRowHeight());
 
-                    // add this column to the row
-                    if (value != null) {
-                        v.add(value);
-                    }
+        // repaint the rows that show an image when the image has loaded
+        for (AsyncImageIcon icon : batch.getPendingIcons()) {
+            if (!iconRows.containsKey(icon)) {
+                iconRows.put(icon, new HashSet<Integer>());
+                icon.addChangeListener(imageListener);
+            }
+        }
+
+        // if 'replace' is true then replace an existing row which has the same key 
+        // or column 0 value with this new row otherwise just add the row
+        for (TableRow row : batch.getRows()) {
+            if (replace) {
+                replaceRow(row);
+            } else {
+                appendRow(row);
+            }
+        }
+
+        // set the changed cells of existing rows in place
+        for (TableRowDelta delta : batch.getDeltas()) {
+            applyDelta(delta);
+        }
+
+        // tell any listeners which rows have changed
+        changes.schedule();
+    }
 
-                    colnum++;
+    /**
+     * Set the changed cells of the row with the key of a delta, must be called on the
+     * event dispatch thread.  A delta for a row that is not in the table is ignored.
+     * A cell with its own background colour keeps it unless the delta gives a new one.
+     * A changed cell in a column the table does not have is ignored.
+     * 
+     * @param delta the changed cells.
+     */
+    private void applyDelta(TableRowDelta delta) {
+        int i = index.find(delta.getKey(), TableRowIndex.KEY);
+
+        if (i < 0) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(Messages.getString(BUNDLE_NAME, "TableDataModel.51") + delta.getKey()); //$NON-NLS-1$
+            }
+            return;
+        }
+
+        TableRow row = data.elementAt(i);
+
+        for (int c = 0; c < delta.size(); c++) {
+            int col = delta.getColumn(c);
+
+            // a stale or malformed delta must not change the shape of the row
+            if (col < 0 || col >= getColumnCount()) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(Messages.getString(BUNDLE_NAME, "TableDataModel.52") + col); //$NON-NLS-1$
                 }
-                // if 'replace' is true then replace an existing row which has the same key 
-                // or column 0 value with this new row otherwise just add the row
-                if (replace) {
-                    replaceVector(v, data);
-                } else {
-                    data.add(v);
+                continue;
+            }
+            if (col >= row.size()) {
+                row.setSize(col + 1);
+            }
+
+            Object value = delta.getValue(c);
+            Object cell = row.elementAt(col);
+
+            if (cell instanceof TableRowColumnAttributes
+                    && !(value instanceof TableRowColumnAttributes)) {
+                // keep the colour and tooltip of the cell and only change its data
+                ((TableRowColumnAttributes) cell).data = value;
+            } else {
+                Object old = row.set(col, value);
+
+                index.cellChanged(i, col, old);
+            }
+            iconCellSet(i, value);
+            changes.cellUpdated(i, col);
+        }
+    }
+
+    /**
+     * Delete the rows with the given keys, must be called on the event dispatch thread.
+     * 
+     * @param keys the keys of the rows to delete.
+     */
+    private void deleteRows(Vector<String> keys) {
+        // find all the rows while the index is valid
+        int[] rows = new int[keys.size()];
+        int count = 0;
+
+        for (String key : keys) {
+            int i = index.find(key, TableRowIndex.KEY);
+
+            if (i >= 0) {
+                rows[count++] = i;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        Arrays.sort(rows, 0, count);
+
+        // fire the changes to the rows while their indexes are still valid
+        changes.flush();
+
+        // delete the rows from the highest to the lowest so the indexes of the rows
+        // still to be deleted do not move, firing each range of adjacent rows at once
+        int n = count - 1;
+
+        while (n >= 0) {
+            int last = rows[n];
+            int first = last;
+
+            while (n >= 0 && rows[n] >= first - 1) {
+                if (rows[n] < first) {
+                    first = rows[n];
                 }
+                n--;
+            }
+
+            for (int i = last; i >= first; i--) {
+                changedRows.remove(data.remove(i));
             }
-            // tell any listeners the table data has changed
-            fireTableDataChanged();
+            fireTableRowsDeleted(first, last);
         }
+
+        // the rows after the deleted rows have moved so the indexes are rebuilt
+        index.clear();
+        iconRowsStale = !iconRows.isEmpty();
+    }
+
+    /**
+     * Read rows of table data from an Element tree and convert the cell values to their
+     * types.  This does not modify the model and can be called on any thread.
+     * 
+     * @param root the Element tree containing the table row data
+     * @return the batch of rows, the batch is empty if there is no row data.
+     */
+    TableRowBatch readRowData(Element root) {
+        return reader.readRows(root);
     }
 
     /**
@@ -451,17 +667,22 @@ public class TableDataModel extends AbstractTableModel implements XTableModel {
      * @param replace indicates whether to replace any existing row with the same 
      * key or column 0 value with this new row
      */
-    public void addTableRow(TableRow row, boolean replace) {
-        if (replace) // replace any existing row
-        {
-            replaceVector(row, data);
-        } else // just add this row to the row data
-        {
-            data.add(row);
-        }
+    public void addTableRow(final TableRow row, final boolean replace) {
+        invokeAndWait(new Runnable() {
+
+            public void run() {
+                if (replace) // replace any existing row
+                {
+                    replaceRow(row);
+                } else // just add this row to the row data
+                {
+                    appendRow(row);
+                }
 
-        // tell any listeners the table data has changed
-        fireTableDataChanged();
+                // tell any listeners which rows have changed
+                changes.schedule();
+            }
+        });
     }
 
     /**
@@ -490,7 +711,7 @@ public class TableDataModel extends AbstractTableModel implements XTableModel {
 
             // if the offset < 0 then match on the row key, otherwise match on the cell data
             // from the column specified by the offset
-            Object o = offset < 0 ? old.getKey() : old.elementAt(offset);
+            Object o = TableRowIndex.valueOf(old, offset);
 
             String oldColumnData = ""; //$NON-NLS-1$
 
@@ -510,42 +731,88 @@ public class TableDataModel extends AbstractTableModel implements XTableModel {
     }
 
     /**
-     * Replace a TableRow in the row data with a new TableRow value.
+     * Get the column used to match a row with an existing row.  Rows with a key are
+     * matched on the key, otherwise the first column that has a String value is used.
      * 
-     * @param newrow the new TableRow value.
-     * @param v the collection of TableRows to modify.
+     * @param row the row to match.
+     * @return TableRowIndex.KEY to match on the row key, otherwise the column offset.
      */
-    private synchronized void replaceVector(TableRow newrow, Vector<TableRow> v) {
+    private int getMatchColumn(TableRow row) {
+        if (row.getKey() != null) {
+            return TableRowIndex.KEY;
+        }
 
-        int index = -1;
-        String keyValue = ""; //$NON-NLS-1$
+        // find the first element in the row which contains String data that can be matched
         int offset = 0;
 
-        // if the row does not have a key value then use the first column that has a String value
-        // as the the column for matching
-        if ((keyValue = newrow.getKey()) == null) {
-            // find the first element in the row which contains String data that can be matched
-            for (; offset < newrow.size(); offset++) {
-                Object o = newrow.elementAt(offset);
-
-                if (o instanceof String) {
-                    keyValue = (String) o;
-                    break;
-                } else {
-                    continue;
-                }
-            }
+        while (offset < row.size() && !(row.elementAt(offset) instanceof String)) {
+            offset++;
         }
+        return offset;
+    }
+
+    /**
+     * Add a TableRow to the end of the row data.
+     * 
+     * @param row the TableRow to add.
+     */
+    private void appendRow(TableRow row) {
+        data.add(row);
+        index.rowAdded(data.size() - 1);
+        iconCellsSet(data.size() - 1, row);
+        changes.rowsInserted(data.size() - 1, data.size() - 1);
+    }
+
+    /**
+     * Replace the TableRow in the row data that matches a new TableRow or add the new
+     * TableRow if there is no matching row.
+     * 
+     * @param newrow the new TableRow value.
+     */
+    private void replaceRow(TableRow newrow) {
+        int offset = getMatchColumn(newrow);
+        Object keyValue = TableRowIndex.valueOf(newrow, offset);
+        int i = -1;
 
         // find the row which matches this new row
-        index = findIndex(keyValue, offset, v);
-        if (index < 0) // no such row so just add this new row
+        if (keyValue instanceof String) {
+            i = index.find((String) keyValue, offset);
+        }
+
+        if (i < 0) // no such row so just add this new row
+        {
+            appendRow(newrow);
+        } else {
+            // replace the old row in place
+            TableRow old = data.set(i, newrow);
+            index.rowReplaced(i, old);
+            iconCellsSet(i, newrow);
+            changes.rowUpdated(i);
+        }
+    }
+
+    /**
+     * Replace a TableRow in a collection of rows with a new TableRow value.
+     * 
+     * @param newrow the new TableRow value.
+     * @param v the collection of TableRows to modify.
+     */
+    private void replaceVector(TableRow newrow, Vector<TableRow> v) {
+        int offset = getMatchColumn(newrow);
+        Object keyValue = TableRowIndex.valueOf(newrow, offset);
+        int i = -1;
+
+        // find the row which matches this new row
+        if (keyValue instanceof String) {
+            i = findIndex((String) keyValue, offset, v);
+        }
+
+        if (i < 0) // no such row so just add this new row
         {
             v.add(newrow);
         } else {
-            // remove the old row and add the new row at the same index
-            v.remove(index);
-            v.insertElementAt(newrow, index);
+            // replace the old row in place
+            v.set(i, newrow);
         }
     }
 
@@ -811,7 +1078,11 @@ public class TableDataModel extends AbstractTableModel implements XTableModel {
         TableRow v = data.get(row);
 
         // set the new cell value in the row
-        v.set(col, value);
+        Object old = v.set(col, value);
+
+        // keep the row indexes up to date
+        index.cellChanged(row, col, old);
+        iconCellSet(row, value);
 
         // tell any listeners the data has changed
         fireTableCellUpdated(row, col);
@@ -0,0 +1,237 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.swing.data;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.Vector;
+
+import org.jdom.Element;
+
+/**
+ * A batch of table rows that have been read from an Element tree but not yet added
+ * to a TableDataModel.  The rows are built on the thread that reads the data and the
+ * batch is then applied to the model on the event dispatch thread in one step.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+class TableRowBatch {
+
+    /** the rows in the batch */
+    private Vector<TableRow> rows = new Vector<TableRow>();
+    /** the largest image height in the batch, -1 if there are no images */
+    private int rowHeight = -1;
+    /** the type of data to clear before the rows are added, null to clear nothing */
+    private String clearType = null;
+    /** the icons in the batch whose images have not loaded yet */
+    private Set<AsyncImageIcon> pendingIcons = new LinkedHashSet<AsyncImageIcon>();
+    /** the keys of the rows to delete before the rows are added */
+    private Vector<String> deletes = new Vector<String>();
+    /** the changed cells of existing rows, applied after the rows are added */
+    private Vector<TableRowDelta> deltas = new Vector<TableRowDelta>();
+    /** the columns that replace the table columns, null to keep the columns */
+    private Vector<TableRowColumnAttributes> columns = null;
+    /** the print options sent with the rows, null if there are none */
+    private Element printOptions = null;
+    /** the parameters sent with the rows, null if there are none */
+    private Element parameters = null;
+
+    /**
+     * Get the rows in the batch.
+     *
+     * @return the rows.
+     */
+    Vector<TableRow> getRows() {
+        return rows;
+    }
+
+    /**
+     * Add a row to the batch.
+     *
+     * @param row the row to add.
+     */
+    void add(TableRow row) {
+        rows.add(row);
+    }
+
+    /**
+     * Get the largest image height in the batch.
+     *
+     * @return the row height or -1 if there are no images in the batch.
+     */
+    int getRowHeight() {
+        return rowHeight;
+    }
+
+    /**
+     * Include the height of an image in the row height of the batch.
+     *
+     * @param height the height of the image.
+     */
+    void addRowHeight(int height) {
+        rowHeight = Math.max(rowHeight, height);
+    }
+
+    /**
+     * Get the icons in the batch whose images had not loaded when the rows were read.
+     *
+     * @return the pending icons.
+     */
+    Set<AsyncImageIcon> getPendingIcons() {
+        return pendingIcons;
+    }
+
+    /**
+     * Include an icon in the batch.  The height of the icon is included in the row
+     * height if it is known and the icon is recorded if its image has not loaded.
+     *
+     * @param icon the icon to include.
+     */
+    void addIcon(AsyncImageIcon icon) {
+        addRowHeight(icon.getIconHeight());
+
+        if (!icon.isLoaded()) {
+            pendingIcons.add(icon);
+        }
+    }
+
+    /**
+     * Get the type of data to clear before the rows are added.
+     *
+     * @return one of TableDataModel.ALL, TableDataModel.ROWDATA or null to clear nothing.
+     */
+    String getClearType() {
+        return clearType;
+    }
+
+    /**
+     * Set the type of data to clear before the rows are added.
+     *
+     * @param clearType one of TableDataModel.ALL, TableDataModel.ROWDATA or null to
+     * clear nothing.
+     */
+    void setClearType(String clearType) {
+        this.clearType = clearType;
+    }
+
+    /**
+     * Get the keys of the rows to delete before the rows in the batch are added.
+     *
+     * @return the row keys.
+     */
+    Vector<String> getDeletes() {
+        return deletes;
+    }
+
+    /**
+     * Delete a row.  A row or delta with the same key that was added to the batch
+     * earlier is dropped from the batch.
+     *
+     * @param key the key of the row to delete.
+     */
+    void delete(String key) {
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            if (key.equals(rows.elementAt(i).getKey())) {
+                rows.remove(i);
+            }
+        }
+        for (int i = deltas.size() - 1; i >= 0; i--) {
+            if (key.equals(deltas.elementAt(i).getKey())) {
+                deltas.remove(i);
+            }
+        }
+        deletes.add(key);
+    }
+
+    /**
+     * Get the changed cells of existing rows.
+     *
+     * @return the deltas in the order they were added.
+     */
+    Vector<TableRowDelta> getDeltas() {
+        return deltas;
+    }
+
+    /**
+     * Add the changed cells of an existing row to the batch.
+     *
+     * @param delta the changed cells.
+     */
+    void addDelta(TableRowDelta delta) {
+        deltas.add(delta);
+    }
+
+    /**
+     * Get the columns that replace the table columns.
+     *
+     * @return the columns or null to keep the table columns.
+     */
+    Vector<TableRowColumnAttributes> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Set the columns that replace the table columns.
+     *
+     * @param columns the columns or null to keep the table columns.
+     */
+    void setColumns(Vector<TableRowColumnAttributes> columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Get the print options that were sent with the rows.
+     *
+     * @return the printOptions Element or null if there are none.
+     */
+    Element getPrintOptions() {
+        return printOptions;
+    }
+
+    /**
+     * Set the print options that were sent with the rows.
+     *
+     * @param printOptions the printOptions Element.
+     */
+    void setPrintOptions(Element printOptions) {
+        this.printOptions = printOptions;
+    }
+
+    /**
+     * Get the parameters that were sent with the rows.
+     *
+     * @return the parameters Element or null if there are none.
+     */
+    Element getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Set the parameters that were sent with the rows.
+     *
+     * @param parameters the parameters Element.
+     */
+    void setParameters(Element parameters) {
+        this.parameters = parameters;
+    }
+}
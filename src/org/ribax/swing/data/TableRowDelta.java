@@ -0,0 +1,92 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.swing.data;
+
+/**
+ * The changed cells of a table row, identified by the key of the row.  A web service
+ * that streams frequent changes to a few columns of a wide table sends deltas rather
+ * than whole rows, the cells are set in the existing row in place and only the
+ * changed cells are repainted.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+class TableRowDelta {
+
+    /** the key of the row to change */
+    private String key;
+    /** the indexes of the changed columns */
+    private int[] columns;
+    /** the new cell values in the order of the columns */
+    private Object[] values;
+
+    /**
+     * Create a delta.
+     *
+     * @param key the key of the row to change.
+     * @param columns the indexes of the changed columns.
+     * @param values the new cell values in the order of the columns.
+     */
+    TableRowDelta(String key, int[] columns, Object[] values) {
+        this.key = key;
+        this.columns = columns;
+        this.values = values;
+    }
+
+    /**
+     * Get the key of the row to change.
+     *
+     * @return the row key.
+     */
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * Get the number of changed cells.
+     *
+     * @return the number of cells.
+     */
+    int size() {
+        return columns.length;
+    }
+
+    /**
+     * Get the column index of a changed cell.
+     *
+     * @param i the index of the changed cell in the delta.
+     * @return the column index.
+     */
+    int getColumn(int i) {
+        return columns[i];
+    }
+
+    /**
+     * Get the new value of a changed cell.
+     *
+     * @param i the index of the changed cell in the delta.
+     * @return the cell value.
+     */
+    Object getValue(int i) {
+        return values[i];
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.swing.data;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * A hash index on a collection of TableRows that maps a row key, or the String value
+ * in a given column, to the index of the first row with that value.  The index for a
+ * column is built the first time the column is searched and is then maintained as rows
+ * are added and replaced so that replacing a row by key does not scan the collection.
+ *
+ * <p>
+ * The owner of the collection must tell the index about every change it makes to the
+ * collection.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+class TableRowIndex {
+
+    /** The column offset used to index the row keys */
+    static final int KEY = -1;
+    /* The collection of rows being indexed */
+    private Vector<TableRow> rows;
+    /* The value to row index maps, indexed by column offset (KEY for the row keys) */
+    private Hashtable<Integer, Hashtable<String, Integer>> columns =
+            new Hashtable<Integer, Hashtable<String, Integer>>();
+
+    /**
+     * Create an index on a collection of rows.
+     *
+     * @param rows the collection of rows to index.
+     */
+    TableRowIndex(Vector<TableRow> rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Get the value of a row that is used for matching.
+     *
+     * @param row the row.
+     * @param offset the column offset or KEY for the row key.
+     * @return the row key or cell value or null if the row does not have the column.
+     */
+    static Object valueOf(TableRow row, int offset) {
+        if (offset < 0) {
+            return row.getKey();
+        }
+        if (offset >= row.size()) {
+            return null;
+        }
+        return row.elementAt(offset);
+    }
+
+    /**
+     * Find the index of the first row with the given key or String value in a column.
+     *
+     * @param value the value to search for.
+     * @param offset the column offset or KEY to search the row keys.
+     * @return the index of the row or -1 if not found.
+     */
+    int find(String value, int offset) {
+        if (value == null) {
+            return -1;
+        }
+
+        Integer index = getColumn(offset).get(value);
+
+        return index == null ? -1 : index.intValue();
+    }
+
+    /*
+     * Get the map for a column, building it if the column has not been indexed.
+     */
+    private Hashtable<String, Integer> getColumn(int offset) {
+        Integer col = Integer.valueOf(offset);
+        Hashtable<String, Integer> map = columns.get(col);
+
+        if (map == null) {
+            map = new Hashtable<String, Integer>();
+
+            for (int i = 0; i < rows.size(); i++) {
+                add(map, valueOf(rows.elementAt(i), offset), i);
+            }
+            columns.put(col, map);
+        }
+        return map;
+    }
+
+    /*
+     * Add a value to a column map unless a row before it already has the value.
+     */
+    private void add(Hashtable<String, Integer> map, Object value, int index) {
+        if (!(value instanceof String)) {
+            return;
+        }
+
+        Integer existing = map.get(value);
+
+        if (existing == null || existing.intValue() > index) {
+            map.put((String) value, Integer.valueOf(index));
+        }
+    }
+
+    /*
+     * Update a column map for a changed value at an index.
+     */
+    private void update(Integer col, int index, Object oldValue, Object newValue) {
+        Hashtable<String, Integer> map = columns.get(col);
+
+        if (map == null || (oldValue == null ? newValue == null : oldValue.equals(newValue))) {
+            return;
+        }
+
+        Integer existing = oldValue instanceof String ? map.get(oldValue) : null;
+
+        if (existing != null && existing.intValue() == index) {
+            // another row may have the same old value, drop the column so it is
+            // rebuilt the next time it is searched
+            columns.remove(col);
+        } else {
+            add(map, newValue, index);
+        }
+    }
+
+    /**
+     * Tell the index a row has been appended to the collection.
+     *
+     * @param index the index of the new row.
+     */
+    void rowAdded(int index) {
+        TableRow row = rows.elementAt(index);
+        Integer[] cols = columns.keySet().toArray(new Integer[0]);
+
+        for (Integer col : cols) {
+            add(columns.get(col), valueOf(row, col.intValue()), index);
+        }
+    }
+
+    /**
+     * Tell the index a row in the collection has been replaced.
+     *
+     * @param index the index of the replaced row.
+     * @param old the row that was replaced.
+     */
+    void rowReplaced(int index, TableRow old) {
+        TableRow row = rows.elementAt(index);
+        Integer[] cols = columns.keySet().toArray(new Integer[0]);
+
+        for (Integer col : cols) {
+            update(col, index, valueOf(old, col.intValue()), valueOf(row, col.intValue()));
+        }
+    }
+
+    /**
+     * Tell the index a cell in a row has been changed.
+     *
+     * @param index the index of the row.
+     * @param col the column of the cell.
+     * @param oldValue the previous value of the cell.
+     */
+    void cellChanged(int index, int col, Object oldValue) {
+        update(Integer.valueOf(col), index, oldValue, valueOf(rows.elementAt(index), col));
+    }
+
+    /**
+     * Tell the index the collection has been cleared.
+     */
+    void clear() {
+        columns.clear();
+    }
+}
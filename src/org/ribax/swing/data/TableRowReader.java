@@ -0,0 +1,338 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.swing.data;
+
+import java.awt.Color;
+import java.util.Iterator;
+import java.util.List;
+
+import org.jdom.Element;
+
+import utils.log.BasicLogger;
+import utils.table.TableLinkElement;
+import utils.types.Memo;
+import utils.xml.XMLutils;
+
+import org.ribax.common.Messages;
+
+/**
+ * Reads rows of table data from an Element tree and converts the cell values to
+ * their types.  The reader does not modify a table model so rows can be read on
+ * any thread and shared by the different table model implementations.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ */
+class TableRowReader {
+
+    private static final String BUNDLE_NAME = "org.ribax.swing.data.messages"; //$NON-NLS-1$
+    /** the URL of a web service that has provided the table data */
+    private String url = null;
+    private static BasicLogger LOG = new BasicLogger(TableRowReader.class.getName());
+
+    /**
+     * Create a reader for table data from a web service.
+     * 
+     * @param url the URL of the web service that has provided the table data, only 
+     * used when logging warnings.
+     */
+    TableRowReader(String url) {
+        if (url != null && url.length() > 0) {
+            this.url = url;
+        }
+    }
+
+    /**
+     * Log a warning message but log the url only once.
+     * 
+     * @param msg the warning message.
+     */
+    private synchronized void warn(String msg) {
+        if (url != null) {
+            LOG.warn(Messages.getString(BUNDLE_NAME, "TableDataModel.2") + url); //$NON-NLS-1$
+            // set the url to null so it won't be logged again
+            url = null;
+        }
+        LOG.warn(msg);
+    }
+
+    /**
+     * Read rows of table data from an Element tree and convert the cell values to their
+     * types.
+     * 
+     * @param root the Element tree containing the table row data
+     * @return the batch of rows, the batch is empty if there is no row data.
+     */
+    TableRowBatch readRows(Element root) {
+        TableRowBatch batch = new TableRowBatch();
+        Element e;
+
+        /*  XML data format is
+         * <rowData>
+         *   <row>
+         *     <col>data</col><col>data</col>
+         *   </row>
+         *   <delta key="rowkey">
+         *     <col index="3">data</col>
+         *   </delta>
+         * </rowData>
+         */
+
+        if ((e = root.getChild("rowData")) != null) { //$NON-NLS-1$
+
+            // iterate through the rows
+            Iterator<?> iterator = e.getChildren().iterator();
+            Color colour = null;
+            int line = 0;
+
+            while (iterator.hasNext()) {
+                Element row = (Element) iterator.next();
+                line++;
+
+                // the changed cells of an existing row
+                if (row.getName().equals("delta")) { //$NON-NLS-1$
+                    readDelta(row, batch, line);
+                    continue;
+                }
+
+                TableRow v = new TableRow();
+
+                // get the row background colour
+                if ((colour = XMLutils.getColour(row)) != null) {
+                    // add a colour as the first element for the row
+                    v.setRowAttributes(new TableRowColumnAttributes(null, 0, colour,
+                            false, null, null));
+                }
+
+                // get a key which uniquely identifies the row
+                String key = XMLutils.getElementString("key", row); //$NON-NLS-1$
+
+                if (key != null) {
+                    v.setKey(key);
+                }
+
+                // iterate through the columns in this row
+                Iterator<?> colit = row.getChildren().iterator();
+                int colnum = 0;
+
+                while (colit.hasNext()) {
+                    Element col = (Element) colit.next();
+                    Object value = readCell(col, batch, colnum, line);
+
+                    // add this column to the row
+                    if (value != null) {
+                        v.add(value);
+                    }
+
+                    colnum++;
+                }
+                batch.add(v);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Read the changed cells of an existing row from a delta Element.  The delta has
+     * the key of the row and a col Element for each changed cell with the index of
+     * the column in the index attribute.  A col without an index is the column after
+     * the previous col.
+     * 
+     * @param delta the delta Element.
+     * @param batch the batch to add the changed cells to.
+     * @param line the line of the delta (only used when logging warnings).
+     */
+    private void readDelta(Element delta, TableRowBatch batch, int line) {
+        String key = XMLutils.getElementString("key", delta); //$NON-NLS-1$
+
+        if (key == null) {
+            warn(Messages.getString(BUNDLE_NAME, "TableRowReader.0") + line); //$NON-NLS-1$
+            return;
+        }
+
+        List<?> cols = delta.getChildren();
+        int[] columns = new int[cols.size()];
+        Object[] values = new Object[cols.size()];
+        int colnum = -1, count = 0;
+
+        for (Object o : cols) {
+            Element col = (Element) o;
+            Integer index = XMLutils.getElementInt("index", col); //$NON-NLS-1$
+
+            colnum = index != null ? index.intValue() : colnum + 1;
+
+            if (colnum < 0) {
+                continue;
+            }
+            columns[count] = colnum;
+            values[count] = readCell(col, batch, colnum, line);
+            count++;
+        }
+
+        if (count < columns.length) {
+            int[] c = new int[count];
+            Object[] v = new Object[count];
+
+            System.arraycopy(columns, 0, c, 0, count);
+            System.arraycopy(values, 0, v, 0, count);
+            columns = c;
+            values = v;
+        }
+        batch.addDelta(new TableRowDelta(key, columns, values));
+    }
+
+    /**
+     * Read the value of a cell from a col Element and convert it to its type.
+     * 
+     * @param col the col Element.
+     * @param batch the batch the cell is read for, any image in the cell is included
+     * in the batch.
+     * @param colnum the column of the cell (only used when logging warnings).
+     * @param line the line of the row (only used when logging warnings).
+     * @return the cell value or null if the cell has no value.
+     */
+    private Object readCell(Element col, TableRowBatch batch, int colnum, int line) {
+        Element e;
+        Object value = null;
+        String colData = "", colType = null; //$NON-NLS-1$
+        Color colour = null;
+
+        // get the cell data type
+        colType = XMLutils.getElementString("type", col); //$NON-NLS-1$
+
+        // get the cell background colour
+        colour = XMLutils.getColour(col);
+
+        // get the cell data value
+        colData = XMLutils.getElementString("value", col); //$NON-NLS-1$
+
+        // if no 'value' attribute was given then use the text of the Element
+        // as the cell data value
+        if (colData == null) {
+            colData = col.getText();
+        }
+
+        // replace newlines in the cell data value
+        colData = colData.replaceAll("<newline>", "\n"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        value = colData;
+
+        // see if we need to convert the cell data value to another type
+        if (colType != null) {
+            if (colType.equals("boolean")) { //$NON-NLS-1$
+                // convert it to a Boolean
+                try {
+                    value = new Boolean(colData);
+                } catch (Exception ex) {
+                    warn(Messages.getString(BUNDLE_NAME, "TableDataModel.18") + colData + Messages.getString(BUNDLE_NAME, "TableDataModel.19") + colnum + Messages.getString(BUNDLE_NAME, "TableDataModel.20") + line + ") "); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+                    value = new Boolean(false);
+                }
+            } else if (colType.equals("float")) { //$NON-NLS-1$
+                // convert it to a Float
+                try {
+                    value = new Float(colData);
+                } catch (Exception ex) {
+                    warn(Messages.getString(BUNDLE_NAME, "TableDataModel.23") + colData + Messages.getString(BUNDLE_NAME, "TableDataModel.24") + colnum + Messages.getString(BUNDLE_NAME, "TableDataModel.25") + line + ") "); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+                    value = new Float(0.0);
+                }
+            } else if (colType.equals("number")) { //$NON-NLS-1$
+                // convert it to a Number
+                try {
+                    value = new Integer(colData);
+                } catch (Exception ex) {
+                    warn(Messages.getString(BUNDLE_NAME, "TableDataModel.28") + colData + Messages.getString(BUNDLE_NAME, "TableDataModel.29") + colnum + Messages.getString(BUNDLE_NAME, "TableDataModel.30") + line + ") "); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+                    value = new Integer(0);
+                }
+            } else if (colType.equals("string")) { //$NON-NLS-1$
+                // no conversion needed
+                value = colData;
+
+            } else if (colType.equals("memo")) { //$NON-NLS-1$
+                // create a new Memo object
+                value = new Memo(colData);
+            } else if (colType.equals("image")) { //$NON-NLS-1$
+
+                // get a shared icon using the cell data value as the
+                // URL of the image, the image is loaded in the background
+                AsyncImageIcon icon = null;
+
+                if (colData != null) {
+                    try {
+                        icon = ImageCache.getInstance().getIcon(colData);
+
+                        // while we are here get the maximum row height from
+                        // the size of this image if it has been loaded before
+                        batch.addIcon(icon);
+
+                        value = icon;
+                    } catch (Exception ex) {
+                        LOG.error(Messages.getString(BUNDLE_NAME, "TableDataModel.35"), ex); //$NON-NLS-1$
+                    }
+                }
+            } else if (colType.equals("link")) { //$NON-NLS-1$
+                // the cell is a hyperlink so the column definition
+                // contains embedded items that define the link url etc.
+                AsyncImageIcon icon = null;
+
+                // get the Element containing the link definition
+                if ((e = col.getChild("value")) != null) { //$NON-NLS-1$
+                    String linkurl = null, title = null, iconURL = null;
+
+                    // get the URL of the link
+                    linkurl = XMLutils.getElementString("linkurl", e); //$NON-NLS-1$
+
+                    // get an optional link title to display
+                    title = XMLutils.getElementString("title", e); //$NON-NLS-1$
+
+                    // get an optional icon to display
+                    iconURL = XMLutils.getElementString("iconurl", e); //$NON-NLS-1$
+
+                    if (iconURL != null) {
+                        try {
+                            icon = ImageCache.getInstance().getIcon(iconURL);
+
+                            // while we are here get the maximum row height from
+                            // the size of this image if it has been loaded before
+                            batch.addIcon(icon);
+
+                        } catch (Exception ex) {
+                            LOG.error(Messages.getString(BUNDLE_NAME, "TableDataModel.41"), ex); //$NON-NLS-1$
+                        }
+                    }
+                    // create a new TableLinkElement
+                    value = new TableLinkElement(linkurl, title, icon);
+                } else {
+                    value = null;
+                }
+            }
+        }
+
+        // if a background colour was specified then create a new TableRowColumnAttributes
+        // which holds the real value along with the background colour
+        if (colour != null) {
+            value = new TableRowColumnAttributes(null, 0, colour,
+                    false, null, value);
+        }
+
+        return value;
+    }
+}
@@ -22,22 +22,19 @@
 package org.ribax.swing.datasources;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Vector;
 
 import javax.swing.ComboBoxModel;
 import javax.swing.event.ListDataEvent;
 import javax.swing.event.ListDataListener;
 
-import org.jdom.Document;
 import org.jdom.Element;
 import org.jdom.JDOMException;
-import org.jdom.input.SAXBuilder;
 import org.ribax.common.Messages;
-import org.ribax.common.net.NetUtils;
+import org.ribax.common.data.DataUtils;
+import org.ribax.common.net.DataRequest;
 import org.ribax.swing.parameters.ParameterSet;
 
 import utils.log.BasicLogger;
@@ -50,7 +47,7 @@ import utils.types.NameValuePair;
  * @version <tt>$Revision: $</tt>
  * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
  */
-public class OptionDataSource implements ComboBoxModel {
+public class OptionDataSource implements ComboBoxModel<Object> {
 
     private Object mSelectedItem = null;
     private ArrayList<Object> table = new ArrayList<Object>();
@@ -61,42 +58,33 @@ public class OptionDataSource implements ComboBoxModel {
         getOptions(url, name);
     }
 
-    //////// data methods
-    private boolean readOptions(InputStream in, String url) {
-
-        SAXBuilder builder = new SAXBuilder();
-
-        try {
-            Document doc = builder.build(in);
-            Element root = doc.getRootElement();
-
-            List<Element> optlist = root.getChildren();
-            Iterator<Element> optit = optlist.iterator();
-            while (optit.hasNext()) {
-                Element opt = optit.next();
-                if (opt.getChild("name") != null) { //$NON-NLS-1$
-                    table.add(new NameValuePair(opt.getChild("name").getText(), //$NON-NLS-1$
-                            opt.getChild("value").getText())); //$NON-NLS-1$
-                } else {
-                    table.add(opt.getText());
-                }
-            }
-
-        } catch (JDOMException ex) {
-            // indicates a well-formedness error
-            LOG.error(Messages.getString(BUNDLE_NAME, "OptionDataSource.3") + url, ex); //$NON-NLS-1$
-
-            return false;
-        } catch (IOException ex) {
-            LOG.error(Messages.getString(BUNDLE_NAME, "OptionDataSource.4") + url, ex); //$NON-NLS-1$
-
-            return false;
-        }
-        return true;
+    /**
+     * Create an empty set of options that are set later with setOptions, so the
+     * options can be fetched on a worker thread.
+     */
+    public OptionDataSource() {
     }
 
-    private boolean getOptions(String url, String name) throws IOException {
+    /**
+     * Replace the options with the children of a document root fetched from a web
+     * service, must be called on the event dispatch thread.
+     *
+     * @param root the document root.
+     */
+    public void setOptions(Element root) {
+        table.clear();
+        readOptions(root);
+
+        fireListDataChanged();
+    }
 
+    /**
+     * Get the parameters sent with a request for options, these are the global
+     * parameters.  Must be called on the event dispatch thread.
+     *
+     * @return the list of parameters.
+     */
+    public static ArrayList<NameValuePair> getParameters() {
         ArrayList<NameValuePair> params = new ArrayList<NameValuePair>();
         // add any global parameters
         if (ParameterSet.globalParameterSet != null) {
@@ -105,17 +93,57 @@ public class OptionDataSource implements ComboBoxModel {
                 params.addAll(tlist);
             }
         }
+        return params;
+    }
 
+    //////// data methods
+    /*
+     * Read the options from the children of the document root.  An option is the text
+     * of a child or a name and value pair, a web service that sends JSON sends an
+     * array of strings or of objects with name and value members.
+     */
+    private void readOptions(Element root) {
+
+        Iterator<?> optit = root.getChildren().iterator();
+        while (optit.hasNext()) {
+            Element opt = (Element) optit.next();
+            if (opt.getChild("name") != null) { //$NON-NLS-1$
+                table.add(new NameValuePair(opt.getChild("name").getText(), //$NON-NLS-1$
+                        opt.getChild("value").getText())); //$NON-NLS-1$
+            } else {
+                table.add(opt.getText());
+            }
+        }
+    }
 
-        try {
-            InputStream in = NetUtils.getInputStream(url, params, name);
+    private boolean getOptions(final String url, final String name) throws IOException {
 
-            if (readOptions(in, url) == false) {
-                return false;
+        final ArrayList<NameValuePair> params = getParameters();
+
+        DataRequest<Element> request = new DataRequest<Element>(0) {
+
+            protected Element call() throws Exception {
+                return DataUtils.getDocumentRoot(url, params, name, this);
             }
+        };
+
+        // the options are only read so lists with the same options share the fetch
+        // and the options may be answered from the response cache
+        request.setCacheable(true);
+        request.run();
+
+        try {
+            readOptions(request.getResult());
+
             fireListDataChanged();
             return true;
         } catch (IOException ex) {
+            if (ex.getCause() instanceof JDOMException) {
+                // indicates a well-formedness error
+                LOG.error(Messages.getString(BUNDLE_NAME, "OptionDataSource.3") + url, (JDOMException) ex.getCause()); //$NON-NLS-1$
+
+                return false;
+            }
             LOG.error(Messages.getString(BUNDLE_NAME, "OptionDataSource.5") + url, ex); //$NON-NLS-1$
             throw (ex);
         }
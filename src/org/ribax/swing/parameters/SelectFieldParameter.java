@@ -23,20 +23,28 @@ package org.ribax.swing.parameters;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Vector;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
 
 import org.jdom.Attribute;
 import org.jdom.Element;
+import org.jdom.JDOMException;
 
+import org.ribax.common.ConfigStrings;
 import org.ribax.common.Messages;
+import org.ribax.common.RIBAXConfig;
+import org.ribax.common.data.DataUtils;
+import org.ribax.common.data.RequestScheduler;
+import org.ribax.common.net.DataRequest;
 import org.ribax.swing.datasources.OptionDataSource;
+import org.ribax.swing.ui.DataItem;
 
 import utils.log.BasicLogger;
 import utils.types.NameValuePair;
@@ -52,7 +60,7 @@ public class SelectFieldParameter extends Parameter {
     public static final long serialVersionUID = 1;
     private static final String BUNDLE_NAME = "org.ribax.swing.parameters.messages"; //$NON-NLS-1$
     private static BasicLogger LOG = new BasicLogger(SelectFieldParameter.class.getName());
-    private JComboBox menu;
+    private JComboBox<Object> menu;
     private Box box;
     private String sourceURL = null;
     @SuppressWarnings("unused")
@@ -79,28 +87,19 @@ public class SelectFieldParameter extends Parameter {
 
         if ((e = di.getChild("options")) != null) { //$NON-NLS-1$
             Vector<String> v = new Vector<String>();
-            List<Element> optlist = e.getChildren();
-            Iterator<Element> optit = optlist.iterator();
+            Iterator<?> optit = e.getChildren().iterator();
             while (optit.hasNext()) {
-                Element opt = optit.next();
+                Element opt = (Element) optit.next();
                 v.add(opt.getText());
             }
             String[] options = new String[v.size()];
 
             v.toArray(options);
-            menu = new JComboBox(options);
+            menu = new JComboBox<Object>(options);
         } else {
             // get the list of options from the sourceURL
-            menu = new JComboBox();
-            try {
-                menu.setModel(new OptionDataSource(sourceURL, this.name));
-            } catch (MalformedURLException ex) {
-                errorMessage(Messages.getString(BUNDLE_NAME, "SelectFieldParameter.2") + sourceURL); //$NON-NLS-1$
-                LOG.error(Messages.getString(BUNDLE_NAME, "SelectFieldParameter.3") + sourceURL, ex); //$NON-NLS-1$
-            } catch (IOException ex) {
-                errorMessage(Messages.getString(BUNDLE_NAME, "SelectFieldParameter.4") + sourceURL); //$NON-NLS-1$
-                LOG.error(Messages.getString(BUNDLE_NAME, "SelectFieldParameter.5") + sourceURL, ex); //$NON-NLS-1$
-            }
+            menu = new JComboBox<Object>();
+            loadOptions();
         }
 
         if ((e = di.getChild("editable")) != null) //$NON-NLS-1$
@@ -123,6 +122,56 @@ public class SelectFieldParameter extends Parameter {
         layoutComponents();
     }
 
+    /**
+     * Fetch the options of the drop down menu from the sourceURL on a worker thread
+     * and set them on the event dispatch thread when they arrive.
+     */
+    private void loadOptions() {
+        final OptionDataSource options = new OptionDataSource();
+        final ArrayList<NameValuePair> params = OptionDataSource.getParameters();
+        long timeout = RIBAXConfig.getInstance().getIntValue(ConfigStrings.REQUEST_TIMEOUT,
+                DataItem.DEFAULT_REQUEST_TIMEOUT) * 1000L;
+
+        menu.setModel(options);
+
+        new DataRequest<Object>(timeout) {
+
+            protected Object call() throws Exception {
+                try {
+                    final Element root = DataUtils.getDocumentRoot(sourceURL, params, name, this);
+
+                    SwingUtilities.invokeLater(new Runnable() {
+
+                        public void run() {
+                            options.setOptions(root);
+                        }
+                    });
+                } catch (MalformedURLException ex) {
+                    optionsFailed("SelectFieldParameter.2", "SelectFieldParameter.3", ex); //$NON-NLS-1$ //$NON-NLS-2$
+                } catch (JDOMException ex) {
+                    optionsFailed("SelectFieldParameter.4", "SelectFieldParameter.5", ex); //$NON-NLS-1$ //$NON-NLS-2$
+                } catch (IOException ex) {
+                    optionsFailed("SelectFieldParameter.4", "SelectFieldParameter.5", ex); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                return null;
+            }
+        }.setCacheable(true).setPriority(RequestScheduler.VISIBLE, this).start();
+    }
+
+    /*
+     * Report a failure to fetch the options on the event dispatch thread.
+     */
+    private void optionsFailed(final String message, String logMessage, Exception ex) {
+        LOG.error(Messages.getString(BUNDLE_NAME, logMessage) + sourceURL, ex);
+
+        SwingUtilities.invokeLater(new Runnable() {
+
+            public void run() {
+                errorMessage(Messages.getString(BUNDLE_NAME, message) + sourceURL);
+            }
+        });
+    }
+
     private void layoutComponents() {
 
         box.add(new JLabel(title));
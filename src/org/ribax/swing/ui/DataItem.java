@@ -27,6 +27,7 @@ import java.awt.Dimension;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
 import java.awt.Component;
+import java.awt.Container;
 import java.awt.print.Printable;
 import java.awt.Font;
 
@@ -37,25 +38,32 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
 
 import org.jdom.Attribute;
-import org.jdom.Document;
 import org.jdom.Element;
 import org.jdom.JDOMException;
-import org.jdom.input.SAXBuilder;
 
 import javax.swing.BorderFactory;
 import javax.swing.JComponent;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JTabbedPane;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 import utils.log.BasicLogger;
 import utils.types.NameValuePair;
 import utils.xml.XMLutils;
 
+import org.ribax.common.ConfigStrings;
 import org.ribax.common.Messages;
+import org.ribax.common.RIBAXConfig;
 import org.ribax.common.data.DataModel;
 import org.ribax.common.data.DataModelManager;
+import org.ribax.common.data.DataUtils;
+import org.ribax.common.data.RequestScheduler;
+import org.ribax.common.net.DataRequest;
 import org.ribax.common.net.NetUtils;
 //import org.ribax.common.validators.RegexpValidator;
 import org.ribax.common.validators.Validator;
@@ -272,6 +280,10 @@ public abstract class DataItem extends JPanel implements Transferable {
     public static final char EOT = 0x04;
     /** a set of regular expression data validators */
     protected Vector<Validator> validators = null;
+    /** the default time in seconds a request for data may take, 0 for no deadline */
+    public static final int DEFAULT_REQUEST_TIMEOUT = 300;
+    /** the requests for data that are in progress, cancelled when the DataItem is closed */
+    private Vector<DataRequest<?>> requests = new Vector<DataRequest<?>>();
     /** a data model that provides data for this data item */
     protected DataModel model = null;
     /** the path to the data in the data model */
@@ -477,6 +489,35 @@ public abstract class DataItem extends JPanel implements Transferable {
         return NetUtils.getInputStream(url, params, name);
     }
 
+    /**
+     * Get an InputStream from a Web Service in a request that only reads data, so the
+     * request may be retried if it fails.
+     *
+     * @param url  the URL of the Web Service
+     * @param params an ArrayList of NameValuePairs to send as parameters
+     * @return an InputStream to read the output of the Web Service
+     * @throws IOException if an IO error occurs
+     * 
+     * @see {@link org.ribax.common.net.NetUtils#loadInputStream(String, ArrayList, String)}
+     */
+    public InputStream loadInputStream(String url, ArrayList<NameValuePair> params) throws IOException {
+        return NetUtils.loadInputStream(url, params, name);
+    }
+
+    /**
+     * Get an InputStream from a Web Service for a request that can be cancelled.
+     *
+     * @param url  the URL of the Web Service
+     * @param params an ArrayList of NameValuePairs to send as parameters
+     * @param request the request the stream is opened for
+     * @return an InputStream to read the output of the Web Service
+     * @throws IOException if an IO error occurs or the request is cancelled
+     */
+    public InputStream getInputStream(String url, ArrayList<NameValuePair> params,
+            DataRequest<?> request) throws IOException {
+        return NetUtils.getInputStream(url, params, name, request);
+    }
+
     /**
      * Access a Web Service and parse the ouput into an Element tree.  All Exceptions
      * are caught by this method and a message dialog is displayed with the details of
@@ -488,21 +529,29 @@ public abstract class DataItem extends JPanel implements Transferable {
      * @return  the root node of the Element tree or null if an error occurs
      */
     public Element getElementFromURL(String url, ArrayList<NameValuePair> params, String action) {
+        return getElementFromURL(url, params, action, false);
+    }
+
+    /**
+     * Access a Web Service and parse the ouput into an Element tree, the response 
+     * may be cached if the Web Service allows it.  All Exceptions are caught by this
+     * method and a message dialog is displayed with the details of the Exception.
+     *
+     * @param url the URL of the Web Service
+     * @param params an ArrayList of NameValuePairs to send as parameters
+     * @param action HTTP parameter encoded as 'Action=action'
+     * @param cacheable true if the data rarely changes, such as a description or a
+     * list of options, so the response may be cached.  A request made by a button is
+     * never cached.
+     * @return  the root node of the Element tree or null if an error occurs
+     */
+    public Element getElementFromURL(String url, ArrayList<NameValuePair> params, String action,
+            boolean cacheable) {
 
         try {
             setCursor(new Cursor(Cursor.WAIT_CURSOR));
 
-            InputStream fin = getInputStream(url, params);
-
-            // create Element tree from XML 
-            SAXBuilder builder = new SAXBuilder();
-
-            Document doc = builder.build(fin);
-
-            // get the root node for the document
-            Element node = doc.getRootElement();
-
-            return node;
+            return fetchElement(url, params, cacheable);
         } catch (MalformedURLException ex) {
             errorMessage(Messages.getString(BUNDLE_NAME, "DataItem.21") + url); //$NON-NLS-1$
             LOG.error(Messages.getString(BUNDLE_NAME, "DataItem.22") + url, ex); //$NON-NLS-1$
@@ -522,6 +571,222 @@ public abstract class DataItem extends JPanel implements Transferable {
         return null;
     }
 
+    /**
+     * Access a Web Service and parse the output into an Element tree.  Unlike 
+     * getElementFromURL this method does not touch any GUI components so it can be 
+     * called on a worker thread.  The request is cancelled if it takes longer than 
+     * the RequestTimeout configuration property or the DataItem is closed.  The request
+     * is idempotent unless it was made by a button that changes data on the server.
+     *
+     * @param url the URL of the Web Service
+     * @param params an ArrayList of NameValuePairs to send as parameters
+     * @return the root node of the Element tree
+     * @throws IOException if the Web Service cannot be read or the request is cancelled
+     * @throws JDOMException if the output of the Web Service is not well formed
+     */
+    protected Element fetchElement(String url, ArrayList<NameValuePair> params)
+            throws IOException, JDOMException {
+        return fetchElement(url, params, false);
+    }
+
+    /**
+     * Access a Web Service and parse the output into an Element tree on any thread,
+     * the response may be cached if the Web Service allows it.
+     *
+     * @param url the URL of the Web Service
+     * @param params an ArrayList of NameValuePairs to send as parameters
+     * @param cacheable true if the data rarely changes so the response may be cached.
+     * A request made by a button is never cached.
+     * @return the root node of the Element tree
+     * @throws IOException if the Web Service cannot be read or the request is cancelled
+     * @throws JDOMException if the output of the Web Service is not well formed
+     * 
+     * @see #fetchElement(String, ArrayList)
+     */
+    protected Element fetchElement(String url, ArrayList<NameValuePair> params, boolean cacheable)
+            throws IOException, JDOMException {
+        return fetchElement(url, params, !isSubmission(params), cacheable && getButtonType(params) == null);
+    }
+
+    /**
+     * Post data to a Web Service that changes data on the server and parse the
+     * output into an Element tree on any thread.  The request is sent exactly once,
+     * it is never retried, shared with another request or answered from the cache.
+     *
+     * @param url the URL of the Web Service
+     * @param params an ArrayList of NameValuePairs to send as parameters
+     * @return the root node of the Element tree
+     * @throws IOException if the Web Service cannot be read or the request is cancelled
+     * @throws JDOMException if the output of the Web Service is not well formed
+     */
+    protected Element submitElement(String url, ArrayList<NameValuePair> params)
+            throws IOException, JDOMException {
+        return fetchElement(url, params, false, false);
+    }
+
+    /*
+     * Run a request for an Element tree on the calling thread.
+     */
+    private Element fetchElement(final String url, final ArrayList<NameValuePair> params,
+            boolean idempotent, boolean cacheable) throws IOException, JDOMException {
+        long timeout = RIBAXConfig.getInstance().getIntValue(ConfigStrings.REQUEST_TIMEOUT,
+                DEFAULT_REQUEST_TIMEOUT) * 1000L;
+
+        DataRequest<Element> request = new DataRequest<Element>(timeout) {
+
+            protected Element call() throws Exception {
+                // the fetch is shared with other DataItems requesting the same data
+                return DataUtils.getDocumentRoot(url, params, name, this);
+            }
+        };
+
+        request.setIdempotent(idempotent);
+        request.setCacheable(cacheable);
+
+        requests.add(request);
+        try {
+            request.run();
+
+            return request.getResult();
+        } catch (IOException ex) {
+            if (ex.getCause() instanceof JDOMException) {
+                throw (JDOMException) ex.getCause();
+            }
+            throw ex;
+        } finally {
+            requests.remove(request);
+        }
+    }
+
+    /**
+     * Cancel the requests for data this DataItem has in progress.  Closing a DataItem
+     * cancels its requests.
+     */
+    public void cancelRequests() {
+        for (DataRequest<?> request : requests.toArray(new DataRequest<?>[0])) {
+            request.cancel(false);
+        }
+    }
+
+    /**
+     * Get a task that fetches the data this DataItem needs from the network so the 
+     * DataItemLoader can fetch the data of several DataItems at the same time.  This 
+     * method is called on the event dispatch thread so it can read parameters from GUI 
+     * components, the task is run on a worker thread and must not touch any GUI components.
+     * The fetched Element is passed to loadFetchedData on the event dispatch thread.
+     * Sub classes that fetch their data in loadData should override this method and
+     * loadFetchedData, the default returns null and the DataItem is loaded with loadData.
+     * A task that fetches a single URL should be a FetchTask so the fetch can be sent
+     * to a batch web service with the fetches of the other DataItems.
+     *
+     * @param params a list of parameters to add to the request
+     * @param action an action string identifying the kind of button press (if any) 
+     * which initiated the process of loading data
+     * @return the task that fetches the data or null if there is nothing to fetch.
+     * 
+     * @see org.ribax.swing.ui.DataItemLoader
+     */
+    public Callable<Element> getFetchTask(ArrayList<NameValuePair> params, String action) {
+        return null;
+    }
+
+    /**
+     * Promote the queued requests of the DataItems on a tab to the visible class when
+     * the tab is selected in a tabbed pane.
+     *
+     * @param tabbedPane the tabbed pane.
+     */
+    protected static void promoteSelectedTabs(final JTabbedPane tabbedPane) {
+        tabbedPane.addChangeListener(new ChangeListener() {
+
+            public void stateChanged(ChangeEvent e) {
+                RequestScheduler.getInstance().promote(tabbedPane.getSelectedComponent());
+            }
+        });
+    }
+
+    /**
+     * Get the RequestScheduler class of a request that loads the data of this
+     * DataItem.  A DataItem on a tab that is not selected is prefetched, a request
+     * made by a button that changes data on the server is a submission and any other
+     * request is a visible load.  Must be called on the event dispatch thread.
+     *
+     * @param params the parameters of the request.
+     * @return the RequestScheduler priority class.
+     */
+    public int getRequestPriority(ArrayList<NameValuePair> params) {
+        Component c = this;
+
+        for (Container parent = getParent(); parent != null; c = parent, parent = parent.getParent()) {
+            if (parent instanceof JTabbedPane && ((JTabbedPane) parent).getSelectedComponent() != c) {
+                return RequestScheduler.PREFETCH;
+            }
+        }
+
+        if (isSubmission(params)) {
+            return RequestScheduler.SUBMIT;
+        }
+        return RequestScheduler.VISIBLE;
+    }
+
+    /**
+     * Get the name of the button that made a request.
+     *
+     * @param params the parameters of the request, may be null.
+     * @return the value of the ButtonType parameter or null if there is none.
+     */
+    private static String getButtonType(ArrayList<NameValuePair> params) {
+        if (params != null) {
+            for (NameValuePair pair : params) {
+                if (pair != null && pair.getValue() != null && "ButtonType".equals(pair.getName())) { //$NON-NLS-1$
+                    return pair.getValue().toString();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Test whether a request was made by a button that changes data on the server.
+     * Only the buttons that read data (refresh, reload, select, help, back, cancel and
+     * print) do not make a submission.
+     *
+     * @param params the parameters of the request, may be null.
+     * @return true if the request is a submission that must be sent exactly once.
+     */
+    public static boolean isSubmission(ArrayList<NameValuePair> params) {
+        String type = getButtonType(params);
+
+        if (type == null) {
+            return false;
+        }
+        switch (TabButton.nametoButtonType(type)) {
+            case TabButton.REFRESH:
+            case TabButton.RELOAD:
+            case TabButton.SELECT:
+            case TabButton.HELP:
+            case TabButton.BACK:
+            case TabButton.CANCEL:
+            case TabButton.PRINT:
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Load the data for this DataItem from an Element fetched by the task returned by
+     * getFetchTask.  If the fetch failed the node is null and the DataItem should load 
+     * its data with loadData so any errors are reported to the user.
+     *
+     * @param node the fetched Element or null if the fetch failed.
+     * @param params a list of parameters to add to the request
+     * @param action an action string identifying the kind of button press (if any) 
+     * which initiated the process of loading data
+     */
+    public void loadFetchedData(Element node, ArrayList<NameValuePair> params, String action) {
+        loadData(params, action);
+    }
+
     /**
      * Read the description of this Data Item from a URL.
      * 
@@ -531,7 +796,8 @@ public abstract class DataItem extends JPanel implements Transferable {
      */
     public void readDescriptionFromURL(String url, ArrayList<NameValuePair> params, String action) {
 
-        Element node = getElementFromURL(url, params, action);
+        // descriptions rarely change so they may be cached, unless a button asked for them
+        Element node = getElementFromURL(url, params, action, true);
 
         if (node != null) {
             readDescription(node);
@@ -926,10 +1192,14 @@ public abstract class DataItem extends JPanel implements Transferable {
     public abstract String getTypeName();
 
     /**
-     * Perform any operations on close/shutdown, called before the Application exits
+     * Perform any operations on close/shutdown, called before the Application exits.
+     * Any requests for data in progress are cancelled, sub classes that override this
+     * method must call super.close().
      * 
      */
-    public abstract void close();
+    public void close() {
+        cancelRequests();
+    }
 
     /**
      * Get the data for the DataItem subclass as a utils.NameValuePair object
@@ -109,6 +109,7 @@ public class DataItemAdaptor extends DataItem {
      */
 
     public void close() {
+        super.close();
     }
     /* (non-Javadoc)
      * @see org.ribax.swing.ui.DataItem#getNameValuePair()
@@ -153,6 +153,7 @@ public abstract class DataItemContainer extends DataItem {
      * @see org.ribax.swing.ui.DataItem#close()
      */
     public void close() {
+        super.close();
 
         // iterate through our list of DataItems calling their close() method
         for (int i = 0; i < dataItems.size(); i++) {
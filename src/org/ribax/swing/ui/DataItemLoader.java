@@ -0,0 +1,441 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.swing.ui;
+
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import javax.swing.SwingUtilities;
+
+import org.jdom.Element;
+import org.ribax.common.data.RequestScheduler;
+import org.ribax.common.net.BatchListener;
+import org.ribax.common.net.BatchRequest;
+import org.ribax.common.net.DataRequest;
+
+import utils.log.BasicLogger;
+import utils.types.NameValuePair;
+
+import org.ribax.common.ConfigStrings;
+import org.ribax.common.Messages;
+import org.ribax.common.RIBAXConfig;
+
+/**
+ * A singleton class that loads the data of a list of DataItems, such as the Tabs of a
+ * Folder or the DataItems of a Tab, at the same time rather than one after another.
+ * The network fetches of the DataItems are run on the RequestScheduler, in the class
+ * given by DataItem.getRequestPriority() when the DataItems are loaded and in the
+ * prefetch class when they are prefetched.  The fetched data is applied to the
+ * DataItems on the event dispatch thread in the order the DataItems were declared as
+ * the fetches finish, the event dispatch thread never waits for a fetch.  If a batch
+ * URL is given the fetches that are FetchTasks are sent to the batch web service in a
+ * single request.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ * 
+ * @see org.ribax.swing.ui.DataItem#getFetchTask(ArrayList, String)
+ */
+class DataItemLoader {
+
+    private static final String BUNDLE_NAME = "org.ribax.swing.ui.messages"; //$NON-NLS-1$
+    /* The singleton instance of the loader */
+    private static DataItemLoader instance = null;
+    /* The scheduler that runs the fetches */
+    private RequestScheduler scheduler;
+    private static BasicLogger LOG = new BasicLogger(DataItemLoader.class.getName());
+
+    /**
+     * Create a loader that runs its fetches on a scheduler of its own.
+     *
+     * @param threads the maximum number of concurrent fetches.
+     */
+    DataItemLoader(int threads) {
+        this(new RequestScheduler(threads));
+    }
+
+    /**
+     * Create a loader.
+     *
+     * @param scheduler the scheduler that runs the fetches.
+     */
+    DataItemLoader(RequestScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Get the single instance of the loader.  The fetches are run on the shared
+     * RequestScheduler.
+     *
+     * @return the loader instance.
+     */
+    public synchronized static DataItemLoader getInstance() {
+        if (instance == null) {
+            instance = new DataItemLoader(RequestScheduler.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Fetch the data of a list of DataItems and load each DataItem on the event dispatch
+     * thread, in the order of the list, once its data has arrived.  The fetches of all
+     * the DataItems are started before the first DataItem is loaded and a DataItem on a
+     * tab that is not shown is fetched in the prefetch class.  This method returns
+     * immediately.  Must be called on the event dispatch thread.
+     *
+     * @param items the DataItems to load.
+     * @param params a list of parameters to add to the requests.
+     * @param action the action string associated with the event that caused the 
+     * DataItems to be loaded.
+     */
+    public void load(List<DataItem> items, ArrayList<NameValuePair> params, String action) {
+        load(items, params, action, null);
+    }
+
+    /**
+     * Fetch the data of a list of DataItems and load each DataItem on the event dispatch
+     * thread, in the order of the list, once its data has arrived.  The fetches of the
+     * DataItems are sent to a batch web service in one request.  This method returns
+     * immediately.  Must be called on the event dispatch thread.
+     *
+     * @param items the DataItems to load.
+     * @param params a list of parameters to add to the requests.
+     * @param action the action string associated with the event that caused the 
+     * DataItems to be loaded.
+     * @param batchURL the URL of the batch web service or null to fetch the data of
+     * each DataItem with its own request.
+     * 
+     * @see org.ribax.common.net.BatchRequest
+     */
+    public void load(List<DataItem> items, ArrayList<NameValuePair> params, String action,
+            String batchURL) {
+        start(items, params, action, batchURL, false);
+    }
+
+    /**
+     * Fetch the data of a list of DataItems in the background and load each DataItem 
+     * on the event dispatch thread, in the order of the list, once its data has arrived.
+     * This method returns immediately.  Must be called on the event dispatch thread.
+     *
+     * @param items the DataItems to load.
+     * @param params a list of parameters to add to the requests.
+     * @param action the action string associated with the event that caused the 
+     * DataItems to be loaded.
+     */
+    public void prefetch(List<DataItem> items, ArrayList<NameValuePair> params, String action) {
+        prefetch(items, params, action, null);
+    }
+
+    /**
+     * Fetch the data of a list of DataItems in the background and load each DataItem 
+     * on the event dispatch thread, in the order of the list, once its data has arrived.
+     * The fetches of the DataItems are sent to a batch web service in one request.
+     * This method returns immediately.  Must be called on the event dispatch thread.
+     *
+     * @param items the DataItems to load.
+     * @param params a list of parameters to add to the requests.
+     * @param action the action string associated with the event that caused the 
+     * DataItems to be loaded.
+     * @param batchURL the URL of the batch web service or null to fetch the data of
+     * each DataItem with its own request.
+     */
+    public void prefetch(List<DataItem> items, ArrayList<NameValuePair> params, String action,
+            String batchURL) {
+        start(items, params, action, batchURL, true);
+    }
+
+    /**
+     * Start the fetches for a list of DataItems and load the DataItems on the event
+     * dispatch thread as their fetches finish.
+     *
+     * @param items the DataItems.
+     * @param params a list of parameters to add to the requests.
+     * @param action the action string.
+     * @param batchURL the URL of the batch web service or null.
+     * @param prefetch true to fetch every DataItem in the prefetch class.
+     */
+    private void start(List<DataItem> items, ArrayList<NameValuePair> params, String action,
+            String batchURL, boolean prefetch) {
+        final LoadRun run = new LoadRun(items, params, action);
+
+        Runnable applier = new Runnable() {
+
+            public void run() {
+                run.applyReady();
+            }
+        };
+
+        run.fetches.addAll(fetch(items, params, action, batchURL, applier, prefetch));
+
+        // apply any leading DataItems that have nothing to fetch
+        SwingUtilities.invokeLater(applier);
+    }
+
+    /**
+     * Start the fetches for a list of DataItems.
+     *
+     * @param items the DataItems.
+     * @param params a list of parameters to add to the requests.
+     * @param action the action string.
+     * @param batchURL the URL of the batch web service or null.
+     * @param done a task to post to the event dispatch thread when each fetch has 
+     * finished.
+     * @param prefetch true to fetch every DataItem in the prefetch class, otherwise
+     * each DataItem gives the class of its fetch.
+     * @return the pending fetch of each DataItem, null for a DataItem that has nothing
+     * to fetch.
+     */
+    private List<Future<Element>> fetch(List<DataItem> items, ArrayList<NameValuePair> params,
+            String action, String batchURL, Runnable done, boolean prefetch) {
+        List<Future<Element>> fetches = new ArrayList<Future<Element>>();
+        BatchFetch batch = (batchURL != null) ? new BatchFetch(batchURL) : null;
+
+        for (DataItem item : items) {
+            Callable<Element> task = item.getFetchTask(params, action);
+
+            if (task == null) {
+                fetches.add(null);
+                continue;
+            }
+
+            int priority = prefetch ? RequestScheduler.PREFETCH : item.getRequestPriority(params);
+            Fetch future = new Fetch(task, done, item, priority);
+
+            if (batch == null || !batch.add(future)) {
+                future.start();
+            }
+            fetches.add(future);
+        }
+
+        if (batch != null) {
+            batch.start();
+        }
+        return fetches;
+    }
+
+    /**
+     * Load a DataItem with its fetched data, the fetch must have finished.
+     *
+     * @param item the DataItem.
+     * @param fetch the finished fetch or null if the DataItem has nothing to fetch.
+     * @param params a list of parameters to add to the request.
+     * @param action the action string.
+     */
+    private static void apply(DataItem item, Future<Element> fetch, ArrayList<NameValuePair> params,
+            String action) {
+        if (fetch == null) {
+            item.loadData(params, action);
+            return;
+        }
+
+        Element node = null;
+
+        try {
+            node = fetch.get();
+        } catch (InterruptedException ex) {
+            // preserve the interrupt for the caller
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            LOG.error(Messages.getString(BUNDLE_NAME, "DataItemLoader.0") + item.getDataItemName(), ex); //$NON-NLS-1$
+        }
+
+        item.loadFetchedData(node, params, action);
+    }
+
+    /**
+     * The pending fetch of a DataItem.  The fetch is either run on its own or its
+     * result is delivered by a batch.
+     */
+    private class Fetch extends FutureTask<Element> {
+
+        /* the FetchTask if the fetch can be batched, otherwise null */
+        private FetchTask task = null;
+        /* a task to post to the event dispatch thread when the fetch has finished */
+        private Runnable done;
+        /* the DataItem the fetch is for */
+        private DataItem item;
+        /* the RequestScheduler class of the fetch */
+        private int priority;
+
+        Fetch(Callable<Element> task, Runnable done, DataItem item, int priority) {
+            super(task);
+            this.done = done;
+            this.item = item;
+            this.priority = priority;
+
+            if (task instanceof FetchTask) {
+                this.task = (FetchTask) task;
+            }
+        }
+
+        /**
+         * Run the fetch on its own.
+         */
+        void start() {
+            scheduler.execute(this, priority, item);
+        }
+
+        /**
+         * Complete the fetch with an Element received in a batch response.
+         *
+         * @param node the fetched Element.
+         */
+        void deliver(Element node) {
+            set(node);
+        }
+
+        @Override
+        protected void done() {
+            SwingUtilities.invokeLater(done);
+        }
+    }
+
+    /**
+     * A set of fetches that are sent to a batch web service in one request.  A fetch
+     * that the batch response does not answer is run on its own.
+     */
+    private class BatchFetch implements Runnable, BatchListener {
+
+        /* the request sent to the batch web service */
+        private BatchRequest request;
+        /* the fetches in the batch in the order of their request index */
+        private List<Fetch> fetches = new ArrayList<Fetch>();
+        /* the DataItems of the fetches, the batch is promoted if any of them is shown */
+        private List<DataItem> items = new ArrayList<DataItem>();
+        /* the RequestScheduler class of the batch, the most urgent class of its fetches */
+        private int priority = RequestScheduler.POLL;
+
+        BatchFetch(String url) {
+            request = new BatchRequest(url, DataItemLoader.class.getName());
+        }
+
+        /**
+         * Add a fetch to the batch.
+         *
+         * @param fetch the fetch to add.
+         * @return true if the fetch was added, false if it cannot be batched.
+         */
+        boolean add(Fetch fetch) {
+            // a submission is sent on its own so it is never sent again in a retry
+            if (fetch.task == null || DataItem.isSubmission(fetch.task.getParameters())
+                    || request.add(fetch.task.getUrl(), fetch.task.getParameters()) < 0) {
+                return false;
+            }
+            fetches.add(fetch);
+            items.add(fetch.item);
+            priority = Math.min(priority, fetch.priority);
+            return true;
+        }
+
+        /**
+         * Send the batch or, if there is only a single fetch in the batch, run the
+         * fetch on its own.
+         */
+        void start() {
+            if (fetches.size() > 1) {
+                scheduler.execute(this, priority, items);
+            } else if (fetches.size() == 1) {
+                fetches.get(0).start();
+            }
+        }
+
+        public void run() {
+            long timeout = RIBAXConfig.getInstance().getIntValue(ConfigStrings.REQUEST_TIMEOUT,
+                    DataItem.DEFAULT_REQUEST_TIMEOUT) * 1000L;
+
+            DataRequest<Object> send = new DataRequest<Object>(timeout) {
+
+                protected Object call() throws Exception {
+                    request.send(BatchFetch.this, this);
+                    return null;
+                }
+            };
+
+            // a batch only holds fetches that read data
+            send.setIdempotent(true);
+
+            send.run();
+            try {
+                send.getResult();
+            } catch (IOException ex) {
+                LOG.error(Messages.getString(BUNDLE_NAME, "DataItemLoader.1"), ex); //$NON-NLS-1$
+            }
+        }
+
+        public void partReceived(int index, Element root) {
+            fetches.get(index).deliver(root);
+        }
+
+        public void partFailed(int index, Exception ex) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(Messages.getString(BUNDLE_NAME, "DataItemLoader.2") //$NON-NLS-1$
+                        + fetches.get(index).task.getDataItem().getDataItemName() + ": " + ex); //$NON-NLS-1$
+            }
+            // fetch the data with a request of its own
+            fetches.get(index).start();
+        }
+    }
+
+    /**
+     * The state of a background load of a list of DataItems.
+     */
+    private static class LoadRun {
+
+        /* the DataItems to load */
+        private List<DataItem> items;
+        /* the pending fetch of each DataItem, null if the DataItem has nothing to fetch */
+        private List<Future<Element>> fetches = new ArrayList<Future<Element>>();
+        private ArrayList<NameValuePair> params;
+        private String action;
+        /* the index of the next DataItem to load */
+        private int next = 0;
+
+        LoadRun(List<DataItem> items, ArrayList<NameValuePair> params, String action) {
+            this.items = new ArrayList<DataItem>(items);
+            this.params = params;
+            this.action = action;
+        }
+
+        /**
+         * Load the DataItems whose fetches have finished, stopping at the first 
+         * DataItem that is still fetching so the DataItems are loaded in order.  
+         * Called on the event dispatch thread.
+         */
+        void applyReady() {
+            while (next < fetches.size()) {
+                Future<Element> fetch = fetches.get(next);
+
+                if (fetch != null && !fetch.isDone()) {
+                    return;
+                }
+
+                apply(items.get(next++), fetch, params, action);
+            }
+        }
+    }
+}
@@ -32,6 +32,7 @@ import javax.swing.TransferHandler;
 import javax.swing.JComponent;
 
 import javax.swing.JButton;
+import javax.swing.SwingUtilities;
 import javax.swing.ImageIcon;
 
 import java.net.URL;
@@ -59,6 +60,7 @@ import org.ribax.common.Messages;
 import org.ribax.common.data.DataChangeListener;
 import org.ribax.common.data.DataModel;
 import org.ribax.common.data.DataModelManager;
+import org.ribax.common.data.RequestScheduler;
 
 import utils.log.BasicLogger;
 import utils.table.JMultiLineToolTip;
@@ -433,27 +435,68 @@ public class DataSetDataItem extends DataItem {
             }
         } else if (url != null) {
             // otherwise post the data elements to the web service
-            try {
+            postData(url, params);
+        }
+    }
+
+    /**
+     * Post the data elements to a web service on a worker thread and show the
+     * error or info message the web service replies with on the event dispatch thread.
+     * 
+     * @param url the URL of the web service.
+     * @param params the parameters to post.
+     */
+    private void postData(final String url, final ArrayList<NameValuePair> params) {
 
-                // post the parameters to the URL
-                Element node = getElementFromURL(url, params, action);
+        RequestScheduler.getInstance().execute(new Runnable() {
 
-                if (node != null) {
-                    if ("error".equals(node.getName())) //$NON-NLS-1$
-                    {
-                        errorMessage(node.getText());
-                    } else if ("info".equals(node.getName())) //$NON-NLS-1$
-                    {
-                        infoMessage(node.getText());
-                    }
+            public void run() {
+                Element node = null;
+                Exception error = null;
+
+                try {
+                    // post the parameters to the URL
+                    node = submitElement(url, params);
+                } catch (Exception ex) {
+                    error = ex;
                 }
-                // otherwise we don't do anything with the node
 
-            } catch (Exception ex) {
-                errorMessage(Messages.getString(BUNDLE_NAME, "DataSetDataItem.30") + url); //$NON-NLS-1$
-                LOG.error(Messages.getString(BUNDLE_NAME, "DataSetDataItem.31") + url, ex); //$NON-NLS-1$
+                final Element reply = node;
+                final Exception failure = error;
+
+                SwingUtilities.invokeLater(new Runnable() {
+
+                    public void run() {
+                        showReply(url, reply, failure);
+                    }
+                });
             }
+        }, RequestScheduler.SUBMIT, this);
+    }
+
+    /**
+     * Show the reply of a web service the data elements were posted to.
+     * 
+     * @param url the URL of the web service.
+     * @param node the reply or null if the post failed.
+     * @param ex the reason the post failed or null.
+     */
+    private void showReply(String url, Element node, Exception ex) {
+
+        if (ex != null) {
+            errorMessage(Messages.getString(BUNDLE_NAME, "DataSetDataItem.30") + url); //$NON-NLS-1$
+            LOG.error(Messages.getString(BUNDLE_NAME, "DataSetDataItem.31") + url, ex); //$NON-NLS-1$
+            return;
+        }
+
+        if ("error".equals(node.getName())) //$NON-NLS-1$
+        {
+            errorMessage(node.getText());
+        } else if ("info".equals(node.getName())) //$NON-NLS-1$
+        {
+            infoMessage(node.getText());
         }
+        // otherwise we don't do anything with the node
     }
 
     // methods that must be implemented
@@ -532,6 +575,7 @@ public class DataSetDataItem extends DataItem {
      */
 
     public void close() {
+        super.close();
     }
     /* (non-Javadoc)
      * @see org.ribax.swing.ui.DataItem#getTypeName()
@@ -0,0 +1,112 @@
+/*
+ * RIBAX, Making Web Applications Easy
+ * Copyright (C) 2006 Damian Hamill and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ribax.swing.ui;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+
+import org.jdom.Element;
+
+import utils.types.NameValuePair;
+
+/**
+ * A task that fetches the Element tree a DataItem loads from a single URL.  As the
+ * URL and parameters of the request are known the DataItemLoader can send the task
+ * in a batch with the fetches of other DataItems instead of running it on its own.
+ *
+ * @version <tt>$Revision: $</tt>
+ * @author  <a href="mailto:damian@ribax.org">Damian Hamill</a>
+ *
+ * @see org.ribax.swing.ui.DataItem#getFetchTask(ArrayList, String)
+ */
+public class FetchTask implements Callable<Element> {
+
+    /* The DataItem the data is fetched for */
+    private DataItem item;
+    /* The URL of the web service */
+    private String url;
+    /* The parameters of the request */
+    private ArrayList<NameValuePair> params;
+    /* true if the response may be cached */
+    private boolean cacheable = false;
+
+    /**
+     * Create a task that fetches an Element tree for a DataItem.
+     *
+     * @param item the DataItem the data is fetched for.
+     * @param url the URL of the web service.
+     * @param params the parameters to send to the web service, may be null.
+     */
+    public FetchTask(DataItem item, String url, ArrayList<NameValuePair> params) {
+        this.item = item;
+        this.url = url;
+        this.params = params;
+    }
+
+    /**
+     * Create a task that fetches an Element tree for a DataItem that rarely changes,
+     * such as a description or a list of options.
+     *
+     * @param item the DataItem the data is fetched for.
+     * @param url the URL of the web service.
+     * @param params the parameters to send to the web service, may be null.
+     * @param cacheable true if the response may be cached.
+     */
+    public FetchTask(DataItem item, String url, ArrayList<NameValuePair> params, boolean cacheable) {
+        this(item, url, params);
+        this.cacheable = cacheable;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.concurrent.Callable#call()
+     */
+    public Element call() throws Exception {
+        return item.fetchElement(url, params, cacheable);
+    }
+
+    /**
+     * Get the DataItem the data is fetched for.
+     *
+     * @return the DataItem.
+     */
+    public DataItem getDataItem() {
+        return item;
+    }
+
+    /**
+     * Get the URL of the web service.
+     *
+     * @return the URL.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Get the parameters of the request.
+     *
+     * @return the parameters or null if there are none.
+     */
+    public ArrayList<NameValuePair> getParameters() {
+        return params;
+    }
+}
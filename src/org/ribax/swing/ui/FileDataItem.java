@@ -284,6 +284,7 @@ public class FileDataItem extends DataItem {
      */
 
     public void close() {
+        super.close();
     }
 
     /* (non-Javadoc)
@@ -77,6 +77,9 @@ public class Folder extends DataItem {
     private Vector<DataItem> dataItems = new Vector<DataItem>();
     /** The panel for this component  */
     private Box box = Box.createVerticalBox();
+    /** The URL of a batch web service that returns the data of all the Tabs in this
+     * Folder in one request, null to fetch the data of each Tab separately */
+    private String batchURL = null;
 
     /**
      * Constructor that takes a name, title, description, logo and heading
@@ -100,7 +103,7 @@ public class Folder extends DataItem {
         // user Borderlayout for this component
         setLayout(new BorderLayout());
         add(box, BorderLayout.CENTER);
-
+        promoteSelectedTabs(tabbedPane);
     }
 
     /**
@@ -113,6 +116,7 @@ public class Folder extends DataItem {
         setParent(parent);
         setLayout(new BorderLayout());
         add(box, BorderLayout.CENTER);
+        promoteSelectedTabs(tabbedPane);
     }
 
     /**
@@ -176,6 +180,13 @@ public class Folder extends DataItem {
         // get the heading
         heading = XMLutils.getElementString("heading", node); //$NON-NLS-1$
 
+        // a batch URL in a sourced description overrides the one in the stub
+        String batch = XMLutils.getElementString("batch", node); //$NON-NLS-1$
+
+        if (batch != null) {
+            batchURL = batch;
+        }
+
         // if a background colour has been specified then set it also for the tabbed pane
         if (bgcolour != null) {
             tabbedPane.setBackground(bgcolour);
@@ -282,8 +293,8 @@ public class Folder extends DataItem {
         list.add(new NameValuePair("Action", "LoadDescription")); //$NON-NLS-1$ //$NON-NLS-2$
 
         try {
-            // get an input stream from the URL
-            InputStream fin = getInputStream(url, list);
+            // get an input stream from the URL, loading a description only reads data
+            InputStream fin = loadInputStream(url, list);
 
             // build the XML document
             SAXBuilder builder = new SAXBuilder();
@@ -359,6 +370,7 @@ public class Folder extends DataItem {
      * @see org.ribax.swing.ui.DataItem#close()
      */
     public void close() {
+        super.close();
 
         // invalidate all the Tabs in this folder
         for (int i = 0; i < dataItems.size(); i++) {
@@ -410,7 +422,12 @@ public class Folder extends DataItem {
         if (LOG.isDebugEnabled()) {
             LOG.debug(name + Messages.getString(BUNDLE_NAME, "Folder.26")); //$NON-NLS-1$
         }
-        // tell the tabs in this folder to load their data
+        // tell the tabs in this folder to load their data, the visible tab is loaded
+        // first and the other tabs are then fetched in the background
+        int selected = Math.max(0, tabbedPane.getSelectedIndex());
+        List<DataItem> visible = new ArrayList<DataItem>();
+        List<DataItem> siblings = new ArrayList<DataItem>();
+
         for (int i = 0; i < dataItems.size(); i++) {
             DataItem item = (DataItem) dataItems.elementAt(i);
 
@@ -421,10 +438,18 @@ public class Folder extends DataItem {
             if (LOG.isDebugEnabled()) {
                 LOG.debug(name + Messages.getString(BUNDLE_NAME, "Folder.28") + item.getTitle()); //$NON-NLS-1$
             }
-            item.loadData(params, action);
-
+            if (i == selected) {
+                visible.add(item);
+            } else {
+                siblings.add(item);
+            }
         }
 
+        DataItemLoader loader = DataItemLoader.getInstance();
+
+        loader.load(visible, params, action, batchURL);
+        loader.prefetch(siblings, params, action, batchURL);
+
         loaded = true;
     }
 
@@ -32,10 +32,7 @@ import javax.swing.JPanel;
 import javax.swing.JSeparator;
 import javax.swing.JLabel;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 
@@ -44,6 +41,7 @@ import org.jdom.Element;
 import org.ribax.common.Messages;
 import org.ribax.common.data.DataChangeListener;
 import org.ribax.common.data.DataModel;
+import org.ribax.common.net.ResumableLineReader;
 
 import utils.log.BasicLogger;
 import utils.types.NameValuePair;
@@ -280,12 +278,21 @@ public class InfoDataItem extends DataItem {
 
     }
     private boolean stopped = false;
+    /* the reader on the streaming web service, null if the item is not streaming */
+    private volatile ResumableLineReader lineReader = null;
 
     /* (non-Javadoc)
      * @see org.ribax.swing.ui.DataItem#close()
      */
     public void close() {
+        super.close();
         stopped = true;
+
+        ResumableLineReader reader = lineReader;
+
+        if (reader != null) {
+            reader.close();
+        }
     }
 
     /**
@@ -305,37 +312,42 @@ public class InfoDataItem extends DataItem {
         }
         try {
             // post the parameters to the web service url and
-            // get an input stream
-            InputStream fin = getInputStream(streamSource, params);
-            BufferedReader bin = new BufferedReader(new InputStreamReader(fin));
+            // get a reader that reconnects if the connection drops
+            ResumableLineReader bin = new ResumableLineReader(streamSource, params, name);
+            lineReader = bin;
 
             String line;
 
-            // read lines from the stream
-            while ((line = bin.readLine()) != null) {
+            try {
+                // read lines from the stream
+                while ((line = bin.readLine()) != null) {
 
-                if (stopped == true) {
-                    break;
-                }
+                    if (stopped == true) {
+                        break;
+                    }
 
-                // a blank line means clear the text field
-                if (line.length() == 0) {
-                    field.setText(""); //$NON-NLS-1$
-                    continue;
-                }
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug(Messages.getString(BUNDLE_NAME, "InfoDataItem.7") + line); //$NON-NLS-1$
-                }
-                // if we get the EOT character 0x04 then reset the text to
-                // this line
-                if (line.charAt(0) == DataItem.EOT) {
-                    line = line.substring(1);
-                    // replace the text with this new text
-                    field.setText(line);
-                } else {
-                    // otherwise append this new text to the existing contents
-                    field.append("\n" + line); //$NON-NLS-1$
+                    // a blank line means clear the text field
+                    if (line.length() == 0) {
+                        field.setText(""); //$NON-NLS-1$
+                        continue;
+                    }
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(Messages.getString(BUNDLE_NAME, "InfoDataItem.7") + line); //$NON-NLS-1$
+                    }
+                    // if we get the EOT character 0x04 then reset the text to
+                    // this line
+                    if (line.charAt(0) == DataItem.EOT) {
+                        line = line.substring(1);
+                        // replace the text with this new text
+                        field.setText(line);
+                    } else {
+                        // otherwise append this new text to the existing contents
+                        field.append("\n" + line); //$NON-NLS-1$
+                    }
                 }
+            } finally {
+                lineReader = null;
+                bin.close();
             }
 
         } catch (MalformedURLException ex) {
@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Comparator;
+import java.util.concurrent.Callable;
 
 import javax.swing.JPanel;
 import javax.swing.JLabel;
@@ -82,6 +83,8 @@ public class ListDataItem extends DataItem implements Comparator {
     private DefaultListModel listModel;
     /** */
     private int visibleRows = -1;
+    /** The URL of the web service that provides the list contents, null once they have been read */
+    private String elementsURL = null;
 
     /**
      * No argument Constructor - required
@@ -157,8 +160,8 @@ public class ListDataItem extends DataItem implements Comparator {
             // the list data elements are embedded in the XML document
             addElements(e);
         } else if (value != null) {
-            // read the list data elements from a web service
-            readElements(value);
+            // the list data elements are read from a web service when the list is loaded
+            elementsURL = value;
         }
 
         // set the model to the list data model
@@ -246,7 +249,7 @@ public class ListDataItem extends DataItem implements Comparator {
 
         // use a support method from the base class to get the Element root node
         // from the web service
-        Element root = getElementFromURL(url, params, "LoadData"); //$NON-NLS-1$
+        Element root = getElementFromURL(url, params, "LoadData", true); //$NON-NLS-1$
 
         // add the list contents from the XML Element tree
         if (root != null) {
@@ -448,6 +451,7 @@ public class ListDataItem extends DataItem implements Comparator {
      */
 
     public void close() {
+        super.close();
     }
 
     /* (non-Javadoc)
@@ -455,6 +459,14 @@ public class ListDataItem extends DataItem implements Comparator {
      */
     public void loadData(ArrayList extraParams, String action) {
 
+        // read the list data elements if they were not fetched by the DataItemLoader
+        if (elementsURL != null) {
+            String url = elementsURL;
+
+            elementsURL = null;
+            readElements(url);
+        }
+
         if (loaded) {
             return;
         }
@@ -464,6 +476,39 @@ public class ListDataItem extends DataItem implements Comparator {
         loaded = true;
     }
 
+    /* (non-Javadoc)
+     * @see org.ribax.swing.ui.DataItem#getFetchTask(java.util.ArrayList, java.lang.String)
+     */
+    public Callable<Element> getFetchTask(ArrayList<NameValuePair> params, String action) {
+
+        if (elementsURL == null) {
+            return null;
+        }
+
+        // collect the parameters here as the parameter set is a GUI component
+        ArrayList<NameValuePair> requestParams = null;
+
+        if (paramSet != null) {
+            requestParams = paramSet.getNameValuePairs();
+        }
+
+        return new FetchTask(this, elementsURL, requestParams, true);
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.swing.ui.DataItem#loadFetchedData(org.jdom.Element, java.util.ArrayList, java.lang.String)
+     */
+    public void loadFetchedData(Element node, ArrayList<NameValuePair> params, String action) {
+
+        // if the fetch failed loadData requests the elements again and reports the error
+        if (node != null && elementsURL != null) {
+            elementsURL = null;
+            addElements(node);
+        }
+
+        loadData(params, action);
+    }
+
     /* (non-Javadoc)
      * @see org.ribax.swing.ui.DataItem#getComponent()
      */
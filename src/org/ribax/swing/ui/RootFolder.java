@@ -49,6 +49,7 @@ import utils.log.BasicLogger;
 import utils.xml.XMLutils;
 
 import org.ribax.common.Messages;
+import org.ribax.common.data.RequestScheduler;
 import org.ribax.swing.RIBAXApplet;
 import org.ribax.swing.parameters.ParameterSet;
 
@@ -338,6 +339,9 @@ public class RootFolder extends JPanel implements TabButtonListener {
                 }
 
                 Object nodeInfo = node.getUserObject();
+
+                // requests already queued for the Folder are promoted now it is shown
+                RequestScheduler.getInstance().promote(nodeInfo);
                 loadNodeObject(nodeInfo);
 
             }
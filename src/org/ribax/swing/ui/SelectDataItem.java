@@ -26,24 +26,30 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
 
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.Box;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JComboBox;
+import javax.swing.SwingUtilities;
 
 import org.jdom.Element;
+import org.jdom.JDOMException;
 import utils.xml.XMLutils;
 
 import utils.log.BasicLogger;
 import utils.types.NameValuePair;
 
+import org.ribax.common.ConfigStrings;
 import org.ribax.common.Messages;
+import org.ribax.common.RIBAXConfig;
 import org.ribax.common.data.DataChangeListener;
 import org.ribax.common.data.DataModel;
+import org.ribax.common.data.DataUtils;
+import org.ribax.common.net.DataRequest;
 import org.ribax.swing.datasources.OptionDataSource;
 
 /**
@@ -57,11 +63,13 @@ public class SelectDataItem extends DataItemAdaptor {
     public static final long serialVersionUID = 1;
     private static BasicLogger LOG = new BasicLogger(SelectDataItem.class.getName());
     /** The drop down menu */
-    private JComboBox menu;
+    private JComboBox<Object> menu;
     /** The main panel for the GUI components */
     private Box box = Box.createVerticalBox();
     /** A URL of a web service that provides the set of options in the drop down menu */
     private String sourceURL = null;
+    /** Indicates the options are still to be read from the sourceURL */
+    private boolean fetchOptions = false;
 
     /**
      * No argument Constructor - required
@@ -83,7 +91,7 @@ public class SelectDataItem extends DataItemAdaptor {
         // to be informed of data updates and get the list of options from the Data Model
         if (model != null) {
             // create the combo box
-            menu = new JComboBox();
+            menu = new JComboBox<Object>();
 
             if (modelPath == null) {
                 modelPath = getPath();
@@ -128,8 +136,7 @@ public class SelectDataItem extends DataItemAdaptor {
             // iterate through the child elements
             // adding each option to the menu
             Vector<String> v = new Vector<String>();
-            List<Element> optlist = e.getChildren();
-            Iterator<Element> optit = optlist.iterator();
+            Iterator<?> optit = e.getChildren().iterator();
             while (optit.hasNext()) {
                 Element opt = (Element) optit.next();
                 v.add(opt.getText());
@@ -139,24 +146,14 @@ public class SelectDataItem extends DataItemAdaptor {
             v.toArray(options);
 
             // create the combo box with the parsed options
-            menu = new JComboBox(options);
+            menu = new JComboBox<Object>(options);
 
         } else {
             // get the list of options from the sourceURL
 
-            // create the combo box
-            menu = new JComboBox();
-            try {
-                // set the combo box model to a new OptionDataSource (which reads the options
-                // from the source URL)
-                menu.setModel(new OptionDataSource(sourceURL, this.name));
-            } catch (MalformedURLException ex) {
-                errorMessage(Messages.getString(BUNDLE_NAME, "SelectDataItem.3") + sourceURL); //$NON-NLS-1$
-                LOG.error(Messages.getString(BUNDLE_NAME, "SelectDataItem.4") + sourceURL, ex); //$NON-NLS-1$
-            } catch (IOException ex) {
-                errorMessage(Messages.getString(BUNDLE_NAME, "SelectDataItem.5") + sourceURL); //$NON-NLS-1$
-                LOG.error(Messages.getString(BUNDLE_NAME, "SelectDataItem.6") + sourceURL, ex); //$NON-NLS-1$
-            }
+            // create the combo box, the options are read when the menu is loaded
+            menu = new JComboBox<Object>();
+            fetchOptions = true;
         }
 
         // indicates whether the combo box is editable which allows the user to add new values
@@ -169,19 +166,112 @@ public class SelectDataItem extends DataItemAdaptor {
         layoutComponents();
     }
 
+    /**
+     * Fetch the options of the drop down menu from the sourceURL on a worker thread
+     * and set them on the event dispatch thread when they arrive.  The options may be
+     * answered from the response cache.
+     */
+    private void readOptions() {
+        final OptionDataSource options = new OptionDataSource();
+        final ArrayList<NameValuePair> params = OptionDataSource.getParameters();
+        long timeout = RIBAXConfig.getInstance().getIntValue(ConfigStrings.REQUEST_TIMEOUT,
+                DEFAULT_REQUEST_TIMEOUT) * 1000L;
+
+        menu.setModel(options);
+
+        new DataRequest<Object>(timeout) {
+
+            protected Object call() throws Exception {
+                try {
+                    final Element root = DataUtils.getDocumentRoot(sourceURL, params, name, this);
+
+                    SwingUtilities.invokeLater(new Runnable() {
+
+                        public void run() {
+                            options.setOptions(root);
+                        }
+                    });
+                } catch (MalformedURLException ex) {
+                    optionsFailed("SelectDataItem.3", "SelectDataItem.4", ex); //$NON-NLS-1$ //$NON-NLS-2$
+                } catch (JDOMException ex) {
+                    optionsFailed("SelectDataItem.5", "SelectDataItem.6", ex); //$NON-NLS-1$ //$NON-NLS-2$
+                } catch (IOException ex) {
+                    optionsFailed("SelectDataItem.5", "SelectDataItem.6", ex); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                return null;
+            }
+        }.setCacheable(true).setPriority(getRequestPriority(null), this).start();
+    }
+
+    /*
+     * Report a failure to fetch the options on the event dispatch thread.
+     */
+    private void optionsFailed(final String message, String logMessage, Exception ex) {
+        LOG.error(Messages.getString(BUNDLE_NAME, logMessage) + sourceURL, ex);
+
+        SwingUtilities.invokeLater(new Runnable() {
+
+            public void run() {
+                errorMessage(Messages.getString(BUNDLE_NAME, message) + sourceURL);
+            }
+        });
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.swing.ui.DataItem#loadData(java.util.ArrayList, java.lang.String)
+     */
+    public void loadData(ArrayList<NameValuePair> params, String action) {
+
+        // read the options if they were not fetched by the DataItemLoader
+        if (fetchOptions) {
+            fetchOptions = false;
+            readOptions();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.swing.ui.DataItem#getFetchTask(java.util.ArrayList, java.lang.String)
+     */
+    public Callable<Element> getFetchTask(ArrayList<NameValuePair> params, String action) {
+
+        if (!fetchOptions) {
+            return null;
+        }
+
+        // collect the global parameters here as the parameter set is a GUI component
+        return new FetchTask(this, sourceURL, OptionDataSource.getParameters(), true);
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.swing.ui.DataItem#loadFetchedData(org.jdom.Element, java.util.ArrayList, java.lang.String)
+     */
+    public void loadFetchedData(Element node, ArrayList<NameValuePair> params, String action) {
+
+        // if the fetch failed loadData reads the options again and reports the error
+        if (node != null && fetchOptions) {
+            fetchOptions = false;
+
+            OptionDataSource options = new OptionDataSource();
+
+            options.setOptions(node);
+            menu.setModel(options);
+        }
+
+        loadData(params, action);
+    }
+
     /**
      * Add the menu elements from an XML document element tree to the combo box model.
      * 
      * @param options the combo box model
      * @param node the Element tree containing the menu elements
      */
-    private void addElements(DefaultComboBoxModel options, Element node) {
+    private void addElements(DefaultComboBoxModel<Object> options, Element node) {
 
         // iterate through each child element
-        List<Element> optlist = node.getChildren();
-        Iterator<Element> optit = optlist.iterator();
+        Iterator<?> optit = node.getChildren().iterator();
         while (optit.hasNext()) {
-            Element opt = optit.next();
+            Element opt = (Element) optit.next();
 
             // if the element has a name attribute then add a NameValuePair object
             // this allows us to associate values with displayed names
@@ -241,7 +331,7 @@ public class SelectDataItem extends DataItemAdaptor {
      */
     public void setData(Element node) {
 
-        DefaultComboBoxModel options = new DefaultComboBoxModel();
+        DefaultComboBoxModel<Object> options = new DefaultComboBoxModel<Object>();
 
         // just in case the model has list elements embedded in an <elements> tag
         // test for this case
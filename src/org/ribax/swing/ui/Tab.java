@@ -27,6 +27,7 @@ import java.awt.Component;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import javax.swing.Box;
 
@@ -35,6 +36,7 @@ import org.ribax.common.Messages;
 
 import utils.log.BasicLogger;
 import utils.types.NameValuePair;
+import utils.xml.XMLutils;
 
 /**
  * A Tab is the principle container of DataItems.  The DataItems are layed out in a 
@@ -52,6 +54,9 @@ public class Tab extends TabContainer {
     private static BasicLogger LOG = new BasicLogger(Tab.class.getName());
     /** The main panel for this Tab */
     private Box box = Box.createVerticalBox();
+    /** The URL of a batch web service that returns the data of all the DataItems on
+     * this Tab in one request, null to fetch the data of each DataItem separately */
+    protected String batchURL = null;
 
     /**
      * Constructor that takes a name, title and description
@@ -80,6 +85,13 @@ public class Tab extends TabContainer {
 
         box.removeAll();
 
+        // a batch URL in a sourced description overrides the one in the stub
+        String batch = XMLutils.getElementString("batch", tab); //$NON-NLS-1$
+
+        if (batch != null) {
+            batchURL = batch;
+        }
+
         if (LOG.isDebugEnabled()) {
             LOG.debug(name + Messages.getString(BUNDLE_NAME, "Tab.2")); //$NON-NLS-1$
         }
@@ -183,7 +195,10 @@ public class Tab extends TabContainer {
         if (LOG.isDebugEnabled()) {
             LOG.debug(name + Messages.getString(BUNDLE_NAME, "Tab.19")); //$NON-NLS-1$
         }
-        // tell each data Item to load its data using the parameters and action string
+        // tell each data Item to load its data using the parameters and action string,
+        // the data of all the items is fetched at the same time
+        List<DataItem> items = new ArrayList<DataItem>();
+
         for (int i = 0; i < dataItems.size(); i++) {
             DataItem item = (DataItem) dataItems.elementAt(i);
 
@@ -191,8 +206,9 @@ public class Tab extends TabContainer {
                 LOG.error(name + Messages.getString(BUNDLE_NAME, "Tab.20") + getTitle()); //$NON-NLS-1$
                 continue;
             }
-            item.loadData(params, action);
+            items.add(item);
         }
+        DataItemLoader.getInstance().load(items, params, action, batchURL);
     }
 
     /* (non-Javadoc)
@@ -344,6 +360,40 @@ public class Tab extends TabContainer {
         loaded = true;
     }
 
+    /* (non-Javadoc)
+     * @see org.ribax.swing.ui.DataItem#getFetchTask(java.util.ArrayList, java.lang.String)
+     */
+    public Callable<Element> getFetchTask(ArrayList<NameValuePair> params, String action) {
+
+        // only a deferred Tab description can be fetched before the Tab is loaded
+        if (loaded || deferredSource == null) {
+            return null;
+        }
+
+        return new FetchTask(this, deferredSource, deferredParams, true);
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.swing.ui.DataItem#loadFetchedData(org.jdom.Element, java.util.ArrayList, java.lang.String)
+     */
+    public void loadFetchedData(Element node, ArrayList<NameValuePair> params, String action) {
+
+        if (loaded) {
+            return;
+        }
+
+        // use the fetched description rather than reading it from the deferred source,
+        // if the fetch failed loadData reads the description and reports the error
+        if (node != null && deferredSource != null) {
+            readDescription(node);
+            deferredSource = null;
+            deferredParams = null;
+            deferredAction = null;
+        }
+
+        loadData(params, action);
+    }
+
     /* (non-Javadoc)
      * @see org.ribax.swing.ui.TabContainer#getComponent()
      */
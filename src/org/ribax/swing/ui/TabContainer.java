@@ -385,6 +385,7 @@ public abstract class TabContainer extends DataItem implements TabButtonListener
      * @see org.ribax.swing.ui.DataItem#close()
      */
     public void close() {
+        super.close();
         // tell each DataItem in our internal list to close
         for (int i = 0; i < dataItems.size(); i++) {
             DataItem item = (DataItem) dataItems.elementAt(i);
@@ -25,6 +25,7 @@ import java.awt.Component;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
 import javax.swing.JTabbedPane;
 
 import org.jdom.Element;
@@ -69,6 +70,7 @@ public class TabbedDataSet extends TabContainer {
 
         this.url = url;
 
+        promoteSelectedTabs(tabbedPane);
         layoutComponents();
     }
 
@@ -77,6 +79,7 @@ public class TabbedDataSet extends TabContainer {
      */
     protected TabbedDataSet(DataItem parent) {
         super(parent);
+        promoteSelectedTabs(tabbedPane);
     }
 
     /* (non-Javadoc)
@@ -207,6 +210,48 @@ public class TabbedDataSet extends TabContainer {
         loaded = true;
     }
 
+    /* (non-Javadoc)
+     * @see org.ribax.swing.ui.DataItem#getFetchTask(java.util.ArrayList, java.lang.String)
+     */
+    public Callable<Element> getFetchTask(ArrayList<NameValuePair> params, String action) {
+
+        if (loaded || url == null) {
+            return null;
+        }
+
+        // collect the parameters here as the parameter set is a GUI component
+        final ArrayList<NameValuePair> requestParams = new ArrayList<NameValuePair>();
+
+        if (params != null) {
+            requestParams.addAll(params);
+        }
+        if (paramSet != null) {
+            requestParams.addAll(paramSet.getNameValuePairs());
+        }
+
+        return new FetchTask(this, url, requestParams);
+    }
+
+    /* (non-Javadoc)
+     * @see org.ribax.swing.ui.DataItem#loadFetchedData(org.jdom.Element, java.util.ArrayList, java.lang.String)
+     */
+    public void loadFetchedData(Element node, ArrayList<NameValuePair> params, String action) {
+
+        if (loaded) {
+            return;
+        }
+
+        // if the fetch failed loadData requests the data again and reports the error
+        if (node == null) {
+            loadData(params, action);
+            return;
+        }
+
+        setData(node);
+
+        loaded = true;
+    }
+
     /* (non-Javadoc)
      * @see org.ribax.swing.ui.TabContainer#refresh(java.util.ArrayList, java.lang.String)
      */
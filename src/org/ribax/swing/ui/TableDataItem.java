@@ -34,6 +34,7 @@ import java.util.Enumeration;
 
 import javax.swing.Box;
 import javax.swing.JScrollPane;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableModel;
 import javax.swing.table.TableCellEditor;
@@ -73,8 +74,8 @@ public class TableDataItem extends DataItem {
     private Box box = Box.createVerticalBox();
     /** The table */
     protected XTable table;
-    /** The Table Data Model */
-    private TableDataModel data;
+    /** The Table Data Model, a TableDataModel or a read only ColumnarTableDataModel */
+    private AbstractTableModel data;
     /** A parameter set associated with this Table Data Item */
     private ParameterSet paramSet;
     /** A set of options for printing the table */
@@ -310,7 +311,11 @@ public class TableDataItem extends DataItem {
         // if the table data is given here then create a TableDataModel
         // and set the model with the data
         if ((e = di.getChild("tableData")) != null) { //$NON-NLS-1$
-            data = new TableDataModel(e);
+            if (ColumnarTableDataModel.isColumnar(e)) {
+                data = new ColumnarTableDataModel(e);
+            } else {
+                data = new TableDataModel(e);
+            }
         } else {
             data = new TableDataModel();
         }
@@ -407,7 +412,7 @@ public class TableDataItem extends DataItem {
      * 
      * @param model the table data model to set.
      */
-    public void setModel(TableDataModel model) {
+    public void setModel(AbstractTableModel model) {
         if (LOG.isDebugEnabled()) {
             LOG.debug(Messages.getString(BUNDLE_NAME, "TableDataItem.44")); //$NON-NLS-1$
         }
@@ -509,6 +514,8 @@ public class TableDataItem extends DataItem {
             if (plist != null) {
                 list.addAll(plist);
             }
+        } else if (data instanceof ColumnarTableDataModel) {
+            list.addAll(((ColumnarTableDataModel) data).getSelectedRowElements(row, offset));
         } else {
             // a regular table model so we need to collect the data manually
             int numcols = data.getColumnCount();
@@ -605,6 +612,7 @@ public class TableDataItem extends DataItem {
      * @see org.ribax.swing.ui.DataItem#close()
      */
     public void close() {
+        super.close();
 
         // if we are streaming data to the table then stop the streaming
         if (loader != null) {
@@ -674,7 +682,11 @@ public class TableDataItem extends DataItem {
      */
     public void setData(Element node) {
         // create a new TableDataModel with the Element tree
-        data = new TableDataModel(node);
+        if (ColumnarTableDataModel.isColumnar(node)) {
+            data = new ColumnarTableDataModel(node);
+        } else {
+            data = new TableDataModel(node);
+        }
 
         // set the table data model
         setModel(data);
@@ -25,10 +25,7 @@ import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -43,6 +40,7 @@ import org.jdom.Element;
 import org.ribax.common.Messages;
 import org.ribax.common.data.DataChangeListener;
 import org.ribax.common.data.DataModel;
+import org.ribax.common.net.ResumableLineReader;
 import org.ribax.common.validators.Validator;
 
 
@@ -312,13 +310,22 @@ public class TextDataItem extends DataItem {
         });
     }
     private boolean stopped = false;
+    /* the reader on the streaming web service, null if the item is not streaming */
+    private volatile ResumableLineReader lineReader = null;
 
     /* (non-Javadoc)
      * @see org.ribax.swing.ui.DataItem#close()
      */
     public void close() {
+        super.close();
 
         stopped = true;
+
+        ResumableLineReader reader = lineReader;
+
+        if (reader != null) {
+            reader.close();
+        }
     }
 
     /**
@@ -335,38 +342,44 @@ public class TextDataItem extends DataItem {
             params.add(new NameValuePair("Action", action)); //$NON-NLS-1$
         }
         try {
-            // get an inputstream from the streaming data source
-            InputStream fin = getInputStream(streamSource, params);
-            BufferedReader bin = new BufferedReader(new InputStreamReader(fin));
+            // get a reader on the streaming data source that reconnects if the
+            // connection drops
+            ResumableLineReader bin = new ResumableLineReader(streamSource, params, name);
+            lineReader = bin;
 
             String line;
 
-            // read lines from the source continously until stopped by an event
-            while ((line = bin.readLine()) != null) {
+            try {
+                // read lines from the source continously until stopped by an event
+                while ((line = bin.readLine()) != null) {
 
-                // an event has occurred that means we have to stop streaming
-                if (stopped == true) {
-                    break;
-                }
+                    // an event has occurred that means we have to stop streaming
+                    if (stopped == true) {
+                        break;
+                    }
 
-                // clear the text field if the line is empty
-                if (line.length() == 0) {
-                    field.setText(""); //$NON-NLS-1$
-                    continue;
-                }
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug(Messages.getString(BUNDLE_NAME, "TextDataItem.9") + line); //$NON-NLS-1$
-                }
-                // check for the EOT character 0x04, if the line starts with EOT
-                // we replace the field contents otherwise we append to the field
-                if (line.charAt(0) == DataItem.EOT) {
-                    line = line.substring(1);
-                    // replace the text with this new text
-                    field.setText(line);
-                } else {
-                    // append this new text
-                    field.setText(field.getText() + " " + line); //$NON-NLS-1$
+                    // clear the text field if the line is empty
+                    if (line.length() == 0) {
+                        field.setText(""); //$NON-NLS-1$
+                        continue;
+                    }
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(Messages.getString(BUNDLE_NAME, "TextDataItem.9") + line); //$NON-NLS-1$
+                    }
+                    // check for the EOT character 0x04, if the line starts with EOT
+                    // we replace the field contents otherwise we append to the field
+                    if (line.charAt(0) == DataItem.EOT) {
+                        line = line.substring(1);
+                        // replace the text with this new text
+                        field.setText(line);
+                    } else {
+                        // append this new text
+                        field.setText(field.getText() + " " + line); //$NON-NLS-1$
+                    }
                 }
+            } finally {
+                lineReader = null;
+                bin.close();
             }
 
         } catch (MalformedURLException ex) {
@@ -288,6 +288,7 @@ public class UrlDataItem extends DataItem {
      * @see org.ribax.swing.ui.DataItem#close()
      */
     public void close() {
+        super.close();
 
         // stop any streaming loader
         if (loader != null) {
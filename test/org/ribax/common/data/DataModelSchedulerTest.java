@@ -0,0 +1,148 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.ribax.common.data;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class DataModelSchedulerTest {
+
+    public DataModelSchedulerTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of submit method, of class DataModelScheduler.
+     */
+    @Test
+    public void testSubmit() throws Exception {
+        System.out.println("submit");
+
+        final AtomicBoolean onEDT = new AtomicBoolean(true);
+        DataModelScheduler instance = DataModelScheduler.getInstance();
+
+        Future<?> result = instance.submit(new Runnable() {
+
+            public void run() {
+                onEDT.set(SwingUtilities.isEventDispatchThread());
+            }
+        });
+        result.get(5, TimeUnit.SECONDS);
+
+        // the task must not run on the event dispatch thread
+        assertFalse(onEDT.get());
+    }
+
+    /**
+     * Test of schedulePoll method, of class DataModelScheduler.
+     */
+    @Test
+    public void testSchedulePoll() throws Exception {
+        System.out.println("schedulePoll");
+
+        final CountDownLatch latch = new CountDownLatch(2);
+        DataModelScheduler instance = new DataModelScheduler(1);
+
+        ScheduledFuture<?> result = instance.schedulePoll(new Runnable() {
+
+            public void run() {
+                latch.countDown();
+            }
+        }, 1);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        result.cancel(true);
+        assertTrue(result.isCancelled());
+
+        instance.shutdown();
+    }
+
+    /**
+     * Test of submitStream method, of class DataModelScheduler.
+     */
+    @Test
+    public void testSubmitStream() throws Exception {
+        System.out.println("submitStream");
+
+        final CountDownLatch end = new CountDownLatch(1);
+        DataModelScheduler instance = new DataModelScheduler(1);
+
+        // a stream that never ends does not hold up the short tasks
+        Future<?> stream = instance.submitStream(new Runnable() {
+
+            public void run() {
+                try {
+                    end.await();
+                } catch (InterruptedException ex) {
+                }
+            }
+        });
+        Future<?> result = instance.submit(new Runnable() {
+
+            public void run() {
+            }
+        });
+        result.get(5, TimeUnit.SECONDS);
+        assertFalse(stream.isDone());
+
+        end.countDown();
+        stream.get(5, TimeUnit.SECONDS);
+        instance.shutdown();
+    }
+
+    /**
+     * Test of invokeOnEDT method, of class DataModelScheduler.
+     */
+    @Test
+    public void testInvokeOnEDT() throws Exception {
+        System.out.println("invokeOnEDT");
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicBoolean onEDT = new AtomicBoolean(false);
+
+        DataModelScheduler.invokeOnEDT(new Runnable() {
+
+            public void run() {
+                onEDT.set(SwingUtilities.isEventDispatchThread());
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(onEDT.get());
+    }
+}
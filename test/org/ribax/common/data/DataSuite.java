@@ -17,7 +17,7 @@ import org.junit.runners.Suite;
  * @author damian
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({org.ribax.common.data.JDomDataModelTest.class,org.ribax.common.data.DataModelManagerTest.class,org.ribax.common.data.DataModelTest.class,org.ribax.common.data.DataUtilsTest.class})
+@Suite.SuiteClasses({org.ribax.common.data.JDomDataModelTest.class,org.ribax.common.data.DataModelManagerTest.class,org.ribax.common.data.DataModelTest.class,org.ribax.common.data.DataUtilsTest.class,org.ribax.common.data.DataModelSchedulerTest.class,org.ribax.common.data.ElementBlockReaderTest.class,org.ribax.common.data.RequestCoalescerTest.class,org.ribax.common.data.EventBlockReaderTest.class,org.ribax.common.data.ResumableBlockSourceTest.class,org.ribax.common.data.RowFrameWriterTest.class,org.ribax.common.data.JsonReaderTest.class,org.ribax.common.data.JsonElementBuilderTest.class,org.ribax.common.data.JsonBlockReaderTest.class,org.ribax.common.data.RequestSchedulerTest.class})
 public class DataSuite {
 
     @BeforeClass
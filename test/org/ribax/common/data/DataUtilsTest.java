@@ -6,6 +6,7 @@ package org.ribax.common.data;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -135,4 +136,22 @@ public class DataUtilsTest {
         InputStream result = DataUtils.getDataAsInputStream(root);
         assertNotNull(result);
     }
+
+    /**
+     * Test of buildDocument method, of class DataUtils.
+     */
+    @Test
+    public void testBuildDocument() throws Exception {
+        System.out.println("buildDocument");
+
+        Element result = DataUtils.buildDocument(new ByteArrayInputStream(
+                "<options><option>a</option></options>".getBytes("UTF-8")));
+        assertEquals("options", result.getName());
+        assertEquals("a", result.getChildText("option"));
+
+        result = DataUtils.buildDocument(new ByteArrayInputStream(
+                "\n{\"options\": {\"option\": [\"a\", \"b\"]}}".getBytes("UTF-8")));
+        assertEquals("options", result.getName());
+        assertEquals(2, result.getChildren("option").size());
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.ribax.common.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.StringReader;
+import org.jdom.Element;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class ElementBlockReaderTest {
+
+    public ElementBlockReaderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of readBlock method, of class ElementBlockReader.
+     */
+    @Test
+    public void testReadBlock() throws Exception {
+        System.out.println("readBlock");
+
+        String[] triggers = {
+            "modelData"
+        };
+
+        File f = new File("./resources/blockTest.xml");
+        ElementBlockReader instance = new ElementBlockReader("", new FileInputStream(f), triggers);
+
+        Element result = instance.readBlock();
+        assertNotNull(result);
+        assertEquals("modelData", result.getName());
+        assertEquals("Mr Smith", result.getChild("details").getChildText("name"));
+
+        // the stream has ended
+        assertNull(instance.readBlock());
+        instance.close();
+    }
+
+    /**
+     * Test of readBlock method with several blocks on one line and blocks that
+     * span lines, of class ElementBlockReader.
+     */
+    @Test
+    public void testReadBlocks() throws Exception {
+        System.out.println("readBlocks");
+
+        String[] triggers = {
+            "tableData", "error"
+        };
+
+        String xml = "<?xml version=\"1.0\"?><tableData><rowData><row><col>a</col></row></rowData></tableData>"
+                + "<?xml version=\"1.0\"?>\n<tableData><rowData>\n<row>\n<col value=\"b\"/>\n</row>\n</rowData>\n</tableData>"
+                + "<ignored><tableData/></ignored><error>failed &amp; stopped</error>";
+
+        ElementBlockReader instance = new ElementBlockReader("", new StringReader(xml), triggers);
+
+        Element result = instance.readBlock();
+        assertEquals("tableData", result.getName());
+        assertEquals("a", result.getChild("rowData").getChild("row").getChildText("col"));
+
+        result = instance.readBlock();
+        assertEquals("tableData", result.getName());
+        assertEquals("b", result.getChild("rowData").getChild("row").getChild("col").getAttributeValue("value"));
+
+        result = instance.readBlock();
+        assertEquals("error", result.getName());
+        assertEquals("failed & stopped", result.getText());
+
+        assertNull(instance.readBlock());
+    }
+
+    /**
+     * Test of readBlock method with no triggers, of class ElementBlockReader.
+     */
+    @Test
+    public void testReadAnyBlock() throws Exception {
+        System.out.println("readAnyBlock");
+
+        String xml = "<a>1</a>  <b><?xml-stylesheet href=\"x\"?>2</b>";
+
+        ElementBlockReader instance = new ElementBlockReader("",
+                new ByteArrayInputStream(xml.getBytes("UTF-8")), null);
+
+        assertEquals("1", instance.readBlock().getText());
+        assertEquals("2", instance.readBlock().getText());
+        assertNull(instance.readBlock());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.data;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Vector;
+import org.jdom.Element;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ribax.common.ConfigStrings;
+import org.ribax.common.RIBAXConfig;
+import org.ribax.common.net.Backoff;
+import org.ribax.common.net.StandInServer;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class EventBlockReaderTest {
+
+    private StandInServer server;
+    /* the Last-Event-ID header of each connection */
+    private Vector<String> lastEventIds;
+    private String url;
+
+    public EventBlockReaderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        // give up quickly when the stream cannot be resumed
+        RIBAXConfig.getInstance().setValue(ConfigStrings.STREAM_RETRY_DELAY, "10");
+        RIBAXConfig.getInstance().setValue(ConfigStrings.STREAM_RETRY_ATTEMPTS, "2");
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        RIBAXConfig.getInstance().setValue(ConfigStrings.STREAM_RETRY_DELAY, Integer.toString(Backoff.DEFAULT_DELAY));
+        RIBAXConfig.getInstance().setValue(ConfigStrings.STREAM_RETRY_ATTEMPTS, Integer.toString(Backoff.DEFAULT_ATTEMPTS));
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        lastEventIds = new Vector<String>();
+        server = new StandInServer(new HttpHandler() {
+
+            public void handle(HttpExchange ex) throws IOException {
+                String last = ex.getRequestHeaders().getFirst("Last-Event-ID");
+                lastEventIds.add(last == null ? "" : last);
+
+                ex.getResponseHeaders().set("Content-Type", "text/event-stream");
+                ex.sendResponseHeaders(200, 0);
+                OutputStream out = ex.getResponseBody();
+
+                if (last == null) {
+                    // the first connection sends two blocks and drops
+                    out.write(("retry: 10\n"
+                            + "id: 1\ndata: <tableData><row>1</row></tableData>\n\n"
+                            + "data: <ignored/>\n\n"
+                            + "data: <tableData>\n\n"
+                            + "id: 2\ndata: <tableData>\ndata: <row>2</row>\ndata: </tableData>\n\n").getBytes());
+                } else if (last.equals("2")) {
+                    // the resumed stream sends the next block
+                    out.write("id: 3\ndata: <tableData><row>3</row></tableData>\n\n".getBytes());
+                }
+                out.flush();
+                ex.close();
+            }
+        });
+        url = server.getURL("sse", "/events");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Test of readBlock method, of class EventBlockReader.
+     */
+    @Test
+    public void testReadBlock() throws Exception {
+        System.out.println("readBlock");
+        String[] triggers = {"tableData"};
+        ElementBlockSource instance = DataUtils.getBlockSource(url, null, "test", triggers, null);
+
+        assertTrue(instance instanceof EventBlockReader);
+
+        // blocks that are not triggers or are not well formed are skipped
+        Element block = instance.readBlock();
+        assertEquals("1", block.getChildText("row"));
+        block = instance.readBlock();
+        assertEquals("2", block.getChildText("row"));
+
+        // the stream is resumed after the last event
+        block = instance.readBlock();
+        assertEquals("3", block.getChildText("row"));
+        assertEquals("3", ((EventBlockReader) instance).getLastEventId());
+
+        // the stream ends when it cannot be resumed
+        server.stop();
+        assertNull(instance.readBlock());
+        instance.close();
+
+        assertEquals("", lastEventIds.get(0));
+        assertEquals("2", lastEventIds.get(1));
+    }
+
+    /**
+     * Test of close method, of class EventBlockReader.
+     */
+    @Test
+    public void testClose() throws Exception {
+        System.out.println("close");
+        final EventBlockReader instance = new EventBlockReader(url, null, "test", null, null);
+
+        assertNotNull(instance.readBlock());
+        instance.close();
+        assertNull(instance.readBlock());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.ribax.common.data;
+
+import java.io.ByteArrayInputStream;
+import org.jdom.Element;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class JsonBlockReaderTest {
+
+    public JsonBlockReaderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of readBlock method, of class JsonBlockReader.
+     */
+    @Test
+    public void testReadBlock() throws Exception {
+        System.out.println("readBlock");
+
+        String[] triggers = {
+            "tableData", "error"
+        };
+
+        String json = "{\"tableData\": {\"rowData\": {\"row\": {\"col\": [\"a\", \"b\"]}}}}\n"
+                + "{\"ignored\": {\"tableData\": 1}}{\"error\": \"failed\"}";
+
+        JsonBlockReader instance = new JsonBlockReader("", new ByteArrayInputStream(json.getBytes("UTF-8")), triggers);
+
+        Element result = instance.readBlock();
+        assertEquals("tableData", result.getName());
+        assertEquals(2, result.getChild("rowData").getChild("row").getChildren("col").size());
+
+        result = instance.readBlock();
+        assertEquals("error", result.getName());
+        assertEquals("failed", result.getText());
+
+        assertNull(instance.readBlock());
+        assertNull(instance.getError());
+        instance.close();
+    }
+
+    /**
+     * Test of readBlock method with a stream that is cut off, of class JsonBlockReader.
+     */
+    @Test
+    public void testReadBlockTruncated() throws Exception {
+        System.out.println("readBlockTruncated");
+
+        String json = "{\"a\": 1} {\"b\": [1, 2";
+
+        JsonBlockReader instance = new JsonBlockReader("", new ByteArrayInputStream(json.getBytes("UTF-8")), null);
+
+        assertEquals("a", instance.readBlock().getName());
+        assertNull(instance.readBlock());
+        assertNotNull(instance.getError());
+    }
+
+    /**
+     * Test of DataUtils.getBlockReader, of class JsonBlockReader.
+     */
+    @Test
+    public void testGetBlockReader() throws Exception {
+        System.out.println("getBlockReader");
+
+        ElementBlockSource result = DataUtils.getBlockReader("",
+                new ByteArrayInputStream(" {\"a\": 1}".getBytes("UTF-8")), null);
+        assertTrue(result instanceof JsonBlockReader);
+        assertEquals("1", result.readBlock().getText());
+
+        result = DataUtils.getBlockReader("", new ByteArrayInputStream("<a>1</a>".getBytes("UTF-8")), null);
+        assertTrue(result instanceof ElementBlockReader);
+        assertEquals("1", result.readBlock().getText());
+    }
+}
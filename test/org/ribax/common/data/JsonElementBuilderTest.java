@@ -0,0 +1,107 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.ribax.common.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.List;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class JsonElementBuilderTest {
+
+    public JsonElementBuilderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of build method, of class JsonElementBuilder.
+     */
+    @Test
+    public void testBuild() throws Exception {
+        System.out.println("build");
+        String text = "{\"modelData\": {\"@seq\": 4, \"details\": {\"name\": \"Mr Smith\", \"age\": 42,"
+                + " \"note\": null}, \"row\": [{\"@key\": \"a\", \"#text\": \"x\"}, \"y\"]}}";
+
+        Element result = JsonElementBuilder.build(new ByteArrayInputStream(text.getBytes("UTF-8")));
+
+        assertEquals("modelData", result.getName());
+        assertNull(result.getParent());
+        assertEquals("4", result.getAttributeValue("seq"));
+        assertEquals("Mr Smith", result.getChild("details").getChildText("name"));
+        assertEquals("42", result.getChild("details").getChildText("age"));
+        assertEquals("", result.getChild("details").getChildText("note"));
+
+        List<Element> rows = result.getChildren("row");
+        assertEquals(2, rows.size());
+        assertEquals("a", rows.get(0).getAttributeValue("key"));
+        assertEquals("x", rows.get(0).getText());
+        assertEquals("y", rows.get(1).getText());
+    }
+
+    /**
+     * Test of build method with documents that are not single member objects, of
+     * class JsonElementBuilder.
+     */
+    @Test
+    public void testBuildRoot() throws Exception {
+        System.out.println("buildRoot");
+        JsonReader json = new JsonReader(new StringReader(
+                "[\"a\", [1, 2]] {\"a\": 1, \"b\": 2} [\"only\"]"));
+
+        Element result = JsonElementBuilder.build(json);
+        assertEquals(JsonElementBuilder.ROOT, result.getName());
+        List<Element> items = result.getChildren(JsonElementBuilder.ITEM);
+        assertEquals(2, items.size());
+        assertEquals("a", items.get(0).getText());
+        assertEquals(2, items.get(1).getChildren(JsonElementBuilder.ITEM).size());
+
+        result = JsonElementBuilder.build(json);
+        assertEquals(JsonElementBuilder.ROOT, result.getName());
+        assertEquals("2", result.getChildText("b"));
+
+        // an array with one value is not unwrapped
+        result = JsonElementBuilder.build(json);
+        assertEquals(JsonElementBuilder.ROOT, result.getName());
+        assertEquals("only", result.getChildText(JsonElementBuilder.ITEM));
+
+        assertNull(JsonElementBuilder.build(json));
+    }
+
+    /**
+     * Test of build method with a name that is not an Element name, of class
+     * JsonElementBuilder.
+     */
+    @Test(expected = JDOMException.class)
+    public void testBuildInvalidName() throws Exception {
+        System.out.println("buildInvalidName");
+        JsonElementBuilder.build(new JsonReader(new StringReader("{\"a b\": 1}")));
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.ribax.common.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class JsonReaderTest {
+
+    public JsonReaderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of next method, of class JsonReader.
+     */
+    @Test
+    public void testNext() throws Exception {
+        System.out.println("next");
+        String text = "{\"name\": \"a \\\"b\\\" \\u00e9\\n\", \"list\": [1, -2.5e3, true, null, {}, []],\n"
+                + " \"empty\": \"\"}";
+        JsonReader instance = new JsonReader(new StringReader(text));
+
+        assertEquals(JsonReader.START_OBJECT, instance.next());
+        assertEquals(1, instance.getDepth());
+        assertEquals(JsonReader.NAME, instance.next());
+        assertEquals("name", instance.getText());
+        assertEquals(JsonReader.STRING, instance.next());
+        assertEquals("a \"b\" \u00e9\n", instance.getText());
+        assertEquals(JsonReader.NAME, instance.next());
+        assertEquals(JsonReader.START_ARRAY, instance.next());
+        assertEquals(JsonReader.NUMBER, instance.next());
+        assertEquals("1", instance.getText());
+        assertTrue(instance.isWholeNumber());
+        assertEquals(JsonReader.NUMBER, instance.next());
+        assertEquals("-2.5e3", instance.getText());
+        assertFalse(instance.isWholeNumber());
+        assertEquals(JsonReader.BOOLEAN, instance.next());
+        assertEquals("true", instance.getText());
+        assertEquals(JsonReader.NULL, instance.next());
+        assertNull(instance.getText());
+        assertEquals(JsonReader.START_OBJECT, instance.next());
+        assertEquals(JsonReader.END_OBJECT, instance.next());
+        assertEquals(JsonReader.START_ARRAY, instance.next());
+        assertEquals(JsonReader.END_ARRAY, instance.next());
+        assertEquals(JsonReader.END_ARRAY, instance.next());
+        assertEquals(JsonReader.NAME, instance.next());
+        assertEquals("empty", instance.getText());
+        assertEquals(2, instance.getLine());
+        assertEquals(JsonReader.STRING, instance.next());
+        assertEquals("", instance.getText());
+        assertEquals(JsonReader.END_OBJECT, instance.next());
+        assertEquals(0, instance.getDepth());
+        assertEquals(JsonReader.END_DOCUMENT, instance.next());
+        assertEquals(JsonReader.END_DOCUMENT, instance.next());
+    }
+
+    /**
+     * Test of next method with several top level values, of class JsonReader.
+     */
+    @Test
+    public void testNextValues() throws Exception {
+        System.out.println("nextValues");
+        JsonReader instance = new JsonReader(new ByteArrayInputStream("{\"a\":1}\n[2] \"x\"".getBytes("UTF-8")));
+
+        assertEquals(JsonReader.START_OBJECT, instance.next());
+        instance.skipValue();
+        assertEquals(JsonReader.END_OBJECT, instance.getEvent());
+        assertEquals(JsonReader.START_ARRAY, instance.next());
+        assertEquals(JsonReader.NUMBER, instance.next());
+        assertEquals(JsonReader.END_ARRAY, instance.next());
+        assertEquals(JsonReader.STRING, instance.next());
+        assertEquals(JsonReader.END_DOCUMENT, instance.next());
+    }
+
+    /**
+     * Test of skipValue method, of class JsonReader.
+     */
+    @Test
+    public void testSkipValue() throws Exception {
+        System.out.println("skipValue");
+        JsonReader instance = new JsonReader(new StringReader(
+                "{\"skip\": {\"a\": [1, {\"b\": [2]}]}, \"keep\": 3, \"also\": \"x\"}"));
+
+        instance.next();
+        instance.next();
+        instance.skipValue();
+        assertEquals(JsonReader.NAME, instance.next());
+        assertEquals("keep", instance.getText());
+        assertEquals(JsonReader.NUMBER, instance.next());
+        assertEquals(JsonReader.NAME, instance.next());
+        // skip a simple value after its name
+        instance.skipValue();
+        assertEquals(JsonReader.STRING, instance.getEvent());
+        assertEquals(JsonReader.END_OBJECT, instance.next());
+    }
+
+    /**
+     * Test of next method with invalid JSON, of class JsonReader.
+     */
+    @Test
+    public void testSyntaxError() throws Exception {
+        System.out.println("syntaxError");
+        String[] invalid = {
+            "{\"a\" 1}", "[1,]", "{\"a\":1,}", "[tru]", "[01]", "{1:2}", "[1 2]", "[\"a", "{\"a\":[1}"
+        };
+
+        for (String text : invalid) {
+            JsonReader instance = new JsonReader(new StringReader(text));
+
+            try {
+                while (instance.next() != JsonReader.END_DOCUMENT) {
+                }
+                fail("no error for " + text);
+            } catch (IOException ex) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Test of isJsonStream method, of class JsonReader.
+     */
+    @Test
+    public void testIsJsonStream() throws Exception {
+        System.out.println("isJsonStream");
+        BufferedInputStream in = new BufferedInputStream(new ByteArrayInputStream(" \r\n{\"a\":1}".getBytes("UTF-8")));
+
+        assertTrue(JsonReader.isJsonStream(in));
+        // the stream is not consumed
+        assertEquals(' ', in.read());
+
+        assertTrue(JsonReader.isJsonStream(new BufferedInputStream(new ByteArrayInputStream(
+                new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, '['}))));
+        assertFalse(JsonReader.isJsonStream(new BufferedInputStream(new ByteArrayInputStream(
+                "<?xml version=\"1.0\"?><a/>".getBytes("UTF-8")))));
+        assertFalse(JsonReader.isJsonStream(new BufferedInputStream(new ByteArrayInputStream(new byte[0]))));
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.data;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jdom.Element;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.ribax.common.net.DataRequest;
+import org.ribax.common.net.StandInServer;
+import utils.types.NameValuePair;
+
+/**
+ *
+ * @author damian
+ */
+public class RequestCoalescerTest {
+
+    private StandInServer server;
+    private AtomicInteger hits;
+    private String url;
+
+    public RequestCoalescerTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        hits = new AtomicInteger(0);
+        server = new StandInServer(new HttpHandler() {
+
+            public void handle(HttpExchange ex) throws IOException {
+                hits.incrementAndGet();
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                }
+                byte[] body = "<options><option>one</option><option>two</option></options>".getBytes();
+                ex.sendResponseHeaders(200, body.length);
+                ex.getResponseBody().write(body);
+                ex.close();
+            }
+        });
+        url = server.getURL("/options");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    private static ArrayList<NameValuePair> params(String... pairs) {
+        ArrayList<NameValuePair> list = new ArrayList<NameValuePair>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            list.add(new NameValuePair(pairs[i], pairs[i + 1]));
+        }
+        return list;
+    }
+
+    /**
+     * Test of getDocumentRoot method with identical requests, of class RequestCoalescer.
+     */
+    @Test
+    public void testGetDocumentRootShared() throws Exception {
+        System.out.println("getDocumentRootShared");
+        final RequestCoalescer instance = new RequestCoalescer();
+        final Vector<Element> results = new Vector<Element>();
+        Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++) {
+            // the same parameters in a different order are the same request
+            final ArrayList<NameValuePair> p = (i % 2 == 0)
+                    ? params("a", "1", "b", "2") : params("b", "2", "a", "1");
+            threads[i] = new Thread() {
+
+                public void run() {
+                    try {
+                        results.add(instance.getDocumentRoot(url, p, "test", StandInServer.load()));
+                    } catch (Exception ex) {
+                        ex.printStackTrace();
+                    }
+                }
+            };
+            threads[i].start();
+            Thread.sleep(20);
+        }
+        for (Thread t : threads) {
+            t.join(5000);
+        }
+
+        assertEquals(1, hits.get());
+        assertEquals(3, instance.getSharedCount());
+        assertEquals(4, results.size());
+
+        // every caller has its own copy of the document
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(2, results.get(i).getChildren().size());
+            for (int j = i + 1; j < results.size(); j++) {
+                assertNotSame(results.get(i), results.get(j));
+            }
+        }
+
+        // a request after the fetch has finished fetches the document again
+        instance.getDocumentRoot(url, params("a", "1", "b", "2"), "test", StandInServer.load());
+        assertEquals(2, hits.get());
+    }
+
+    /**
+     * Test of getDocumentRoot method with identical submissions, of class RequestCoalescer.
+     */
+    @Test
+    public void testGetDocumentRootSubmission() throws Exception {
+        System.out.println("getDocumentRootSubmission");
+        final RequestCoalescer instance = new RequestCoalescer();
+        Thread[] threads = new Thread[2];
+
+        for (int i = 0; i < threads.length; i++) {
+            // a request that is not marked idempotent changes data so it is never shared
+            final DataRequest<Object> request = (i == 0) ? null : StandInServer.load().setIdempotent(false);
+
+            threads[i] = new Thread() {
+
+                public void run() {
+                    try {
+                        instance.getDocumentRoot(url, params("a", "1"), "test", request);
+                    } catch (Exception ex) {
+                        ex.printStackTrace();
+                    }
+                }
+            };
+            threads[i].start();
+            Thread.sleep(20);
+        }
+        for (Thread t : threads) {
+            t.join(5000);
+        }
+
+        assertEquals(2, hits.get());
+        assertEquals(0, instance.getSharedCount());
+    }
+
+    /**
+     * Test of getDocumentRoot method when the shared request is cancelled, of class
+     * RequestCoalescer.
+     */
+    @Test
+    public void testGetDocumentRootCancelled() throws Exception {
+        System.out.println("getDocumentRootCancelled");
+        final RequestCoalescer instance = new RequestCoalescer();
+
+        DataRequest<Element> leader = new DataRequest<Element>(0) {
+
+            protected Element call() throws Exception {
+                return instance.getDocumentRoot(url, null, "test", this);
+            }
+        }.setIdempotent(true).start();
+        Thread.sleep(100);
+
+        final Vector<Element> results = new Vector<Element>();
+        Thread follower = new Thread() {
+
+            public void run() {
+                try {
+                    results.add(instance.getDocumentRoot(url, null, "test", StandInServer.load()));
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            }
+        };
+        follower.start();
+        Thread.sleep(100);
+        leader.cancel(false);
+        follower.join(5000);
+
+        // the follower fetches the document itself
+        assertEquals(1, instance.getSharedCount());
+        assertEquals(1, results.size());
+        assertEquals("options", results.get(0).getName());
+        assertEquals(2, hits.get());
+    }
+}
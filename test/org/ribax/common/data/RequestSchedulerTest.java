@@ -0,0 +1,171 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.ribax.common.data;
+
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JPanel;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class RequestSchedulerTest {
+
+    private Vector<String> order;
+    private CountDownLatch gate;
+
+    public RequestSchedulerTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+        order = new Vector<String>();
+        gate = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * A task that records its name once the gate has opened.
+     */
+    private Runnable task(final String name) {
+        return new Runnable() {
+
+            public void run() {
+                try {
+                    gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                }
+                order.add(name);
+            }
+        };
+    }
+
+    /**
+     * Test of execute method, of class RequestScheduler.
+     */
+    @Test
+    public void testExecute() throws Exception {
+        System.out.println("execute");
+        RequestScheduler instance = new RequestScheduler(1);
+
+        // the only worker is busy so the rest are queued
+        instance.execute(task("busy"), RequestScheduler.VISIBLE, null);
+        instance.execute(task("poll"), RequestScheduler.POLL, null);
+        instance.execute(task("prefetch1"), RequestScheduler.PREFETCH, null);
+        instance.execute(task("submit"), RequestScheduler.SUBMIT, null);
+        instance.execute(task("prefetch2"), RequestScheduler.PREFETCH, null);
+        Future<?> last = instance.submit(task("visible"), RequestScheduler.VISIBLE, null);
+
+        assertEquals(2, instance.getQueued(RequestScheduler.PREFETCH));
+        assertEquals(1, instance.getRunning(RequestScheduler.VISIBLE));
+
+        gate.countDown();
+        last.get(5, TimeUnit.SECONDS);
+        for (int i = 0; i < 100 && order.size() < 6; i++) {
+            Thread.sleep(20);
+        }
+
+        // the highest class goes first, a class keeps its queue order
+        assertEquals(6, order.size());
+        assertEquals("busy", order.get(0));
+        assertEquals("visible", order.get(1));
+        assertEquals("submit", order.get(2));
+        assertEquals("prefetch1", order.get(3));
+        assertEquals("prefetch2", order.get(4));
+        assertEquals("poll", order.get(5));
+        instance.shutdown();
+    }
+
+    /**
+     * Test of execute method with class limits, of class RequestScheduler.
+     */
+    @Test
+    public void testExecuteLimits() throws Exception {
+        System.out.println("executeLimits");
+        RequestScheduler instance = new RequestScheduler(3, 3, 1, 1, 1);
+
+        instance.execute(task("poll1"), RequestScheduler.POLL, null);
+        instance.execute(task("poll2"), RequestScheduler.POLL, null);
+
+        // the second poll waits although there are free workers
+        assertEquals(1, instance.getRunning(RequestScheduler.POLL));
+        assertEquals(1, instance.getQueued(RequestScheduler.POLL));
+
+        // a visible load is not held up by the polls
+        final CountDownLatch ran = new CountDownLatch(1);
+
+        instance.execute(new Runnable() {
+
+            public void run() {
+                ran.countDown();
+            }
+        }, RequestScheduler.VISIBLE, null);
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+
+        gate.countDown();
+        for (int i = 0; i < 100 && order.size() < 2; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(2, order.size());
+        assertEquals(0, instance.getRunning(RequestScheduler.POLL));
+        instance.shutdown();
+    }
+
+    /**
+     * Test of promote method, of class RequestScheduler.
+     */
+    @Test
+    public void testPromote() throws Exception {
+        System.out.println("promote");
+        RequestScheduler instance = new RequestScheduler(1);
+        JPanel tab = new JPanel();
+        JPanel item = new JPanel();
+        JPanel other = new JPanel();
+
+        tab.add(item);
+
+        instance.execute(task("busy"), RequestScheduler.VISIBLE, null);
+        instance.execute(task("other"), RequestScheduler.PREFETCH, other);
+        instance.execute(task("submit"), RequestScheduler.SUBMIT, null);
+        instance.execute(task("item"), RequestScheduler.PREFETCH, item);
+
+        // the tab with the item is selected
+        instance.promote(tab);
+        assertEquals(1, instance.getQueued(RequestScheduler.VISIBLE));
+        assertEquals(1, instance.getQueued(RequestScheduler.PREFETCH));
+
+        gate.countDown();
+        for (int i = 0; i < 100 && order.size() < 4; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(4, order.size());
+        assertEquals("item", order.get(1));
+        assertEquals("submit", order.get(2));
+        assertEquals("other", order.get(3));
+        instance.shutdown();
+    }
+}
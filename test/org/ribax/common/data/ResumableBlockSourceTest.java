@@ -0,0 +1,165 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.data;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Vector;
+import org.jdom.Element;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ribax.common.net.Backoff;
+import org.ribax.common.net.StandInServer;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class ResumableBlockSourceTest {
+
+    private StandInServer server;
+    /* the body of each request */
+    private Vector<String> requests;
+    /* the blocks sent on a resumed connection */
+    private String resumed;
+    private String url;
+
+    public ResumableBlockSourceTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        requests = new Vector<String>();
+        // the resumed stream repeats a block and ends cleanly
+        resumed = "<tableData seq=\"2\"><row>2</row></tableData>"
+                + "<tableData seq=\"3\" version=\"b\"><row>3</row></tableData>";
+        server = new StandInServer(new HttpHandler() {
+
+            public void handle(HttpExchange ex) throws IOException {
+                String params = StandInServer.readBody(ex);
+                requests.add(params);
+
+                ex.getResponseHeaders().set("Content-Type", "text/xml");
+                ex.sendResponseHeaders(200, 0);
+                OutputStream out = ex.getResponseBody();
+
+                if (params.indexOf(ResumableBlockSource.RESUME_SEQUENCE) < 0) {
+                    // the first connection drops part way through a block
+                    out.write(("<tableData seq=\"1\" version=\"a\"><row>1</row></tableData>"
+                            + "<tableData seq=\"2\"><row>2</row></tableData>"
+                            + "<tableData seq=\"3\"><ro").getBytes());
+                } else {
+                    out.write(resumed.getBytes());
+                }
+                out.flush();
+                ex.close();
+            }
+        });
+        url = server.getURL("/stream");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Test of readBlock method, of class ResumableBlockSource.
+     */
+    @Test
+    public void testReadBlock() throws Exception {
+        System.out.println("readBlock");
+        ResumableBlockSource instance = new ResumableBlockSource(url, null, "test", null, null,
+                new Backoff(10, 20, 2));
+
+        Element block = instance.readBlock();
+        assertEquals("1", block.getChildText("row"));
+        block = instance.readBlock();
+        assertEquals("2", block.getChildText("row"));
+        assertEquals(2, instance.getLastSequence());
+        assertEquals("a", instance.getLastVersion());
+
+        // the stream is resumed after the last complete block and the repeated
+        // block is skipped
+        block = instance.readBlock();
+        assertEquals("3", block.getChildText("row"));
+        assertEquals(3, instance.getLastSequence());
+        assertEquals("b", instance.getLastVersion());
+        assertEquals(1, instance.getReconnects());
+
+        String resumed = requests.get(1);
+        assertTrue(resumed.indexOf("name=\"" + ResumableBlockSource.RESUME_SEQUENCE + "\"") > 0);
+        assertTrue(resumed.indexOf("\r\n\r\n2\r\n") > 0);
+        assertTrue(resumed.indexOf("name=\"" + ResumableBlockSource.RESUME_VERSION + "\"") > 0);
+
+        // the stream ends when it cannot be resumed
+        server.stop();
+        assertNull(instance.readBlock());
+        instance.close();
+    }
+
+    /**
+     * Test of readBlock method when the web service starts the stream again, of class
+     * ResumableBlockSource.
+     */
+    @Test
+    public void testReadBlockRestarted() throws Exception {
+        System.out.println("readBlockRestarted");
+
+        // the web service sends a snapshot of the data
+        resumed = "<tableData seq=\"1\"><clearData/><row>x</row></tableData>"
+                + "<tableData seq=\"2\"><row>y</row></tableData>";
+        ResumableBlockSource instance = new ResumableBlockSource(url, null, "test", null, null,
+                new Backoff(10, 20, 2));
+
+        assertEquals("1", instance.readBlock().getChildText("row"));
+        assertEquals("2", instance.readBlock().getChildText("row"));
+        assertEquals("x", instance.readBlock().getChildText("row"));
+        assertEquals(1, instance.getLastSequence());
+        assertNull(instance.getLastVersion());
+        assertEquals("y", instance.readBlock().getChildText("row"));
+        assertEquals(2, instance.getLastSequence());
+        instance.close();
+
+        // the sequence numbers of the web service go backwards
+        resumed = "<tableData seq=\"1\"><row>x</row></tableData>";
+        instance = new ResumableBlockSource(url, null, "test", null, null,
+                new Backoff(10, 20, 2));
+
+        assertEquals("1", instance.readBlock().getChildText("row"));
+        assertEquals("2", instance.readBlock().getChildText("row"));
+        assertEquals("x", instance.readBlock().getChildText("row"));
+        assertEquals(1, instance.getLastSequence());
+        instance.close();
+    }
+
+    /**
+     * Test of isResumableURL method, of class ResumableBlockSource.
+     */
+    @Test
+    public void testIsResumableURL() {
+        System.out.println("isResumableURL");
+        assertTrue(ResumableBlockSource.isResumableURL("http://host/stream"));
+        assertTrue(ResumableBlockSource.isResumableURL(" HTTPS://host/stream"));
+        assertFalse(ResumableBlockSource.isResumableURL("file:/tmp/stream.xml"));
+        assertFalse(ResumableBlockSource.isResumableURL("sse://host/events"));
+        assertFalse(ResumableBlockSource.isResumableURL(null));
+    }
+}
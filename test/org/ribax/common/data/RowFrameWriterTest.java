@@ -0,0 +1,160 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.net.URL;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class RowFrameWriterTest {
+
+    public RowFrameWriterTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of writeUpsert method, of class RowFrameWriter.
+     */
+    @Test
+    public void testWriteUpsert() throws Exception {
+        System.out.println("writeUpsert");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RowFrameWriter instance = new RowFrameWriter(out);
+
+        instance.writeUpsert("k1", new Object[]{"abc", Integer.valueOf(5), Double.valueOf(1.5),
+                    Boolean.TRUE, null, new URL("http://host/a.png")});
+        instance.commit(7);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        byte[] magic = new byte[4];
+
+        in.readFully(magic);
+        assertArrayEquals(RowFrame.MAGIC, magic);
+        assertEquals(RowFrame.VERSION, in.readByte());
+
+        int length = in.readInt();
+        assertEquals(RowFrame.UPSERT, in.readByte());
+        assertEquals(2, in.readInt());
+        assertEquals('k', in.readByte());
+        assertEquals('1', in.readByte());
+        assertEquals(6, in.readShort());
+        assertEquals(RowFrame.STRING, in.readByte());
+        assertEquals(3, in.readInt());
+        in.skipBytes(3);
+        assertEquals(RowFrame.NUMBER, in.readByte());
+        assertEquals(5, in.readInt());
+        assertEquals(RowFrame.FLOAT, in.readByte());
+        assertEquals(1.5f, in.readFloat(), 0);
+        assertEquals(RowFrame.BOOLEAN, in.readByte());
+        assertTrue(in.readBoolean());
+        assertEquals(RowFrame.NULL, in.readByte());
+        assertEquals(RowFrame.IMAGE, in.readByte());
+        in.skipBytes(in.readInt());
+        assertEquals(1 + 4 + 2 + 2 + 1 + 4 + 3 + 1 + 4 + 1 + 4 + 1 + 1 + 1 + 1 + 4 + 17, length);
+
+        // the commit frame
+        assertEquals(9, in.readInt());
+        assertEquals(RowFrame.COMMIT, in.readByte());
+        assertEquals(7, in.readLong());
+        assertEquals(-1, in.read());
+    }
+
+    /**
+     * Test of writeDelta method, of class RowFrameWriter.
+     */
+    @Test
+    public void testWriteDelta() throws Exception {
+        System.out.println("writeDelta");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RowFrameWriter instance = new RowFrameWriter(out);
+
+        instance.writeDelta("k1", new int[]{3, 0}, new Object[]{Integer.valueOf(5), null});
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+
+        in.skipBytes(5);
+        assertEquals(1 + 4 + 2 + 2 + 2 + 1 + 4 + 2 + 1, in.readInt());
+        assertEquals(RowFrame.DELTA, in.readByte());
+        in.skipBytes(in.readInt());
+        assertEquals(2, in.readShort());
+        assertEquals(3, in.readShort());
+        assertEquals(RowFrame.NUMBER, in.readByte());
+        assertEquals(5, in.readInt());
+        assertEquals(0, in.readShort());
+        assertEquals(RowFrame.NULL, in.readByte());
+        assertEquals(-1, in.read());
+    }
+
+    /**
+     * Test of writeUpsert method with a value that cannot be written, of class RowFrameWriter.
+     */
+    @Test
+    public void testWriteUpsertBadValue() throws Exception {
+        System.out.println("writeUpsertBadValue");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RowFrameWriter instance = new RowFrameWriter(out);
+
+        try {
+            instance.writeUpsert("k1", new Object[]{new Object()});
+            fail("an Object cannot be written");
+        } catch (IllegalArgumentException ex) {
+        }
+
+        // the stream is still usable
+        instance.writeDelete("k1");
+        assertEquals(5 + 4 + 1 + 4 + 2, out.size());
+    }
+
+    /**
+     * Test of isFrameStream method, of class RowFrame.
+     */
+    @Test
+    public void testIsFrameStream() throws Exception {
+        System.out.println("isFrameStream");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new RowFrameWriter(out).writeClear("ALL");
+
+        BufferedInputStream in = new BufferedInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertTrue(RowFrame.isFrameStream(in));
+        // the stream is not consumed
+        assertEquals('R', in.read());
+
+        in = new BufferedInputStream(new ByteArrayInputStream("<tableData/>".getBytes()));
+        assertFalse(RowFrame.isFrameStream(in));
+        assertEquals('<', in.read());
+
+        in = new BufferedInputStream(new ByteArrayInputStream(new byte[0]));
+        assertFalse(RowFrame.isFrameStream(in));
+    }
+}
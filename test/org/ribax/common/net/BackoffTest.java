@@ -0,0 +1,76 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class BackoffTest {
+
+    public BackoffTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of nextDelay method, of class Backoff.
+     */
+    @Test
+    public void testNextDelay() {
+        System.out.println("nextDelay");
+        Backoff instance = new Backoff(100, 400, 5);
+        long[] limits = {100, 200, 400, 400, 400};
+
+        for (int i = 0; i < limits.length; i++) {
+            long delay = instance.nextDelay();
+
+            assertTrue(delay >= 1);
+            assertTrue(delay <= limits[i]);
+        }
+        assertEquals(5, instance.getAttempts());
+
+        // too many attempts
+        assertEquals(-1, instance.nextDelay());
+    }
+
+    /**
+     * Test of reset method, of class Backoff.
+     */
+    @Test
+    public void testReset() {
+        System.out.println("reset");
+        Backoff instance = new Backoff(100, 100000, 0);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(instance.nextDelay() > 0);
+        }
+        instance.reset();
+        assertEquals(0, instance.getAttempts());
+        assertTrue(instance.nextDelay() <= 100);
+    }
+}
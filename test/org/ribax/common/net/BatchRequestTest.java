@@ -0,0 +1,235 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.TreeMap;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.jdom.Element;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import utils.types.NameValuePair;
+
+/**
+ *
+ * @author damian
+ */
+public class BatchRequestTest {
+
+    private StandInServer server;
+    private BatchHandler handler;
+    private String base;
+
+    public BatchRequestTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        handler = new BatchHandler();
+        server = new StandInServer(handler);
+        base = server.getURL("");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * A stand-in batch web service.  A request to /batch is answered with a part for
+     * each request in the batch, in reverse order.  A request whose URL ends with
+     * /error is answered with a 500 status and one whose URL ends with /missing is
+     * left out.  Any other path is answered on its own.
+     */
+    public static class BatchHandler implements HttpHandler {
+
+        private static final Pattern NAME = Pattern.compile("name=\"([^\"]*)\"");
+        /** the number of batch requests */
+        public AtomicInteger batches = new AtomicInteger(0);
+        /** the number of separate requests */
+        public AtomicInteger singles = new AtomicInteger(0);
+
+        public void handle(HttpExchange ex) throws IOException {
+            // the parameters are posted as multipart/form-data
+            Hashtable<String, String> form = new Hashtable<String, String>();
+            MultipartReader reader = new MultipartReader(ex.getRequestBody());
+
+            while (reader.next()) {
+                Matcher m = NAME.matcher(reader.getHeader("Content-Disposition"));
+
+                if (m.find()) {
+                    form.put(m.group(1), new String(reader.getBody(), "UTF-8"));
+                }
+            }
+
+            if (!ex.getRequestURI().getPath().equals("/batch")) {
+                singles.incrementAndGet();
+                byte[] body = ("<single path=\"" + ex.getRequestURI().getPath() + "\"/>").getBytes();
+                ex.sendResponseHeaders(200, body.length);
+                ex.getResponseBody().write(body);
+                ex.close();
+                return;
+            }
+            batches.incrementAndGet();
+
+            TreeMap<Integer, String> requests = new TreeMap<Integer, String>();
+
+            for (String name : form.keySet()) {
+                if (name.matches("Request\\.\\d+")) {
+                    requests.put(Integer.valueOf(name.substring(8)), form.get(name));
+                }
+            }
+
+            ex.getResponseHeaders().set("Content-Type", "multipart/mixed; boundary=part");
+            ex.sendResponseHeaders(200, 0);
+            OutputStream out = ex.getResponseBody();
+
+            for (Integer index : requests.descendingKeySet()) {
+                String url = requests.get(index);
+
+                if (url.endsWith("/missing")) {
+                    continue;
+                }
+                StringBuffer part = new StringBuffer("--part\r\nContent-ID: <" + index + ">\r\n");
+
+                if (url.endsWith("/error")) {
+                    part.append("X-Status: 500\r\n\r\n\r\n");
+                } else {
+                    String value = form.get("Request." + index + ".id");
+                    part.append("Content-Type: text/xml\r\n\r\n<batched url=\"" + url
+                            + "\" id=\"" + value + "\"/>\r\n");
+                }
+                out.write(part.toString().getBytes());
+                out.flush();
+            }
+            out.write("--part--\r\n".getBytes());
+            ex.close();
+        }
+    }
+
+    /**
+     * A listener that records the responses.
+     */
+    private static class Recorder implements BatchListener {
+
+        Vector<String> received = new Vector<String>();
+        Vector<Integer> failed = new Vector<Integer>();
+
+        public void partReceived(int index, Element root) {
+            received.add(index + ":" + root.getAttributeValue("url") + ":"
+                    + root.getAttributeValue("id"));
+        }
+
+        public void partFailed(int index, Exception ex) {
+            failed.add(index);
+        }
+    }
+
+    private static ArrayList<NameValuePair> params(String id) {
+        ArrayList<NameValuePair> list = new ArrayList<NameValuePair>();
+        list.add(new NameValuePair("id", id));
+        return list;
+    }
+
+    /**
+     * Test of add method, of class BatchRequest.
+     */
+    @Test
+    public void testAdd() {
+        System.out.println("add");
+        BatchRequest instance = new BatchRequest(base + "/batch", "test");
+
+        assertEquals(0, instance.add("http://host/a", params("1")));
+        assertEquals(1, instance.add("http://host/b", null));
+
+        NameValuePair file = new NameValuePair("upload", "/tmp/x");
+        file.setMimeType("file");
+        ArrayList<NameValuePair> files = new ArrayList<NameValuePair>();
+        files.add(file);
+
+        // requests with files are not batched
+        assertEquals(-1, instance.add("http://host/c", files));
+        assertEquals(2, instance.size());
+
+        ArrayList<NameValuePair> result = instance.getParameters();
+        assertEquals(3, result.size());
+        assertEquals("Request.0", result.get(0).getName());
+        assertEquals("http://host/a", result.get(0).getValue());
+        assertEquals("Request.0.id", result.get(1).getName());
+        assertEquals("1", result.get(1).getValue());
+        assertEquals("Request.1", result.get(2).getName());
+    }
+
+    /**
+     * Test of send method, of class BatchRequest.
+     */
+    @Test
+    public void testSend() throws Exception {
+        System.out.println("send");
+        BatchRequest instance = new BatchRequest(base + "/batch", "test");
+        Recorder recorder = new Recorder();
+
+        instance.add(base + "/a", params("1"));
+        instance.add(base + "/error", params("2"));
+        instance.add(base + "/b", params("3"));
+        instance.add(base + "/missing", params("4"));
+
+        instance.send(recorder, null);
+
+        // one round trip, the parts arrive in the order the server sent them
+        assertEquals(1, handler.batches.get());
+        assertEquals(2, recorder.received.size());
+        assertEquals("2:" + base + "/b:3", recorder.received.get(0));
+        assertEquals("0:" + base + "/a:1", recorder.received.get(1));
+        assertEquals(2, recorder.failed.size());
+        assertEquals(Integer.valueOf(1), recorder.failed.get(0));
+        assertEquals(Integer.valueOf(3), recorder.failed.get(1));
+    }
+
+    /**
+     * Test of send method when the batch web service cannot be read, of class BatchRequest.
+     */
+    @Test
+    public void testSendFailed() throws Exception {
+        System.out.println("sendFailed");
+        // a single response is not a multipart body
+        BatchRequest instance = new BatchRequest(base + "/single", "test");
+        Recorder recorder = new Recorder();
+
+        instance.add(base + "/a", null);
+        instance.add(base + "/b", null);
+
+        try {
+            instance.send(recorder, null);
+            fail("the response was read");
+        } catch (IOException ex) {
+        }
+
+        // every request is reported as failed
+        assertEquals(0, recorder.received.size());
+        assertEquals(2, recorder.failed.size());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import java.net.URL;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class CircuitBreakerTest {
+
+    public CircuitBreakerTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of allowRequest, success and failure methods, of class CircuitBreaker.
+     */
+    @Test
+    public void testAllowRequest() throws Exception {
+        System.out.println("allowRequest");
+        CircuitBreaker instance = new CircuitBreaker("http://host:80", 3, 100);
+
+        assertEquals(CircuitBreaker.CLOSED, instance.getState());
+
+        // a success resets the count of consecutive failures
+        instance.failure();
+        instance.failure();
+        instance.success();
+        instance.failure();
+        instance.failure();
+        assertEquals(CircuitBreaker.CLOSED, instance.getState());
+        assertTrue(instance.allowRequest());
+
+        instance.failure();
+        assertEquals(CircuitBreaker.OPEN, instance.getState());
+        assertFalse(instance.allowRequest());
+        assertEquals(1, instance.getRejected());
+
+        // a single trial request is allowed once the open time has passed
+        Thread.sleep(150);
+        assertTrue(instance.allowRequest());
+        assertEquals(CircuitBreaker.HALF_OPEN, instance.getState());
+        assertFalse(instance.allowRequest());
+
+        // a failed trial opens the circuit again
+        instance.failure();
+        assertEquals(CircuitBreaker.OPEN, instance.getState());
+        assertFalse(instance.allowRequest());
+
+        // a successful trial closes the circuit
+        Thread.sleep(150);
+        assertTrue(instance.allowRequest());
+        instance.success();
+        assertEquals(CircuitBreaker.CLOSED, instance.getState());
+        assertEquals(0, instance.getFailures());
+        assertTrue(instance.allowRequest());
+        assertEquals(3, instance.getRejected());
+    }
+
+    /**
+     * Test of getInstance method, of class CircuitBreaker.
+     */
+    @Test
+    public void testGetInstance() throws Exception {
+        System.out.println("getInstance");
+        CircuitBreaker instance = CircuitBreaker.getInstance(new URL("http://breaker.test/a"));
+
+        // the breaker is shared by the URLs of a host
+        assertSame(instance, CircuitBreaker.getInstance(new URL("http://breaker.test:80/b")));
+        assertNotSame(instance, CircuitBreaker.getInstance(new URL("https://breaker.test/a")));
+        assertSame(instance, CircuitBreaker.find(instance.getRoute()));
+
+        // the state of the breaker is in the statistics of the route
+        instance.retried();
+        PoolStats stats = new HttpConnectionPool(2, 5).getStats(new URL("http://breaker.test/a"));
+        assertEquals("closed", stats.circuit);
+        assertEquals(1, stats.retries);
+    }
+}
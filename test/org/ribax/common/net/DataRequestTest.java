@@ -0,0 +1,196 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.jdom.Element;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.ribax.common.data.DataUtils;
+
+/**
+ *
+ * @author damian
+ */
+public class DataRequestTest {
+
+    private StandInServer server;
+    /* released to let the hung web service respond */
+    private CountDownLatch hung;
+
+    public DataRequestTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        hung = new CountDownLatch(1);
+        server = new StandInServer(new HttpHandler() {
+
+            public void handle(HttpExchange ex) throws IOException {
+                byte[] body = "<tableData/>".getBytes();
+
+                if (ex.getRequestURI().getPath().equals("/hung")) {
+                    try {
+                        hung.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                    }
+                }
+                ex.sendResponseHeaders(200, body.length);
+                ex.getResponseBody().write(body);
+                ex.close();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        hung.countDown();
+        server.stop();
+    }
+
+    /*
+     * A connection that blocks the request until it is closed.
+     */
+    private static class BlockingConnection implements Closeable {
+
+        CountDownLatch closed = new CountDownLatch(1);
+
+        public void close() {
+            closed.countDown();
+        }
+
+        void read() throws IOException {
+            try {
+                if (closed.await(10, TimeUnit.SECONDS)) {
+                    throw new IOException("closed");
+                }
+            } catch (InterruptedException ex) {
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    /**
+     * Test of run method with a deadline, of class DataRequest.
+     */
+    @Test
+    public void testRunDeadline() throws Exception {
+        System.out.println("runDeadline");
+        final BlockingConnection conn = new BlockingConnection();
+        DataRequest<String> instance = new DataRequest<String>(100) {
+
+            protected String call() throws Exception {
+                register(conn);
+                conn.read();
+                return "read";
+            }
+        };
+
+        long start = System.currentTimeMillis();
+        instance.run();
+
+        // the connection is closed at the deadline which ends the request
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertTrue(instance.isCancelled());
+        assertTrue(instance.isTimedOut());
+        try {
+            instance.getResult();
+            fail("the request should have timed out");
+        } catch (InterruptedIOException ex) {
+        }
+    }
+
+    /**
+     * Test of cancel method, of class DataRequest.
+     */
+    @Test
+    public void testCancel() throws Exception {
+        System.out.println("cancel");
+        final BlockingConnection conn = new BlockingConnection();
+        final CountDownLatch registered = new CountDownLatch(1);
+        DataRequest<String> instance = new DataRequest<String>(0) {
+
+            protected String call() throws Exception {
+                register(conn);
+                registered.countDown();
+                conn.read();
+                return "read";
+            }
+        }.start();
+
+        assertTrue(registered.await(5, TimeUnit.SECONDS));
+        assertTrue(instance.cancel(false));
+        assertTrue(conn.closed.await(5, TimeUnit.SECONDS));
+        assertFalse(instance.isTimedOut());
+        try {
+            instance.get();
+            fail("the request should have been cancelled");
+        } catch (CancellationException ex) {
+        }
+
+        // a connection registered after the request is cancelled is closed immediately
+        BlockingConnection late = new BlockingConnection();
+        try {
+            instance.register(late);
+            fail("the request has been cancelled");
+        } catch (InterruptedIOException ex) {
+        }
+        assertEquals(0, late.closed.getCount());
+
+        // a finished request can not be cancelled
+        DataRequest<String> done = new DataRequest<String>(0) {
+
+            protected String call() throws Exception {
+                return "done";
+            }
+        };
+        done.run();
+        assertFalse(done.cancel(false));
+        assertEquals("done", done.getResult());
+    }
+
+    /**
+     * Test of DataUtils.getDocumentRootAsync with web services that respond and hang.
+     */
+    @Test
+    public void testGetDocumentRootAsync() throws Exception {
+        System.out.println("getDocumentRootAsync");
+        String url = server.getURL("");
+
+        // the requests run at the same time
+        DataRequest<Element> hungRequest = DataUtils.getDocumentRootAsync(url + "/hung", null, "test", 300);
+        DataRequest<Element> request = DataUtils.getDocumentRootAsync(url + "/ok", null, "test", 5000);
+
+        assertEquals("tableData", request.getResult().getName());
+
+        // the hung web service is disconnected at the deadline
+        try {
+            hungRequest.getResult();
+            fail("the request should have timed out");
+        } catch (InterruptedIOException ex) {
+        }
+        assertTrue(hungRequest.isTimedOut());
+    }
+}
@@ -56,6 +56,19 @@ public class DataSourceFactoryTest {
 
         result = DataSourceFactory.getDataSource("test://localhost/test", name);
         assertTrue(result instanceof TestDataSource);
+
+        result = DataSourceFactory.getDataSource("sse://localhost/test", name);
+        assertTrue(result instanceof PushDataSource);
+
+        result = DataSourceFactory.getDataSource("push:https://localhost/test", name);
+        assertTrue(result instanceof PushDataSource);
+
+        EndpointGroup.addGroup(new EndpointGroup("factory", EndpointGroup.LEAST_OUTSTANDING));
+        result = DataSourceFactory.getDataSource("group://factory/test", name);
+        assertTrue(result instanceof GroupDataSource);
+
+        // an unknown group
+        assertNull(DataSourceFactory.getDataSource("group://nogroup/test", name));
     }
 
 }
\ No newline at end of file
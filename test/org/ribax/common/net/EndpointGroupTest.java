@@ -0,0 +1,191 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.util.Vector;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class EndpointGroupTest {
+
+    public EndpointGroupTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of getPath, forURL and resolve methods, of class EndpointGroup.
+     */
+    @Test
+    public void testResolve() throws Exception {
+        System.out.println("resolve");
+        EndpointGroup instance = new EndpointGroup("resolve", EndpointGroup.LEAST_OUTSTANDING);
+
+        instance.addEndpoint("http://node1/app/");
+        EndpointGroup.addGroup(instance);
+
+        assertTrue(EndpointGroup.isGroupURL(" GROUP://resolve/a"));
+        assertFalse(EndpointGroup.isGroupURL("http://resolve/a"));
+        assertSame(instance, EndpointGroup.forURL("group://resolve/a?b=c"));
+        assertSame(instance, EndpointGroup.forURL("group:resolve"));
+        assertNull(EndpointGroup.forURL("group://other/a"));
+        assertEquals("/a?b=c", EndpointGroup.getPath("group://resolve/a?b=c"));
+        assertEquals("", EndpointGroup.getPath("group://resolve"));
+
+        assertEquals("http://node1/app/a.cgi", EndpointGroup.resolve("group://resolve/a.cgi"));
+        assertEquals("http://other/a", EndpointGroup.resolve("http://other/a"));
+
+        try {
+            EndpointGroup.resolve("group://other/a");
+            fail("there is no such group");
+        } catch (IOException ex) {
+        }
+    }
+
+    /**
+     * Test of select method, of class EndpointGroup.
+     */
+    @Test
+    public void testSelect() {
+        System.out.println("select");
+        EndpointGroup instance = new EndpointGroup("select", EndpointGroup.LEAST_OUTSTANDING);
+
+        instance.addEndpoint("http://node1");
+        instance.addEndpoint("http://node2");
+        instance.addEndpoint("http://node3");
+
+        Vector<EndpointGroup.Endpoint> endpoints = instance.getEndpoints();
+        EndpointGroup.Endpoint node1 = endpoints.get(0);
+        EndpointGroup.Endpoint node2 = endpoints.get(1);
+        EndpointGroup.Endpoint node3 = endpoints.get(2);
+
+        // the endpoint with the fewest outstanding requests is chosen
+        instance.started(node1);
+        instance.started(node2);
+        assertSame(node3, instance.select(null, null));
+        instance.started(node3);
+        instance.started(node3);
+        instance.finished(node1);
+        assertSame(node1, instance.select(null, null));
+        assertEquals(2, node3.getOutstanding());
+        assertEquals(2, node3.getRequests());
+
+        // endpoints that have been tried are skipped
+        Vector<EndpointGroup.Endpoint> tried = new Vector<EndpointGroup.Endpoint>();
+        tried.add(node1);
+        assertSame(node2, instance.select(tried, null));
+        tried.add(node2);
+        tried.add(node3);
+        assertNull(instance.select(tried, null));
+
+        // a resumed stream goes back to its endpoint
+        instance.served("stream", node3);
+        assertSame(node3, instance.select(null, "stream"));
+        assertSame(node1, instance.select(null, "other"));
+    }
+
+    /**
+     * Test of select method with the POWER_OF_TWO policy, of class EndpointGroup.
+     */
+    @Test
+    public void testSelectPowerOfTwo() {
+        System.out.println("selectPowerOfTwo");
+        EndpointGroup instance = new EndpointGroup("two", EndpointGroup.POWER_OF_TWO);
+
+        instance.addEndpoint("http://node1");
+        instance.addEndpoint("http://node2");
+        instance.addEndpoint("http://node3");
+
+        EndpointGroup.Endpoint busy = instance.getEndpoints().get(0);
+
+        for (int i = 0; i < 5; i++) {
+            instance.started(busy);
+        }
+
+        // the busy endpoint loses every comparison it is part of
+        for (int i = 0; i < 50; i++) {
+            assertNotSame(busy, instance.select(null, null));
+        }
+    }
+
+    /**
+     * Test of failed and probe methods, of class EndpointGroup.
+     */
+    @Test
+    public void testFailed() throws Exception {
+        System.out.println("failed");
+        final int[] status = {503};
+
+        StandInServer server = new StandInServer(new HttpHandler() {
+
+            public void handle(HttpExchange ex) throws IOException {
+                ex.sendResponseHeaders(status[0], -1);
+                ex.close();
+            }
+        });
+
+        try {
+            EndpointGroup instance = new EndpointGroup("failed", EndpointGroup.LEAST_OUTSTANDING);
+
+            instance.addEndpoint(server.getURL("/app"));
+            instance.addEndpoint("http://node2");
+            instance.setHealthPath("/health");
+            instance.setProbeInterval(1);
+
+            EndpointGroup.Endpoint node1 = instance.getEndpoints().get(0);
+            EndpointGroup.Endpoint node2 = instance.getEndpoints().get(1);
+
+            instance.started(node2);
+            instance.failed(node1, new IOException("refused"));
+            assertFalse(node1.isHealthy());
+            assertEquals(1, node1.getFailures());
+
+            // an unhealthy endpoint is only chosen when no healthy endpoint is left
+            assertSame(node2, instance.select(null, null));
+            Vector<EndpointGroup.Endpoint> tried = new Vector<EndpointGroup.Endpoint>();
+            tried.add(node2);
+            assertSame(node1, instance.select(tried, null));
+
+            // the endpoint is healthy again once its health URL answers
+            assertFalse(instance.probe(node1));
+            status[0] = 200;
+            assertTrue(instance.probe(node1));
+
+            for (int i = 0; i < 50 && !node1.isHealthy(); i++) {
+                Thread.sleep(100);
+            }
+            assertTrue(node1.isHealthy());
+            assertSame(node1, instance.select(null, null));
+        } finally {
+            server.stop();
+        }
+    }
+}
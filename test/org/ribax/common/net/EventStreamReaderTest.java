@@ -0,0 +1,106 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import java.io.ByteArrayInputStream;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class EventStreamReaderTest {
+
+    public EventStreamReaderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static EventStreamReader reader(String stream, String lastEventId) throws Exception {
+        return new EventStreamReader(new ByteArrayInputStream(stream.getBytes("UTF-8")), lastEventId);
+    }
+
+    /**
+     * Test of readEvent method, of class EventStreamReader.
+     */
+    @Test
+    public void testReadEvent() throws Exception {
+        System.out.println("readEvent");
+        EventStreamReader instance = reader(": keep alive\n"
+                + "retry: 250\n"
+                + "id: 1\n"
+                + "data: <tableData>\n"
+                + "data:</tableData>\n"
+                + "\n"
+                + "event: update\r\n"
+                + "data: two\r\n"
+                + "\r\n"
+                + "id: 3\n"
+                + "\n"
+                + "retry: soon\n"
+                + "data\n"
+                + "\n"
+                + "data: incomplete", null);
+
+        ServerEvent event = instance.readEvent();
+        assertEquals("1", event.getId());
+        assertEquals(ServerEvent.MESSAGE, event.getType());
+        assertEquals("<tableData>\n</tableData>", event.getData());
+        assertEquals(250, instance.getRetry());
+
+        // the id carries over to the next event
+        event = instance.readEvent();
+        assertEquals("1", event.getId());
+        assertEquals("update", event.getType());
+        assertEquals("two", event.getData());
+
+        // an id without data is not dispatched but is remembered
+        event = instance.readEvent();
+        assertEquals("3", event.getId());
+        assertEquals("", event.getData());
+        assertEquals(250, instance.getRetry());
+
+        // the incomplete event at the end of the stream is dropped
+        assertNull(instance.readEvent());
+        assertEquals("3", instance.getLastEventId());
+    }
+
+    /**
+     * Test of getLastEventId method, of class EventStreamReader.
+     */
+    @Test
+    public void testGetLastEventId() throws Exception {
+        System.out.println("getLastEventId");
+        EventStreamReader instance = reader("data: x\n\n", "7");
+
+        assertEquals("7", instance.getLastEventId());
+        assertEquals("7", instance.readEvent().getId());
+        assertEquals(EventStreamReader.DEFAULT_RETRY, instance.getRetry());
+
+        instance = reader("", null);
+        assertEquals("", instance.getLastEventId());
+        assertNull(instance.readEvent());
+    }
+}
@@ -9,6 +9,7 @@ import java.io.FileOutputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -50,7 +51,7 @@ public class FilePartTest {
         File f = new File("./resources/ribax.properties");
         FilePart instance = new FilePart("test", f);
         int expResult = 944;
-        int result = instance.getContentLength();
+        long result = instance.getContentLength();
 
         //System.out.println("length = " + result);
         assertEquals(expResult, result);        
@@ -86,4 +87,49 @@ public class FilePartTest {
         // byte array should be 777 bytes
         assertEquals(777,out.size());
     }
+
+    /**
+     * Test of writeData method with an upload progress listener, of class FilePart.
+     */
+    @Test
+    public void testWriteDataProgress() throws Exception {
+        System.out.println("writeDataProgress");
+        File f = File.createTempFile("ribax", ".dat");
+        f.deleteOnExit();
+
+        final byte[] data = new byte[FilePart.TRANSFER_SIZE * 2 + 100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        FileOutputStream fout = new FileOutputStream(f);
+        fout.write(data);
+        fout.close();
+
+        final ArrayList<Long> progress = new ArrayList<Long>();
+        FilePart instance = new FilePart("test", f);
+        instance.setUploadProgressListener(new UploadProgressListener() {
+
+            public void uploadProgress(String name, File file, long sent, long total) {
+                assertEquals("test", name);
+                assertEquals(data.length, total);
+                progress.add(sent);
+            }
+        });
+
+        // the data is sent in blocks and the listener is notified after each block
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        instance.writeData(out);
+        assertArrayEquals(data, out.toByteArray());
+        assertEquals(3, progress.size());
+        assertEquals(FilePart.TRANSFER_SIZE, progress.get(0).longValue());
+        assertEquals(data.length, progress.get(2).longValue());
+
+        // the file is transferred channel to channel to a file
+        File copy = File.createTempFile("ribax", ".dat");
+        copy.deleteOnExit();
+        fout = new FileOutputStream(copy);
+        instance.writeData(fout);
+        fout.close();
+        assertEquals(data.length, copy.length());
+    }
 }
@@ -0,0 +1,253 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ribax.common.data.ResumableBlockSource;
+import utils.types.NameValuePair;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class GroupDataSourceTest {
+
+    private StandInServer server1;
+    private StandInServer server2;
+    private NodeHandler node1;
+    private NodeHandler node2;
+
+    public GroupDataSourceTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        node1 = new NodeHandler("node1");
+        node2 = new NodeHandler("node2");
+        server1 = new StandInServer(node1);
+        server2 = new StandInServer(node2);
+    }
+
+    @After
+    public void tearDown() {
+        server1.stop();
+        server2.stop();
+    }
+
+    /**
+     * A stand-in replica that answers with its name and the path of the request, or
+     * with 503 Service Unavailable while it is down.
+     */
+    public static class NodeHandler implements HttpHandler {
+
+        private String name;
+        /** true while the replica answers with 503 */
+        public volatile boolean down = false;
+        /** the time in milliseconds the replica takes to answer */
+        public volatile long delay = 0;
+        /** the number of requests the replica has received */
+        public volatile int requests = 0;
+
+        public NodeHandler(String name) {
+            this.name = name;
+        }
+
+        public void handle(HttpExchange ex) throws IOException {
+            requests++;
+            StandInServer.readBody(ex);
+
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                }
+            }
+
+            if (down) {
+                ex.sendResponseHeaders(503, -1);
+            } else {
+                byte[] body = (name + " " + ex.getRequestURI().getPath()).getBytes("UTF-8");
+
+                ex.getResponseHeaders().set("Cache-Control", "no-store");
+                ex.sendResponseHeaders(200, body.length);
+                ex.getResponseBody().write(body);
+            }
+            ex.close();
+        }
+    }
+
+    /**
+     * Test of getInputStream method with an endpoint that is down, of class GroupDataSource.
+     */
+    @Test
+    public void testGetInputStreamFailover() throws Exception {
+        System.out.println("getInputStreamFailover");
+        EndpointGroup group = new EndpointGroup("failover", EndpointGroup.LEAST_OUTSTANDING);
+
+        group.addEndpoint(server1.getURL("/app"));
+        group.addEndpoint(server2.getURL("/app"));
+
+        EndpointGroup.Endpoint endpoint1 = group.getEndpoints().get(0);
+        EndpointGroup.Endpoint endpoint2 = group.getEndpoints().get(1);
+
+        // the first endpoint is chosen and is down, a submission is not sent again
+        node1.down = true;
+        group.started(endpoint2);
+
+        GroupDataSource instance = new GroupDataSource(group, "group://failover/prices.cgi", "test");
+
+        try {
+            instance.getInputStream(new ArrayList<NameValuePair>(), null);
+            fail("a submission is sent once");
+        } catch (HttpStatusException ex) {
+            assertEquals(503, ex.getStatus());
+        }
+        assertEquals(1, node1.requests);
+        assertEquals(0, node2.requests);
+
+        // the request goes to the second endpoint
+        InputStream in = instance.getInputStream(new ArrayList<NameValuePair>(), StandInServer.load());
+
+        group.finished(endpoint2);
+        assertEquals("node2 /app/prices.cgi", StandInServer.read(in));
+        assertFalse(endpoint1.isHealthy());
+        assertEquals(0, endpoint1.getOutstanding());
+
+        // the request is outstanding until its stream is closed
+        assertEquals(1, endpoint2.getOutstanding());
+        in.close();
+        in.close();
+        assertEquals(0, endpoint2.getOutstanding());
+
+        // every endpoint is down
+        node2.down = true;
+
+        try {
+            instance.getInputStream(new ArrayList<NameValuePair>(), StandInServer.load());
+            fail("every endpoint failed");
+        } catch (HttpStatusException ex) {
+            assertEquals(503, ex.getStatus());
+        }
+        assertFalse(endpoint2.isHealthy());
+    }
+
+    /**
+     * Test of getInputStream method with a stream that is resumed, of class GroupDataSource.
+     */
+    @Test
+    public void testGetInputStreamResumed() throws Exception {
+        System.out.println("getInputStreamResumed");
+        EndpointGroup group = new EndpointGroup("sticky", EndpointGroup.LEAST_OUTSTANDING);
+
+        group.addEndpoint(server1.getURL("/app"));
+        group.addEndpoint(server2.getURL("/app"));
+
+        GroupDataSource instance = new GroupDataSource(group, "group://sticky/stream", "test");
+        ArrayList<NameValuePair> params = new ArrayList<NameValuePair>();
+
+        params.add(new NameValuePair("Symbol", "IBM"));
+
+        // the stream stays open so the other endpoint has fewer outstanding requests
+        InputStream first = instance.getInputStream(params);
+        String served = StandInServer.read(first);
+
+        params = new ArrayList<NameValuePair>();
+        params.add(new NameValuePair("Symbol", "IBM"));
+        params.add(new NameValuePair(ResumableBlockSource.RESUME_SEQUENCE, "5"));
+
+        InputStream resumed = instance.getInputStream(params);
+        assertEquals(served, StandInServer.read(resumed));
+
+        // a new request is balanced
+        params = new ArrayList<NameValuePair>();
+        params.add(new NameValuePair("Symbol", "IBM"));
+        InputStream other = instance.getInputStream(params);
+        assertFalse(served.equals(StandInServer.read(other)));
+
+        first.close();
+        resumed.close();
+        other.close();
+    }
+
+    /**
+     * Test of getInputStream method with a slow endpoint and a hedge policy, of class GroupDataSource.
+     */
+    @Test
+    public void testGetInputStreamHedged() throws Exception {
+        System.out.println("getInputStreamHedged");
+        EndpointGroup group = new EndpointGroup("hedged", EndpointGroup.LEAST_OUTSTANDING);
+        String url = "group://hedged/quote.cgi";
+        LatencyTracker tracker = new LatencyTracker();
+        HedgePolicy policy = new HedgePolicy(95, 100, tracker);
+
+        group.addEndpoint(server1.getURL("/app"));
+        group.addEndpoint(server2.getURL("/app"));
+        group.setHedgePolicy(policy);
+
+        EndpointGroup.Endpoint endpoint1 = group.getEndpoints().get(0);
+        EndpointGroup.Endpoint endpoint2 = group.getEndpoints().get(1);
+
+        for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+            tracker.record(url, 200);
+        }
+
+        // the first endpoint is chosen and is slow, the hedge to the second answers first
+        node1.delay = 3000;
+        group.started(endpoint2);
+
+        GroupDataSource instance = new GroupDataSource(group, url, "test");
+        long start = System.currentTimeMillis();
+        InputStream in = instance.getInputStream(new ArrayList<NameValuePair>(), StandInServer.load());
+
+        assertEquals("node2 /app/quote.cgi", StandInServer.read(in));
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertEquals(1, policy.getHedges());
+        assertEquals(1, policy.getWins());
+        in.close();
+
+        // the slow request was cancelled and is not a failure of its endpoint
+        for (int i = 0; i < 50 && endpoint1.getOutstanding() > 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, endpoint1.getOutstanding());
+        assertTrue(endpoint1.isHealthy());
+
+        // a fast answer is not hedged
+        node1.delay = 0;
+        in = instance.getInputStream(new ArrayList<NameValuePair>(), StandInServer.load());
+        assertEquals("node1 /app/quote.cgi", StandInServer.read(in));
+        in.close();
+        assertEquals(1, policy.getHedges());
+        assertEquals(2, policy.getRequests());
+
+        // a submission is never hedged
+        node1.delay = 500;
+        in = instance.getInputStream(new ArrayList<NameValuePair>());
+        assertEquals("node1 /app/quote.cgi", StandInServer.read(in));
+        in.close();
+        group.finished(endpoint2);
+        assertEquals(1, policy.getHedges());
+        assertEquals(1, node2.requests);
+    }
+}
@@ -62,7 +62,7 @@ public class HTTPmultipartTest {
         FilePart fpart = new FilePart("test", f);
         HTTPmultipart instance = new HTTPmultipart();
         int expResult = 986;
-        int result = instance.getContentLength(fpart);
+        long result = instance.getContentLength(fpart);
 
         //System.out.println("size == " + result);
         // length should be 986 bytes
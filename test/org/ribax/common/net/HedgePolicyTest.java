@@ -0,0 +1,95 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class HedgePolicyTest {
+
+    public HedgePolicyTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+    /**
+     * Test of getDelay method, of class HedgePolicy.
+     */
+    @Test
+    public void testGetDelay() {
+        System.out.println("getDelay");
+        LatencyTracker tracker = new LatencyTracker();
+        HedgePolicy instance = new HedgePolicy(95, 10, tracker);
+        String url = "http://localhost/quote.cgi";
+
+        // nothing is known about the URL
+        assertEquals(-1, instance.getDelay(url));
+
+        for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+            tracker.record(url, 80);
+        }
+        assertEquals(80, instance.getDelay(url));
+
+        // a very fast URL is not hedged immediately
+        for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+            tracker.record("http://localhost/fast", 0);
+        }
+        assertEquals(HedgePolicy.MIN_DELAY, instance.getDelay("http://localhost/fast"));
+        assertEquals(3, instance.getRequests());
+    }
+
+    /**
+     * Test of allowHedge method, of class HedgePolicy.
+     */
+    @Test
+    public void testAllowHedge() {
+        System.out.println("allowHedge");
+        HedgePolicy instance = new HedgePolicy(95, 25, new LatencyTracker());
+        String url = "http://localhost/quote.cgi";
+
+        // each request earns a quarter of a hedge
+        assertFalse(instance.allowHedge());
+        for (int i = 0; i < 3; i++) {
+            instance.getDelay(url);
+        }
+        assertFalse(instance.allowHedge());
+        instance.getDelay(url);
+        assertTrue(instance.allowHedge());
+        assertFalse(instance.allowHedge());
+
+        // the hedges saved up are limited
+        for (int i = 0; i < 1000; i++) {
+            instance.getDelay(url);
+        }
+        int hedges = 0;
+        while (instance.allowHedge()) {
+            hedges++;
+        }
+        assertEquals((int) HedgePolicy.MAX_TOKENS, hedges);
+        assertEquals(1 + HedgePolicy.MAX_TOKENS, instance.getHedges(), 0);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class HttpConnectionPoolTest {
+
+    public HttpConnectionPoolTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of getRouteKey method, of class HttpConnectionPool.
+     */
+    @Test
+    public void testGetRouteKey() throws Exception {
+        System.out.println("getRouteKey");
+
+        assertEquals("http://localhost:80", HttpConnectionPool.getRouteKey(new URL("http://LocalHost/test")));
+        assertEquals("https://localhost:443", HttpConnectionPool.getRouteKey(new URL("https://localhost/a/b")));
+        assertEquals("http://localhost:8080", HttpConnectionPool.getRouteKey(new URL("http://localhost:8080/")));
+    }
+
+    /**
+     * Test of lease method, of class HttpConnectionPool.
+     */
+    @Test
+    public void testLease() throws Exception {
+        System.out.println("lease");
+
+        HttpConnectionPool instance = new HttpConnectionPool(2, 0);
+        URL url = new URL("http://localhost/test");
+
+        HttpConnectionPool.Lease l1 = instance.lease(url);
+        HttpConnectionPool.Lease l2 = instance.lease(url);
+
+        PoolStats stats = instance.getStats(url);
+        assertEquals(2, stats.leased);
+        assertEquals(2, stats.waiting);
+        assertEquals(2, stats.requests);
+
+        // closing the stream releases the lease
+        InputStream in = l1.wrap(new ByteArrayInputStream(new byte[0]));
+        in.close();
+        // releasing twice has no effect
+        l1.release();
+
+        stats = instance.getStats(url);
+        assertEquals(1, stats.leased);
+        assertEquals(1, stats.waiting);
+
+        // the permit of the released lease is used by the next request
+        HttpConnectionPool.Lease l3 = instance.lease(url);
+        stats = instance.getStats(url);
+        assertEquals(2, stats.leased);
+        assertEquals(3, stats.requests);
+        assertEquals(0, stats.overLimit);
+
+        // a request over the limit proceeds once the lease timeout has passed
+        HttpConnectionPool.Lease l4 = instance.lease(url);
+        assertEquals(1, instance.getStats(url).overLimit);
+
+        l2.release();
+        l3.release();
+        l4.release();
+        stats = instance.getStats();
+        assertEquals(0, stats.leased);
+        assertEquals(0, stats.waiting);
+    }
+
+    /**
+     * Test of wrap method, of class HttpConnectionPool.Lease.
+     */
+    @Test
+    public void testWrap() throws Exception {
+        System.out.println("wrap");
+
+        HttpConnectionPool instance = new HttpConnectionPool(1, 0);
+        URL url = new URL("http://localhost/test");
+
+        // an open stream does not hold the permit of the route
+        InputStream stream = instance.lease(url).wrap(new ByteArrayInputStream(new byte[1]));
+        InputStream in = instance.lease(url).wrap(new ByteArrayInputStream(new byte[1]));
+
+        PoolStats stats = instance.getStats(url);
+        assertEquals(2, stats.leased);
+        assertEquals(0, stats.waiting);
+        assertEquals(0, stats.overLimit);
+
+        // reading to the end of the response releases the lease
+        while (in.read() >= 0) {
+        }
+        assertEquals(1, instance.getStats(url).leased);
+
+        stream.close();
+        assertEquals(0, instance.getStats(url).leased);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.File;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Vector;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import utils.types.NameValuePair;
+
+/**
+ *
+ * @author damian
+ */
+public class HttpResponseCacheTest {
+
+    private StandInServer server;
+    private File dir;
+    /* the If-None-Match header of each request, "" if none */
+    private Vector<String> conditions;
+    /* the Cache-Control header the server sends */
+    private String cacheControl;
+
+    public HttpResponseCacheTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        conditions = new Vector<String>();
+        cacheControl = "no-cache";
+        dir = File.createTempFile("HttpResponseCacheTest", "");
+        dir.delete();
+
+        server = new StandInServer(new HttpHandler() {
+
+            public void handle(HttpExchange ex) throws java.io.IOException {
+                StandInServer.readBody(ex);
+                String condition = ex.getRequestHeaders().getFirst("If-None-Match");
+                conditions.add(condition == null ? "" : condition);
+
+                ex.getResponseHeaders().set("ETag", "\"v1\"");
+                ex.getResponseHeaders().set("Cache-Control", cacheControl);
+
+                if ("\"v1\"".equals(condition)) {
+                    ex.sendResponseHeaders(304, -1);
+                } else {
+                    byte[] body = "<folder/>".getBytes();
+                    ex.sendResponseHeaders(200, body.length);
+                    OutputStream out = ex.getResponseBody();
+                    out.write(body);
+                }
+                ex.close();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private String getURL() {
+        return server.getURL("/desc");
+    }
+
+    /**
+     * Test of getKey method, of class HttpResponseCache.
+     */
+    @Test
+    public void testGetKey() {
+        System.out.println("getKey");
+        ArrayList<NameValuePair> params1 = new ArrayList<NameValuePair>();
+        params1.add(new NameValuePair("b", "2"));
+        params1.add(new NameValuePair("a", "1"));
+        ArrayList<NameValuePair> params2 = new ArrayList<NameValuePair>();
+        params2.add(new NameValuePair("a", "1"));
+        params2.add(new NameValuePair("b", "2"));
+
+        // the order of the parameters does not matter
+        assertEquals(HttpResponseCache.getKey("http://host/x", params1),
+                HttpResponseCache.getKey("http://host/x", params2));
+        assertFalse(HttpResponseCache.getKey("http://host/x", params1).equals(
+                HttpResponseCache.getKey("http://host/y", params1)));
+        assertEquals("http://host/x", HttpResponseCache.getKey("http://host/x", null));
+
+        // each Accept header has its own key
+        assertFalse(HttpResponseCache.getKey("http://host/x", params1, "application/json").equals(
+                HttpResponseCache.getKey("http://host/x", params1, "text/xml")));
+        assertFalse(HttpResponseCache.getKey("http://host/x", params1, "application/json").equals(
+                HttpResponseCache.getKey("http://host/x", params1)));
+
+        // file uploads are not cached
+        params1.add(new NameValuePair("f", "/tmp/file", "file"));
+        assertNull(HttpResponseCache.getKey("http://host/x", params1));
+    }
+
+    /**
+     * Test of setTTL and getTTL methods, of class HttpResponseCache.
+     */
+    @Test
+    public void testGetTTL() {
+        System.out.println("getTTL");
+        HttpResponseCache instance = new HttpResponseCache(1024, null);
+
+        instance.setTTL("http://host/", 60);
+        instance.setTTL("http://host/desc/", 3600);
+
+        assertEquals(60, instance.getTTL("http://host/data"));
+        // the longest prefix is used
+        assertEquals(3600, instance.getTTL("http://host/desc/folder.xml"));
+        assertEquals(-1, instance.getTTL("http://other/desc"));
+
+        instance.setTTL("http://host/", 0);
+        assertEquals(0, instance.getTTL("http://host/data"));
+    }
+
+    /**
+     * Test of put and get methods, of class HttpResponseCache.
+     */
+    @Test
+    public void testPutGet() {
+        System.out.println("putGet");
+        HttpResponseCache instance = new HttpResponseCache(10, dir);
+
+        instance.put("k1", new CachedResponse("123456".getBytes(), "e1", null, 5));
+        instance.put("k2", new CachedResponse("123456".getBytes(), null, "lm", 6));
+
+        // the first response has been evicted from memory
+        assertEquals(6, instance.getMemorySize());
+
+        // but is read back from disk
+        HttpResponseCache restarted = new HttpResponseCache(1024, dir);
+        CachedResponse r = restarted.get("k1");
+
+        assertEquals("123456", new String(r.getBody()));
+        assertEquals("e1", r.getETag());
+        assertNull(r.getLastModified());
+        assertEquals(5, r.getExpires());
+        assertEquals("lm", restarted.get("k2").getLastModified());
+
+        restarted.remove("k1");
+        assertNull(restarted.get("k1"));
+        assertNull(new HttpResponseCache(1024, dir).get("k1"));
+    }
+
+    /**
+     * Test of revalidating a cached response with WebDataSource.
+     */
+    @Test
+    public void testRevalidate() throws Exception {
+        System.out.println("revalidate");
+        HttpResponseCache cache = new HttpResponseCache(1024, dir);
+        HttpConnectionPool pool = new HttpConnectionPool(2, 5);
+        ArrayList<NameValuePair> params = new ArrayList<NameValuePair>();
+        params.add(new NameValuePair("Action", "LoadDescription"));
+
+        WebDataSource ds = new WebDataSource(getURL(), "test", pool, cache);
+
+        assertEquals("<folder/>", StandInServer.readAndClose(ds.getInputStream(params, StandInServer.cacheable())));
+        // the second request is conditional and the cached body is used
+        assertEquals("<folder/>", StandInServer.readAndClose(ds.getInputStream(params, StandInServer.cacheable())));
+
+        assertEquals(2, conditions.size());
+        assertEquals("", conditions.get(0));
+        assertEquals("\"v1\"", conditions.get(1));
+    }
+
+    /**
+     * Test of Cache-Control max-age and TTL overrides with WebDataSource.
+     */
+    @Test
+    public void testMaxAge() throws Exception {
+        System.out.println("maxAge");
+        HttpResponseCache cache = new HttpResponseCache(1024, null);
+        HttpConnectionPool pool = new HttpConnectionPool(2, 5);
+        WebDataSource ds = new WebDataSource(getURL(), "test", pool, cache);
+
+        cacheControl = "max-age=600";
+        assertEquals("<folder/>", StandInServer.readAndClose(ds.getInputStream(null, StandInServer.cacheable())));
+        // the response is fresh so the web service is not asked
+        assertEquals("<folder/>", StandInServer.readAndClose(ds.getInputStream(null, StandInServer.cacheable())));
+        assertEquals(1, conditions.size());
+
+        // a request that is not marked cacheable is always sent
+        assertEquals("<folder/>", StandInServer.readAndClose(ds.getInputStream(null)));
+        assertEquals(2, conditions.size());
+        assertEquals("", conditions.get(1));
+        conditions.clear();
+        conditions.add("");
+
+        // a TTL of 0 overrides max-age and revalidates every time
+        cache.setTTL(getURL(), 0);
+        cache.remove(HttpResponseCache.getKey(getURL(), null));
+        assertEquals("<folder/>", StandInServer.readAndClose(ds.getInputStream(null, StandInServer.cacheable())));
+        assertEquals("<folder/>", StandInServer.readAndClose(ds.getInputStream(null, StandInServer.cacheable())));
+        assertEquals(3, conditions.size());
+        assertEquals("\"v1\"", conditions.get(2));
+
+        // no-store responses are not cached
+        cache.setTTL(getURL(), -1);
+        cacheControl = "no-store";
+        cache.remove(HttpResponseCache.getKey(getURL(), null));
+        StandInServer.readAndClose(ds.getInputStream(null, StandInServer.cacheable()));
+        StandInServer.readAndClose(ds.getInputStream(null, StandInServer.cacheable()));
+        assertEquals(5, conditions.size());
+        assertEquals("", conditions.get(4));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class LatencyTrackerTest {
+
+    public LatencyTrackerTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+    /**
+     * Test of getPercentile method, of class LatencyTracker.
+     */
+    @Test
+    public void testGetPercentile() {
+        System.out.println("getPercentile");
+        LatencyTracker instance = new LatencyTracker();
+        String url = "http://localhost/quote.cgi";
+
+        // too few samples
+        for (int i = 1; i < LatencyTracker.MIN_SAMPLES; i++) {
+            instance.record(url, i * 10);
+        }
+        assertEquals(-1, instance.getPercentile(url, 95));
+        assertEquals(-1, instance.getPercentile("http://localhost/other", 95));
+
+        instance.record(url, 1000);
+        assertEquals(LatencyTracker.MIN_SAMPLES, instance.getCount(url));
+        assertEquals(1000, instance.getPercentile(url, 95));
+        assertEquals(50, instance.getPercentile(url, 50));
+        assertEquals(10, instance.getPercentile(url, 0));
+
+        // the query is not part of the key
+        assertEquals(1000, instance.getPercentile(url + "?Symbol=IBM", 95));
+    }
+
+    /**
+     * Test of record method with more samples than are kept, of class LatencyTracker.
+     */
+    @Test
+    public void testRecordWindow() {
+        System.out.println("recordWindow");
+        LatencyTracker instance = new LatencyTracker(LatencyTracker.MIN_SAMPLES);
+        String url = "http://localhost/quote.cgi";
+
+        for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+            instance.record(url, 500);
+        }
+        assertEquals(500, instance.getPercentile(url, 50));
+
+        // the old samples are replaced
+        for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+            instance.record(url, 5);
+        }
+        assertEquals(LatencyTracker.MIN_SAMPLES, instance.getCount(url));
+        assertEquals(5, instance.getPercentile(url, 95));
+    }
+}
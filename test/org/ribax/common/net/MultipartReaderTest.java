@@ -0,0 +1,108 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class MultipartReaderTest {
+
+    public MultipartReaderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static MultipartReader reader(String body) throws IOException {
+        return new MultipartReader(new ByteArrayInputStream(body.getBytes("ISO-8859-1")));
+    }
+
+    /**
+     * Test of next method, of class MultipartReader.
+     */
+    @Test
+    public void testNext() throws Exception {
+        System.out.println("next");
+        MultipartReader instance = reader("--xyz\r\n"
+                + "Content-ID: <1>\r\n"
+                + "Content-Type: text/xml\r\n"
+                + "\r\n"
+                + "<a>\r\n</a>\r\n"
+                + "--xyz\r\n"
+                + "content-id: 0\r\n"
+                + "\r\n"
+                + "\r\n"
+                + "--xyz--\r\n");
+
+        assertTrue(instance.next());
+        assertEquals("<1>", instance.getHeader("Content-ID"));
+        assertEquals("text/xml", instance.getHeader("content-type"));
+        assertEquals("<a>\r\n</a>", new String(instance.getBody(), "ISO-8859-1"));
+
+        // the line break before the delimiter is not part of the body
+        assertTrue(instance.next());
+        assertEquals("0", instance.getHeader("Content-ID"));
+        assertEquals(0, instance.getBody().length);
+
+        assertFalse(instance.next());
+        assertNull(instance.getBody());
+    }
+
+    /**
+     * Test of next method with a body that ends early, of class MultipartReader.
+     */
+    @Test
+    public void testNextTruncated() throws Exception {
+        System.out.println("nextTruncated");
+        MultipartReader instance = reader("\r\n--xyz\n"
+                + "Content-ID: 0\n"
+                + "\n"
+                + "<a/>\n"
+                + "--xyz\n"
+                + "Content-ID: 1\n"
+                + "\n"
+                + "<b>");
+
+        // bare line feeds are accepted
+        assertTrue(instance.next());
+        assertEquals("<a/>", new String(instance.getBody(), "ISO-8859-1"));
+
+        try {
+            instance.next();
+            fail("the truncated part was read");
+        } catch (IOException ex) {
+        }
+
+        try {
+            reader("<a/>\r\n");
+            fail("a body without a delimiter was read");
+        } catch (IOException ex) {
+        }
+    }
+}
@@ -17,7 +17,7 @@ import org.junit.runners.Suite;
  * @author damian
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({org.ribax.common.net.PartUtilsTest.class,org.ribax.common.net.NetUtilsTest.class,org.ribax.common.net.HTTPmultipartTest.class,org.ribax.common.net.FilePartTest.class,org.ribax.common.net.StringPartTest.class,org.ribax.common.net.DataSourceFactoryTest.class,org.ribax.common.net.PartTest.class,org.ribax.common.net.FileDataSourceTest.class})
+@Suite.SuiteClasses({org.ribax.common.net.PartUtilsTest.class,org.ribax.common.net.NetUtilsTest.class,org.ribax.common.net.HTTPmultipartTest.class,org.ribax.common.net.FilePartTest.class,org.ribax.common.net.StringPartTest.class,org.ribax.common.net.DataSourceFactoryTest.class,org.ribax.common.net.PartTest.class,org.ribax.common.net.FileDataSourceTest.class,org.ribax.common.net.HttpConnectionPoolTest.class,org.ribax.common.net.HttpResponseCacheTest.class,org.ribax.common.net.WebDataSourceTest.class,org.ribax.common.net.TeeInputStreamTest.class,org.ribax.common.net.DataRequestTest.class,org.ribax.common.net.MultipartReaderTest.class,org.ribax.common.net.BatchRequestTest.class,org.ribax.common.net.EventStreamReaderTest.class,org.ribax.common.net.BackoffTest.class,org.ribax.common.net.ResumableLineReaderTest.class,org.ribax.common.net.CircuitBreakerTest.class,org.ribax.common.net.ResilientDataSourceTest.class,org.ribax.common.net.EndpointGroupTest.class,org.ribax.common.net.GroupDataSourceTest.class,org.ribax.common.net.LatencyTrackerTest.class,org.ribax.common.net.HedgePolicyTest.class})
 public class NetSuite {
 
     @BeforeClass
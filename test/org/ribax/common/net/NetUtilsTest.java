@@ -5,9 +5,13 @@
 
 package org.ribax.common.net;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -55,6 +59,49 @@ public class NetUtilsTest {
         assertNotNull(result);
     }
 
+    /**
+     * Test of loadInputStream method, of class NetUtils.
+     */
+    @Test
+    public void testLoadInputStream() throws Exception {
+        System.out.println("loadInputStream");
+        final AtomicInteger requests = new AtomicInteger();
+
+        // every other request fails
+        StandInServer server = new StandInServer(new HttpHandler() {
+
+            public void handle(HttpExchange ex) throws IOException {
+                if (requests.incrementAndGet() % 2 == 1) {
+                    ex.sendResponseHeaders(503, -1);
+                } else {
+                    ex.sendResponseHeaders(200, 2);
+                    ex.getResponseBody().write("ok".getBytes());
+                }
+                ex.close();
+            }
+        });
+
+        try {
+            String url = server.getURL("/read");
+
+            // a read is retried
+            InputStream in = NetUtils.loadInputStream(url, null, "test");
+            assertEquals('o', in.read());
+            in.close();
+            assertEquals(2, requests.get());
+
+            // a request that may change data is sent once
+            try {
+                NetUtils.getInputStream(url, null, "test");
+                fail("the request is not retried");
+            } catch (IOException ex) {
+            }
+            assertEquals(3, requests.get());
+        } finally {
+            server.stop();
+        }
+    }
+
     /**
      * Test of getCGIInputStream method, of class NetUtils.
      */
@@ -141,7 +141,7 @@ public class PartTest {
             this.transferEncoding = "binary";
         }
 
-        public int getContentLength() {
+        public long getContentLength() {
             return 0;
         }
 
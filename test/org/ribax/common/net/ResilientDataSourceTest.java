@@ -0,0 +1,254 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import utils.types.NameValuePair;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class ResilientDataSourceTest {
+
+    private static final String URL = "http://resilient.test/data";
+
+    public ResilientDataSourceTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * A stand-in data source that fails a number of times before it answers.
+     */
+    public static class FailingSource implements DataSource {
+
+        /** the number of requests that fail before a request is answered */
+        public int failures;
+        /** the exception thrown by a failed request */
+        public IOException error;
+        /** the number of requests */
+        public int requests = 0;
+
+        public FailingSource(int failures, IOException error) {
+            this.failures = failures;
+            this.error = error;
+        }
+
+        public void setHeader(String name, String value) {
+        }
+
+        public InputStream getInputStream(ArrayList<NameValuePair> params) throws IOException {
+            return getInputStream(params, null);
+        }
+
+        public InputStream getInputStream(ArrayList<NameValuePair> params, DataRequest<?> request)
+                throws IOException {
+            if (requests++ < failures) {
+                throw error;
+            }
+            return new ByteArrayInputStream("fresh".getBytes());
+        }
+    }
+
+    private static DataRequest<Object> request() {
+        return new DataRequest<Object>(0) {
+
+            protected Object call() {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Test of getInputStream method with failures that are retried, of class ResilientDataSource.
+     */
+    @Test
+    public void testGetInputStreamRetried() throws Exception {
+        System.out.println("getInputStreamRetried");
+        FailingSource source = new FailingSource(2, new IOException("refused"));
+        CircuitBreaker breaker = new CircuitBreaker(URL, 5, 1000);
+        ResilientDataSource instance = new ResilientDataSource(source, URL, "test", breaker,
+                null, 2, 10, 20);
+
+        assertEquals("fresh", StandInServer.readAndClose(instance.getInputStream(null, request().setIdempotent(true))));
+        assertEquals(3, source.requests);
+        assertEquals(2, breaker.getRetries());
+        assertEquals(0, breaker.getFailures());
+
+        // too many failures
+        source = new FailingSource(3, new HttpStatusException(503, "unavailable"));
+        instance = new ResilientDataSource(source, URL, "test", breaker, null, 2, 10, 20);
+
+        try {
+            instance.getInputStream(null, request().setIdempotent(true));
+            fail("the request failed after the retries");
+        } catch (HttpStatusException ex) {
+            assertEquals(503, ex.getStatus());
+        }
+        assertEquals(3, source.requests);
+    }
+
+    /**
+     * Test of getInputStream method with failures that are not retried, of class ResilientDataSource.
+     */
+    @Test
+    public void testGetInputStreamNotRetried() throws Exception {
+        System.out.println("getInputStreamNotRetried");
+        CircuitBreaker breaker = new CircuitBreaker(URL, 5, 1000);
+
+        // the web service rejected the request
+        FailingSource source = new FailingSource(1, new HttpStatusException(404, "not found"));
+        ResilientDataSource instance = new ResilientDataSource(source, URL, "test", breaker,
+                null, 2, 10, 20);
+
+        try {
+            instance.getInputStream(null, request().setIdempotent(true));
+            fail("a rejected request is not retried");
+        } catch (HttpStatusException ex) {
+        }
+        assertEquals(1, source.requests);
+        assertEquals(0, breaker.getFailures());
+
+        // a request that uploads a file is sent once
+        ArrayList<NameValuePair> params = new ArrayList<NameValuePair>();
+        params.add(new NameValuePair("upload", "a.txt", "file"));
+        source = new FailingSource(1, new IOException("reset"));
+        instance = new ResilientDataSource(source, URL, "test", breaker, null, 2, 10, 20);
+
+        try {
+            instance.getInputStream(params, request().setIdempotent(true));
+            fail("an upload is not retried");
+        } catch (IOException ex) {
+        }
+        assertEquals(1, source.requests);
+        assertEquals(1, breaker.getFailures());
+
+        // a submission is sent once
+        source = new FailingSource(2, new IOException("reset"));
+        instance = new ResilientDataSource(source, URL, "test", breaker, null, 2, 10, 20);
+
+        try {
+            instance.getInputStream(null, request());
+            fail("a submission is not retried");
+        } catch (IOException ex) {
+        }
+        assertEquals(1, source.requests);
+
+        try {
+            instance.getInputStream(null);
+            fail("a request that is not marked idempotent is not retried");
+        } catch (IOException ex) {
+        }
+        assertEquals(2, source.requests);
+    }
+
+    /**
+     * Test of getInputStream method while the circuit is open, of class ResilientDataSource.
+     */
+    @Test
+    public void testGetInputStreamCircuitOpen() throws Exception {
+        System.out.println("getInputStreamCircuitOpen");
+        HttpResponseCache cache = new HttpResponseCache(10000, null);
+        CircuitBreaker breaker = new CircuitBreaker(URL, 2, 60000);
+        FailingSource source = new FailingSource(100, new IOException("refused"));
+        ResilientDataSource instance = new ResilientDataSource(source, URL, "test", breaker,
+                cache, 5, 10, 20);
+
+        cache.put(HttpResponseCache.getKey(URL, null), new CachedResponse("cached".getBytes(), null, null, 0));
+
+        // the circuit opens after two failures and the expired cached response is used
+        assertEquals("cached", StandInServer.readAndClose(instance.getInputStream(null, request().setCacheable(true))));
+        assertEquals(2, source.requests);
+        assertEquals(CircuitBreaker.OPEN, breaker.getState());
+
+        // requests fail at once while the circuit is open
+        assertEquals("cached", StandInServer.readAndClose(instance.getInputStream(null, request().setCacheable(true))));
+        assertEquals(2, source.requests);
+
+        // a submission or a request that is not cacheable is never given a cached response
+        try {
+            instance.getInputStream(null, request());
+            fail("a submission is not given a cached response");
+        } catch (IOException ex) {
+        }
+        try {
+            instance.getInputStream(null, request().setIdempotent(true));
+            fail("a request that is not cacheable is not given a cached response");
+        } catch (IOException ex) {
+        }
+        assertEquals(2, source.requests);
+
+        ArrayList<NameValuePair> params = new ArrayList<NameValuePair>();
+        params.add(new NameValuePair("Action", "Other"));
+
+        try {
+            instance.getInputStream(params, request().setCacheable(true));
+            fail("there is no cached response");
+        } catch (IOException ex) {
+        }
+        assertEquals(2, source.requests);
+        // the retry after the circuit opened was rejected too
+        assertEquals(5, breaker.getRejected());
+    }
+
+    /**
+     * Test of getInputStream method with a request that is cancelled while it waits
+     * to retry, of class ResilientDataSource.
+     */
+    @Test
+    public void testGetInputStreamCancelled() throws Exception {
+        System.out.println("getInputStreamCancelled");
+        FailingSource source = new FailingSource(1, new IOException("refused"));
+        CircuitBreaker breaker = new CircuitBreaker(URL, 5, 1000);
+        final ResilientDataSource instance = new ResilientDataSource(source, URL, "test", breaker,
+                null, 2, 60000, 60000);
+
+        DataRequest<InputStream> request = new DataRequest<InputStream>(0) {
+
+            protected InputStream call() throws Exception {
+                return instance.getInputStream(null, this);
+            }
+        }.setIdempotent(true).start();
+
+        // the request fails and waits to retry
+        Thread.sleep(200);
+        request.cancel(true);
+
+        try {
+            request.getResult();
+            fail("the request was cancelled");
+        } catch (InterruptedIOException ex) {
+        }
+        Thread.sleep(100);
+        assertEquals(1, source.requests);
+        assertEquals(1, breaker.getRetries());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class ResumableLineReaderTest {
+
+    private ServerSocket server;
+    private AtomicInteger connections;
+    private String url;
+
+    public ResumableLineReaderTest() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        connections = new AtomicInteger();
+        server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        url = "http://127.0.0.1:" + server.getLocalPort() + "/text";
+
+        Thread t = new Thread() {
+
+            public void run() {
+                try {
+                    while (true) {
+                        Socket s = server.accept();
+                        int n = connections.incrementAndGet();
+
+                        readRequest(s.getInputStream());
+                        OutputStream out = s.getOutputStream();
+
+                        if (n == 1) {
+                            // the first connection drops part way through a chunked response
+                            out.write(("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                                    + "8\r\none\ntwo\n\r\n").getBytes());
+                        } else {
+                            // the resumed stream starts again with a snapshot and ends cleanly
+                            String body = "\u0004one two\nthree\n";
+                            out.write(("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: "
+                                    + body.length() + "\r\n\r\n" + body).getBytes());
+                        }
+                        out.flush();
+                        s.close();
+                    }
+                } catch (IOException ex) {
+                }
+            }
+        };
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /*
+     * Read the headers and body of a request.
+     */
+    private static void readRequest(InputStream in) throws IOException {
+        StringBuilder headers = new StringBuilder();
+
+        while (headers.indexOf("\r\n\r\n") < 0) {
+            int c = in.read();
+
+            if (c < 0) {
+                return;
+            }
+            headers.append((char) c);
+        }
+
+        String h = headers.toString().toLowerCase();
+        int i = h.indexOf("content-length:");
+
+        if (i >= 0) {
+            int len = Integer.parseInt(h.substring(i + 15, h.indexOf("\r\n", i)).trim());
+
+            for (int j = 0; j < len && in.read() >= 0; j++) {
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    /**
+     * Test of readLine method, of class ResumableLineReader.
+     */
+    @Test
+    public void testReadLine() throws Exception {
+        System.out.println("readLine");
+        ResumableLineReader instance = new ResumableLineReader(url, null, "test", null,
+                new Backoff(10, 20, 2));
+
+        assertEquals("one", instance.readLine());
+        assertEquals("two", instance.readLine());
+
+        // the stream is resumed on a new connection
+        assertEquals("\u0004one two", instance.readLine());
+        assertEquals("three", instance.readLine());
+        assertEquals(1, instance.getReconnects());
+
+        // a stream that ends cleanly has finished
+        assertNull(instance.readLine());
+        assertEquals(2, connections.get());
+        instance.close();
+        assertTrue(instance.isClosed());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A stand-in web service for the tests.  The server listens on a free port of the
+ * loopback address and answers each request on its own thread.
+ *
+ * @author damian
+ */
+public class StandInServer {
+
+    private HttpServer server;
+    private ExecutorService executor = Executors.newCachedThreadPool();
+
+    /**
+     * Start a server that answers every request with a handler.
+     *
+     * @param handler the handler.
+     * @throws IOException if the server cannot be started.
+     */
+    public StandInServer(HttpHandler handler) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", handler);
+        server.start();
+    }
+
+    /**
+     * Get the http URL of a path on the server.
+     *
+     * @param path the path, starting with / or empty.
+     * @return the URL.
+     */
+    public String getURL(String path) {
+        return getURL("http", path);
+    }
+
+    /**
+     * Get the URL of a path on the server with a scheme.
+     *
+     * @param scheme the scheme, e.g. http or sse.
+     * @param path the path, starting with / or empty.
+     * @return the URL.
+     */
+    public String getURL(String scheme, String path) {
+        return scheme + "://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * Stop the server, any connection that is open is closed.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Read the whole of a stream as UTF-8 text, the stream is left open.
+     *
+     * @param in the stream.
+     * @return the text.
+     * @throws IOException if the stream cannot be read.
+     */
+    public static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int n;
+
+        while ((n = in.read(buf)) >= 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toString("UTF-8");
+    }
+
+    /**
+     * Read the whole of a stream as UTF-8 text and close it.
+     *
+     * @param in the stream.
+     * @return the text.
+     * @throws IOException if the stream cannot be read.
+     */
+    public static String readAndClose(InputStream in) throws IOException {
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Read the whole of the body of a request.
+     *
+     * @param ex the exchange.
+     * @return the body as UTF-8 text.
+     * @throws IOException if the body cannot be read.
+     */
+    public static String readBody(HttpExchange ex) throws IOException {
+        return read(ex.getRequestBody());
+    }
+
+    /**
+     * Get a request that only reads data and does nothing when it is run.
+     *
+     * @return the request.
+     */
+    public static DataRequest<Object> load() {
+        return new DataRequest<Object>(0) {
+
+            protected Object call() {
+                return null;
+            }
+        }.setIdempotent(true);
+    }
+
+    /**
+     * Get a request whose response may be cached and that does nothing when it is run.
+     *
+     * @return the request.
+     */
+    public static DataRequest<Object> cacheable() {
+        return new DataRequest<Object>(0) {
+
+            protected Object call() {
+                return null;
+            }
+        }.setCacheable(true);
+    }
+}
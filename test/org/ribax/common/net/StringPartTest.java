@@ -47,7 +47,7 @@ public class StringPartTest {
         System.out.println("getContentLength");
         StringPart instance = new StringPart("test", "test data value");
         int expResult = 135;
-        int result = instance.getContentLength();
+        long result = instance.getContentLength();
 
         // expected result is 135 bytes
         assertEquals(expResult, result);
@@ -0,0 +1,117 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Vector;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import utils.log.BasicLogger;
+
+/**
+ *
+ * @author damian
+ */
+public class TeeInputStreamTest {
+
+    private Vector<String> messages;
+    private BasicLogger log;
+
+    public TeeInputStreamTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+        messages = new Vector<String>();
+        log = new BasicLogger(TeeInputStreamTest.class.getName()) {
+
+            @Override
+            public void debug(String name, String message) {
+                messages.add(message);
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static byte[] read(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[7];
+        int n;
+        while ((n = in.read(buf)) >= 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private void waitForMessages(int count) throws Exception {
+        for (int i = 0; i < 100 && messages.size() < count; i++) {
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * Test of read method with a short stream, of class TeeInputStream.
+     */
+    @Test
+    public void testReadShort() throws Exception {
+        System.out.println("readShort");
+        byte[] data = "<tableData>\n<row/>\n</tableData>\n".getBytes();
+        TeeInputStream instance = new TeeInputStream(new ByteArrayInputStream(data), log, "test", 1024);
+
+        // the data is passed through unchanged and the whole stream is logged
+        assertArrayEquals(data, read(instance));
+        waitForMessages(1);
+        assertEquals(1, messages.size());
+        assertEquals(new String(data), messages.get(0));
+
+        // the copy is only logged once
+        instance.close();
+        Thread.sleep(50);
+        assertEquals(1, messages.size());
+    }
+
+    /**
+     * Test of read method with a stream longer than the copy, of class TeeInputStream.
+     */
+    @Test
+    public void testReadTruncated() throws Exception {
+        System.out.println("readTruncated");
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + (i % 26));
+        }
+        TeeInputStream instance = new TeeInputStream(new ByteArrayInputStream(data), log, "test", 10);
+
+        // the copy is logged as soon as it is full, before the stream ends
+        assertEquals('a', instance.read());
+        byte[] buf = new byte[20];
+        assertEquals(20, instance.read(buf));
+        waitForMessages(2);
+        assertEquals(2, messages.size());
+        assertEquals("abcdefghij", messages.get(0));
+
+        assertEquals(79, read(instance).length);
+        Thread.sleep(50);
+        assertEquals(2, messages.size());
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.common.net;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.ribax.common.ConfigStrings;
+import org.ribax.common.RIBAXConfig;
+import utils.types.NameValuePair;
+
+/**
+ *
+ * @author damian
+ */
+public class WebDataSourceTest {
+
+    private StandInServer server;
+    /* the headers and decoded body of the last request */
+    private String acceptEncoding;
+    private String contentEncoding;
+    private String transferEncoding;
+    private String contentLength;
+    private String requestBody;
+
+    public WebDataSourceTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInServer(new HttpHandler() {
+
+            public void handle(HttpExchange ex) throws IOException {
+                acceptEncoding = ex.getRequestHeaders().getFirst("Accept-Encoding");
+                contentEncoding = ex.getRequestHeaders().getFirst("Content-Encoding");
+                transferEncoding = ex.getRequestHeaders().getFirst("Transfer-Encoding");
+                contentLength = ex.getRequestHeaders().getFirst("Content-Length");
+
+                InputStream in = ex.getRequestBody();
+                if ("gzip".equals(contentEncoding)) {
+                    in = new GZIPInputStream(in);
+                }
+                requestBody = StandInServer.read(in);
+
+                String path = ex.getRequestURI().getPath();
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                OutputStream out = body;
+
+                if (path.equals("/gzip")) {
+                    ex.getResponseHeaders().set("Content-Encoding", "gzip");
+                    out = new GZIPOutputStream(body);
+                } else if (path.equals("/deflate")) {
+                    ex.getResponseHeaders().set("Content-Encoding", "deflate");
+                    out = new DeflaterOutputStream(body);
+                }
+                out.write("<tableData/>".getBytes());
+                out.close();
+
+                ex.sendResponseHeaders(200, body.size());
+                ex.getResponseBody().write(body.toByteArray());
+                ex.close();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        RIBAXConfig.getInstance().setValue(ConfigStrings.HTTP_COMPRESS_REQUEST_SIZE, "0");
+    }
+
+    private WebDataSource getDataSource(String path) {
+        return new WebDataSource(server.getURL(path), "test", new HttpConnectionPool(2, 5), null);
+    }
+
+    /**
+     * Test of isVaryKeyed method, of class WebDataSource.
+     */
+    @Test
+    public void testIsVaryKeyed() {
+        System.out.println("isVaryKeyed");
+
+        assertTrue(WebDataSource.isVaryKeyed(null));
+        assertTrue(WebDataSource.isVaryKeyed("Accept, accept-encoding"));
+        assertFalse(WebDataSource.isVaryKeyed("Accept, Cookie"));
+        assertFalse(WebDataSource.isVaryKeyed("*"));
+    }
+
+    /**
+     * Test of getInputStream method with compressed responses, of class WebDataSource.
+     */
+    @Test
+    public void testGetInputStreamCompressed() throws Exception {
+        System.out.println("getInputStreamCompressed");
+
+        assertEquals("<tableData/>", StandInServer.readAndClose(getDataSource("/gzip").getInputStream(null)));
+        assertEquals("gzip, deflate", acceptEncoding);
+        assertEquals("<tableData/>", StandInServer.readAndClose(getDataSource("/deflate").getInputStream(null)));
+        assertEquals("<tableData/>", StandInServer.readAndClose(getDataSource("/plain").getInputStream(null)));
+    }
+
+    /**
+     * Test of getInputStream method with a compressed request body, of class WebDataSource.
+     */
+    @Test
+    public void testGetInputStreamCompressRequest() throws Exception {
+        System.out.println("getInputStreamCompressRequest");
+        ArrayList<NameValuePair> params = new ArrayList<NameValuePair>();
+        params.add(new NameValuePair("rows", "<rows><row>1</row></rows>"));
+
+        // small bodies are sent as they are
+        RIBAXConfig.getInstance().setValue(ConfigStrings.HTTP_COMPRESS_REQUEST_SIZE, "100000");
+        StandInServer.readAndClose(getDataSource("/plain").getInputStream(params));
+        assertNull(contentEncoding);
+        assertTrue(requestBody.indexOf("<rows><row>1</row></rows>") > 0);
+
+        // large bodies are compressed and sent in chunks
+        RIBAXConfig.getInstance().setValue(ConfigStrings.HTTP_COMPRESS_REQUEST_SIZE, "10");
+        StandInServer.readAndClose(getDataSource("/plain").getInputStream(params));
+        assertEquals("gzip", contentEncoding);
+        assertEquals("chunked", transferEncoding);
+        assertTrue(requestBody.indexOf("<rows><row>1</row></rows>") > 0);
+    }
+
+    /**
+     * Test of getInputStream method with a file parameter, of class WebDataSource.
+     */
+    @Test
+    public void testGetInputStreamUpload() throws Exception {
+        System.out.println("getInputStreamUpload");
+        File f = File.createTempFile("ribax", ".txt");
+        f.deleteOnExit();
+
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < 20000; i++) {
+            sb.append("line ").append(i).append('\n');
+        }
+        FileOutputStream fout = new FileOutputStream(f);
+        fout.write(sb.toString().getBytes());
+        fout.close();
+
+        ArrayList<NameValuePair> params = new ArrayList<NameValuePair>();
+        params.add(new NameValuePair("name", "value"));
+        NameValuePair file = new NameValuePair("upload", f.getPath());
+        file.setMimeType("file");
+        params.add(file);
+
+        final long[] sent = new long[1];
+        WebDataSource instance = getDataSource("/plain");
+        instance.setUploadProgressListener(new UploadProgressListener() {
+
+            public void uploadProgress(String name, File file, long count, long total) {
+                sent[0] = count;
+            }
+        });
+        StandInServer.readAndClose(instance.getInputStream(params));
+
+        // the body is streamed with the computed length rather than in chunks
+        assertNull(transferEncoding);
+        assertEquals(String.valueOf(requestBody.length()), contentLength);
+        assertTrue(requestBody.indexOf(sb.toString()) > 0);
+        assertEquals(f.length(), sent[0]);
+    }
+}
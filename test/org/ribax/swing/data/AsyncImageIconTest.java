@@ -0,0 +1,117 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.swing.data;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class AsyncImageIconTest {
+
+    public AsyncImageIconTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of load and fireLoaded methods, of class AsyncImageIcon.
+     */
+    @Test
+    public void testLoad() throws Exception {
+        System.out.println("load");
+        File file = File.createTempFile("AsyncImageIconTest", ".png");
+        file.deleteOnExit();
+        ImageIO.write(new BufferedImage(12, 8, BufferedImage.TYPE_INT_RGB), "png", file);
+
+        final ArrayList<Object> sources = new ArrayList<Object>();
+        ChangeListener l = new ChangeListener() {
+
+            public void stateChanged(ChangeEvent e) {
+                assertTrue(SwingUtilities.isEventDispatchThread());
+                sources.add(e.getSource());
+            }
+        };
+
+        // the remembered size is used until the image has loaded
+        AsyncImageIcon instance = new AsyncImageIcon(file.toURI().toURL().toString(), 6, 4);
+        assertEquals(6, instance.getIconWidth());
+        assertEquals(4, instance.getIconHeight());
+        assertNull(instance.getImage());
+
+        // a listener is only added once
+        instance.addChangeListener(l);
+        instance.addChangeListener(l);
+
+        assertTrue(instance.load());
+        instance.fireLoaded();
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            public void run() {
+            }
+        });
+
+        assertTrue(instance.isLoaded());
+        assertEquals(12, instance.getIconWidth());
+        assertEquals(8, instance.getIconHeight());
+        assertEquals(1, sources.size());
+        assertSame(instance, sources.get(0));
+
+        // listeners are not added once the image has loaded
+        instance.addChangeListener(l);
+        instance.fireLoaded();
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            public void run() {
+            }
+        });
+        assertEquals(1, sources.size());
+    }
+
+    /**
+     * Test of load method with an image that does not exist, of class AsyncImageIcon.
+     */
+    @Test
+    public void testLoadMissing() throws Exception {
+        System.out.println("loadMissing");
+        File file = File.createTempFile("AsyncImageIconTest", ".png");
+        file.delete();
+
+        AsyncImageIcon instance = new AsyncImageIcon(file.toURI().toURL().toString(), -1, -1);
+
+        assertFalse(instance.load());
+        assertFalse(instance.isLoaded());
+        assertEquals(-1, instance.getIconHeight());
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.swing.data;
+
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.input.SAXBuilder;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class ColumnarTableDataModelTest {
+
+    static Element root;
+
+    public ColumnarTableDataModelTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        File f = new File("./resources/tableDataModelTest.xml");
+
+        BufferedInputStream fin = new BufferedInputStream(new FileInputStream(f));
+
+        // create node tree from XML
+        SAXBuilder builder = new SAXBuilder();
+
+        Document doc = builder.build(fin);
+        root = doc.getRootElement();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private Element build(String xml) throws Exception {
+        return new SAXBuilder().build(new StringReader(xml)).getRootElement();
+    }
+
+    /**
+     * Test of getValueAt method, of class ColumnarTableDataModel.
+     */
+    @Test
+    public void testGetValueAt() {
+        System.out.println("getValueAt");
+        ColumnarTableDataModel instance = new ColumnarTableDataModel(root);
+        TableDataModel rows = new TableDataModel(root);
+
+        assertEquals(rows.getRowCount(), instance.getRowCount());
+        assertEquals(rows.getColumnCount(), instance.getColumnCount());
+
+        // the columnar model has the same values as the row model
+        for (int r = 0; r < rows.getRowCount(); r++) {
+            for (int c = 0; c < rows.getColumnCount(); c++) {
+                assertEquals(rows.getValueAt(r, c), instance.getValueAt(r, c));
+                assertEquals(rows.getBackground(r, c), instance.getBackground(r, c));
+            }
+        }
+        assertEquals(String.class, instance.getColumnClass(0));
+        assertEquals(Float.class, instance.getColumnClass(1));
+        assertEquals("Customer Name", instance.getColumnName(0));
+        assertEquals(100, instance.getPreferredColumnWidth(0));
+    }
+
+    /**
+     * Test of the declared column types, of class ColumnarTableDataModel.
+     */
+    @Test
+    public void testColumnTypes() throws Exception {
+        System.out.println("columnTypes");
+        Element node = build("<tableData storage=\"columnar\"><columnNames>"
+                + "<column name=\"id\" type=\"number\"/><column name=\"ok\" type=\"boolean\"/>"
+                + "<column name=\"name\"/><column name=\"price\" type=\"float\"/></columnNames>"
+                + "<rowData>"
+                + "<row><col>1</col><col>true</col><col>Fred</col><col>1.5</col></row>"
+                + "<row><col colour=\"#ff0000\">2</col><col>false</col><col>Fred</col><col>n/a</col></row>"
+                + "<row><col>3</col></row>"
+                + "</rowData></tableData>");
+
+        assertTrue(ColumnarTableDataModel.isColumnar(node));
+
+        ColumnarTableDataModel instance = new ColumnarTableDataModel(node);
+
+        assertEquals(3, instance.getRowCount());
+        assertEquals(Integer.valueOf(2), instance.getValueAt(1, 0));
+        assertEquals(Boolean.TRUE, instance.getValueAt(0, 1));
+        assertEquals(Boolean.FALSE, instance.getValueAt(1, 1));
+        assertEquals(Integer.class, instance.getColumnClass(0));
+        assertEquals(Boolean.class, instance.getColumnClass(1));
+
+        // dictionary encoded strings are shared
+        assertSame(instance.getValueAt(0, 2), instance.getValueAt(1, 2));
+
+        // a value that does not fit the column type is kept
+        assertEquals(new Float(1.5), instance.getValueAt(0, 3));
+        assertEquals("n/a", instance.getValueAt(1, 3));
+
+        // missing cells are null
+        assertNull(instance.getValueAt(2, 1));
+        assertNull(instance.getValueAt(2, 3));
+
+        // cell colours
+        assertEquals(new Color(0xff, 0, 0), instance.getBackground(1, 0));
+        assertNull(instance.getBackground(0, 0));
+
+        // the model is read only
+        assertFalse(instance.isCellEditable(0, 1));
+        assertNull(instance.getColumnEditor(0));
+    }
+
+    /**
+     * Test of getSelectedRowElements method, of class ColumnarTableDataModel.
+     */
+    @Test
+    public void testGetSelectedRowElements() {
+        System.out.println("getSelectedRowElements");
+        ColumnarTableDataModel instance = new ColumnarTableDataModel(root);
+
+        ArrayList result = instance.getSelectedRowElements(0, 0);
+        assertEquals(2, result.size());
+    }
+
+    /**
+     * Test of getMetaText method, of class ColumnarTableDataModel.
+     */
+    @Test
+    public void testGetMetaText() {
+        System.out.println("getMetaText");
+        ColumnarTableDataModel instance = new ColumnarTableDataModel(root);
+
+        String[] result = instance.getMetaText(0, 0);
+
+        assertNotNull(result);
+        assertEquals("Mrs Jones", result[1]);
+    }
+}
@@ -17,7 +17,7 @@ import org.junit.runners.Suite;
  * @author damian
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({org.ribax.swing.data.DataItemTransferHandlerTest.class,org.ribax.swing.data.TableRowTest.class,org.ribax.swing.data.TableDataModelTest.class})
+@Suite.SuiteClasses({org.ribax.swing.data.DataItemTransferHandlerTest.class,org.ribax.swing.data.TableRowTest.class,org.ribax.swing.data.TableDataModelTest.class,org.ribax.swing.data.TableRowIndexTest.class,org.ribax.swing.data.TableChangeCoalescerTest.class,org.ribax.swing.data.TableRowBatchTest.class,org.ribax.swing.data.TableRowReaderTest.class,org.ribax.swing.data.ColumnarTableDataModelTest.class,org.ribax.swing.data.ImageCacheTest.class,org.ribax.swing.data.AsyncImageIconTest.class,org.ribax.swing.data.RowFrameReaderTest.class,org.ribax.swing.data.JsonTableReaderTest.class})
 public class DataSuite {
 
     @BeforeClass
@@ -0,0 +1,154 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.swing.data;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.net.MalformedURLException;
+import javax.imageio.ImageIO;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class ImageCacheTest {
+
+    public ImageCacheTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private String makeImage(int width, int height) throws Exception {
+        File file = File.createTempFile("ImageCacheTest", ".png");
+        file.deleteOnExit();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", file);
+        return file.toURI().toURL().toString();
+    }
+
+    private void waitForSize(ImageCache instance, long size) throws Exception {
+        for (int i = 0; i < 100 && instance.getSize() != size; i++) {
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * Test of getIcon method, of class ImageCache.
+     */
+    @Test
+    public void testGetIcon() throws Exception {
+        System.out.println("getIcon");
+        ImageCache instance = new ImageCache(1024 * 1024);
+        String url = makeImage(10, 20);
+
+        AsyncImageIcon icon = instance.getIcon(url);
+        // the same icon is shared by every cell with the URL
+        assertSame(icon, instance.getIcon(url));
+
+        waitForSize(instance, 800);
+
+        assertTrue(icon.isLoaded());
+        assertEquals(10, icon.getIconWidth());
+        assertEquals(20, icon.getIconHeight());
+        assertEquals(20, instance.getIconHeight(url));
+        assertEquals(800, instance.getSize());
+        assertEquals(1, instance.getCount());
+    }
+
+    /**
+     * Test of getIcon method with an invalid URL, of class ImageCache.
+     */
+    @Test(expected = MalformedURLException.class)
+    public void testGetIconInvalidURL() throws Exception {
+        System.out.println("getIconInvalidURL");
+        ImageCache instance = new ImageCache(1024 * 1024);
+
+        instance.getIcon("not a url");
+    }
+
+    /**
+     * Test of getIcon method with an image that does not load, of class ImageCache.
+     */
+    @Test
+    public void testGetIconMissing() throws Exception {
+        System.out.println("getIconMissing");
+        ImageCache instance = new ImageCache(1024 * 1024);
+        File file = File.createTempFile("ImageCacheTest", ".png");
+        file.delete();
+        String url = file.toURI().toURL().toString();
+
+        AsyncImageIcon icon = instance.getIcon(url);
+
+        for (int i = 0; i < 100 && instance.getCount() > 0; i++) {
+            Thread.sleep(20);
+        }
+
+        // the icon is removed so the image is loaded again next time
+        assertFalse(icon.isLoaded());
+        assertEquals(0, instance.getCount());
+        assertEquals(-1, instance.getIconHeight(url));
+    }
+
+    /**
+     * Test of eviction of the least recently used images, of class ImageCache.
+     */
+    @Test
+    public void testEvict() throws Exception {
+        System.out.println("evict");
+        // room for two 10x10 images
+        ImageCache instance = new ImageCache(800);
+        String url1 = makeImage(10, 10);
+        String url2 = makeImage(10, 10);
+        String url3 = makeImage(10, 10);
+
+        AsyncImageIcon icon1 = instance.getIcon(url1);
+        waitForSize(instance, 400);
+        AsyncImageIcon icon2 = instance.getIcon(url2);
+        waitForSize(instance, 800);
+
+        assertEquals(800, instance.getSize());
+
+        // use the first image so the second is the least recently used
+        assertSame(icon1, instance.getIcon(url1));
+
+        AsyncImageIcon icon3 = instance.getIcon(url3);
+        for (int i = 0; i < 100 && instance.getCount() > 2; i++) {
+            Thread.sleep(20);
+        }
+
+        // the second image has been evicted to make room for the third
+        assertEquals(800, instance.getSize());
+        assertEquals(2, instance.getCount());
+        assertSame(icon1, instance.getIcon(url1));
+        assertSame(icon3, instance.getIcon(url3));
+        assertNotSame(icon2, instance.getIcon(url2));
+
+        // the size of an evicted image is remembered
+        assertEquals(10, instance.getIconHeight(url2));
+
+        AsyncImageIcon again = instance.getIcon(url2);
+        assertEquals(10, again.getIconHeight());
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.swing.data;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ribax.common.data.JsonReader;
+import org.ribax.common.net.Backoff;
+import org.ribax.common.net.NetUtils;
+import org.ribax.common.net.StandInServer;
+import utils.table.TableLinkElement;
+import utils.types.Memo;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class JsonTableReaderTest {
+
+    private StandInServer server;
+    private JsonTableHandler handler;
+    private String url;
+
+    public JsonTableReaderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        handler = new JsonTableHandler();
+        server = new StandInServer(handler);
+        url = server.getURL("/prices");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * A stand-in table streaming web service that answers with JSON.  The first
+     * stream drops part way through a batch, the resumed stream repeats the last
+     * batch and then clears the table.
+     */
+    public static class JsonTableHandler extends ResumingHandler {
+
+        protected void respond(HttpExchange ex, String body) throws IOException {
+            long resume = getResume(body);
+
+            ex.getResponseHeaders().set("Content-Type", JsonReader.MIME_TYPE);
+            ex.sendResponseHeaders(200, 0);
+            OutputStream out = ex.getResponseBody();
+
+            if (resume < 0) {
+                out.write(("{\"columns\": [\"Symbol\", \"Price\"],"
+                        + " \"rows\": [[\"IBM\", 1.5], {\"key\": \"MSFT\", \"cells\": [\"MSFT\", 2]}], \"seq\": 1}\n"
+                        + "{\"delete\": [\"MSFT\"], \"seq\": 2}\n"
+                        + "{\"rows\": [[\"ORCL\"").getBytes("UTF-8"));
+            } else if (resume == 2) {
+                out.write(("{\"rows\": [[\"DUP\"]], \"seq\": 2}"
+                        + "{\"clear\": \"ROWDATA\", \"rows\": [[\"AAPL\", 5.0]], \"seq\": 3}").getBytes("UTF-8"));
+            }
+        }
+    }
+
+    /**
+     * Test of readBatch method, of class JsonTableReader.
+     */
+    @Test
+    public void testReadBatch() throws Exception {
+        System.out.println("readBatch");
+        String json = "{\"tableData\": {\"columns\": [{\"name\": \"Symbol\", \"width\": 80, \"editable\": true},"
+                + " {\"name\": \"Notes\", \"visible\": false}, \"Count\", \"Flag\", \"Link\"],"
+                + " \"rows\": [{\"key\": \"k1\", \"cells\": [\"IBM\", {\"type\": \"memo\", \"value\": \"long text\"},"
+                + " 12, true, {\"type\": \"link\", \"value\": {\"linkurl\": \"http://x\", \"title\": \"X\"}}]},"
+                + " [\"MSFT\", null, {\"type\": \"number\", \"value\": \"7\"}, {\"type\": \"float\", \"value\": \"bad\"}],"
+                + " {\"key\": \"k3\", \"cells\": [\"GONE\"]}],"
+                + " \"delete\": [\"k3\"], \"unknown\": {\"a\": [1, 2]},"
+                + " \"printOptions\": {\"title\": \"Prices\"}}}";
+
+        JsonTableReader instance = new JsonTableReader("", "test",
+                new ByteArrayInputStream(json.getBytes("UTF-8")));
+
+        TableRowBatch batch = instance.readBatch();
+        assertNotNull(batch);
+        assertEquals(5, batch.getColumns().size());
+        assertEquals("Symbol", batch.getColumns().get(0).name);
+        assertEquals(80, batch.getColumns().get(0).width);
+        assertTrue(batch.getColumns().get(0).editable);
+        assertFalse(batch.getColumns().get(1).visible);
+        assertEquals("Count", batch.getColumns().get(2).name);
+
+        // the deleted row is dropped from the batch
+        assertEquals(2, batch.getRows().size());
+        assertEquals(1, batch.getDeletes().size());
+
+        TableRow row = batch.getRows().get(0);
+        assertEquals("k1", row.getKey());
+        assertEquals("IBM", row.get(0));
+        assertTrue(row.get(1) instanceof Memo);
+        assertEquals(Integer.valueOf(12), row.get(2));
+        assertEquals(Boolean.TRUE, row.get(3));
+        assertTrue(row.get(4) instanceof TableLinkElement);
+
+        // a null cell is not added and a bad number is 0
+        row = batch.getRows().get(1);
+        assertNull(row.getKey());
+        assertEquals(3, row.size());
+        assertEquals(Integer.valueOf(7), row.get(1));
+        assertEquals(Float.valueOf(0), row.get(2));
+
+        assertEquals("Prices", batch.getPrintOptions().getChildText("title"));
+
+        assertNull(instance.readBatch());
+        assertNull(instance.getError());
+    }
+
+    /**
+     * Test of readBatch method with the changed cells of existing rows, of class JsonTableReader.
+     */
+    @Test
+    public void testReadBatchDeltas() throws Exception {
+        System.out.println("readBatchDeltas");
+        String json = "{\"deltas\": [{\"key\": \"IBM\", \"cells\": {\"1\": 97.5, \"x\": 1, \"3\": {\"type\": \"boolean\", \"value\": \"true\"}}},"
+                + " {\"cells\": {\"0\": \"no key\"}}, [1, 2]]}";
+
+        JsonTableReader instance = new JsonTableReader("", "test",
+                new ByteArrayInputStream(json.getBytes("UTF-8")));
+
+        TableRowBatch batch = instance.readBatch();
+        assertNotNull(batch);
+        assertEquals(0, batch.getRows().size());
+
+        // a delta without a key and a delta that is not an object are ignored
+        assertEquals(1, batch.getDeltas().size());
+
+        // a cell with an invalid column index is ignored
+        TableRowDelta delta = batch.getDeltas().get(0);
+        assertEquals("IBM", delta.getKey());
+        assertEquals(2, delta.size());
+        assertEquals(1, delta.getColumn(0));
+        assertEquals(Float.valueOf(97.5f), delta.getValue(0));
+        assertEquals(3, delta.getColumn(1));
+        assertEquals(Boolean.TRUE, delta.getValue(1));
+        assertNull(instance.getError());
+    }
+
+    /**
+     * Test of readBatch method with invalid JSON on a table that is not resumed, of
+     * class JsonTableReader.
+     */
+    @Test
+    public void testReadBatchError() throws Exception {
+        System.out.println("readBatchError");
+        JsonTableReader instance = new JsonTableReader("", "test",
+                new ByteArrayInputStream("{\"rows\": [[1,]]}".getBytes("UTF-8")));
+
+        assertNull(instance.readBatch());
+        assertNotNull(instance.getError());
+    }
+
+    /**
+     * Test of readBatch method on a stream that is resumed, of class JsonTableReader.
+     */
+    @Test
+    public void testReadBatchResumed() throws Exception {
+        System.out.println("readBatchResumed");
+        BufferedInputStream in = new BufferedInputStream(NetUtils.getInputStream(url, null, "test",
+                null, JsonReader.getHeaders()));
+
+        assertTrue(JsonReader.isJsonStream(in));
+
+        JsonTableReader instance = new JsonTableReader(url, null, "test", null, in,
+                new Backoff(10, 20, 2));
+
+        TableDataModel model = new TableDataModel(instance.readBatch(), url);
+        model.setRepaintInterval(0);
+
+        assertEquals(2, model.getColumnCount());
+        assertEquals(2, model.getRowCount());
+        assertEquals(Float.valueOf(1.5f), model.getValueAt(0, 1));
+        assertEquals(Integer.valueOf(2), model.getValueAt(1, 1));
+
+        model.addRowData(instance.readBatch(), true);
+        assertEquals(1, model.getRowCount());
+
+        // the stream is resumed after the last batch and the repeated batch is skipped
+        TableRowBatch batch = instance.readBatch();
+        assertEquals(TableDataModel.ROWDATA, batch.getClearType());
+        model.addRowData(batch, true);
+        assertEquals(1, model.getRowCount());
+        assertEquals("AAPL", model.getValueAt(0, 0));
+        assertEquals(1, instance.getReconnects());
+
+        // the stream ends when it cannot be resumed
+        server.stop();
+        assertNull(instance.readBatch());
+        instance.close();
+
+        assertEquals(Long.valueOf(-1), handler.resumes.get(0));
+        assertEquals(Long.valueOf(2), handler.resumes.get(1));
+    }
+}
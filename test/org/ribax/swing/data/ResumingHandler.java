@@ -0,0 +1,58 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.swing.data;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.util.Vector;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.ribax.common.data.ResumableBlockSource;
+import org.ribax.common.net.StandInServer;
+
+/**
+ * The base of a stand-in table streaming web service that resumes a stream.  The
+ * request body is read and passed to respond(), which answers the request and reads
+ * the sequence to resume from with getResume().
+ *
+ * @author damian
+ */
+public abstract class ResumingHandler implements HttpHandler {
+
+    private static final Pattern RESUME = Pattern.compile(
+            "name=\"" + ResumableBlockSource.RESUME_SEQUENCE + "\".*?\r\n\r\n(\\d+)", Pattern.DOTALL);
+    /** the ResumeSequence parameter of each stream request, -1 if there was none */
+    public Vector<Long> resumes = new Vector<Long>();
+
+    public void handle(HttpExchange ex) throws IOException {
+        respond(ex, StandInServer.readBody(ex));
+        ex.close();
+    }
+
+    /**
+     * Get the sequence a stream request resumes from and record it in resumes.
+     *
+     * @param body the request body.
+     * @return the sequence or -1 if the request does not resume a stream.
+     */
+    protected long getResume(String body) {
+        Matcher m = RESUME.matcher(body);
+        long resume = m.find() ? Long.parseLong(m.group(1)) : -1;
+
+        resumes.add(Long.valueOf(resume));
+        return resume;
+    }
+
+    /**
+     * Answer a request, the exchange is closed afterwards.
+     *
+     * @param ex the exchange.
+     * @param body the request body.
+     * @throws IOException if the response cannot be written.
+     */
+    protected abstract void respond(HttpExchange ex, String body) throws IOException;
+}
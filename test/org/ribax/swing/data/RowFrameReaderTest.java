@@ -0,0 +1,244 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.swing.data;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ribax.common.data.RowFrame;
+import org.ribax.common.data.RowFrameWriter;
+import org.ribax.common.net.Backoff;
+import org.ribax.common.net.NetUtils;
+import org.ribax.common.net.StandInServer;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class RowFrameReaderTest {
+
+    private StandInServer server;
+    private RowFrameHandler handler;
+    private String url;
+
+    public RowFrameReaderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        handler = new RowFrameHandler();
+        server = new StandInServer(handler);
+        url = server.getURL("/prices");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * A stand-in table streaming web service.  A request that accepts row frames is
+     * answered with a frame stream, any other request with a tableData block.  The
+     * first frame stream drops part way through a frame, the resumed stream repeats
+     * the last commit and then clears the table.
+     */
+    public static class RowFrameHandler extends ResumingHandler {
+
+        protected void respond(HttpExchange ex, String body) throws IOException {
+            String accept = ex.getRequestHeaders().getFirst("Accept");
+
+            if (accept == null || accept.indexOf(RowFrame.MIME_TYPE) < 0) {
+                ex.getResponseHeaders().set("Content-Type", "text/xml");
+                ex.sendResponseHeaders(200, 0);
+                ex.getResponseBody().write("<tableData><rowData/></tableData>".getBytes());
+                return;
+            }
+
+            long resume = getResume(body);
+
+            ex.getResponseHeaders().set("Content-Type", RowFrame.MIME_TYPE);
+            ex.sendResponseHeaders(200, 0);
+            OutputStream out = ex.getResponseBody();
+            RowFrameWriter writer = new RowFrameWriter(out);
+
+            if (resume < 0) {
+                writer.writeColumns(new String[]{"Symbol", "Price"}, new int[]{80, 60});
+                writer.writeUpsert("IBM", new Object[]{"IBM", Float.valueOf(1)});
+                writer.writeUpsert("MSFT", new Object[]{"MSFT", Float.valueOf(2)});
+                writer.commit(1);
+                writer.writeUpsert("IBM", new Object[]{"IBM", Float.valueOf(3)});
+                writer.writeDelete("MSFT");
+                writer.commit(2);
+
+                // drop the connection part way through a frame
+                DataOutputStream dout = new DataOutputStream(out);
+                dout.writeInt(50);
+                dout.writeByte(RowFrame.UPSERT);
+                dout.flush();
+            } else if (resume == 2) {
+                // a commit that has already been read is skipped
+                writer.writeUpsert("DUP", new Object[]{"DUP", null});
+                writer.commit(2);
+                writer.writeUpsert("ORCL", new Object[]{"ORCL", Float.valueOf(4)});
+                writer.writeClear("ROWDATA");
+                writer.writeUpsert("AAPL", new Object[]{"AAPL", Float.valueOf(5), Boolean.TRUE, Integer.valueOf(7)});
+                writer.commit(3);
+            }
+        }
+    }
+
+    /**
+     * Test of readBatch method, of class RowFrameReader.
+     */
+    @Test
+    public void testReadBatch() throws Exception {
+        System.out.println("readBatch");
+        BufferedInputStream in = new BufferedInputStream(NetUtils.getInputStream(url, null, "test",
+                null, RowFrameReader.getHeaders()));
+
+        assertTrue(RowFrame.isFrameStream(in));
+
+        RowFrameReader instance = new RowFrameReader(url, null, "test", null, in,
+                new Backoff(10, 20, 2));
+
+        TableDataModel model = new TableDataModel(instance.readBatch(), url);
+        model.setRepaintInterval(0);
+
+        assertEquals(2, model.getColumnCount());
+        assertEquals("Symbol", model.getColumnName(0));
+        assertEquals(80, model.getPreferredColumnWidth(0));
+        assertEquals(2, model.getRowCount());
+        assertEquals(1, instance.getLastSequence());
+
+        // a row is replaced by key and a row is deleted
+        model.addRowData(instance.readBatch(), true);
+        assertEquals(1, model.getRowCount());
+        assertEquals("IBM", model.getValueAt(0, 0));
+        assertEquals(Float.valueOf(3), model.getValueAt(0, 1));
+
+        // the stream is resumed after the last commit, the table is cleared and the
+        // rows before the clear are dropped
+        TableRowBatch batch = instance.readBatch();
+        assertEquals(TableDataModel.ROWDATA, batch.getClearType());
+        assertEquals(1, batch.getRows().size());
+        model.addRowData(batch, true);
+        assertEquals(1, model.getRowCount());
+        assertEquals("AAPL", model.getValueAt(0, 0));
+        assertEquals(Boolean.TRUE, model.getValueAt(0, 2));
+        assertEquals(Integer.valueOf(7), model.getValueAt(0, 3));
+        assertEquals(3, instance.getLastSequence());
+        assertEquals(1, instance.getReconnects());
+
+        // the stream ends with an error when it cannot be resumed
+        server.stop();
+        assertNull(instance.readBatch());
+        assertNotNull(instance.getError());
+        instance.close();
+
+        assertEquals(Long.valueOf(-1), handler.resumes.get(0));
+        assertEquals(Long.valueOf(2), handler.resumes.get(1));
+    }
+
+    /**
+     * Test of readBatch method on a stream that is not numbered, of class RowFrameReader.
+     */
+    @Test
+    public void testReadBatchUnnumbered() throws Exception {
+        System.out.println("readBatchUnnumbered");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RowFrameWriter writer = new RowFrameWriter(out);
+
+        writer.writeUpsert(null, new Object[]{"a"});
+        writer.commit(-1);
+        writer.writeUpsert(null, new Object[]{"b"});
+        writer.writeDelete("k");
+        writer.close();
+
+        RowFrameReader instance = new RowFrameReader(url, null, "test", null,
+                new ByteArrayInputStream(out.toByteArray()), new Backoff(10, 20, 1));
+
+        assertEquals(1, instance.readBatch().getRows().size());
+
+        // a stream that ends cleanly has finished, the frames after the last commit
+        // are returned
+        TableRowBatch batch = instance.readBatch();
+        assertEquals(1, batch.getRows().size());
+        assertEquals("k", batch.getDeletes().get(0));
+        assertNull(instance.readBatch());
+        assertNull(instance.getError());
+        assertEquals(0, instance.getReconnects());
+    }
+
+    /**
+     * Test of readBatch method with the changed cells of a row, of class RowFrameReader.
+     */
+    @Test
+    public void testReadBatchDelta() throws Exception {
+        System.out.println("readBatchDelta");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RowFrameWriter writer = new RowFrameWriter(out);
+
+        writer.writeColumns(new String[]{"Symbol", "Price", "Volume"}, new int[]{80, 60, 60});
+        writer.writeUpsert("IBM", new Object[]{"IBM", Float.valueOf(1), Integer.valueOf(100)});
+        writer.commit(1);
+        writer.writeDelta("IBM", new int[]{2, 1}, new Object[]{Integer.valueOf(200), Float.valueOf(2)});
+        writer.writeDelta(null, new int[]{0}, new Object[]{"x"});
+        writer.commit(2);
+        writer.close();
+
+        RowFrameReader instance = new RowFrameReader(url, null, "test", null,
+                new ByteArrayInputStream(out.toByteArray()), new Backoff(10, 20, 1));
+
+        TableDataModel model = new TableDataModel(instance.readBatch(), url);
+        model.setRepaintInterval(0);
+
+        // a delta without a key is ignored
+        TableRowBatch batch = instance.readBatch();
+        assertEquals(0, batch.getRows().size());
+        assertEquals(1, batch.getDeltas().size());
+
+        model.addRowData(batch, true);
+        assertEquals(1, model.getRowCount());
+        assertEquals("IBM", model.getValueAt(0, 0));
+        assertEquals(Float.valueOf(2), model.getValueAt(0, 1));
+        assertEquals(Integer.valueOf(200), model.getValueAt(0, 2));
+    }
+
+    /**
+     * Test of a stream that replies with XML, of class RowFrameReader.
+     */
+    @Test
+    public void testNotFrameStream() throws Exception {
+        System.out.println("notFrameStream");
+        BufferedInputStream in = new BufferedInputStream(NetUtils.getInputStream(url, null, "test"));
+
+        assertFalse(RowFrame.isFrameStream(in));
+
+        try {
+            new RowFrameReader(url, null, "test", null, in);
+            fail("an XML stream is not a frame stream");
+        } catch (IOException ex) {
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.swing.data;
+
+import java.util.ArrayList;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.AbstractTableModel;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class TableChangeCoalescerTest {
+
+    private AbstractTableModel model;
+    private ArrayList<TableModelEvent> events;
+
+    public TableChangeCoalescerTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+        events = new ArrayList<TableModelEvent>();
+        model = new AbstractTableModel() {
+
+            public int getRowCount() {
+                return 100;
+            }
+
+            public int getColumnCount() {
+                return 1;
+            }
+
+            public Object getValueAt(int row, int col) {
+                return null;
+            }
+        };
+        model.addTableModelListener(new TableModelListener() {
+
+            public void tableChanged(TableModelEvent e) {
+                events.add(e);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of flush method with updated and inserted rows, of class TableChangeCoalescer.
+     */
+    @Test
+    public void testFlush() {
+        System.out.println("flush");
+        TableChangeCoalescer instance = new TableChangeCoalescer(model, 0);
+
+        instance.rowUpdated(2);
+        instance.rowUpdated(3);
+        instance.rowUpdated(7);
+        instance.rowsInserted(10, 10);
+        instance.rowsInserted(11, 11);
+        // an update to an inserted row is covered by the insert
+        instance.rowUpdated(11);
+        instance.schedule();
+
+        assertEquals(3, events.size());
+        assertEquals(TableModelEvent.UPDATE, events.get(0).getType());
+        assertEquals(2, events.get(0).getFirstRow());
+        assertEquals(3, events.get(0).getLastRow());
+        assertEquals(7, events.get(1).getFirstRow());
+        assertEquals(7, events.get(1).getLastRow());
+        assertEquals(TableModelEvent.INSERT, events.get(2).getType());
+        assertEquals(10, events.get(2).getFirstRow());
+        assertEquals(11, events.get(2).getLastRow());
+
+        // nothing is fired when there are no changes
+        events.clear();
+        instance.flush();
+        assertEquals(0, events.size());
+    }
+
+    /**
+     * Test of flush method with many updated ranges, of class TableChangeCoalescer.
+     */
+    @Test
+    public void testFlushManyRanges() {
+        System.out.println("flushManyRanges");
+        TableChangeCoalescer instance = new TableChangeCoalescer(model, 0);
+
+        for (int i = 0; i <= TableChangeCoalescer.MAX_RANGES; i++) {
+            instance.rowUpdated(i * 2);
+        }
+        instance.flush();
+
+        assertEquals(1, events.size());
+        assertEquals(0, events.get(0).getFirstRow());
+        assertEquals(TableChangeCoalescer.MAX_RANGES * 2, events.get(0).getLastRow());
+    }
+
+    /**
+     * Test of flush method with updated cells, of class TableChangeCoalescer.
+     */
+    @Test
+    public void testFlushCells() {
+        System.out.println("flushCells");
+        TableChangeCoalescer instance = new TableChangeCoalescer(model, 0);
+
+        instance.cellUpdated(5, 0);
+        instance.cellUpdated(5, 0);
+        instance.cellUpdated(8, 0);
+        // a cell in an updated or inserted row is covered by the row
+        instance.cellUpdated(2, 0);
+        instance.rowUpdated(2);
+        instance.cellUpdated(20, 0);
+        instance.rowsInserted(20, 20);
+        instance.flush();
+
+        assertEquals(4, events.size());
+        assertEquals(2, events.get(0).getFirstRow());
+        assertEquals(TableModelEvent.ALL_COLUMNS, events.get(0).getColumn());
+        assertEquals(5, events.get(1).getFirstRow());
+        assertEquals(5, events.get(1).getLastRow());
+        assertEquals(0, events.get(1).getColumn());
+        assertEquals(8, events.get(2).getFirstRow());
+        assertEquals(0, events.get(2).getColumn());
+        assertEquals(TableModelEvent.INSERT, events.get(3).getType());
+    }
+
+    /**
+     * Test of flush method with many updated cells, of class TableChangeCoalescer.
+     */
+    @Test
+    public void testFlushManyCells() {
+        System.out.println("flushManyCells");
+        TableChangeCoalescer instance = new TableChangeCoalescer(model, 0);
+
+        // the cells are repainted as the rows they are in
+        for (int i = 0; i <= TableChangeCoalescer.MAX_CELLS; i++) {
+            instance.cellUpdated(i % 4, i);
+        }
+        instance.flush();
+
+        assertEquals(1, events.size());
+        assertEquals(0, events.get(0).getFirstRow());
+        assertEquals(3, events.get(0).getLastRow());
+        assertEquals(TableModelEvent.ALL_COLUMNS, events.get(0).getColumn());
+    }
+
+    /**
+     * Test of dataChanged method, of class TableChangeCoalescer.
+     */
+    @Test
+    public void testDataChanged() {
+        System.out.println("dataChanged");
+        TableChangeCoalescer instance = new TableChangeCoalescer(model, 0);
+
+        instance.rowUpdated(1);
+        instance.dataChanged();
+
+        // the change is fired at once and the update recorded before it is dropped
+        assertEquals(1, events.size());
+        assertEquals(0, events.get(0).getFirstRow());
+        assertEquals(Integer.MAX_VALUE, events.get(0).getLastRow());
+
+        instance.rowsInserted(0, 5);
+        instance.flush();
+
+        assertEquals(2, events.size());
+        assertEquals(TableModelEvent.INSERT, events.get(1).getType());
+    }
+
+    /**
+     * Test of structureChanged method with a repaint interval, of class TableChangeCoalescer.
+     */
+    @Test
+    public void testStructureChanged() throws Exception {
+        System.out.println("structureChanged");
+        TableChangeCoalescer instance = new TableChangeCoalescer(model, 20);
+
+        instance.rowsInserted(90, 99);
+        instance.schedule();
+        instance.structureChanged();
+
+        // the structure change is not held back by the repaint interval
+        assertEquals(1, events.size());
+        assertEquals(TableModelEvent.HEADER_ROW, events.get(0).getFirstRow());
+
+        Thread.sleep(200);
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            public void run() {
+            }
+        });
+
+        // the rows inserted before the change are not fired afterwards
+        assertEquals(1, events.size());
+    }
+
+    /**
+     * Test of schedule method with a repaint interval, of class TableChangeCoalescer.
+     */
+    @Test
+    public void testScheduleInterval() throws Exception {
+        System.out.println("scheduleInterval");
+        TableChangeCoalescer instance = new TableChangeCoalescer(model, 20);
+
+        instance.rowUpdated(1);
+        instance.schedule();
+        instance.rowUpdated(2);
+        instance.schedule();
+
+        // nothing is fired until the interval has passed
+        assertEquals(0, events.size());
+
+        Thread.sleep(200);
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            public void run() {
+            }
+        });
+
+        assertEquals(1, events.size());
+        assertEquals(1, events.get(0).getFirstRow());
+        assertEquals(2, events.get(0).getLastRow());
+    }
+}
@@ -17,8 +17,13 @@ import java.io.FileInputStream;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.awt.Color;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import javax.imageio.ImageIO;
 import javax.swing.DefaultCellEditor;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
 import org.jdom.Element;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -159,6 +164,346 @@ public class TableDataModelTest {
         assertEquals(count + 1, instance.getRowCount());
     }
 
+    /**
+     * Test of addTableRow method with keyed rows, of class TableDataModel.
+     */
+    @Test
+    public void testAddTableRowByKey() {
+        System.out.println("addTableRowByKey");
+        TableDataModel instance = new TableDataModel(root);
+        int count = instance.getRowCount();
+
+        TableRow row = new TableRow();
+        row.setKey("key1");
+        row.add("John Doe");
+        row.add(new Float("21.34"));
+
+        instance.addTableRow(row, true);
+        assertEquals(count + 1, instance.getRowCount());
+
+        // a row with the same key but different column data replaces the row in place
+        TableRow update = new TableRow();
+        update.setKey("key1");
+        update.add("Jane Doe");
+        update.add(new Float("22.00"));
+
+        instance.addTableRow(update, true);
+        assertEquals(count + 1, instance.getRowCount());
+        assertEquals("Jane Doe", instance.getValueAt(count, 0));
+
+        // a row with a different key is added
+        TableRow other = new TableRow();
+        other.setKey("key2");
+        other.add("Jane Doe");
+        other.add(new Float("23.00"));
+
+        instance.addTableRow(other, true);
+        assertEquals(count + 2, instance.getRowCount());
+
+        // the index is rebuilt after clearing the data
+        instance.clear(null);
+        instance.addTableRow(update, true);
+        instance.addTableRow(update, true);
+        assertEquals(1, instance.getRowCount());
+    }
+
+    /**
+     * Test of the table model events fired by addTableRow, of class TableDataModel.
+     */
+    @Test
+    public void testAddTableRowEvents() {
+        System.out.println("addTableRowEvents");
+        TableDataModel instance = new TableDataModel(root);
+        final ArrayList<TableModelEvent> events = new ArrayList<TableModelEvent>();
+
+        instance.setRepaintInterval(0);
+        instance.addTableModelListener(new TableModelListener() {
+
+            public void tableChanged(TableModelEvent e) {
+                events.add(e);
+            }
+        });
+
+        int count = instance.getRowCount();
+        TableRow row = new TableRow();
+        row.setKey("key1");
+        row.add("John Doe");
+
+        instance.addTableRow(row, true);
+        assertEquals(1, events.size());
+        assertEquals(TableModelEvent.INSERT, events.get(0).getType());
+        assertEquals(count, events.get(0).getFirstRow());
+
+        // replacing the row only updates that row
+        instance.addTableRow(row, true);
+        assertEquals(2, events.size());
+        assertEquals(TableModelEvent.UPDATE, events.get(1).getType());
+        assertEquals(count, events.get(1).getFirstRow());
+        assertEquals(count, events.get(1).getLastRow());
+    }
+
+    /**
+     * Test of readRowData and addRowData with a batch, of class TableDataModel.
+     */
+    @Test
+    public void testAddRowDataBatch() throws JDOMException, IOException {
+        System.out.println("addRowDataBatch");
+        TableDataModel instance = new TableDataModel(root);
+        final ArrayList<Boolean> onEDT = new ArrayList<Boolean>();
+
+        instance.setRepaintInterval(0);
+        instance.addTableModelListener(new TableModelListener() {
+
+            public void tableChanged(TableModelEvent e) {
+                onEDT.add(Boolean.valueOf(SwingUtilities.isEventDispatchThread()));
+            }
+        });
+
+        String xml = "<root><rowData><row><col type=\"string\" >Fred Bloggs</col><col type=\"float\">99.95</col></row></rowData></root>";
+        Element node = new SAXBuilder().build(new StringReader(xml)).getRootElement();
+
+        // reading the rows does not change the model
+        TableRowBatch batch = instance.readRowData(node);
+        assertEquals(1, batch.getRows().size());
+        assertEquals(new Float("99.95"), batch.getRows().get(0).get(1));
+
+        batch.setClearType(TableDataModel.ROWDATA);
+        instance.addRowData(batch, true);
+
+        // the data was cleared and the row added in one step on the event dispatch
+        // thread, the clear is fired before the row is inserted
+        assertEquals(1, instance.getRowCount());
+        assertEquals(2, onEDT.size());
+        assertTrue(onEDT.get(0).booleanValue());
+        assertTrue(onEDT.get(1).booleanValue());
+    }
+
+    /**
+     * Test of postRowData method, of class TableDataModel.
+     */
+    @Test
+    public void testPostRowData() throws Exception {
+        System.out.println("postRowData");
+        TableDataModel instance = new TableDataModel(root);
+        final ArrayList<Boolean> onEDT = new ArrayList<Boolean>();
+        int count = instance.getRowCount();
+
+        instance.setRepaintInterval(0);
+        instance.addTableModelListener(new TableModelListener() {
+
+            public void tableChanged(TableModelEvent e) {
+                onEDT.add(Boolean.valueOf(SwingUtilities.isEventDispatchThread()));
+            }
+        });
+
+        for (int i = 0; i < 3; i++) {
+            String xml = "<root><rowData><row key=\"key" + i + "\"><col>row" + i + "</col></row></rowData></root>";
+            Element node = new SAXBuilder().build(new StringReader(xml)).getRootElement();
+
+            instance.postRowData(instance.readRowData(node), true);
+        }
+
+        // the caller does not wait, the batches are added in order on the event
+        // dispatch thread
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            public void run() {
+            }
+        });
+        assertEquals(count + 3, instance.getRowCount());
+        assertEquals("row0", instance.getValueAt(count, 0));
+        assertEquals("row2", instance.getValueAt(count + 2, 0));
+        assertEquals(3, onEDT.size());
+        assertTrue(onEDT.get(0).booleanValue());
+    }
+
+    /**
+     * Test of addRowData with the changed cells of existing rows, of class TableDataModel.
+     */
+    @Test
+    public void testAddRowDataDelta() throws JDOMException, IOException {
+        System.out.println("addRowDataDelta");
+        TableDataModel instance = new TableDataModel(root);
+        final ArrayList<TableModelEvent> events = new ArrayList<TableModelEvent>();
+        int count = instance.getRowCount();
+
+        instance.setRepaintInterval(0);
+
+        TableRow row = new TableRow();
+        row.setKey("key1");
+        row.add("John Doe");
+        row.add(new Float("21.34"));
+        instance.addTableRow(row, true);
+
+        instance.addTableModelListener(new TableModelListener() {
+
+            public void tableChanged(TableModelEvent e) {
+                events.add(e);
+            }
+        });
+
+        String xml = "<root><rowData><delta key=\"key1\"><col index=\"1\" type=\"float\">22.5</col>"
+                + "<col index=\"99\">x</col></delta>"
+                + "<delta key=\"missing\"><col>x</col></delta></rowData></root>";
+        Element node = new SAXBuilder().build(new StringReader(xml)).getRootElement();
+
+        instance.addRowData(instance.readRowData(node), true);
+
+        // the cell is set in place and only that cell is repainted
+        assertEquals(count + 1, instance.getRowCount());
+        assertEquals("John Doe", instance.getValueAt(count, 0));
+        assertEquals(new Float("22.5"), instance.getValueAt(count, 1));
+        assertEquals(1, events.size());
+        assertEquals(TableModelEvent.UPDATE, events.get(0).getType());
+        assertEquals(count, events.get(0).getFirstRow());
+        assertEquals(count, events.get(0).getLastRow());
+        assertEquals(1, events.get(0).getColumn());
+
+        // a cell in a column the table does not have is ignored
+        assertEquals(2, row.size());
+    }
+
+    /**
+     * Test of addRowData with the changed cells of a coloured row, of class TableDataModel.
+     */
+    @Test
+    public void testAddRowDataDeltaColour() throws JDOMException, IOException {
+        System.out.println("addRowDataDeltaColour");
+        TableDataModel instance = new TableDataModel(root);
+        int count = instance.getRowCount();
+
+        instance.setRepaintInterval(0);
+
+        TableRow row = new TableRow();
+        row.setKey("key1");
+        row.add(new TableRowColumnAttributes(null, 0, Color.red, false, null, "John Doe"));
+        row.add(new Float("21.34"));
+        instance.addTableRow(row, true);
+
+        String xml = "<root><rowData><delta key=\"key1\"><col index=\"0\">Jane Doe</col></delta></rowData></root>";
+        Element node = new SAXBuilder().build(new StringReader(xml)).getRootElement();
+
+        instance.addRowData(instance.readRowData(node), true);
+
+        // the cell keeps its colour
+        assertEquals("Jane Doe", instance.getValueAt(count, 0));
+        assertEquals(Color.red, instance.getBackground(count, 0));
+    }
+
+    /**
+     * Test of addRowData with rows to delete, of class TableDataModel.
+     */
+    @Test
+    public void testAddRowDataDelete() {
+        System.out.println("addRowDataDelete");
+        TableDataModel instance = new TableDataModel(root);
+        final ArrayList<TableModelEvent> events = new ArrayList<TableModelEvent>();
+        int count = instance.getRowCount();
+
+        instance.setRepaintInterval(0);
+
+        for (int i = 0; i < 5; i++) {
+            TableRow row = new TableRow();
+            row.setKey("key" + i);
+            row.add("row" + i);
+            instance.addTableRow(row, true);
+        }
+
+        instance.addTableModelListener(new TableModelListener() {
+
+            public void tableChanged(TableModelEvent e) {
+                events.add(e);
+            }
+        });
+
+        TableRowBatch batch = new TableRowBatch();
+        batch.delete("key3");
+        batch.delete("key0");
+        batch.delete("missing");
+        batch.delete("key1");
+        instance.addRowData(batch, true);
+
+        // the adjacent rows are deleted in one range from the highest row down
+        assertEquals(count + 2, instance.getRowCount());
+        assertEquals("row2", instance.getValueAt(count, 0));
+        assertEquals("row4", instance.getValueAt(count + 1, 0));
+        assertEquals(2, events.size());
+        assertEquals(TableModelEvent.DELETE, events.get(0).getType());
+        assertEquals(count + 3, events.get(0).getFirstRow());
+        assertEquals(count + 3, events.get(0).getLastRow());
+        assertEquals(count, events.get(1).getFirstRow());
+        assertEquals(count + 1, events.get(1).getLastRow());
+
+        // the rows are found by key after the index is rebuilt
+        TableRow row = new TableRow();
+        row.setKey("key4");
+        row.add("row5");
+        instance.addTableRow(row, true);
+        assertEquals(count + 2, instance.getRowCount());
+        assertEquals("row5", instance.getValueAt(count + 1, 0));
+    }
+
+    /**
+     * Test of addRowData with an image that loads after rows have been deleted, of
+     * class TableDataModel.
+     */
+    @Test
+    public void testAddRowDataImageLoaded() throws Exception {
+        System.out.println("addRowDataImageLoaded");
+        File file = File.createTempFile("TableDataModelTest", ".png");
+        file.deleteOnExit();
+        ImageIO.write(new BufferedImage(12, 8, BufferedImage.TYPE_INT_RGB), "png", file);
+
+        final AsyncImageIcon icon = new AsyncImageIcon(file.toURI().toURL().toString(), -1, -1);
+        final TableDataModel instance = new TableDataModel(root);
+        final ArrayList<TableModelEvent> events = new ArrayList<TableModelEvent>();
+        final int count = instance.getRowCount();
+
+        instance.setRepaintInterval(0);
+
+        // the image is shown in rows key1 and key3
+        TableRowBatch batch = new TableRowBatch();
+
+        for (int i = 0; i < 5; i++) {
+            TableRow row = new TableRow();
+            row.setKey("key" + i);
+            row.add("row" + i);
+            if (i == 1 || i == 3) {
+                row.add(icon);
+            }
+            batch.add(row);
+        }
+        batch.addIcon(icon);
+        instance.addRowData(batch, true);
+
+        batch = new TableRowBatch();
+        batch.delete("key0");
+        instance.addRowData(batch, true);
+
+        instance.addTableModelListener(new TableModelListener() {
+
+            public void tableChanged(TableModelEvent e) {
+                events.add(e);
+            }
+        });
+
+        assertTrue(icon.load());
+        icon.fireLoaded();
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            public void run() {
+            }
+        });
+
+        // only the rows that show the image are repainted at their new indexes
+        assertEquals(2, events.size());
+        assertEquals(TableModelEvent.UPDATE, events.get(0).getType());
+        assertEquals(count, events.get(0).getFirstRow());
+        assertEquals(count, events.get(0).getLastRow());
+        assertEquals(count + 2, events.get(1).getFirstRow());
+        assertEquals(count + 2, events.get(1).getLastRow());
+    }
+
     /**
      * Test of addColumn method, of class TableDataModel.
      */
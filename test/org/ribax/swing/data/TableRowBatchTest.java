@@ -0,0 +1,121 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.swing.data;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class TableRowBatchTest {
+
+    public TableRowBatchTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of add/getRows method, of class TableRowBatch.
+     */
+    @Test
+    public void testGetRows() {
+        System.out.println("getRows");
+        TableRowBatch instance = new TableRowBatch();
+        TableRow row = new TableRow();
+
+        assertEquals(0, instance.getRows().size());
+        instance.add(row);
+        assertEquals(1, instance.getRows().size());
+        assertSame(row, instance.getRows().get(0));
+    }
+
+    /**
+     * Test of addRowHeight/getRowHeight method, of class TableRowBatch.
+     */
+    @Test
+    public void testGetRowHeight() {
+        System.out.println("getRowHeight");
+        TableRowBatch instance = new TableRowBatch();
+
+        assertEquals(-1, instance.getRowHeight());
+        instance.addRowHeight(16);
+        instance.addRowHeight(12);
+        assertEquals(16, instance.getRowHeight());
+    }
+
+    /**
+     * Test of getClearType/setClearType method, of class TableRowBatch.
+     */
+    @Test
+    public void testGetClearType() {
+        System.out.println("getClearType");
+        TableRowBatch instance = new TableRowBatch();
+
+        assertNull(instance.getClearType());
+        instance.setClearType(TableDataModel.ALL);
+        assertEquals(TableDataModel.ALL, instance.getClearType());
+    }
+
+    /**
+     * Test of delete method, of class TableRowBatch.
+     */
+    @Test
+    public void testDelete() {
+        System.out.println("delete");
+        TableRowBatch instance = new TableRowBatch();
+        TableRow row = new TableRow();
+        TableRow other = new TableRow();
+
+        row.setKey("k1");
+        other.setKey("k2");
+        instance.add(row);
+        instance.add(other);
+
+        // a row added before it is deleted is dropped from the batch
+        instance.delete("k1");
+        assertEquals(1, instance.getRows().size());
+        assertSame(other, instance.getRows().get(0));
+        assertEquals("k1", instance.getDeletes().get(0));
+    }
+
+    /**
+     * Test of addDelta method, of class TableRowBatch.
+     */
+    @Test
+    public void testAddDelta() {
+        System.out.println("addDelta");
+        TableRowBatch instance = new TableRowBatch();
+
+        instance.addDelta(new TableRowDelta("k1", new int[]{1}, new Object[]{"a"}));
+        instance.addDelta(new TableRowDelta("k2", new int[]{1}, new Object[]{"b"}));
+        assertEquals(2, instance.getDeltas().size());
+
+        // a delta added before its row is deleted is dropped from the batch
+        instance.delete("k1");
+        assertEquals(1, instance.getDeltas().size());
+        assertEquals("k2", instance.getDeltas().get(0).getKey());
+    }
+}
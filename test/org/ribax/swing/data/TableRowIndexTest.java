@@ -0,0 +1,133 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.swing.data;
+
+import java.util.Vector;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class TableRowIndexTest {
+
+    public TableRowIndexTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private TableRow makeRow(String key, String name, Float price) {
+        TableRow row = new TableRow();
+
+        row.setKey(key);
+        row.add(price);
+        row.add(name);
+        return row;
+    }
+
+    /**
+     * Test of find method, of class TableRowIndex.
+     */
+    @Test
+    public void testFind() {
+        System.out.println("find");
+        Vector<TableRow> rows = new Vector<TableRow>();
+        TableRowIndex instance = new TableRowIndex(rows);
+
+        rows.add(makeRow("k1", "Fred", new Float(1)));
+        rows.add(makeRow("k2", "Joe", new Float(2)));
+        rows.add(makeRow("k3", "Fred", new Float(3)));
+
+        assertEquals(1, instance.find("k2", TableRowIndex.KEY));
+        // the first row with a value is found
+        assertEquals(0, instance.find("Fred", 1));
+        assertEquals(-1, instance.find("Bill", 1));
+        // non String values are not indexed
+        assertEquals(-1, instance.find("1.0", 0));
+        assertEquals(-1, instance.find(null, 1));
+
+        rows.add(makeRow("k4", "Bill", new Float(4)));
+        instance.rowAdded(3);
+        assertEquals(3, instance.find("Bill", 1));
+        assertEquals(3, instance.find("k4", TableRowIndex.KEY));
+
+        instance.clear();
+        rows.clear();
+        assertEquals(-1, instance.find("k1", TableRowIndex.KEY));
+    }
+
+    /**
+     * Test of rowReplaced method, of class TableRowIndex.
+     */
+    @Test
+    public void testRowReplaced() {
+        System.out.println("rowReplaced");
+        Vector<TableRow> rows = new Vector<TableRow>();
+        TableRowIndex instance = new TableRowIndex(rows);
+
+        rows.add(makeRow("k1", "Fred", new Float(1)));
+        rows.add(makeRow("k2", "Joe", new Float(2)));
+        rows.add(makeRow("k3", "Fred", new Float(3)));
+
+        assertEquals(0, instance.find("Fred", 1));
+        assertEquals(0, instance.find("k1", TableRowIndex.KEY));
+
+        // change the name of the first row, the next Fred is found
+        TableRow old = rows.set(0, makeRow("k1", "Jim", new Float(5)));
+        instance.rowReplaced(0, old);
+
+        assertEquals(0, instance.find("k1", TableRowIndex.KEY));
+        assertEquals(0, instance.find("Jim", 1));
+        assertEquals(2, instance.find("Fred", 1));
+
+        // change a key
+        old = rows.set(1, makeRow("k9", "Joe", new Float(2)));
+        instance.rowReplaced(1, old);
+
+        assertEquals(-1, instance.find("k2", TableRowIndex.KEY));
+        assertEquals(1, instance.find("k9", TableRowIndex.KEY));
+    }
+
+    /**
+     * Test of cellChanged method, of class TableRowIndex.
+     */
+    @Test
+    public void testCellChanged() {
+        System.out.println("cellChanged");
+        Vector<TableRow> rows = new Vector<TableRow>();
+        TableRowIndex instance = new TableRowIndex(rows);
+
+        rows.add(makeRow(null, "Fred", new Float(1)));
+        rows.add(makeRow(null, "Joe", new Float(2)));
+
+        assertEquals(1, instance.find("Joe", 1));
+
+        Object old = rows.elementAt(1).set(1, "Bill");
+        instance.cellChanged(1, 1, old);
+
+        assertEquals(-1, instance.find("Joe", 1));
+        assertEquals(1, instance.find("Bill", 1));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.swing.data;
+
+import java.io.StringReader;
+import org.jdom.Element;
+import org.jdom.input.SAXBuilder;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author damian
+ */
+public class TableRowReaderTest {
+
+    public TableRowReaderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of readRows method, of class TableRowReader.
+     */
+    @Test
+    public void testReadRows() throws Exception {
+        System.out.println("readRows");
+        String xml = "<root><rowData>"
+                + "<row key=\"k1\" colour=\"#bbbbbb\"><col type=\"number\">12</col><col type=\"boolean\">true</col>"
+                + "<col type=\"float\">bad</col><col colour=\"#cccccc\">a&lt;newline&gt;b</col></row>"
+                + "</rowData></root>";
+        Element node = new SAXBuilder().build(new StringReader(xml)).getRootElement();
+        TableRowReader instance = new TableRowReader("test:");
+
+        TableRowBatch result = instance.readRows(node);
+
+        assertEquals(1, result.getRows().size());
+
+        TableRow row = result.getRows().get(0);
+
+        assertEquals("k1", row.getKey());
+        assertNotNull(row.getRowAttributes());
+        assertEquals(new Integer(12), row.get(0));
+        assertEquals(Boolean.TRUE, row.get(1));
+        // an invalid value is converted to a default
+        assertEquals(new Float(0.0), row.get(2));
+        // a cell colour wraps the value
+        assertTrue(row.get(3) instanceof TableRowColumnAttributes);
+        assertEquals("a\nb", ((TableRowColumnAttributes) row.get(3)).data);
+
+        // no row data gives an empty batch
+        assertEquals(0, instance.readRows(new Element("root")).getRows().size());
+    }
+
+    /**
+     * Test of readRows method with the changed cells of existing rows, of class TableRowReader.
+     */
+    @Test
+    public void testReadRowsDelta() throws Exception {
+        System.out.println("readRowsDelta");
+        String xml = "<root><rowData>"
+                + "<delta key=\"k1\"><col index=\"2\" type=\"float\">1.5</col><col type=\"boolean\">true</col>"
+                + "<col index=\"-1\">bad</col></delta>"
+                + "<delta><col>no key</col></delta>"
+                + "</rowData></root>";
+        Element node = new SAXBuilder().build(new StringReader(xml)).getRootElement();
+        TableRowReader instance = new TableRowReader("test:");
+
+        TableRowBatch result = instance.readRows(node);
+
+        assertEquals(0, result.getRows().size());
+        // a delta without a key is ignored
+        assertEquals(1, result.getDeltas().size());
+
+        TableRowDelta delta = result.getDeltas().get(0);
+
+        assertEquals("k1", delta.getKey());
+        // a col without an index is the next column, a negative index is ignored
+        assertEquals(2, delta.size());
+        assertEquals(2, delta.getColumn(0));
+        assertEquals(new Float(1.5), delta.getValue(0));
+        assertEquals(3, delta.getColumn(1));
+        assertEquals(Boolean.TRUE, delta.getValue(1));
+    }
+}
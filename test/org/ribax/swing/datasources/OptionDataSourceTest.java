@@ -7,7 +7,10 @@ package org.ribax.swing.datasources;
 import javax.swing.event.ListDataEvent;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import javax.swing.event.ListDataListener;
+import org.jdom.Element;
+import org.jdom.input.SAXBuilder;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -88,6 +91,42 @@ public class OptionDataSourceTest {
 
     }
 
+    /**
+     * Test of setOptions method, of class OptionDataSource.
+     */
+    @Test
+    public void testSetOptions() throws Exception {
+        System.out.println("setOptions");
+
+        final ArrayList<ListDataEvent> events = new ArrayList<ListDataEvent>();
+        OptionDataSource instance = new OptionDataSource();
+        instance.addListDataListener(new ListDataListener() {
+
+            public void intervalAdded(ListDataEvent e) {
+            }
+
+            public void intervalRemoved(ListDataEvent e) {
+            }
+
+            public void contentsChanged(ListDataEvent e) {
+                events.add(e);
+            }
+        });
+        assertEquals(0, instance.getSize());
+
+        Element root = new SAXBuilder().build(new File("resources/optionTest.xml")).getRootElement();
+
+        instance.setOptions(root);
+        assertEquals(5, instance.getSize());
+        assertEquals("option 1", instance.getElementAt(0));
+        assertEquals(1, events.size());
+        assertEquals(4, events.get(0).getIndex1());
+
+        // the options are replaced, not added to
+        instance.setOptions(root);
+        assertEquals(5, instance.getSize());
+    }
+
     /**
      * Test of addListDataListener, removeListDataListener and
      * fireListDataChanged method, of class OptionDataSource.
@@ -0,0 +1,309 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.ribax.swing.ui;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import javax.swing.JPanel;
+import javax.swing.JTabbedPane;
+import javax.swing.SwingUtilities;
+import org.jdom.Element;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.ribax.common.data.RequestScheduler;
+import org.ribax.common.net.BatchRequestTest;
+import org.ribax.common.net.StandInServer;
+import utils.types.NameValuePair;
+
+/**
+ *
+ * @author damian
+ */
+public class DataItemLoaderTest {
+
+    /* the names of the items in the order they were loaded */
+    private Vector<String> applied;
+    /* true if an item was applied off the event dispatch thread */
+    private boolean offEDT;
+
+    public DataItemLoaderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+        applied = new Vector<String>();
+        offEDT = false;
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /*
+     * Wait for a number of items to be applied.
+     */
+    private void waitApplied(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && applied.size() < count; i++) {
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * A DataItem that takes a given time to fetch its data.
+     */
+    private class FetchingItem extends DataItemAdaptor {
+
+        public static final long serialVersionUID = 1;
+        private long delay;
+        private boolean fail;
+
+        FetchingItem(String name, long delay, boolean fail) {
+            this.name = name;
+            this.delay = delay;
+            this.fail = fail;
+        }
+
+        @Override
+        public Callable<Element> getFetchTask(ArrayList<NameValuePair> params, String action) {
+            if (delay < 0) {
+                return null;
+            }
+            return new Callable<Element>() {
+
+                public Element call() throws Exception {
+                    Thread.sleep(delay);
+                    if (fail) {
+                        throw new IOException(name);
+                    }
+                    return new Element(name);
+                }
+            };
+        }
+
+        @Override
+        public void loadFetchedData(Element node, ArrayList<NameValuePair> params, String action) {
+            offEDT |= !SwingUtilities.isEventDispatchThread();
+            applied.add(node == null ? name + ":failed" : node.getName());
+        }
+
+        @Override
+        public void loadData(ArrayList<NameValuePair> params, String action) {
+            offEDT |= !SwingUtilities.isEventDispatchThread();
+            applied.add(name + ":loadData");
+        }
+    }
+
+    /**
+     * Test of load method, of class DataItemLoader.
+     */
+    @Test
+    public void testLoad() throws Exception {
+        System.out.println("load");
+        final DataItemLoader instance = new DataItemLoader(4);
+        final List<DataItem> items = new ArrayList<DataItem>();
+
+        items.add(new FetchingItem("a", 300, false));
+        items.add(new FetchingItem("b", -1, false));
+        items.add(new FetchingItem("c", 100, false));
+        items.add(new FetchingItem("d", 300, true));
+
+        long start = System.currentTimeMillis();
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            public void run() {
+                instance.load(items, null, "LoadData");
+                // load does not block the event dispatch thread
+                assertEquals(0, applied.size());
+            }
+        });
+        waitApplied(4);
+
+        long elapsed = System.currentTimeMillis() - start;
+
+        // the fetches run at the same time and the items are applied in order
+        assertTrue("elapsed " + elapsed, elapsed < 650);
+        assertEquals(4, applied.size());
+        assertEquals("a", applied.get(0));
+        assertEquals("b:loadData", applied.get(1));
+        assertEquals("c", applied.get(2));
+        assertEquals("d:failed", applied.get(3));
+        assertFalse(offEDT);
+    }
+
+    /**
+     * Test of load method with a parallelism cap, of class DataItemLoader.
+     */
+    @Test
+    public void testLoadCapped() throws Exception {
+        System.out.println("loadCapped");
+        final DataItemLoader instance = new DataItemLoader(1);
+        final List<DataItem> items = new ArrayList<DataItem>();
+
+        items.add(new FetchingItem("a", 200, false));
+        items.add(new FetchingItem("b", 200, false));
+
+        long start = System.currentTimeMillis();
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            public void run() {
+                instance.load(items, null, "LoadData");
+            }
+        });
+        waitApplied(2);
+
+        // a single worker fetches one item at a time
+        assertTrue(System.currentTimeMillis() - start >= 400);
+        assertEquals(2, applied.size());
+    }
+
+    /**
+     * Test of prefetch method, of class DataItemLoader.
+     */
+    @Test
+    public void testPrefetch() throws Exception {
+        System.out.println("prefetch");
+        final DataItemLoader instance = new DataItemLoader(4);
+        final List<DataItem> items = new ArrayList<DataItem>();
+
+        items.add(new FetchingItem("a", -1, false));
+        items.add(new FetchingItem("b", 300, false));
+        items.add(new FetchingItem("c", 50, false));
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            public void run() {
+                instance.prefetch(items, null, "LoadData");
+                // prefetch does not wait for the fetches
+                assertEquals(0, applied.size());
+            }
+        });
+
+        waitApplied(3);
+
+        // c is fetched first but is applied after b
+        assertEquals(3, applied.size());
+        assertEquals("a:loadData", applied.get(0));
+        assertEquals("b", applied.get(1));
+        assertEquals("c", applied.get(2));
+        assertFalse(offEDT);
+    }
+
+    /**
+     * Test of load method with a DataItem on a tab that is not shown, of class DataItemLoader.
+     */
+    @Test
+    public void testLoadHidden() throws Exception {
+        System.out.println("loadHidden");
+        final RequestScheduler scheduler = new RequestScheduler(4);
+        final DataItemLoader instance = new DataItemLoader(scheduler);
+        final List<DataItem> items = new ArrayList<DataItem>();
+        JTabbedPane tabs = new JTabbedPane();
+        FetchingItem hidden = new FetchingItem("a", 300, false);
+
+        tabs.add(new JPanel());
+        tabs.add(hidden);
+        items.add(hidden);
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            public void run() {
+                instance.load(items, null, "LoadData");
+            }
+        });
+        Thread.sleep(100);
+
+        // the DataItem on the hidden tab is fetched in the prefetch class
+        assertEquals(1, scheduler.getRunning(RequestScheduler.PREFETCH));
+        assertEquals(0, scheduler.getRunning(RequestScheduler.VISIBLE));
+        waitApplied(1);
+        assertEquals("a", applied.get(0));
+        scheduler.shutdown();
+    }
+
+    /**
+     * A DataItem that fetches its data from a URL.
+     */
+    private class UrlItem extends DataItemAdaptor {
+
+        public static final long serialVersionUID = 1;
+        private String url;
+
+        UrlItem(String name, String url) {
+            this.name = name;
+            this.url = url;
+        }
+
+        @Override
+        public Callable<Element> getFetchTask(ArrayList<NameValuePair> params, String action) {
+            ArrayList<NameValuePair> list = new ArrayList<NameValuePair>();
+            list.add(new NameValuePair("id", name));
+            return new FetchTask(this, url, list);
+        }
+
+        @Override
+        public void loadFetchedData(Element node, ArrayList<NameValuePair> params, String action) {
+            applied.add(node == null ? name + ":failed" : name + ":" + node.getName());
+        }
+    }
+
+    /**
+     * Test of load method with a batch URL, of class DataItemLoader.
+     */
+    @Test
+    public void testLoadBatch() throws Exception {
+        System.out.println("loadBatch");
+        BatchRequestTest.BatchHandler handler = new BatchRequestTest.BatchHandler();
+        StandInServer server = new StandInServer(handler);
+
+        try {
+            final String base = server.getURL("");
+            final DataItemLoader instance = new DataItemLoader(4);
+            final List<DataItem> items = new ArrayList<DataItem>();
+
+            items.add(new UrlItem("a", base + "/a"));
+            items.add(new FetchingItem("b", 50, false));
+            items.add(new UrlItem("c", base + "/error"));
+            items.add(new UrlItem("d", base + "/d"));
+
+            SwingUtilities.invokeAndWait(new Runnable() {
+
+                public void run() {
+                    instance.load(items, null, "LoadData", base + "/batch");
+                }
+            });
+            waitApplied(4);
+
+            // the url items are fetched in one batch, the failed request is fetched
+            // on its own and items that are not FetchTasks are fetched as before
+            assertEquals(1, handler.batches.get());
+            assertEquals(1, handler.singles.get());
+            assertEquals(4, applied.size());
+            assertEquals("a:batched", applied.get(0));
+            assertEquals("b", applied.get(1));
+            assertEquals("c:single", applied.get(2));
+            assertEquals("d:batched", applied.get(3));
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -17,7 +17,7 @@ import org.junit.runners.Suite;
  * @author damian
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({org.ribax.swing.ui.ButtonPanelTest.class,org.ribax.swing.ui.TabButtonListenerTest.class,org.ribax.swing.ui.TabTest.class,org.ribax.swing.ui.FolderTest.class,org.ribax.swing.ui.TabButtonTest.class,org.ribax.swing.ui.FileDataItemTest.class,org.ribax.swing.ui.UrlDataItemTest.class,org.ribax.swing.ui.TabContainerTest.class,org.ribax.swing.ui.DataItemContainerTest.class,org.ribax.swing.ui.TabbedDataSetTest.class,org.ribax.swing.ui.EditorDataItemTest.class,org.ribax.swing.ui.DataSetDataItemTest.class,org.ribax.swing.ui.RadioGroupDataItemTest.class,org.ribax.swing.ui.NumberDataItemTest.class,org.ribax.swing.ui.DataItemFactoryTest.class,org.ribax.swing.ui.ColumnDataItemTest.class,org.ribax.swing.ui.PanelDataItemTest.class,org.ribax.swing.ui.DataItemNamesTest.class,org.ribax.swing.ui.SelectDataItemTest.class,org.ribax.swing.ui.DescriptionTest.class,org.ribax.swing.ui.TextDataItemTest.class,org.ribax.swing.ui.DataItemAdaptorTest.class,org.ribax.swing.ui.GridDataItemTest.class,org.ribax.swing.ui.LogDataItemTest.class,org.ribax.swing.ui.HiddenDataItemTest.class,org.ribax.swing.ui.RootFolderTest.class,org.ribax.swing.ui.TransitionDataItemTest.class,org.ribax.swing.ui.DataItemTest.class,org.ribax.swing.ui.TableDataItemTest.class,org.ribax.swing.ui.LinkDataItemTest.class,org.ribax.swing.ui.ListDataItemTest.class,org.ribax.swing.ui.SequenceDataItemTest.class,org.ribax.swing.ui.InfoDataItemTest.class})
+@Suite.SuiteClasses({org.ribax.swing.ui.ButtonPanelTest.class,org.ribax.swing.ui.DataItemLoaderTest.class,org.ribax.swing.ui.TabButtonListenerTest.class,org.ribax.swing.ui.TabTest.class,org.ribax.swing.ui.FolderTest.class,org.ribax.swing.ui.TabButtonTest.class,org.ribax.swing.ui.FileDataItemTest.class,org.ribax.swing.ui.UrlDataItemTest.class,org.ribax.swing.ui.TabContainerTest.class,org.ribax.swing.ui.DataItemContainerTest.class,org.ribax.swing.ui.TabbedDataSetTest.class,org.ribax.swing.ui.EditorDataItemTest.class,org.ribax.swing.ui.DataSetDataItemTest.class,org.ribax.swing.ui.RadioGroupDataItemTest.class,org.ribax.swing.ui.NumberDataItemTest.class,org.ribax.swing.ui.DataItemFactoryTest.class,org.ribax.swing.ui.ColumnDataItemTest.class,org.ribax.swing.ui.PanelDataItemTest.class,org.ribax.swing.ui.DataItemNamesTest.class,org.ribax.swing.ui.SelectDataItemTest.class,org.ribax.swing.ui.DescriptionTest.class,org.ribax.swing.ui.TextDataItemTest.class,org.ribax.swing.ui.DataItemAdaptorTest.class,org.ribax.swing.ui.GridDataItemTest.class,org.ribax.swing.ui.LogDataItemTest.class,org.ribax.swing.ui.HiddenDataItemTest.class,org.ribax.swing.ui.RootFolderTest.class,org.ribax.swing.ui.TransitionDataItemTest.class,org.ribax.swing.ui.DataItemTest.class,org.ribax.swing.ui.TableDataItemTest.class,org.ribax.swing.ui.LinkDataItemTest.class,org.ribax.swing.ui.ListDataItemTest.class,org.ribax.swing.ui.SequenceDataItemTest.class,org.ribax.swing.ui.InfoDataItemTest.class})
 public class UiSuite {
 
     @BeforeClass